@@ -0,0 +1,51 @@
+package eu.genome.fpx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MODE_A_TS signing of hot combination on demand and from {@link HotSignatureScheduler} table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotSignatureBenchmark {
+    private static final Instant NONCE = Instant.ofEpochSecond(1638550119);
+
+    private SignatureGenerator generator;
+    private HotSignatureScheduler scheduler;
+
+    @Setup
+    public void setup() {
+        generator = new SignatureGenerator("Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E");
+        // Table is not rotated, fixed nonce stays covered
+        scheduler = new HotSignatureScheduler(generator, 2, Clock.fixed(NONCE, ZoneOffset.UTC));
+        scheduler.register(9.99, "EUR", "order-12345", "user-67890", "5137");
+    }
+
+    @Benchmark
+    public String onDemand() {
+        return generator.MODE_A_TS(NONCE, 9.99, "EUR", "order-12345", "user-67890", "5137");
+    }
+
+    @Benchmark
+    public String precomputed() {
+        return scheduler.MODE_A_TS(NONCE, 9.99, "EUR", "order-12345", "user-67890", "5137");
+    }
+}
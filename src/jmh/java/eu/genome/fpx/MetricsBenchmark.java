@@ -0,0 +1,59 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.MetricsRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation overhead of MODE_A_TS signing: {@code raw} bypasses instrumentation entirely,
+ * {@code instrumented} goes through public API with or without registered sink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private static final Instant NONCE = Instant.ofEpochSecond(1638550119);
+
+    @Param({"false", "true"})
+    public boolean recording;
+
+    private SignatureGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = new SignatureGenerator("Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E");
+        Metrics.setSink(recording ? new MetricsRecorder() : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.setSink(null);
+    }
+
+    @Benchmark
+    public String raw() {
+        return generator.encode(SignatureMode.MODE_A_TS, NONCE, null, 0, 9.99, "EUR", "order-12345", "user-67890", "5137").hex();
+    }
+
+    @Benchmark
+    public String instrumented() {
+        return generator.MODE_A_TS(NONCE, 9.99, "EUR", "order-12345", "user-67890", "5137");
+    }
+}
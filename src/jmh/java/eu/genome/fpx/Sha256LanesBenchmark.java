@@ -0,0 +1,144 @@
+package eu.genome.fpx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing of short signature pre-images one by one with {@link MessageDigest}, in scalar
+ * {@link Sha256Lanes} and in accelerated ones if available, and batch signing and verification
+ * on calling thread. Accelerated lanes fall back to scalar ones when not available, Vector API
+ * lanes are only loaded from the packaged multi-release jar.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Sha256LanesBenchmark {
+    private static final String SECRET = "Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E";
+    private static final int BATCH = 512;
+    /**
+     * Multiple of every lane count.
+     */
+    private static final int MESSAGES = 64;
+
+    /**
+     * Pre-image length in bytes, 1 and 2 SHA256 blocks together with secret prefix.
+     */
+    @Param({"40", "120"})
+    public int length;
+
+    private byte[] preimage;
+    private MessageDigest prefix;
+    private Sha256Lanes scalar;
+    private Sha256Lanes accelerated;
+    private byte[] digests;
+    private SignatureGenerator generator;
+    private List<SignatureBuilder> requests;
+    private List<String> candidates;
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] secret = (SECRET + '|').getBytes(StandardCharsets.UTF_8);
+        preimage = new byte[length];
+        for (int i = 0; i < length; i++) {
+            preimage[i] = (byte) ('a' + i % 26);
+        }
+        prefix = MessageDigest.getInstance("SHA-256");
+        prefix.update(secret);
+        scalar = new Sha256Lanes(Sha256Lanes.prefix(secret));
+        accelerated = Sha256Acceleration.lanes(Sha256Lanes.prefix(secret));
+        if (accelerated == null) {
+            accelerated = scalar;
+        }
+        digests = new byte[Math.max(scalar.lanes(), accelerated.lanes()) * 32];
+
+        generator = new SignatureGenerator(SECRET);
+        SignatureBuilder request = new SignatureBuilder()
+                .mode(SignatureMode.MODE_A_TS)
+                .nonce(Instant.ofEpochSecond(1638550119))
+                .amount(9.99, "EUR")
+                .orderId("order-12345")
+                .userId("user-67890")
+                .mcc("5137");
+        // BatchSigner.PARALLEL_THRESHOLD is not reached, batch stays on calling thread
+        requests = Collections.nCopies(BATCH, request);
+        candidates = new ArrayList<>(Collections.nCopies(BATCH, request.build(generator)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public byte[] messageDigest() throws Exception {
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageDigest digest = (MessageDigest) prefix.clone();
+            digest.update(preimage);
+            digest.digest(digests, 0, 32);
+        }
+        return digests;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public byte[] scalarLanes() {
+        return hash(scalar);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public byte[] acceleratedLanes() {
+        return hash(accelerated);
+    }
+
+    private byte[] hash(Sha256Lanes lanes) {
+        for (int i = 0; i < MESSAGES; i++) {
+            lanes.add(preimage, 0, preimage.length);
+            if (lanes.isFull()) {
+                lanes.digest(digests);
+            }
+        }
+        return digests;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<SignatureResult> batchSign() {
+        return generator.batch(requests);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] batchVerify() {
+        return generator.verifyBatch(requests, candidates);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int sequentialVerify() {
+        int valid = 0;
+        for (int i = 0; i < BATCH; i++) {
+            if (requests.get(i).verify(generator, candidates.get(i))) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,81 @@
+package eu.genome.fpx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature generation and verification throughput for every {@link SignatureMode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+    private static final Instant NONCE = Instant.ofEpochSecond(1638550119);
+
+    @Param({"CALLBACK", "MODE_A", "MODE_A_TS"})
+    public SignatureMode mode;
+
+    private SignatureGenerator generator;
+    private SignatureBuilder builder;
+    private String valid;
+    private String invalid;
+
+    @Setup
+    public void setup() {
+        generator = new SignatureGenerator("Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E");
+        builder = new SignatureBuilder()
+                .mode(mode)
+                .nonce(NONCE)
+                .sessionId("O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB")
+                .transactionId(5121270)
+                .amount(9.99, "EUR")
+                .orderId("order-12345")
+                .userId("user-67890")
+                .mcc("5137");
+        valid = builder.build(generator);
+        invalid = valid.substring(0, 63) + (valid.charAt(63) == '0' ? '1' : '0');
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public String generator() {
+        switch (mode) {
+            case CALLBACK:
+                return generator.CALLBACK("O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB", 5121270, 9.99, "EUR", "order-12345");
+            case MODE_A:
+                return generator.MODE_A(9.99, "EUR", "order-12345", "user-67890", "5137");
+            default:
+                return generator.MODE_A_TS(NONCE, 9.99, "EUR", "order-12345", "user-67890", "5137");
+        }
+    }
+
+    @Benchmark
+    public String builder() {
+        return builder.build(generator);
+    }
+
+    @Benchmark
+    public boolean verifyValid() {
+        return builder.verify(generator, valid);
+    }
+
+    @Benchmark
+    public boolean verifyInvalid() {
+        return builder.verify(generator, invalid);
+    }
+}
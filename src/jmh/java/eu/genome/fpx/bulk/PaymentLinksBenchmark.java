@@ -0,0 +1,137 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.SignatureBuilder;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payment links generated from {@value #SPECS} CSV specs, score is time per link.
+ * {@code collected} builds every link as a string with {@link URLEncoder} and collects all of them
+ * before writing, the way links were generated before {@link PaymentLinks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentLinksBenchmark {
+    private static final int SPECS = 100_000;
+    private static final String BASE_URL = "https://hpp.genome.eu/pay";
+    private static final Instant NONCE = Instant.ofEpochSecond(1760000000L);
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("eeeeeeeeeeeeeeeeeeeeee");
+
+    /**
+     * Amount of signing threads, 0 for available processors.
+     */
+    @Param({"1", "0"})
+    public int threads;
+
+    private byte[] csv;
+    private PaymentLinks links;
+
+    @Setup
+    public void setup() {
+        StringBuilder specs = new StringBuilder();
+        for (int i = 0; i < SPECS; i++) {
+            specs.append(i % 1000 + 1).append('.').append(i % 100).append(",EUR,order-").append(i)
+                    .append(",customer ").append(i).append("@example.com,5137\n");
+        }
+        csv = specs.toString().getBytes(StandardCharsets.UTF_8);
+        links = PaymentLinks.builder()
+                .baseUrl(BASE_URL)
+                .signWith(GENERATOR)
+                .nonce(NONCE)
+                .threads(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads)
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPECS)
+    public LinkReport streaming() throws IOException {
+        return links.run(new ByteArrayInputStream(csv), new Discard());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPECS)
+    public long collected() throws IOException {
+        List<String> collected = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(",");
+                String signature = new SignatureBuilder()
+                        .mode(SignatureMode.MODE_A_TS)
+                        .nonce(NONCE)
+                        .amount(new BigDecimal(fields[0]), fields[1])
+                        .orderId(fields[2])
+                        .userId(fields[3])
+                        .mcc(fields[4])
+                        .build(GENERATOR);
+                collected.add(BASE_URL + "?timestamp=" + NONCE.getEpochSecond()
+                        + "&amount=" + new BigDecimal(fields[0]).setScale(2).toPlainString()
+                        + "&currency=" + fields[1]
+                        + "&orderId=" + URLEncoder.encode(fields[2], "UTF-8")
+                        + "&userId=" + URLEncoder.encode(fields[3], "UTF-8")
+                        + "&mcc=" + fields[4]
+                        + "&signature=" + signature + "\n");
+            }
+        }
+        Discard output = new Discard();
+        for (String link : collected) {
+            output.write(ByteBuffer.wrap(link.getBytes(StandardCharsets.UTF_8)));
+        }
+        return output.bytes;
+    }
+
+    /**
+     * Channel discarding written bytes.
+     */
+    private static final class Discard implements WritableByteChannel {
+        private long bytes;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int remaining = source.remaining();
+            ((Buffer) source).position(source.limit());
+            bytes += remaining;
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
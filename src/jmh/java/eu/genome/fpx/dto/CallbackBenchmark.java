@@ -0,0 +1,132 @@
+package eu.genome.fpx.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.genome.fpx.SignatureGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Callback parsing, binary encoding and verification throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackBenchmark {
+    static final String SECRET = "eeeeeeeeeeeeeeeeeeeeee";
+    static final String JSON = "{\n" +
+            "  \"isTest\" : true,\n" +
+            "  \"apiKey\" : \"Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E\",\n" +
+            "  \"apiSignature\" : \"9a3b9345845d6001de4c98789ebf91dbc0d693f43708890c73728fc5591a5883\",\n" +
+            "  \"sessionId\" : \"O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB\",\n" +
+            "  \"transactionId\" : 5121270,\n" +
+            "  \"transactionStatus\" : \"SUCCESS\",\n" +
+            "  \"transactionErrorCode\" : 0,\n" +
+            "  \"transactionTimeUnixSeconds\" : 1638550119,\n" +
+            "  \"cardToken\" : null,\n" +
+            "  \"billToken\" : \"5c7e5555-0000-0000-1001-5affdcf91001\",\n" +
+            "  \"paymentMethodType\" : \"TEST_TRX_SUCCESS\",\n" +
+            "  \"amount\" : 9.000000000,\n" +
+            "  \"currency\" : \"XTS\",\n" +
+            "  \"orderId\" : \"\",\n" +
+            "  \"userId\" : \"\",\n" +
+            "  \"custom\" : { \"foo\":\"bar\" }\n" +
+            "}";
+
+    private static final byte[] BYTES = JSON.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FORGED = JSON.replace("9a3b9345", "00000000").getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper mapper;
+    private CallbackParser parser;
+    private SignatureGenerator generator;
+    private Callback callback;
+    private CallbackCodec codec;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        mapper = new ObjectMapper();
+        parser = new CallbackParser();
+        generator = new SignatureGenerator(SECRET);
+        callback = Callback.parse(mapper, JSON);
+        codec = new CallbackCodec();
+        buffer = ByteBuffer.allocate(1024);
+        encoded = ByteBuffer.allocate(codec.encodedLength(callback));
+        codec.encode(callback, encoded);
+        ((Buffer) encoded).flip();
+    }
+
+    @Benchmark
+    public Callback parseJSON() throws JsonProcessingException {
+        return Callback.parseJSON(JSON);
+    }
+
+    @Benchmark
+    public Callback parseSharedMapper() throws JsonProcessingException {
+        return Callback.parse(mapper, JSON);
+    }
+
+    @Benchmark
+    public Callback parseBytes() throws IOException {
+        return Callback.parse(BYTES);
+    }
+
+    @Benchmark
+    public Callback parseBytesReusedParser() throws IOException {
+        return parser.parse(BYTES);
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        ((Buffer) buffer).clear();
+        return codec.encode(callback, buffer);
+    }
+
+    @Benchmark
+    public Callback decodeBinary() throws IOException {
+        return codec.decode(encoded.duplicate());
+    }
+
+    @Benchmark
+    public boolean verifySecret() {
+        return callback.verify(SECRET);
+    }
+
+    @Benchmark
+    public boolean verifyGenerator() {
+        return callback.verify(generator);
+    }
+
+    @Benchmark
+    public boolean parseVerifyGenerator() throws IOException {
+        return parser.parse(BYTES).verify(generator);
+    }
+
+    @Benchmark
+    public boolean viewVerifyGenerator() throws IOException {
+        return CallbackView.of(BYTES).verify(generator);
+    }
+
+    @Benchmark
+    public boolean viewRejectForged() throws IOException {
+        return CallbackView.of(FORGED).verify(generator);
+    }
+}
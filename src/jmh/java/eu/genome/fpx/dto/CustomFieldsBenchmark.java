@@ -0,0 +1,116 @@
+package eu.genome.fpx.dto;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custom fields held as {@link CustomFields} compared to per-callback {@link LinkedHashMap} they replace.
+ * Secondary result {@code retainedBytes} is heap retained per callback's custom fields, keys and values
+ * included, measured over {@value #RETAINED} instances; run with {@code -prof gc} for allocation per build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomFieldsBenchmark {
+    private static final int RETAINED = 200_000;
+    private static final String[] KEYS = {"merchantReference", "campaign", "locale", "channel"};
+
+    /**
+     * Amount of custom fields per callback.
+     */
+    @Param({"0", "2", "4"})
+    public int fields;
+
+    /**
+     * Storage: {@code map} for LinkedHashMap, {@code compact} for CustomFields.
+     */
+    @Param({"map", "compact"})
+    public String storage;
+
+    private int sequence;
+
+    /**
+     * Builds fields the way parser does, with fresh key and value strings.
+     *
+     * @param n Distinguishes values.
+     * @return Custom fields.
+     */
+    private Map<String, String> build(int n) {
+        if (fields == 0) {
+            // Parser returns shared instance for empty object
+            return "map".equals(storage) ? new LinkedHashMap<>() : CustomFields.empty();
+        }
+        if ("map".equals(storage)) {
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < fields; i++) {
+                map.put(new String(KEYS[i].toCharArray()), Integer.toString(n + i));
+            }
+            return map;
+        }
+        CustomFields.Builder builder = new CustomFields.Builder(4);
+        for (int i = 0; i < fields; i++) {
+            builder.put(new String(KEYS[i].toCharArray()), Integer.toString(n + i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Heap retained per instance, measured at the end of every iteration, as counters are reset
+     * after iteration setup. Event counters are summed over measurement iterations, so every
+     * iteration reports its share and the final score is bytes per instance.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+
+        @TearDown(Level.Iteration)
+        public void measure(CustomFieldsBenchmark benchmark, IterationParams iteration) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            Object[] retained = new Object[RETAINED];
+            System.gc();
+            long before = memory.getHeapMemoryUsage().getUsed();
+            for (int i = 0; i < RETAINED; i++) {
+                retained[i] = benchmark.build(i);
+            }
+            System.gc();
+            long after = memory.getHeapMemoryUsage().getUsed();
+            retainedBytes = Math.round(Math.max(0, after - before) / (double) RETAINED / iteration.getCount());
+            // Keeps instances reachable until measured
+            if (retained[RETAINED - 1] == null) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> build(Footprint footprint) {
+        return build(sequence++);
+    }
+
+    @Benchmark
+    public String get() {
+        return build(sequence++).get("locale");
+    }
+}
@@ -0,0 +1,116 @@
+package eu.genome.fpx.journal;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Journal appends of new transactions, synchronous ones share force calls between threads,
+ * and duplicate lookups. Every iteration starts with an empty journal in temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackJournalBenchmark {
+    private static final String JSON = "{\"isTest\":true,"
+            + "\"apiKey\":\"Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E\","
+            + "\"apiSignature\":\"9a3b9345845d6001de4c98789ebf91dbc0d693f43708890c73728fc5591a5883\","
+            + "\"sessionId\":\"O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB\","
+            + "\"transactionId\":1000000000,\"transactionStatus\":\"SUCCESS\",\"transactionErrorCode\":0,"
+            + "\"transactionTimeUnixSeconds\":1638550119,\"billToken\":\"5c7e5555-0000-0000-1001-5affdcf91001\","
+            + "\"paymentMethodType\":\"TEST_TRX_SUCCESS\",\"amount\":9.99,\"currency\":\"EUR\","
+            + "\"orderId\":\"order-12345\",\"userId\":\"user-67890\",\"custom\":{\"foo\":\"bar\"}}";
+
+    /**
+     * True to force every append to storage.
+     */
+    @Param({"false", "true"})
+    public boolean sync;
+
+    private final AtomicLong transactions = new AtomicLong();
+    private Path directory;
+    private CallbackJournal journal;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = CallbackJournal.builder()
+                .directory(directory)
+                .sync(sync)
+                .expectedTransactions(1 << 20)
+                .open();
+        transactions.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Per-thread payload, transaction identifier digits are replaced in place before every append.
+     */
+    @State(Scope.Thread)
+    public static class Payload {
+        private static final byte[] TEMPLATE = JSON.getBytes(StandardCharsets.UTF_8);
+        private static final int DIGITS = JSON.indexOf("1000000000");
+
+        final byte[] bytes = TEMPLATE.clone();
+
+        /**
+         * @param transactionId Transaction identifier below 10^9.
+         * @return Callback view of payload with given transaction identifier.
+         */
+        Callback callback(long transactionId) throws IOException {
+            long value = 1_000_000_000L + transactionId;
+            for (int i = DIGITS + 9; i >= DIGITS; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            return CallbackView.of(bytes);
+        }
+    }
+
+    /**
+     * Includes parsing of the payload by {@link CallbackView}, measured alone by CallbackBenchmark.
+     */
+    @Benchmark
+    public boolean append(Payload payload) throws IOException {
+        return journal.append(payload.callback(transactions.incrementAndGet()));
+    }
+
+    @Benchmark
+    public boolean containsStatus() {
+        return journal.contains(1_000_000_000L + (transactions.incrementAndGet() & 0xFFFF), TransactionStatus.SUCCESS);
+    }
+}
@@ -0,0 +1,94 @@
+package eu.genome.fpx.state;
+
+import eu.genome.domain.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State updates and lookups over a million transactions, compared to a map of boxed
+ * identifiers to state objects with the same precedence check. Run with {@code -t} for contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionStateBenchmark {
+    private static final int TRANSACTIONS = 1 << 20;
+    private static final long TIME = 1638550119L;
+    private static final TransactionStatus[] STATUSES = {
+            TransactionStatus.INITIALIZED, TransactionStatus.PROCESSING, TransactionStatus.SUCCESS};
+
+    /**
+     * True to keep states in direct memory.
+     */
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private TransactionStateAggregator aggregator;
+    private ConcurrentHashMap<Long, TransactionState> boxed;
+
+    @Setup
+    public void setup() {
+        StatusPrecedence precedence = StatusPrecedence.defaults();
+        aggregator = TransactionStateAggregator.builder()
+                .offHeap(offHeap)
+                .expectedTransactions(TRANSACTIONS)
+                .precedence(precedence)
+                .build();
+        boxed = new ConcurrentHashMap<>(TRANSACTIONS);
+        for (long id = 0; id < TRANSACTIONS; id++) {
+            aggregator.update(id, TransactionStatus.INITIALIZED, TIME, 0, id);
+            boxed.put(id, new TransactionState(id, TransactionStatus.INITIALIZED, TIME, 0, id));
+        }
+    }
+
+    @Benchmark
+    public boolean update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = random.nextInt(TRANSACTIONS);
+        return aggregator.update(id, STATUSES[random.nextInt(STATUSES.length)], TIME + random.nextInt(60), 0, id);
+    }
+
+    @Benchmark
+    public boolean updateBoxed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = random.nextInt(TRANSACTIONS);
+        TransactionStatus status = STATUSES[random.nextInt(STATUSES.length)];
+        long time = TIME + random.nextInt(60);
+        boolean[] changed = new boolean[1];
+        boxed.compute(id, (key, state) -> {
+            if (state != null && !StatusPrecedence.defaults().advances(
+                    state.getTransactionStatus(), state.getTransactionTime().getEpochSecond(), status, time)) {
+                return state;
+            }
+            changed[0] = true;
+            return new TransactionState(key, status, time, 0, key);
+        });
+        return changed[0];
+    }
+
+    @Benchmark
+    public TransactionStatus getStatus() {
+        return aggregator.getStatus(ThreadLocalRandom.current().nextInt(TRANSACTIONS));
+    }
+
+    @Benchmark
+    public TransactionStatus getStatusBoxed() {
+        return boxed.get((long) ThreadLocalRandom.current().nextInt(TRANSACTIONS)).getTransactionStatus();
+    }
+}
@@ -0,0 +1,242 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.MetricsSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Signs or verifies batches of requests, splitting large ones across worker threads.
+ * Each worker reuses its thread-bound {@link SignatureEncoder}. If accelerated
+ * {@link Sha256Lanes} are available pre-images are hashed several at once, unless
+ * a {@link MetricsSink} is registered and every request has to be measured.
+ */
+final class BatchSigner {
+    /**
+     * Batches smaller than this are signed on calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+    /**
+     * Amount of requests signed sequentially by a single task.
+     */
+    private static final int CHUNK = 512;
+
+    private final SignatureGenerator generator;
+    private final List<SignatureBuilder> requests;
+    private final List<? extends CharSequence> candidates;
+    private final SignatureResult[] results;
+    private final boolean[] verified;
+
+    /**
+     * Constructs signing batch.
+     *
+     * @param generator Signature generator.
+     * @param requests  Requests to sign.
+     */
+    BatchSigner(SignatureGenerator generator, List<SignatureBuilder> requests) {
+        this.generator = generator;
+        this.requests = requests;
+        this.candidates = null;
+        this.results = new SignatureResult[requests.size()];
+        this.verified = null;
+    }
+
+    /**
+     * Constructs verification batch.
+     *
+     * @param generator  Signature generator.
+     * @param requests   Requests to verify.
+     * @param candidates Signature candidates, one per request.
+     */
+    BatchSigner(SignatureGenerator generator, List<SignatureBuilder> requests, List<? extends CharSequence> candidates) {
+        if (candidates.size() != requests.size()) {
+            throw new IllegalArgumentException(
+                    "Expected " + requests.size() + " signature candidates, but " + candidates.size() + " given"
+            );
+        }
+        this.generator = generator;
+        this.requests = requests;
+        this.candidates = candidates;
+        this.results = null;
+        this.verified = new boolean[requests.size()];
+    }
+
+    /**
+     * Signs all requests using given executor for large batches.
+     *
+     * @param executor Executor to use, {@link ForkJoinPool} instances are used with fork-join splitting.
+     * @return Results in request order.
+     */
+    List<SignatureResult> sign(Executor executor) {
+        run(executor);
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Verifies all requests using given executor for large batches.
+     *
+     * @param executor Executor to use, {@link ForkJoinPool} instances are used with fork-join splitting.
+     * @return Verification results in request order.
+     */
+    boolean[] verify(Executor executor) {
+        run(executor);
+        return verified;
+    }
+
+    private void run(Executor executor) {
+        int size = requests.size();
+        if (size < PARALLEL_THRESHOLD) {
+            processRange(0, size);
+        } else if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(new Task(0, size));
+        } else {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(size / CHUNK + 1);
+            for (int from = 0; from < size; from += CHUNK) {
+                int start = from;
+                int end = Math.min(size, from + CHUNK);
+                futures.add(CompletableFuture.runAsync(() -> processRange(start, end), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+    }
+
+    /**
+     * Processes requests in given range.
+     *
+     * @param from Start index, inclusive.
+     * @param to   End index, exclusive.
+     */
+    private void processRange(int from, int to) {
+        MetricsSink sink = Metrics.getSink();
+        Sha256Lanes lanes = sink == null ? generator.lanes() : null;
+        if (lanes == null) {
+            for (int i = from; i < to; i++) {
+                process(i);
+            }
+            return;
+        }
+
+        int[] pending = new int[lanes.lanes()];
+        byte[] digests = new byte[lanes.lanes() * SignatureEncoder.DIGEST_LENGTH];
+        for (int i = from; i < to; i++) {
+            SignatureEncoder encoder;
+            try {
+                encoder = write(i);
+            } catch (RuntimeException e) {
+                fail(i, e);
+                continue;
+            }
+            if (encoder != null) {
+                pending[lanes.add(encoder.array(), 0, encoder.length())] = i;
+                if (lanes.isFull()) {
+                    complete(lanes, pending, digests);
+                }
+            }
+        }
+        complete(lanes, pending, digests);
+    }
+
+    /**
+     * Writes pre-image of request.
+     *
+     * @param index Request index.
+     * @return Thread-bound encoder holding the pre-image, null if there is nothing to hash.
+     */
+    private SignatureEncoder write(int index) {
+        SignatureBuilder request = requests.get(index);
+        if (request == null) {
+            throw new IllegalArgumentException("Empty signature request");
+        }
+        if (candidates != null) {
+            CharSequence candidate = candidates.get(index);
+            if (candidate == null || candidate.length() == 0) {
+                return null;
+            }
+        }
+        return request.write(generator);
+    }
+
+    /**
+     * Hashes pending pre-images and stores their results.
+     */
+    private void complete(Sha256Lanes lanes, int[] pending, byte[] digests) {
+        int size = lanes.size();
+        if (size == 0) {
+            return;
+        }
+        lanes.digest(digests);
+        SignatureEncoder encoder = SignatureEncoder.get();
+        for (int lane = 0; lane < size; lane++) {
+            int index = pending[lane];
+            encoder.digest(digests, lane * SignatureEncoder.DIGEST_LENGTH);
+            if (candidates == null) {
+                results[index] = SignatureResult.success(encoder.hex());
+            } else {
+                verified[index] = encoder.matches(candidates.get(index));
+            }
+        }
+    }
+
+    /**
+     * Processes single request through public path, instrumented if a sink is registered.
+     *
+     * @param index Request index.
+     */
+    private void process(int index) {
+        SignatureBuilder request = requests.get(index);
+        try {
+            if (request == null) {
+                throw new IllegalArgumentException("Empty signature request");
+            }
+            if (candidates == null) {
+                results[index] = SignatureResult.success(request.build(generator));
+            } else {
+                CharSequence candidate = candidates.get(index);
+                verified[index] = candidate != null && request.verify(generator, candidate.toString());
+            }
+        } catch (RuntimeException e) {
+            fail(index, e);
+        }
+    }
+
+    /**
+     * Stores failure of request, failed requests are not verified.
+     */
+    private void fail(int index, RuntimeException error) {
+        if (candidates == null) {
+            results[index] = SignatureResult.failure(error);
+        }
+    }
+
+    /**
+     * Fork-join task splitting requests range in halves.
+     */
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private Task(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                processRange(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Task(from, middle), new Task(middle, to));
+            }
+        }
+    }
+}
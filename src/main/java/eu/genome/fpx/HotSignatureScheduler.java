@@ -0,0 +1,338 @@
+package eu.genome.fpx;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background pre-generation of {@link SignatureGenerator#MODE_A_TS} signatures for registered
+ * hot amount, currency and identifier combinations. Once started, a daemon thread rotates the table
+ * of precomputed signatures at every epoch second boundary, covering current and given amount of
+ * upcoming seconds. Signatures of seconds already covered by the previous table are reused,
+ * so every rotation computes only one new second per combination.
+ * <p>
+ * Serving a precomputed signature is a lock-free lookup, requests not covered by the table
+ * are signed on demand with the generator.
+ * <p>
+ * Thread-safe.
+ */
+public final class HotSignatureScheduler implements AutoCloseable {
+    private final SignatureGenerator generator;
+    private final int aheadSeconds;
+    private final Clock clock;
+    private final Set<ModeAKey> keys = new HashSet<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+    private volatile Table table = new Table(0, Collections.emptyMap());
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs scheduler, not started.
+     *
+     * @param generator    Signature generator to use.
+     * @param aheadSeconds Amount of upcoming seconds to precompute besides current one.
+     */
+    public HotSignatureScheduler(SignatureGenerator generator, int aheadSeconds) {
+        this(generator, aheadSeconds, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs scheduler, not started.
+     *
+     * @param generator    Signature generator to use.
+     * @param aheadSeconds Amount of upcoming seconds to precompute besides current one.
+     * @param clock        Clock to use.
+     */
+    public HotSignatureScheduler(SignatureGenerator generator, int aheadSeconds, Clock clock) {
+        if (aheadSeconds <= 0) {
+            throw new IllegalArgumentException("Incorrect amount of seconds ahead " + aheadSeconds);
+        }
+        this.generator = Objects.requireNonNull(generator, "generator");
+        this.aheadSeconds = aheadSeconds;
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    /**
+     * Starts background rotation.
+     *
+     * @return This scheduler.
+     * @throws IllegalStateException If already started.
+     */
+    public synchronized HotSignatureScheduler start() {
+        if (executor != null) {
+            throw new IllegalStateException("Scheduler already started");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fpx-hot-signatures");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tick();
+        return this;
+    }
+
+    /**
+     * Rotates table and schedules next rotation right after next second boundary.
+     */
+    private void tick() {
+        try {
+            rotate(clock.instant().getEpochSecond());
+        } catch (RuntimeException e) {
+            // Keep rotating, stale table only results in on-demand signing
+        }
+        synchronized (this) {
+            if (executor != null && !executor.isShutdown()) {
+                executor.schedule(this::tick, 1000 - Math.floorMod(clock.millis(), 1000L), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Registers hot combination, its signatures are precomputed immediately.
+     *
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @throws IllegalArgumentException If amount or currency is incorrect or amount cannot be normalized exactly.
+     */
+    public void register(double amount, String currencyISOA3, String orderID, String userID, String MCC) {
+        generator.encode(SignatureMode.MODE_A_TS, Instant.EPOCH, null, 0, amount, currencyISOA3, orderID, userID, MCC);
+        register(key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC));
+    }
+
+    /**
+     * Registers hot combination for exact decimal amount, its signatures are precomputed immediately.
+     *
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @throws IllegalArgumentException If amount or currency is incorrect or amount does not fit into 18 digits.
+     */
+    public void register(BigDecimal amount, String currencyISOA3, String orderID, String userID, String MCC) {
+        generator.encode(SignatureMode.MODE_A_TS, Instant.EPOCH, null, 0, amount, currencyISOA3, orderID, userID, MCC);
+        register(key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC));
+    }
+
+    private synchronized void register(ModeAKey key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Amount cannot be precomputed exactly");
+        }
+        if (keys.add(key)) {
+            rotate(clock.instant().getEpochSecond());
+        }
+    }
+
+    /**
+     * Removes hot combination, its signatures are no longer served from the table.
+     *
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     */
+    public void unregister(double amount, String currencyISOA3, String orderID, String userID, String MCC) {
+        unregister(key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC));
+    }
+
+    /**
+     * Removes hot combination registered for exact decimal amount, its signatures are no longer served from the table.
+     *
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     */
+    public void unregister(BigDecimal amount, String currencyISOA3, String orderID, String userID, String MCC) {
+        if (amount != null) {
+            unregister(key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC));
+        }
+    }
+
+    private synchronized void unregister(ModeAKey key) {
+        if (key != null && keys.remove(key)) {
+            rotate(clock.instant().getEpochSecond());
+        }
+    }
+
+    /**
+     * Returns MODE_A_TS signature, precomputed one if available.
+     *
+     * @param time          Timestamp nonce.
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Signature, same as {@link SignatureGenerator#MODE_A_TS} would generate.
+     */
+    public String MODE_A_TS(
+            Instant time,
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        String signature = lookup(time, key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC));
+        if (signature != null) {
+            return signature;
+        }
+        return generator.MODE_A_TS(time, amount, currencyISOA3, orderID, userID, MCC);
+    }
+
+    /**
+     * Returns MODE_A_TS signature for exact decimal amount, precomputed one if available.
+     *
+     * @param time          Timestamp nonce.
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Signature, same as {@link SignatureGenerator#MODE_A_TS} would generate.
+     */
+    public String MODE_A_TS(
+            Instant time,
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        ModeAKey key = amount == null ? null
+                : key(SignatureEncoder.minorUnits(amount), currencyISOA3, orderID, userID, MCC);
+        String signature = lookup(time, key);
+        if (signature != null) {
+            return signature;
+        }
+        return generator.MODE_A_TS(time, amount, currencyISOA3, orderID, userID, MCC);
+    }
+
+    private String lookup(Instant time, ModeAKey key) {
+        if (key != null && time != null) {
+            Table current = table;
+            long index = time.getEpochSecond() - current.first;
+            if (index >= 0 && index <= aheadSeconds) {
+                String[] signatures = current.signatures.get(key);
+                if (signatures != null) {
+                    hits.increment();
+                    return signatures[(int) index];
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private static ModeAKey key(long minorUnits, String currencyISOA3, String orderID, String userID, String MCC) {
+        if (minorUnits < 0 || currencyISOA3 == null) {
+            return null;
+        }
+        return new ModeAKey(minorUnits, currencyISOA3.toUpperCase(Locale.ROOT), orderID, userID, MCC);
+    }
+
+    /**
+     * Publishes table covering given second and upcoming ones.
+     *
+     * @param second First epoch second of the table.
+     */
+    synchronized void rotate(long second) {
+        Table previous = table;
+        Map<ModeAKey, String[]> signatures = new HashMap<>(keys.size() * 2);
+        for (ModeAKey key : keys) {
+            String[] reused = previous.signatures.get(key);
+            String[] values = new String[aheadSeconds + 1];
+            for (int i = 0; i < values.length; i++) {
+                long index = second + i - previous.first;
+                if (reused != null && index >= 0 && index < reused.length) {
+                    values[i] = reused[(int) index];
+                } else {
+                    values[i] = generator.encode(SignatureMode.MODE_A_TS, Instant.ofEpochSecond(second + i),
+                            null, 0, BigDecimal.valueOf(key.minorUnits, 2), key.currency,
+                            key.orderID, key.userID, key.MCC).hex();
+                    computed.increment();
+                }
+            }
+            signatures.put(key, values);
+        }
+        table = new Table(second, signatures);
+    }
+
+    /**
+     * @return Amount of registered combinations.
+     */
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return Amount of signatures served from precomputed table.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of signatures computed on demand.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Amount of signatures computed in advance.
+     */
+    public long getPrecomputedCount() {
+        return computed.sum();
+    }
+
+    /**
+     * @return Share of requests served from precomputed table, 0 if there were no requests.
+     */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Stops background rotation, table is no longer refreshed.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Immutable signatures of consecutive seconds by combination.
+     */
+    private static final class Table {
+        private final long first;
+        private final Map<ModeAKey, String[]> signatures;
+
+        private Table(long first, Map<ModeAKey, String[]> signatures) {
+            this.first = first;
+            this.signatures = signatures;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.metrics.Outcome;
+
+/**
+ * Thrown when data to sign or verify is incorrect.
+ */
+public class InvalidSignatureDataException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final Outcome reason;
+
+    /**
+     * Constructs exception.
+     *
+     * @param reason  Failure reason.
+     * @param message Detail message.
+     */
+    public InvalidSignatureDataException(Outcome reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * @return Failure reason.
+     */
+    public Outcome getReason() {
+        return this.reason;
+    }
+}
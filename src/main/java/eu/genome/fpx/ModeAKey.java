@@ -0,0 +1,55 @@
+package eu.genome.fpx;
+
+/**
+ * Normalized MODE_A and MODE_A_TS inputs except nonce, absent identifiers are equal to empty ones.
+ */
+final class ModeAKey {
+    final long minorUnits;
+    final String currency;
+    final String orderID;
+    final String userID;
+    final String MCC;
+    private final int hash;
+
+    /**
+     * @param minorUnits Amount in minor units.
+     * @param currency   Upper-cased currency ISO.
+     * @param orderID    Order identifier, optional.
+     * @param userID     User identifier, optional.
+     * @param MCC        MCC code, optional.
+     */
+    ModeAKey(long minorUnits, String currency, String orderID, String userID, String MCC) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+        this.orderID = orderID == null ? "" : orderID;
+        this.userID = userID == null ? "" : userID;
+        this.MCC = MCC == null ? "" : MCC;
+        int h = Long.hashCode(minorUnits);
+        h = 31 * h + this.currency.hashCode();
+        h = 31 * h + this.orderID.hashCode();
+        h = 31 * h + this.userID.hashCode();
+        h = 31 * h + this.MCC.hashCode();
+        this.hash = h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ModeAKey)) {
+            return false;
+        }
+        ModeAKey other = (ModeAKey) o;
+        return minorUnits == other.minorUnits
+                && currency.equals(other.currency)
+                && orderID.equals(other.orderID)
+                && userID.equals(other.userID)
+                && MCC.equals(other.MCC);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,113 @@
+package eu.genome.fpx;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizing wrapper of {@link SignatureGenerator#MODE_A} signatures.
+ * MODE_A has no nonce, so its signature depends only on amount rounded to
+ * minor units, upper-cased currency and optional identifiers, which form the cache key.
+ * <p>
+ * Cache is a {@link StripedLru} of independently locked segments. Amounts that cannot be
+ * normalized exactly without {@link java.util.Formatter} bypass the cache.
+ * <p>
+ * Thread-safe.
+ */
+public final class ModeASignatureCache {
+    private final SignatureGenerator generator;
+    private final StripedLru<ModeAKey, String> signatures;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs cache.
+     *
+     * @param generator   Signature generator to use.
+     * @param maximumSize Maximal amount of cached signatures.
+     */
+    public ModeASignatureCache(SignatureGenerator generator, int maximumSize) {
+        this.signatures = new StripedLru<>(maximumSize, true);
+        this.generator = Objects.requireNonNull(generator, "generator");
+    }
+
+    /**
+     * Returns MODE_A signature, computing it on first request.
+     *
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Signature, same as {@link SignatureGenerator#MODE_A} would generate.
+     */
+    @SuppressWarnings("deprecation")
+    public String MODE_A(
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        long minorUnits = SignatureEncoder.minorUnits(amount);
+        if (minorUnits < 0 || currencyISOA3 == null) {
+            misses.increment();
+            return generator.MODE_A(amount, currencyISOA3, orderID, userID, MCC);
+        }
+
+        ModeAKey key = new ModeAKey(minorUnits, currencyISOA3.toUpperCase(Locale.ROOT), orderID, userID, MCC);
+        String signature = signatures.get(key);
+        if (signature != null) {
+            hits.increment();
+            return signature;
+        }
+        misses.increment();
+        signature = generator.MODE_A(amount, currencyISOA3, orderID, userID, MCC);
+        signatures.put(key, signature);
+        return signature;
+    }
+
+    /**
+     * Removes all cached signatures.
+     */
+    public void clear() {
+        signatures.clear();
+    }
+
+    /**
+     * @return Amount of cached signatures.
+     */
+    public int size() {
+        return signatures.size();
+    }
+
+    /**
+     * @return Amount of signatures served from cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of signatures computed.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Amount of signatures evicted due to size limit.
+     */
+    public long getEvictionCount() {
+        return signatures.getEvictionCount();
+    }
+
+    /**
+     * @return Share of requests served from cache, 0 if there were no requests.
+     */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+}
@@ -0,0 +1,15 @@
+package eu.genome.fpx;
+
+/**
+ * Source of application secrets by API key, e.g. database or vault lookup.
+ */
+@FunctionalInterface
+public interface SecretSource {
+    /**
+     * Resolves secret of given API key.
+     *
+     * @param apiKey API key.
+     * @return Application secret or null if API key is unknown.
+     */
+    String getSecret(String apiKey);
+}
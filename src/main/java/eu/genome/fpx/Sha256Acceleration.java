@@ -0,0 +1,26 @@
+package eu.genome.fpx;
+
+/**
+ * Selects hardware accelerated {@link Sha256Lanes} implementation.
+ * This implementation has none, batches are hashed with {@link java.security.MessageDigest},
+ * which is intrinsified by the JVM and faster than scalar lanes.
+ */
+final class Sha256Acceleration {
+    private Sha256Acceleration() {
+    }
+
+    /**
+     * @return True if accelerated lanes are available.
+     */
+    static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * @param prefix Common prefix of all messages.
+     * @return Accelerated hasher or null if not available.
+     */
+    static Sha256Lanes lanes(Sha256Lanes.Prefix prefix) {
+        return null;
+    }
+}
@@ -0,0 +1,302 @@
+package eu.genome.fpx;
+
+import java.util.Arrays;
+
+/**
+ * SHA256 of several short messages sharing a common prefix, computed in interleaved lanes.
+ * Every compression step is applied to all lanes at once over lane-indexed rows
+ * ({@code words[t * lanes + lane]}, {@code state[i * lanes + lane]}), which subclasses
+ * may map onto SIMD registers. Prefix blocks are hashed once and their intermediate
+ * state is reused by every message.
+ * <p>
+ * This is the portable scalar implementation, see {@link Sha256Acceleration} for the faster ones.
+ * Instances are not thread-safe, {@link Prefix} is immutable and may be shared.
+ */
+class Sha256Lanes {
+    /**
+     * Amount of lanes of the scalar implementation.
+     */
+    static final int SCALAR_LANES = 8;
+
+    private static final int BLOCK = 64;
+
+    private static final int[] INITIAL = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final Prefix prefix;
+    private final int lanes;
+    private final int[][] messages;
+    private final int[] blocks;
+    private byte[] buffer = new byte[2 * BLOCK];
+    private final boolean[] active;
+    private int size;
+
+    private final int[] words;
+    private final int[] state;
+    private final int[] saved;
+    private final int[] v;
+
+    /**
+     * Constructs scalar hasher.
+     *
+     * @param prefix Common prefix of all messages.
+     */
+    Sha256Lanes(Prefix prefix) {
+        this(prefix, SCALAR_LANES);
+    }
+
+    /**
+     * @param prefix Common prefix of all messages.
+     * @param lanes  Amount of lanes.
+     */
+    Sha256Lanes(Prefix prefix, int lanes) {
+        this.prefix = prefix;
+        this.lanes = lanes;
+        this.messages = new int[lanes][];
+        this.blocks = new int[lanes];
+        this.active = new boolean[lanes];
+        this.words = new int[64 * lanes];
+        this.state = new int[8 * lanes];
+        this.saved = new int[8 * lanes];
+        this.v = new int[8 * lanes];
+        for (int i = 0; i < lanes; i++) {
+            messages[i] = new int[2 * BLOCK / 4];
+        }
+    }
+
+    /**
+     * Hashes given prefix blocks once for reuse.
+     *
+     * @param bytes Common prefix of messages.
+     * @return Prefix state.
+     */
+    static Prefix prefix(byte[] bytes) {
+        int[] state = INITIAL.clone();
+        int full = bytes.length / BLOCK * BLOCK;
+        int[] words = new int[64];
+        for (int offset = 0; offset < full; offset += BLOCK) {
+            for (int t = 0; t < 16; t++) {
+                words[t] = readInt(bytes, offset + t * 4);
+            }
+            compress(words, state, 1, new int[8]);
+        }
+        return new Prefix(state, Arrays.copyOfRange(bytes, full, bytes.length), bytes.length);
+    }
+
+    /**
+     * @return Amount of lanes.
+     */
+    final int lanes() {
+        return lanes;
+    }
+
+    /**
+     * @return Amount of pending messages.
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * @return True if every lane holds a pending message.
+     */
+    final boolean isFull() {
+        return size == lanes;
+    }
+
+    /**
+     * Adds message to next free lane, message bytes are copied.
+     *
+     * @param data   Message data.
+     * @param offset Message offset.
+     * @param length Message length.
+     * @return Lane of the message.
+     */
+    final int add(byte[] data, int offset, int length) {
+        if (size == lanes) {
+            throw new IllegalStateException("All lanes are occupied");
+        }
+        int lane = size++;
+        byte[] tail = prefix.tail;
+        int used = tail.length + length;
+        // Padding byte and 64-bit length must fit into the last block
+        int end = (used + 1 + 8 + BLOCK - 1) / BLOCK * BLOCK;
+        byte[] buffer = this.buffer;
+        if (buffer.length < end) {
+            buffer = new byte[end];
+            this.buffer = buffer;
+        } else {
+            Arrays.fill(buffer, used, end, (byte) 0);
+        }
+        System.arraycopy(tail, 0, buffer, 0, tail.length);
+        System.arraycopy(data, offset, buffer, tail.length, length);
+        buffer[used] = (byte) 0x80;
+        long bits = (prefix.length + length) * 8L;
+        for (int i = 1; i <= 8; i++) {
+            buffer[end - i] = (byte) (bits >>> (8 * (i - 1)));
+        }
+        // Message is kept as big-endian words, so digest only transposes them into rows
+        int[] message = messages[lane];
+        if (message.length < end / 4) {
+            message = new int[end / 4];
+            messages[lane] = message;
+        }
+        for (int t = 0; t < end / 4; t++) {
+            message[t] = readInt(buffer, t * 4);
+        }
+        blocks[lane] = end / BLOCK;
+        return lane;
+    }
+
+    /**
+     * Hashes all pending messages and frees the lanes.
+     *
+     * @param digests Target of digests, lane {@code i} is written at offset {@code i * 32}.
+     */
+    final void digest(byte[] digests) {
+        int rounds = 0;
+        for (int lane = 0; lane < size; lane++) {
+            rounds = Math.max(rounds, blocks[lane]);
+        }
+        for (int i = 0; i < 8; i++) {
+            Arrays.fill(state, i * lanes, (i + 1) * lanes, prefix.state[i]);
+        }
+        for (int round = 0; round < rounds; round++) {
+            boolean partial = false;
+            int base = round * 16;
+            for (int lane = 0; lane < lanes; lane++) {
+                active[lane] = lane < size && round < blocks[lane];
+                if (active[lane]) {
+                    int[] message = messages[lane];
+                    for (int t = 0; t < 16; t++) {
+                        words[t * lanes + lane] = message[base + t];
+                    }
+                } else {
+                    // Inactive lanes are compressed over zero words and restored afterwards
+                    partial = true;
+                    for (int t = 0; t < 16; t++) {
+                        words[t * lanes + lane] = 0;
+                    }
+                }
+            }
+            if (partial) {
+                System.arraycopy(state, 0, saved, 0, state.length);
+            }
+            compress(words, state);
+            if (partial) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    if (!active[lane]) {
+                        for (int i = 0; i < 8; i++) {
+                            state[i * lanes + lane] = saved[i * lanes + lane];
+                        }
+                    }
+                }
+            }
+        }
+        for (int lane = 0; lane < size; lane++) {
+            for (int i = 0; i < 8; i++) {
+                int word = state[i * lanes + lane];
+                int at = lane * 32 + i * 4;
+                digests[at] = (byte) (word >>> 24);
+                digests[at + 1] = (byte) (word >>> 16);
+                digests[at + 2] = (byte) (word >>> 8);
+                digests[at + 3] = (byte) word;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Compresses one block of every lane.
+     *
+     * @param words Message words, first 16 rows are filled, room for 64 rows.
+     * @param state Hash state rows, updated in place.
+     */
+    void compress(int[] words, int[] state) {
+        compress(words, state, lanes, v);
+    }
+
+    /**
+     * Scalar compression of one block of every lane. Working variables live in a ring
+     * of lane-indexed rows, so every step rewrites only rows of {@code a} and {@code e}.
+     */
+    private static void compress(int[] w, int[] state, int lanes, int[] v) {
+        for (int t = 16; t < 64; t++) {
+            int at = t * lanes;
+            for (int lane = 0; lane < lanes; lane++) {
+                int w2 = w[at - 2 * lanes + lane];
+                int w15 = w[at - 15 * lanes + lane];
+                int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+                int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+                w[at + lane] = w[at - 16 * lanes + lane] + s0 + w[at - 7 * lanes + lane] + s1;
+            }
+        }
+        System.arraycopy(state, 0, v, 0, 8 * lanes);
+        for (int t = 0; t < 64; t++) {
+            int k = K[t];
+            int at = t * lanes;
+            // Row of variable x at step t is (x - t) mod 8
+            int ra = ((-t) & 7) * lanes;
+            int rb = ((1 - t) & 7) * lanes;
+            int rc = ((2 - t) & 7) * lanes;
+            int rd = ((3 - t) & 7) * lanes;
+            int re = ((4 - t) & 7) * lanes;
+            int rf = ((5 - t) & 7) * lanes;
+            int rg = ((6 - t) & 7) * lanes;
+            int rh = ((7 - t) & 7) * lanes;
+            for (int lane = 0; lane < lanes; lane++) {
+                int e = v[re + lane];
+                int a = v[ra + lane];
+                int b = v[rb + lane];
+                int c = v[rc + lane];
+                int t1 = v[rh + lane]
+                        + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25))
+                        + ((e & v[rf + lane]) ^ (~e & v[rg + lane]))
+                        + k + w[at + lane];
+                int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22))
+                        + ((a & b) ^ (a & c) ^ (b & c));
+                // d row becomes e row and h row becomes a row of next step
+                v[rd + lane] += t1;
+                v[rh + lane] = t1 + t2;
+            }
+        }
+        // 64 steps rotate the ring back to initial rows
+        for (int i = 0; i < 8 * lanes; i++) {
+            state[i] += v[i];
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] << 24)
+                | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8)
+                | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Intermediate state after full blocks of common prefix.
+     */
+    static final class Prefix {
+        private final int[] state;
+        private final byte[] tail;
+        private final long length;
+
+        private Prefix(int[] state, byte[] tail, long length) {
+            this.state = state;
+            this.tail = tail;
+            this.length = length;
+        }
+    }
+}
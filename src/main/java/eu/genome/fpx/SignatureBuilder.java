@@ -1,5 +1,9 @@
 package eu.genome.fpx;
 
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.Operation;
+
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Currency;
 import java.util.Objects;
@@ -11,6 +15,9 @@ public class SignatureBuilder {
     private SignatureMode mode;
     private Instant instant;
     private double amount;
+    private BigDecimal decimalAmount;
+    private boolean hasMinorUnits;
+    private long minorUnits;
     private long transactionId;
     private String sessionId;
     private String currencyISO;
@@ -93,6 +100,50 @@ public class SignatureBuilder {
      */
     public SignatureBuilder amount(double amount, String currencyISOA3) {
         this.amount = amount;
+        this.decimalAmount = null;
+        this.hasMinorUnits = false;
+        this.currencyISO = currencyISOA3;
+        return this;
+    }
+
+    /**
+     * Adds exact transaction amount to builder.
+     *
+     * @param amount        Amount value, rounded half-up to minor units.
+     * @param currencyISOA3 Currency in ISO Alpha-3 format.
+     * @return Builder instance.
+     */
+    public SignatureBuilder amount(BigDecimal amount, String currencyISOA3) {
+        this.amount = 0;
+        this.decimalAmount = amount;
+        this.hasMinorUnits = false;
+        this.currencyISO = currencyISOA3;
+        return this;
+    }
+
+    /**
+     * Adds exact transaction amount to builder.
+     *
+     * @param amount   Amount value, rounded half-up to minor units.
+     * @param currency Currency.
+     * @return Builder instance.
+     */
+    public SignatureBuilder amount(BigDecimal amount, Currency currency) {
+        return this.amount(amount, currency.getCurrencyCode());
+    }
+
+    /**
+     * Adds transaction amount in minor units (cents) to builder.
+     *
+     * @param minorUnits    Amount in minor units, {@code 999} for {@code 9.99}.
+     * @param currencyISOA3 Currency in ISO Alpha-3 format.
+     * @return Builder instance.
+     */
+    public SignatureBuilder amountMinorUnits(long minorUnits, String currencyISOA3) {
+        this.amount = 0;
+        this.decimalAmount = null;
+        this.hasMinorUnits = true;
+        this.minorUnits = minorUnits;
         this.currencyISO = currencyISOA3;
         return this;
     }
@@ -126,21 +177,68 @@ public class SignatureBuilder {
      * @return Generated signature.
      */
     public String build(SignatureGenerator signatureGenerator) {
+        return Metrics.record(Operation.SIGN, mode, () -> encode(signatureGenerator).hex());
+    }
+
+    /**
+     * Builds signature using builder data and given signature generator
+     * and appends it to given string builder.
+     *
+     * @param signatureGenerator Signature generator to use.
+     * @param target             String builder to append signature to.
+     * @return Given string builder.
+     */
+    public StringBuilder build(SignatureGenerator signatureGenerator, StringBuilder target) {
+        Objects.requireNonNull(target, "target");
+        return Metrics.record(Operation.SIGN, mode, () -> encode(signatureGenerator).hex(target));
+    }
+
+    /**
+     * Builds signature using builder data and given signature generator
+     * and writes it into given char array.
+     *
+     * @param signatureGenerator Signature generator to use.
+     * @param target             Char array to write signature to, must have room for 64 chars.
+     * @param offset             Offset in target array.
+     * @return Amount of chars written.
+     */
+    public int build(SignatureGenerator signatureGenerator, char[] target, int offset) {
+        Objects.requireNonNull(target, "target");
+        return Metrics.record(Operation.SIGN, mode, () -> encode(signatureGenerator).hex(target, offset));
+    }
+
+    /**
+     * Computes signature digest using builder data and given signature generator.
+     *
+     * @param signatureGenerator Signature generator to use.
+     * @return Thread-bound encoder holding the digest.
+     */
+    SignatureEncoder encode(SignatureGenerator signatureGenerator) {
+        return signatureGenerator.digest(write(signatureGenerator));
+    }
+
+    /**
+     * Constructs signature pre-image, without secret prefix, using builder data.
+     *
+     * @param signatureGenerator Signature generator to use.
+     * @return Thread-bound encoder holding the pre-image.
+     */
+    SignatureEncoder write(SignatureGenerator signatureGenerator) {
         Objects.requireNonNull(signatureGenerator, "signatureGenerator");
         if (mode == null) {
             throw new IllegalStateException("Signature mode not provided");
         }
 
-        switch (mode) {
-            case CALLBACK:
-                return signatureGenerator.CALLBACK(sessionId, transactionId, amount, currencyISO, orderId);
-            case MODE_A:
-                return signatureGenerator.MODE_A(amount, currencyISO, orderId, userId, mcc);
-            case MODE_A_TS:
-                return signatureGenerator.MODE_A_TS(instant, amount, currencyISO, orderId, userId, mcc);
-            default:
-                throw new IllegalStateException("Unsupported mode " + mode);
+        if (hasMinorUnits) {
+            return signatureGenerator.writeMinorUnits(
+                    mode, instant, sessionId, transactionId, minorUnits, currencyISO, orderId, userId, mcc);
         }
+        if (decimalAmount != null) {
+            return signatureGenerator.write(
+                    mode, instant, sessionId, transactionId, decimalAmount, currencyISO, orderId, userId, mcc);
+        }
+        return signatureGenerator.write(
+                mode, instant, sessionId, transactionId, amount, currencyISO, orderId, userId, mcc);
     }
 
     /**
@@ -155,15 +253,27 @@ public class SignatureBuilder {
 
     /**
      * Verifies given hash candidate.
+     * Candidate is compared in constant time, surrounding whitespace and case are ignored.
      *
      * @param signatureGenerator Signature generator to use.
      * @param candidate          Signature hash candidate.
      * @return True if hash candidate is valid.
      */
     public boolean verify(SignatureGenerator signatureGenerator, String candidate) {
-        return candidate != null
-                && !candidate.isEmpty()
-                && candidate.trim().equalsIgnoreCase(build(signatureGenerator));
+        return Metrics.record(Operation.VERIFY, mode, () -> matches(signatureGenerator, candidate));
+    }
+
+    /**
+     * @param signatureGenerator Signature generator to use.
+     * @param candidate          Signature hash candidate.
+     * @return True if hash candidate is valid.
+     */
+    private boolean matches(SignatureGenerator signatureGenerator, String candidate) {
+        return !isMissing(candidate) && encode(signatureGenerator).matches(candidate);
+    }
+
+    private static boolean isMissing(String candidate) {
+        return candidate == null || candidate.isEmpty();
     }
 
     /**
@@ -171,11 +281,10 @@ public class SignatureBuilder {
      *
      * @param secret    Application secret.
      * @param candidate Signature hash candidate.
-     * @return True if hash candidate is valid.
+     * @return True if hash candidate is valid, false for missing candidate whatever the secret.
      */
     public boolean verify(String secret, String candidate) {
-        return candidate != null
-                && !candidate.isEmpty()
-                && candidate.trim().equalsIgnoreCase(build(secret));
+        return Metrics.record(Operation.VERIFY, mode,
+                () -> !isMissing(candidate) && encode(new SignatureGenerator(secret)).matches(candidate));
     }
 }
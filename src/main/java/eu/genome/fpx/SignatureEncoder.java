@@ -0,0 +1,447 @@
+package eu.genome.fpx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reusable encoder of signature pre-images.
+ * Writes canonical {@code secret|field|field...} data as UTF-8 directly into
+ * a growable byte buffer and renders resulting digest as lower-case hex
+ * without intermediate strings or {@link java.util.Formatter} invocations.
+ * <p>
+ * Instances are not thread-safe, use {@link #get()} to obtain one bound to current thread.
+ */
+final class SignatureEncoder {
+    private static final ThreadLocal<SignatureEncoder> LOCAL = ThreadLocal.withInitial(SignatureEncoder::new);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] NIBBLES = new byte[128];
+    private static final byte SEPARATOR = '|';
+
+    /**
+     * Length of SHA256 digest in bytes.
+     */
+    static final int DIGEST_LENGTH = 32;
+
+    /**
+     * Length of hexadecimal signature in chars.
+     */
+    static final int HEX_LENGTH = DIGEST_LENGTH * 2;
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['a' + i] = (byte) (10 + i);
+            NIBBLES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private final byte[] digest = new byte[DIGEST_LENGTH];
+    private final char[] hex = new char[HEX_LENGTH];
+
+    /**
+     * @return Encoder bound to current thread.
+     */
+    static SignatureEncoder get() {
+        return LOCAL.get().reset();
+    }
+
+    /**
+     * Clears pre-image data.
+     *
+     * @return Encoder instance.
+     */
+    SignatureEncoder reset() {
+        this.length = 0;
+        return this;
+    }
+
+    /**
+     * Appends field separator.
+     *
+     * @return Encoder instance.
+     */
+    SignatureEncoder separator() {
+        ensure(1);
+        buffer[length++] = SEPARATOR;
+        return this;
+    }
+
+    /**
+     * Appends given raw bytes.
+     *
+     * @param value Bytes to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder append(byte[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    /**
+     * Pre-sizes buffer, so given amount of bytes can be appended without growing it.
+     *
+     * @param extra Expected amount of bytes to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder reserve(int extra) {
+        ensure(extra);
+        return this;
+    }
+
+    /**
+     * Appends given chars as UTF-8, {@code null} is encoded as empty string.
+     * Unpaired surrogates are replaced by {@code ?} in the same way as {@link String#getBytes}.
+     *
+     * @param value Value to append, optional.
+     * @return Encoder instance.
+     */
+    SignatureEncoder append(CharSequence value) {
+        if (value == null) {
+            return this;
+        }
+        int size = value.length();
+        ensure(size * 3);
+        byte[] buf = this.buffer;
+        int pos = this.length;
+        for (int i = 0; i < size; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                int cp = -1;
+                if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    cp = Character.toCodePoint(c, value.charAt(++i));
+                }
+                if (cp < 0) {
+                    buf[pos++] = '?';
+                } else {
+                    buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+                }
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.length = pos;
+        return this;
+    }
+
+    /**
+     * Appends given chars converted to upper case using {@link Locale#ROOT} rules.
+     *
+     * @param value Value to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder appendUpperCase(CharSequence value) {
+        int size = value.length();
+        for (int i = 0; i < size; i++) {
+            if (value.charAt(i) >= 0x80) {
+                // Non-ASCII case mapping may change string length
+                return append(value.toString().toUpperCase(Locale.ROOT));
+            }
+        }
+        ensure(size);
+        for (int i = 0; i < size; i++) {
+            char c = value.charAt(i);
+            buffer[length++] = (byte) (c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c);
+        }
+        return this;
+    }
+
+    /**
+     * Appends decimal representation of given value.
+     *
+     * @param value Value to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int end = length + digits(value);
+        int pos = end;
+        do {
+            buffer[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        length = end;
+        return this;
+    }
+
+    /**
+     * Appends given amount with exactly two fractional digits, the same way
+     * {@code String.format(Locale.ROOT, "%.2f", amount)} does.
+     *
+     * @param amount Amount to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder appendAmount(double amount) {
+        long minorUnits = minorUnits(amount);
+        return appendAmount(minorUnits, minorUnits < 0 ? format(amount) : null);
+    }
+
+    /**
+     * Appends given amount rounded {@link RoundingMode#HALF_UP} to exactly two fractional digits.
+     *
+     * @param amount Amount to append.
+     * @return Encoder instance.
+     */
+    SignatureEncoder appendAmount(BigDecimal amount) {
+        long minorUnits = minorUnits(amount);
+        return appendAmount(minorUnits, minorUnits < 0 ? format(amount) : null);
+    }
+
+    /**
+     * Appends amount given either in minor units or as already formatted string.
+     *
+     * @param minorUnits Amount in minor units or negative value if amount is formatted.
+     * @param formatted  Formatted amount, used only if minor units are negative.
+     * @return Encoder instance.
+     */
+    SignatureEncoder appendAmount(long minorUnits, String formatted) {
+        return minorUnits >= 0 ? appendMinorUnits(minorUnits) : append(formatted);
+    }
+
+    /**
+     * Converts given amount to minor units (cents) rounded the same way
+     * {@code String.format(Locale.ROOT, "%.2f", amount)} does.
+     *
+     * @param amount Positive amount.
+     * @return Amount in minor units or -1 if amount requires Formatter to render exactly.
+     */
+    static long minorUnits(double amount) {
+        // Formatter rounds shortest decimal representation of double HALF_UP,
+        // fast path is exact unless scaled value lies close to half a cent
+        if (amount > 0 && amount < 1e9) {
+            double scaled = amount * 100;
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            if (Math.abs(fraction - 0.5) > 1e-3) {
+                return (long) floor + (fraction > 0.5 ? 1 : 0);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts given amount to minor units (cents) rounded {@link RoundingMode#HALF_UP}.
+     *
+     * @param amount Non-negative amount.
+     * @return Amount in minor units or -1 if it does not fit into 18 digits.
+     */
+    static long minorUnits(BigDecimal amount) {
+        BigDecimal scaled = amount.setScale(2, RoundingMode.HALF_UP);
+        if (scaled.signum() < 0 || scaled.precision() > 18) {
+            return -1;
+        }
+        return scaled.movePointRight(2).longValue();
+    }
+
+    /**
+     * @param amount Amount to format.
+     * @return Amount with exactly two fractional digits rendered by {@link java.util.Formatter}.
+     */
+    static String format(double amount) {
+        return String.format(Locale.ROOT, "%.2f", amount);
+    }
+
+    /**
+     * @param amount Amount to format.
+     * @return Amount rounded {@link RoundingMode#HALF_UP} to exactly two fractional digits.
+     */
+    static String format(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    /**
+     * Appends amount given in minor units (cents) with exactly two fractional digits.
+     *
+     * @param minorUnits Amount in minor units.
+     * @return Encoder instance.
+     */
+    SignatureEncoder appendMinorUnits(long minorUnits) {
+        if (minorUnits < 0) {
+            ensure(1);
+            buffer[length++] = '-';
+            minorUnits = -minorUnits;
+        }
+        append(minorUnits / 100);
+        ensure(3);
+        int cents = (int) (minorUnits % 100);
+        buffer[length++] = '.';
+        buffer[length++] = (byte) ('0' + cents / 10);
+        buffer[length++] = (byte) ('0' + cents % 10);
+        return this;
+    }
+
+    /**
+     * Feeds collected pre-image to given digest and stores the result.
+     *
+     * @param messageDigest SHA256 message digest to use.
+     * @return Encoder instance.
+     */
+    SignatureEncoder digest(MessageDigest messageDigest) {
+        messageDigest.update(buffer, 0, length);
+        try {
+            messageDigest.digest(digest, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Stores digest computed elsewhere as the last digest.
+     *
+     * @param source Digest source.
+     * @param offset Digest offset in source.
+     * @return Encoder instance.
+     */
+    SignatureEncoder digest(byte[] source, int offset) {
+        System.arraycopy(source, offset, digest, 0, DIGEST_LENGTH);
+        return this;
+    }
+
+    /**
+     * @return Pre-image buffer, valid up to {@link #length()}.
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * @return Pre-image length.
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return Hexadecimal signature of last digest.
+     */
+    String hex() {
+        hex(hex, 0);
+        return new String(hex);
+    }
+
+    /**
+     * Appends hexadecimal signature of last digest to given builder.
+     *
+     * @param target Builder to append to.
+     * @return Given builder.
+     */
+    StringBuilder hex(StringBuilder target) {
+        hex(hex, 0);
+        return target.append(hex);
+    }
+
+    /**
+     * Writes hexadecimal signature of last digest into given array.
+     *
+     * @param target Target array.
+     * @param offset Offset in target array.
+     * @return Amount of chars written.
+     */
+    int hex(char[] target, int offset) {
+        if (offset < 0 || target.length - offset < HEX_LENGTH) {
+            throw new IndexOutOfBoundsException("No room for " + HEX_LENGTH + " chars at offset " + offset);
+        }
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int b = digest[i];
+            target[offset++] = HEX[(b >> 4) & 0x0F];
+            target[offset++] = HEX[b & 0x0F];
+        }
+        return HEX_LENGTH;
+    }
+
+    /**
+     * Checks whether given hexadecimal candidate matches last digest.
+     * Surrounding whitespace is skipped and case is ignored, same as
+     * {@code candidate.trim().equalsIgnoreCase(hex())}, but candidate is decoded
+     * into bytes and compared in constant time without allocations.
+     *
+     * @param candidate Signature candidate.
+     * @return True if candidate matches.
+     */
+    boolean matches(CharSequence candidate) {
+        int start = 0;
+        int end = candidate.length();
+        while (start < end && candidate.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && candidate.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start != HEX_LENGTH) {
+            return false;
+        }
+
+        int invalid = 0;
+        int difference = 0;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int high = nibble(candidate.charAt(start++));
+            int low = nibble(candidate.charAt(start++));
+            invalid |= high | low;
+            difference |= ((high << 4) | low) ^ (digest[i] & 0xFF);
+        }
+        // Negative nibble marks non-hexadecimal char
+        return (invalid >= 0) & (difference == 0);
+    }
+
+    /**
+     * @param c Hexadecimal char.
+     * @return Nibble value or negative number if char is not hexadecimal.
+     */
+    private static int nibble(char c) {
+        return c < 128 ? NIBBLES[c] : -1;
+    }
+
+    /**
+     * Ensures buffer has room for given amount of bytes.
+     *
+     * @param extra Amount of bytes to write.
+     */
+    private void ensure(int extra) {
+        if (buffer.length - length < extra) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * @param value Non-negative value.
+     * @return Amount of decimal digits in given value.
+     */
+    private static int digits(long value) {
+        long limit = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < limit) {
+                return i;
+            }
+            limit *= 10;
+        }
+        return 19;
+    }
+}
@@ -1,16 +1,36 @@
 package eu.genome.fpx;
 
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.Operation;
+import eu.genome.fpx.metrics.Outcome;
+
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.Locale;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Component to generate signatures.
  */
 public class SignatureGenerator {
-    private final String secret;
+    /**
+     * SHA256 digest primed with {@code secret|} prefix, never updated after construction.
+     * Every signature starts from a clone of it instead of re-hashing the secret.
+     */
+    private final MessageDigest prefix;
+    /**
+     * Prefix bytes, retained only if digest provider does not support cloning or batches are accelerated.
+     */
+    private final byte[] prefixBytes;
+    /**
+     * Prefix state for accelerated {@link Sha256Lanes} used by batches, computed by the first one.
+     */
+    private volatile Sha256Lanes.Prefix lanePrefix;
 
     /**
      * Constructs Signer instance with given secret.
@@ -19,15 +39,19 @@ public class SignatureGenerator {
      */
     public SignatureGenerator(String secret) {
         if (secret == null || secret.isEmpty()) {
-            throw new IllegalArgumentException("Empty secret");
+            throw new InvalidSignatureDataException(Outcome.EMPTY_SECRET, "Empty secret");
         }
-        this.secret = secret;
+        byte[] bytes = (secret + '|').getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = newDigest();
+        digest.update(bytes);
+        this.prefix = isCloneable(digest) ? digest : null;
+        this.prefixBytes = this.prefix == null || Sha256Acceleration.isAvailable() ? bytes : null;
     }
 
     /**
      * @return Constructed SHA256 message digest.
      */
-    private MessageDigest getDigest() {
+    private static MessageDigest newDigest() {
         try {
             return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
@@ -36,15 +60,58 @@ public class SignatureGenerator {
     }
 
     /**
-     * Converts given bytes to hexadecimal representation.
+     * @param digest Digest to check.
+     * @return True if given digest supports cloning.
+     */
+    private static boolean isCloneable(MessageDigest digest) {
+        try {
+            digest.clone();
+            return true;
+        } catch (CloneNotSupportedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return SHA256 message digest with secret prefix already consumed.
+     */
+    private MessageDigest getDigest() {
+        if (prefix != null) {
+            try {
+                return (MessageDigest) prefix.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        MessageDigest digest = newDigest();
+        digest.update(prefixBytes);
+        return digest;
+    }
+
+    /**
+     * @return Accelerated multi-lane hasher of messages prefixed with secret, null if not available.
+     */
+    Sha256Lanes lanes() {
+        if (!Sha256Acceleration.isAvailable()) {
+            return null;
+        }
+        Sha256Lanes.Prefix lanePrefix = this.lanePrefix;
+        if (lanePrefix == null) {
+            // Racing batches compute equal prefixes
+            lanePrefix = Sha256Lanes.prefix(prefixBytes);
+            this.lanePrefix = lanePrefix;
+        }
+        return Sha256Acceleration.lanes(lanePrefix);
+    }
+
+    /**
+     * Digests pre-image held by given encoder.
      *
-     * @param source Source bytes to convert.
-     * @return Hexadecimal string.
+     * @param encoder Encoder holding pre-image without secret prefix.
+     * @return Given encoder holding the digest.
      */
-    private String toHex(byte[] source) {
-        StringBuilder sb = new StringBuilder(source.length * 2);
-        for (byte b : source) sb.append(String.format("%02x", b));
-        return sb.toString();
+    SignatureEncoder digest(SignatureEncoder encoder) {
+        return encoder.digest(getDigest());
     }
 
     /**
@@ -55,13 +122,52 @@ public class SignatureGenerator {
      */
     private void verifyAmount(double amount, String currency) {
         if (amount <= 0) {
-            throw new IllegalArgumentException("Incorrect amount " + amount);
+            throw new InvalidSignatureDataException(Outcome.INCORRECT_AMOUNT, "Incorrect amount " + amount);
+        }
+        verifyCurrency(currency);
+    }
+
+    /**
+     * Verifies amount & currency data.
+     *
+     * @param amount   Amount to verify.
+     * @param currency Currency ISO A3 to verify.
+     */
+    private void verifyAmount(BigDecimal amount, String currency) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new InvalidSignatureDataException(Outcome.INCORRECT_AMOUNT, "Incorrect amount " + amount);
+        }
+        verifyCurrency(currency);
+    }
+
+    /**
+     * Verifies amount in minor units.
+     *
+     * @param amountMinorUnits Amount to verify.
+     */
+    private static void verifyMinorUnits(long amountMinorUnits) {
+        if (amountMinorUnits <= 0) {
+            throw new InvalidSignatureDataException(
+                    Outcome.INCORRECT_AMOUNT,
+                    "Incorrect amount " + BigDecimal.valueOf(amountMinorUnits, 2)
+            );
         }
-        if (currency == null || currency.isEmpty()) {
-            throw new IllegalArgumentException("Empty currency ISO code");
+    }
+
+    /**
+     * Verifies currency data.
+     *
+     * @param currency Currency ISO A3 to verify.
+     */
+    private void verifyCurrency(CharSequence currency) {
+        if (currency == null || currency.length() == 0) {
+            throw new InvalidSignatureDataException(Outcome.INCORRECT_CURRENCY, "Empty currency ISO code");
         }
         if (currency.length() != 3) {
-            throw new IllegalArgumentException("Currency ISO A3 code expected, but " + currency + " given");
+            throw new InvalidSignatureDataException(
+                    Outcome.INCORRECT_CURRENCY,
+                    "Currency ISO A3 code expected, but " + currency + " given"
+            );
         }
     }
 
@@ -82,26 +188,70 @@ public class SignatureGenerator {
             String currencyISOA3,
             String orderID
     ) {
-        verifyAmount(amount, currencyISOA3);
-        if (sessionID == null || sessionID.isEmpty()) {
-            throw new IllegalArgumentException("Empty session ID");
-        }
-        if (transactionID == 0) {
-            throw new IllegalArgumentException("Empty transaction ID");
-        }
+        return Metrics.record(Operation.SIGN, SignatureMode.CALLBACK, () -> encode(
+                SignatureMode.CALLBACK, null, sessionID, transactionID, amount, currencyISOA3, orderID, null, null).hex());
+    }
+
+    /**
+     * Constructs CALLBACK signature for exact decimal amount.
+     *
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @return Generated signature.
+     */
+    public String CALLBACK(
+            String sessionID,
+            long transactionID,
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID
+    ) {
+        return Metrics.record(Operation.SIGN, SignatureMode.CALLBACK, () -> encode(
+                SignatureMode.CALLBACK, null, sessionID, transactionID, amount, currencyISOA3, orderID, null, null).hex());
+    }
+
+    /**
+     * Verifies CALLBACK signature candidate over field values given as char sequences,
+     * for example views over raw request bytes, without materializing them as strings.
+     * Candidate is compared in constant time, surrounding whitespace and case are ignored.
+     *
+     * @param sessionID        FPX/HPP session identifier.
+     * @param transactionID    Transaction identifier.
+     * @param amountMinorUnits Transaction amount in minor units (cents).
+     * @param currencyISOA3    Transaction currency ISO.
+     * @param orderID          Order identifier, optional.
+     * @param candidate        Signature hash candidate.
+     * @return True if hash candidate is valid.
+     */
+    public boolean verifyCALLBACK(
+            CharSequence sessionID,
+            long transactionID,
+            long amountMinorUnits,
+            CharSequence currencyISOA3,
+            CharSequence orderID,
+            CharSequence candidate
+    ) {
+        return Metrics.record(Operation.VERIFY, SignatureMode.CALLBACK, () -> matchesCALLBACK(sessionID, transactionID, amountMinorUnits, currencyISOA3, orderID, candidate));
+    }
 
-        MessageDigest digest = getDigest();
-        digest.update(String.format(
-                Locale.ROOT,
-                "%s|%s|%s|%d|%.02f|%s",
-                secret,
-                sessionID,
-                orderID == null ? "" : orderID,
-                transactionID,
-                amount,
-                currencyISOA3
-        ).getBytes(StandardCharsets.UTF_8));
-        return toHex(digest.digest());
+    private boolean matchesCALLBACK(
+            CharSequence sessionID,
+            long transactionID,
+            long amountMinorUnits,
+            CharSequence currencyISOA3,
+            CharSequence orderID,
+            CharSequence candidate
+    ) {
+        if (candidate == null || candidate.length() == 0) {
+            return false;
+        }
+        verifyMinorUnits(amountMinorUnits);
+        verifyCurrency(currencyISOA3);
+        return SignatureMode.CALLBACK.layout().encode(SignatureEncoder.get(), getDigest(), null, sessionID,
+                transactionID, amountMinorUnits, null, currencyISOA3, orderID, null, null).matches(candidate);
     }
 
     /**
@@ -123,20 +273,31 @@ public class SignatureGenerator {
             String userID,
             String MCC
     ) {
-        verifyAmount(amount, currencyISOA3);
-        MessageDigest digest = getDigest();
-        digest.update(String.format(
-                Locale.ROOT,
-                "%s|%s|%.2f|%s|%s|%s|%s",
-                secret,
-                SignatureMode.MODE_A,
-                amount,
-                currencyISOA3.toUpperCase(Locale.ROOT),
-                orderID == null ? "" : orderID,
-                userID == null ? "" : userID,
-                MCC == null ? "" : MCC
-        ).getBytes(StandardCharsets.UTF_8));
-        return toHex(digest.digest());
+        return Metrics.record(Operation.SIGN, SignatureMode.MODE_A, () -> encode(
+                SignatureMode.MODE_A, null, null, 0, amount, currencyISOA3, orderID, userID, MCC).hex());
+    }
+
+    /**
+     * Constructs MODE_A signature for exact decimal amount.
+     *
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Generated signature.
+     * @deprecated Use MODE_A_TS instead.
+     */
+    @Deprecated
+    public String MODE_A(
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        return Metrics.record(Operation.SIGN, SignatureMode.MODE_A, () -> encode(
+                SignatureMode.MODE_A, null, null, 0, amount, currencyISOA3, orderID, userID, MCC).hex());
     }
 
     /**
@@ -157,21 +318,270 @@ public class SignatureGenerator {
             String orderID,
             String userID,
             String MCC
+    ) {
+        return Metrics.record(Operation.SIGN, SignatureMode.MODE_A_TS, () -> encode(
+                SignatureMode.MODE_A_TS, time, null, 0, amount, currencyISOA3, orderID, userID, MCC).hex());
+    }
+
+    /**
+     * Constructs MODE_A_TS signature for exact decimal amount.
+     *
+     * @param time          Timestamp nonce.
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Generated signature.
+     */
+    public String MODE_A_TS(
+            Instant time,
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        return Metrics.record(Operation.SIGN, SignatureMode.MODE_A_TS, () -> encode(
+                SignatureMode.MODE_A_TS, time, null, 0, amount, currencyISOA3, orderID, userID, MCC).hex());
+    }
+
+    /**
+     * Constructs signature digest of given mode, fields not present in mode layout are ignored.
+     *
+     * @param mode          Signature mode.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Thread-bound encoder holding the digest.
+     */
+    SignatureEncoder encode(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        return write(mode, time, sessionID, transactionID, amount, currencyISOA3, orderID, userID, MCC)
+                .digest(getDigest());
+    }
+
+    /**
+     * Constructs signature pre-image of given mode without secret prefix,
+     * fields not present in mode layout are ignored.
+     *
+     * @param mode          Signature mode.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Thread-bound encoder holding the pre-image.
+     */
+    SignatureEncoder write(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
     ) {
         verifyAmount(amount, currencyISOA3);
-        MessageDigest digest = getDigest();
-        digest.update(String.format(
-                Locale.ROOT,
-                "%s|%s|%d|%.2f|%s|%s|%s|%s",
-                secret,
-                SignatureMode.MODE_A_TS,
-                time.getEpochSecond(),
-                amount,
-                currencyISOA3.toUpperCase(Locale.ROOT),
-                orderID == null ? "" : orderID,
-                userID == null ? "" : userID,
-                MCC == null ? "" : MCC
-        ).getBytes(StandardCharsets.UTF_8));
-        return toHex(digest.digest());
+        long minorUnits = SignatureEncoder.minorUnits(amount);
+        String formatted = minorUnits < 0 ? SignatureEncoder.format(amount) : null;
+        return write(mode, time, sessionID, transactionID, minorUnits, formatted, currencyISOA3, orderID, userID, MCC);
+    }
+
+    /**
+     * Constructs signature digest of given mode for exact decimal amount,
+     * fields not present in mode layout are ignored.
+     *
+     * @param mode          Signature mode.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Thread-bound encoder holding the digest.
+     */
+    SignatureEncoder encode(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        return write(mode, time, sessionID, transactionID, amount, currencyISOA3, orderID, userID, MCC)
+                .digest(getDigest());
+    }
+
+    /**
+     * Constructs signature pre-image of given mode without secret prefix,
+     * fields not present in mode layout are ignored.
+     *
+     * @param mode          Signature mode.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param amount        Transaction amount, rounded half-up to minor units.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @return Thread-bound encoder holding the pre-image.
+     */
+    SignatureEncoder write(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            BigDecimal amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        verifyAmount(amount, currencyISOA3);
+        long minorUnits = SignatureEncoder.minorUnits(amount);
+        String formatted = minorUnits < 0 ? SignatureEncoder.format(amount) : null;
+        return write(mode, time, sessionID, transactionID, minorUnits, formatted, currencyISOA3, orderID, userID, MCC);
+    }
+
+    /**
+     * Constructs signature pre-image of given mode for amount in minor units without secret prefix,
+     * fields not present in mode layout are ignored.
+     *
+     * @param mode             Signature mode.
+     * @param time             Timestamp nonce.
+     * @param sessionID        FPX/HPP session identifier.
+     * @param transactionID    Transaction identifier.
+     * @param amountMinorUnits Transaction amount in minor units (cents).
+     * @param currencyISOA3    Transaction currency ISO.
+     * @param orderID          Order identifier, optional.
+     * @param userID           User identifier, optional.
+     * @param MCC              Operation MCC code, optional.
+     * @return Thread-bound encoder holding the pre-image.
+     */
+    SignatureEncoder writeMinorUnits(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            long amountMinorUnits,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        verifyMinorUnits(amountMinorUnits);
+        verifyCurrency(currencyISOA3);
+        return write(mode, time, sessionID, transactionID, amountMinorUnits, null, currencyISOA3, orderID, userID, MCC);
+    }
+
+    /**
+     * Constructs signature pre-image of verified fields without secret prefix.
+     *
+     * @param minorUnits Amount in minor units, negative if it does not fit.
+     * @param formatted  Formatted amount, used only if minor units are negative.
+     * @return Thread-bound encoder holding the pre-image.
+     */
+    private SignatureEncoder write(
+            SignatureMode mode,
+            Instant time,
+            String sessionID,
+            long transactionID,
+            long minorUnits,
+            String formatted,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC
+    ) {
+        return mode.layout().write(SignatureEncoder.get(), time, sessionID, transactionID,
+                minorUnits, formatted, currencyISOA3, orderID, userID, MCC);
+    }
+
+    /**
+     * Generates signatures for given batch of requests.
+     * Large batches are split across {@link ForkJoinPool#commonPool()},
+     * small ones are signed on calling thread.
+     *
+     * @param requests Signature requests, any mode.
+     * @return Signature results in request order, failure of one request does not affect others.
+     */
+    public List<SignatureResult> batch(List<SignatureBuilder> requests) {
+        return batch(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates signatures for given batch of requests.
+     * Large batches are split across given executor,
+     * small ones are signed on calling thread.
+     *
+     * @param requests Signature requests, any mode. Must not be modified until method returns.
+     * @param executor Executor to sign large batches with.
+     * @return Signature results in request order, failure of one request does not affect others.
+     */
+    public List<SignatureResult> batch(List<SignatureBuilder> requests, Executor executor) {
+        Objects.requireNonNull(requests, "requests");
+        Objects.requireNonNull(executor, "executor");
+        return new BatchSigner(this, requests).sign(executor);
+    }
+
+    /**
+     * Verifies signature candidates of given batch of requests.
+     * Large batches are split across {@link ForkJoinPool#commonPool()},
+     * small ones are verified on calling thread.
+     *
+     * @param requests   Signature requests, any mode.
+     * @param candidates Signature hash candidates, one per request.
+     * @return Verification results in request order, invalid request is not verified.
+     */
+    public boolean[] verifyBatch(List<SignatureBuilder> requests, List<? extends CharSequence> candidates) {
+        return verifyBatch(requests, candidates, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifies signature candidates of given batch of requests.
+     * Large batches are split across given executor,
+     * small ones are verified on calling thread.
+     * Candidates are compared in constant time, surrounding whitespace and case are ignored.
+     *
+     * @param requests   Signature requests, any mode. Must not be modified until method returns.
+     * @param candidates Signature hash candidates, one per request.
+     * @param executor   Executor to verify large batches with.
+     * @return Verification results in request order, invalid request is not verified.
+     */
+    public boolean[] verifyBatch(
+            List<SignatureBuilder> requests,
+            List<? extends CharSequence> candidates,
+            Executor executor
+    ) {
+        Objects.requireNonNull(requests, "requests");
+        Objects.requireNonNull(candidates, "candidates");
+        Objects.requireNonNull(executor, "executor");
+        return new BatchSigner(this, requests, candidates).verify(executor);
     }
 }
@@ -0,0 +1,300 @@
+package eu.genome.fpx;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Registry of prepared signature generators by API key.
+ * Secrets are loaded lazily from {@link SecretSource}, registry size is bounded
+ * and least recently used API keys are evicted approximately (CLOCK algorithm).
+ * Source is called without holding any lock, so a slow source delays only callers of
+ * the API key being loaded, concurrent first uses of the same API key may load it more than once.
+ * <p>
+ * After {@link #rotate(String, String)} signatures made with previous secret are
+ * still accepted by {@link #verify(String, Predicate)} during grace period.
+ * API keys within grace period are not evicted, so registry may exceed its maximum size
+ * by the amount of recently rotated API keys.
+ * <p>
+ * Unknown API keys are remembered for a short time, so repeated requests with a forged
+ * API key do not reach the secret source every time; at most maximum size of them is kept.
+ * <p>
+ * Lookups of loaded API keys are lock-free. Thread-safe.
+ */
+public final class SignatureGeneratorRegistry {
+    /**
+     * Default time unknown API key is not looked up again.
+     */
+    public static final int DEFAULT_UNKNOWN_SECONDS = 10;
+
+    private final SecretSource source;
+    private final int maximumSize;
+    private final long graceMillis;
+    private final long unknownMillis;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> unknown = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs registry.
+     *
+     * @param source      Secret source.
+     * @param maximumSize Maximal amount of API keys to keep.
+     * @param gracePeriod Time previous secret stays valid after rotation.
+     */
+    public SignatureGeneratorRegistry(SecretSource source, int maximumSize, Duration gracePeriod) {
+        this(source, maximumSize, gracePeriod, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs registry remembering unknown API keys for {@value #DEFAULT_UNKNOWN_SECONDS} seconds.
+     *
+     * @param source      Secret source.
+     * @param maximumSize Maximal amount of API keys to keep.
+     * @param gracePeriod Time previous secret stays valid after rotation.
+     * @param clock       Clock to use.
+     */
+    public SignatureGeneratorRegistry(SecretSource source, int maximumSize, Duration gracePeriod, Clock clock) {
+        this(source, maximumSize, gracePeriod, Duration.ofSeconds(DEFAULT_UNKNOWN_SECONDS), clock);
+    }
+
+    /**
+     * Constructs registry.
+     *
+     * @param source        Secret source.
+     * @param maximumSize   Maximal amount of API keys to keep, known and unknown ones separately.
+     * @param gracePeriod   Time previous secret stays valid after rotation.
+     * @param unknownPeriod Time unknown API key is not looked up again, zero to look up every time.
+     * @param clock         Clock to use.
+     */
+    public SignatureGeneratorRegistry(
+            SecretSource source, int maximumSize, Duration gracePeriod, Duration unknownPeriod, Clock clock
+    ) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Incorrect maximum size " + maximumSize);
+        }
+        if (gracePeriod == null || gracePeriod.isNegative()) {
+            throw new IllegalArgumentException("Incorrect grace period " + gracePeriod);
+        }
+        if (unknownPeriod == null || unknownPeriod.isNegative()) {
+            throw new IllegalArgumentException("Incorrect unknown API key period " + unknownPeriod);
+        }
+        this.source = Objects.requireNonNull(source, "source");
+        this.maximumSize = maximumSize;
+        this.graceMillis = gracePeriod.toMillis();
+        this.unknownMillis = unknownPeriod.toMillis();
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    /**
+     * Returns current signature generator of given API key.
+     *
+     * @param apiKey API key.
+     * @return Signature generator or null if API key is unknown.
+     */
+    public SignatureGenerator get(String apiKey) {
+        Entry entry = entry(apiKey);
+        return entry == null ? null : entry.current;
+    }
+
+    /**
+     * Verifies signature using current generator of given API key, or
+     * previous one if secret was rotated within grace period.
+     *
+     * @param apiKey       API key.
+     * @param verification Verification to run with a generator.
+     * @return True if verification succeeded with any valid generator, false if API key is unknown.
+     */
+    public boolean verify(String apiKey, Predicate<SignatureGenerator> verification) {
+        Objects.requireNonNull(verification, "verification");
+        Entry entry = entry(apiKey);
+        if (entry == null) {
+            return false;
+        }
+        if (verification.test(entry.current)) {
+            return true;
+        }
+        return entry.previous != null
+                && clock.millis() < entry.previousExpiresAt
+                && verification.test(entry.previous);
+    }
+
+    /**
+     * Replaces secret of given API key, previous secret stays valid during grace period.
+     * If API key is not loaded, its previous secret is loaded from source.
+     *
+     * @param apiKey API key.
+     * @param secret New application secret.
+     */
+    public void rotate(String apiKey, String secret) {
+        Objects.requireNonNull(apiKey, "apiKey");
+        SignatureGenerator generator = new SignatureGenerator(secret);
+        String stored = null;
+        if (!entries.containsKey(apiKey)) {
+            // Source may already hold the new secret
+            stored = source.getSecret(apiKey);
+            loads.increment();
+        }
+        SignatureGenerator loaded = stored == null || stored.equals(secret) ? null : new SignatureGenerator(stored);
+        long expiresAt = clock.millis() + graceMillis;
+        unknown.remove(apiKey);
+        entries.compute(apiKey, (key, previous) -> {
+            SignatureGenerator replaced = previous == null ? loaded : previous.current;
+            return new Entry(generator, replaced, replaced == null ? 0 : expiresAt);
+        });
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes given API key, its secret is reloaded from source on next use.
+     *
+     * @param apiKey API key.
+     */
+    public void invalidate(String apiKey) {
+        entries.remove(Objects.requireNonNull(apiKey, "apiKey"));
+        unknown.remove(apiKey);
+    }
+
+    /**
+     * @return Amount of loaded API keys.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Amount of secret source loads.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return Amount of API keys evicted due to size limit.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Entry entry(String apiKey) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return null;
+        }
+        Entry entry = entries.get(apiKey);
+        if (entry == null) {
+            entry = load(apiKey);
+        }
+        if (entry != null && !entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry;
+    }
+
+    private Entry load(String apiKey) {
+        if (isUnknown(apiKey)) {
+            return null;
+        }
+        String secret = source.getSecret(apiKey);
+        loads.increment();
+        if (secret == null) {
+            if (unknownMillis > 0) {
+                remember(apiKey);
+            }
+            return null;
+        }
+        Entry loaded = new Entry(new SignatureGenerator(secret), null, 0);
+        // Concurrent load or rotation of the same API key wins
+        Entry entry = entries.putIfAbsent(apiKey, loaded);
+        if (entry != null) {
+            return entry;
+        }
+        evictIfNeeded();
+        return loaded;
+    }
+
+    /**
+     * @return Whether API key was recently found unknown.
+     */
+    private boolean isUnknown(String apiKey) {
+        Long expiresAt = unknown.get(apiKey);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (clock.millis() < expiresAt) {
+            return true;
+        }
+        unknown.remove(apiKey, expiresAt);
+        return false;
+    }
+
+    /**
+     * Remembers unknown API key, dropping expired and then arbitrary ones over maximum size.
+     */
+    private void remember(String apiKey) {
+        long now = clock.millis();
+        if (unknown.size() >= maximumSize) {
+            unknown.values().removeIf(expiresAt -> expiresAt <= now);
+            Iterator<Long> iterator = unknown.values().iterator();
+            while (iterator.hasNext() && unknown.size() >= maximumSize) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        unknown.put(apiKey, now + unknownMillis);
+    }
+
+    /**
+     * Evicts entries over maximum size, giving recently used ones a second chance
+     * and keeping ones within rotation grace period.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() <= maximumSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = clock.millis();
+            // Referenced entries get a second chance, third pass evicts regardless of use
+            for (int pass = 0; pass < 3 && entries.size() > maximumSize; pass++) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (iterator.hasNext() && entries.size() > maximumSize) {
+                    Entry entry = iterator.next();
+                    if (entry.referenced && pass < 2) {
+                        entry.referenced = false;
+                    } else if (entry.previous == null || entry.previousExpiresAt <= now) {
+                        iterator.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Immutable generators of single API key.
+     */
+    private static final class Entry {
+        private final SignatureGenerator current;
+        private final SignatureGenerator previous;
+        private final long previousExpiresAt;
+        /**
+         * CLOCK reference bit, races are benign.
+         */
+        private volatile boolean referenced;
+
+        private Entry(SignatureGenerator current, SignatureGenerator previous, long previousExpiresAt) {
+            this.current = current;
+            this.previous = previous;
+            this.previousExpiresAt = previousExpiresAt;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.metrics.Outcome;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative pre-image layout of a signature mode, compiled into a specialized encoder.
+ * Pre-image is the application secret followed by {@code |} separated fields in layout order,
+ * absent optional fields are encoded as empty strings.
+ * <p>
+ * Constant parts of the layout, mode name and separators, are merged into fixed byte segments
+ * at construction time, so encoding only writes variable fields between them.
+ * <p>
+ * Immutable and thread-safe.
+ */
+final class SignatureLayout {
+    /**
+     * Pre-image field.
+     */
+    enum Field {
+        /**
+         * Signature mode name.
+         */
+        MODE,
+        /**
+         * Timestamp nonce in epoch seconds, mandatory.
+         */
+        NONCE,
+        /**
+         * FPX/HPP session identifier, mandatory.
+         */
+        SESSION_ID,
+        /**
+         * Transaction identifier, mandatory.
+         */
+        TRANSACTION_ID,
+        /**
+         * Amount with exactly two fractional digits.
+         */
+        AMOUNT,
+        /**
+         * Currency ISO code as given.
+         */
+        CURRENCY,
+        /**
+         * Currency ISO code in upper case.
+         */
+        CURRENCY_UPPER_CASE,
+        /**
+         * Order identifier, optional.
+         */
+        ORDER_ID,
+        /**
+         * User identifier, optional.
+         */
+        USER_ID,
+        /**
+         * MCC code, optional.
+         */
+        MCC
+    }
+
+    /**
+     * Upper estimate of a number or amount length in bytes.
+     */
+    private static final int NUMBER_LENGTH = 24;
+
+    private final Field[] fields;
+    private final byte[][] segments;
+    private final boolean hasNonce;
+    private final boolean hasSessionId;
+    private final boolean hasTransactionId;
+    private final int fixedLength;
+
+    /**
+     * Compiles layout.
+     *
+     * @param mode   Signature mode, used as value of {@link Field#MODE}.
+     * @param layout Pre-image fields in order.
+     */
+    SignatureLayout(SignatureMode mode, Field... layout) {
+        List<Field> variable = new ArrayList<>();
+        List<byte[]> fixed = new ArrayList<>();
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        for (int i = 0; i < layout.length; i++) {
+            if (i > 0) {
+                segment.write('|');
+            }
+            if (layout[i] == Field.MODE) {
+                byte[] name = mode.name().getBytes(StandardCharsets.UTF_8);
+                segment.write(name, 0, name.length);
+            } else {
+                fixed.add(segment.toByteArray());
+                variable.add(layout[i]);
+                segment.reset();
+            }
+        }
+        fixed.add(segment.toByteArray());
+
+        this.fields = variable.toArray(new Field[0]);
+        this.segments = fixed.toArray(new byte[0][]);
+        this.hasNonce = variable.contains(Field.NONCE);
+        this.hasSessionId = variable.contains(Field.SESSION_ID);
+        this.hasTransactionId = variable.contains(Field.TRANSACTION_ID);
+        int length = 0;
+        for (byte[] bytes : segments) {
+            length += bytes.length;
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * Encodes pre-image and computes its digest. Amount must be already verified.
+     *
+     * @param encoder       Encoder to use, reset.
+     * @param digest        SHA256 digest with secret prefix already consumed.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param minorUnits    Amount in minor units or negative value if amount is formatted.
+     * @param formatted     Formatted amount, used only if minor units are negative.
+     * @param currencyISOA3 Currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           MCC code, optional.
+     * @return Given encoder holding the digest.
+     */
+    SignatureEncoder encode(
+            SignatureEncoder encoder,
+            MessageDigest digest,
+            Instant time,
+            CharSequence sessionID,
+            long transactionID,
+            long minorUnits,
+            String formatted,
+            CharSequence currencyISOA3,
+            CharSequence orderID,
+            CharSequence userID,
+            CharSequence MCC
+    ) {
+        return write(encoder, time, sessionID, transactionID, minorUnits, formatted, currencyISOA3, orderID, userID, MCC)
+                .digest(digest);
+    }
+
+    /**
+     * Encodes pre-image without secret prefix. Amount must be already verified.
+     *
+     * @param encoder       Encoder to use, reset.
+     * @param time          Timestamp nonce.
+     * @param sessionID     FPX/HPP session identifier.
+     * @param transactionID Transaction identifier.
+     * @param minorUnits    Amount in minor units or negative value if amount is formatted.
+     * @param formatted     Formatted amount, used only if minor units are negative.
+     * @param currencyISOA3 Currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           MCC code, optional.
+     * @return Given encoder holding the pre-image.
+     */
+    SignatureEncoder write(
+            SignatureEncoder encoder,
+            Instant time,
+            CharSequence sessionID,
+            long transactionID,
+            long minorUnits,
+            String formatted,
+            CharSequence currencyISOA3,
+            CharSequence orderID,
+            CharSequence userID,
+            CharSequence MCC
+    ) {
+        if (hasSessionId && (sessionID == null || sessionID.length() == 0)) {
+            throw new InvalidSignatureDataException(Outcome.MISSING_FIELD, "Empty session ID");
+        }
+        if (hasTransactionId && transactionID == 0) {
+            throw new InvalidSignatureDataException(Outcome.MISSING_FIELD, "Empty transaction ID");
+        }
+        if (hasNonce && time == null) {
+            throw new InvalidSignatureDataException(Outcome.MISSING_FIELD, "Empty nonce");
+        }
+
+        encoder.reserve(fixedLength + fields.length * NUMBER_LENGTH + 3 * (length(sessionID)
+                + length(formatted) + length(currencyISOA3) + length(orderID) + length(userID) + length(MCC)));
+        for (int i = 0; i < fields.length; i++) {
+            encoder.append(segments[i]);
+            switch (fields[i]) {
+                case NONCE:
+                    encoder.append(time.getEpochSecond());
+                    break;
+                case SESSION_ID:
+                    encoder.append(sessionID);
+                    break;
+                case TRANSACTION_ID:
+                    encoder.append(transactionID);
+                    break;
+                case AMOUNT:
+                    encoder.appendAmount(minorUnits, formatted);
+                    break;
+                case CURRENCY:
+                    encoder.append(currencyISOA3);
+                    break;
+                case CURRENCY_UPPER_CASE:
+                    encoder.appendUpperCase(currencyISOA3);
+                    break;
+                case ORDER_ID:
+                    encoder.append(orderID);
+                    break;
+                case USER_ID:
+                    encoder.append(userID);
+                    break;
+                case MCC:
+                    encoder.append(MCC);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported field " + fields[i]);
+            }
+        }
+        return encoder.append(segments[fields.length]);
+    }
+
+    private static int length(CharSequence value) {
+        return value == null ? 0 : value.length();
+    }
+}
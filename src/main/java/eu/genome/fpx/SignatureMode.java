@@ -1,21 +1,39 @@
 package eu.genome.fpx;
 
+import eu.genome.fpx.SignatureLayout.Field;
+
 /**
  * List of signature modes.
+ * Every mode declares its pre-image field layout, new modes are added as layout data only.
  */
 public enum SignatureMode {
     /**
      * Signature for callbacks.
      */
-    CALLBACK,
+    CALLBACK(Field.SESSION_ID, Field.ORDER_ID, Field.TRANSACTION_ID, Field.AMOUNT, Field.CURRENCY),
 
     /**
      * Amount only signature.
      */
-    MODE_A,
+    MODE_A(Field.MODE, Field.AMOUNT, Field.CURRENCY_UPPER_CASE, Field.ORDER_ID, Field.USER_ID, Field.MCC),
 
     /**
      * Amount with timestamp nonce.
      */
-    MODE_A_TS;
+    MODE_A_TS(
+            Field.MODE, Field.NONCE, Field.AMOUNT, Field.CURRENCY_UPPER_CASE, Field.ORDER_ID, Field.USER_ID, Field.MCC
+    );
+
+    private final SignatureLayout layout;
+
+    SignatureMode(Field... fields) {
+        this.layout = new SignatureLayout(this, fields);
+    }
+
+    /**
+     * @return Compiled pre-image layout of this mode.
+     */
+    SignatureLayout layout() {
+        return this.layout;
+    }
 }
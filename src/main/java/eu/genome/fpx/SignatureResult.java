@@ -0,0 +1,59 @@
+package eu.genome.fpx;
+
+import java.util.Objects;
+
+/**
+ * Outcome of single signature generation within a batch.
+ * Holds either generated signature or the error that prevented it.
+ */
+public final class SignatureResult {
+    private final String signature;
+    private final RuntimeException error;
+
+    private SignatureResult(String signature, RuntimeException error) {
+        this.signature = signature;
+        this.error = error;
+    }
+
+    /**
+     * @param signature Generated signature.
+     * @return Successful result.
+     */
+    static SignatureResult success(String signature) {
+        return new SignatureResult(Objects.requireNonNull(signature, "signature"), null);
+    }
+
+    /**
+     * @param error Error that prevented signature generation.
+     * @return Failed result.
+     */
+    static SignatureResult failure(RuntimeException error) {
+        return new SignatureResult(null, Objects.requireNonNull(error, "error"));
+    }
+
+    /**
+     * @return True if signature was generated.
+     */
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+
+    /**
+     * @return Generated signature or null if generation failed.
+     */
+    public String getSignature() {
+        return this.signature;
+    }
+
+    /**
+     * @return Error that prevented signature generation or null on success.
+     */
+    public RuntimeException getError() {
+        return this.error;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? signature : "error: " + error.getMessage();
+    }
+}
@@ -0,0 +1,169 @@
+package eu.genome.fpx;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded map split into independently locked stripes, backing {@link ModeASignatureCache}
+ * and {@link eu.genome.fpx.verify.CallbackVerificationCache}.
+ * Every stripe holds its share of maximum size and evicts its eldest entry when full,
+ * entries are ordered by access or by insertion.
+ * <p>
+ * Thread-safe.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public final class StripedLru<K, V> {
+    private final Stripe<K, V>[] stripes;
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs map.
+     *
+     * @param maximumSize Maximal amount of entries.
+     * @param accessOrder True to evict least recently accessed entries, false to evict oldest inserted ones.
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLru(int maximumSize, boolean accessOrder) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Incorrect maximum size " + maximumSize);
+        }
+        int count = Integer.highestOneBit(Math.min(maximumSize, Runtime.getRuntime().availableProcessors() * 4));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            // Distribute remainder so total capacity equals maximum size
+            int capacity = maximumSize / count + (i < maximumSize % count ? 1 : 0);
+            this.stripes[i] = new Stripe<>(capacity, accessOrder, evictions);
+        }
+    }
+
+    /**
+     * @param key Key to look up.
+     * @return Value or null if absent.
+     */
+    public V get(K key) {
+        return stripe(key).get(key);
+    }
+
+    /**
+     * Associates value with key, evicting eldest entry of the stripe if it is full.
+     *
+     * @param key   Key.
+     * @param value Value, mandatory.
+     */
+    public void put(K key, V value) {
+        stripe(key).put(key, value);
+    }
+
+    /**
+     * Associates value with key unless it is present, evicting eldest entry of the stripe if it is full.
+     *
+     * @param key   Key.
+     * @param value Value, mandatory.
+     * @return Present value or null if given one was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        return stripe(key).putIfAbsent(key, value);
+    }
+
+    /**
+     * Removes eldest entries of the stripe holding given key while they match given predicate.
+     * Removed entries are counted as evictions.
+     *
+     * @param key     Key selecting the stripe.
+     * @param expired Predicate of values to remove.
+     */
+    public void expire(K key, Predicate<? super V> expired) {
+        stripe(key).expire(expired);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return Amount of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Amount of entries evicted due to size limit or expiration.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Independently locked part of the map.
+     */
+    private static final class Stripe<K, V> {
+        private final LinkedHashMap<K, V> entries;
+        private final LongAdder evictions;
+
+        private Stripe(int capacity, boolean accessOrder, LongAdder evictions) {
+            this.evictions = evictions;
+            this.entries = new LinkedHashMap<K, V>(16, 0.75f, accessOrder) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(K key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(K key, V value) {
+            entries.put(key, value);
+        }
+
+        synchronized V putIfAbsent(K key, V value) {
+            V present = entries.get(key);
+            if (present == null) {
+                entries.put(key, value);
+            }
+            return present;
+        }
+
+        synchronized void expire(Predicate<? super V> expired) {
+            Iterator<V> iterator = entries.values().iterator();
+            while (iterator.hasNext() && expired.test(iterator.next())) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package eu.genome.fpx.bulk;
+
+import java.time.Instant;
+
+/**
+ * Result of payment link generation.
+ */
+public final class LinkReport {
+    private final Instant nonce;
+    private long links;
+    private long rejected;
+    private long bytes;
+
+    LinkReport(Instant nonce) {
+        this.nonce = nonce;
+    }
+
+    /**
+     * Counts written chunk of links.
+     *
+     * @param links    Amount of links written.
+     * @param rejected Amount of rejected specs.
+     * @param bytes    Amount of bytes written.
+     */
+    void add(int links, int rejected, int bytes) {
+        this.links += links;
+        this.rejected += rejected;
+        this.bytes += bytes;
+    }
+
+    /**
+     * @return Timestamp nonce all links are signed with.
+     */
+    public Instant getNonce() {
+        return nonce;
+    }
+
+    /**
+     * @return Amount of links written.
+     */
+    public long getLinkCount() {
+        return links;
+    }
+
+    /**
+     * @return Amount of rejected link specs, blank lines and header are not counted.
+     */
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * @return Amount of bytes written.
+     */
+    public long getByteCount() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkReport{" +
+                "nonce=" + nonce +
+                ", links=" + links +
+                ", rejected=" + rejected +
+                ", bytes=" + bytes +
+                '}';
+    }
+}
@@ -0,0 +1,716 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.SignatureBuilder;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming bulk generation of MODE_A_TS signed payment links.
+ * <p>
+ * Link specs are CSV lines {@code amount,currency[,orderId[,userId[,mcc]]]}, fields may be quoted
+ * but a spec may not span lines, blank lines are skipped. Input is read in chunks signed in parallel,
+ * every worker thread reusing its own {@link SignatureBuilder} and buffers, and parameters are
+ * percent-encoded from raw UTF-8 bytes while the link is written. Chunks are written to the output
+ * in input order through a fixed set of direct buffers, so memory use does not depend on input size.
+ * <p>
+ * Every link is written on its own line as
+ * {@code <base URL>?[apiKey=<key>&]timestamp=<nonce>&amount=<amount>&currency=<ISO>[&orderId=<id>]
+ * [&userId=<id>][&mcc=<code>]&signature=<signature>}, with amount rounded half-up to two fractional digits.
+ * Specs that cannot be signed are skipped and passed to {@link RejectedLinkHandler}.
+ * <p>
+ * Instances are immutable and may run several generations concurrently.
+ */
+public final class PaymentLinks {
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final boolean[] UNRESERVED = new boolean[256];
+    private static final int FIELDS = 5;
+    private static final byte[][] PARAMETERS = {
+            "amount=".getBytes(StandardCharsets.US_ASCII),
+            "&currency=".getBytes(StandardCharsets.US_ASCII),
+            "&orderId=".getBytes(StandardCharsets.US_ASCII),
+            "&userId=".getBytes(StandardCharsets.US_ASCII),
+            "&mcc=".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final byte[] SIGNATURE = "&signature=".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Upper estimate of link length besides prefix and encoded spec fields.
+     */
+    private static final int FIXED_LENGTH = 192;
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[c - 'a' + 'A'] = true;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private final String baseUrl;
+    private final SignatureGenerator generator;
+    private final String apiKey;
+    private final Instant nonce;
+    private final boolean header;
+    private final RejectedLinkHandler handler;
+    private final int threads;
+    private final int bufferSize;
+
+    private PaymentLinks(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.generator = builder.generator;
+        this.apiKey = builder.apiKey;
+        this.nonce = builder.nonce;
+        this.header = builder.header;
+        this.handler = builder.handler;
+        this.threads = builder.threads;
+        this.bufferSize = builder.bufferSize;
+    }
+
+    /**
+     * @return New payment links builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Generates links for specs of given CSV file.
+     *
+     * @param input  Input CSV file.
+     * @param output Output file, replaced if exists.
+     * @return Generation report.
+     * @throws IOException On read or write error.
+     */
+    public LinkReport run(Path input, Path output) throws IOException {
+        Objects.requireNonNull(input, "input");
+        Objects.requireNonNull(output, "output");
+        try (InputStream in = Files.newInputStream(input);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return run(in, out);
+        }
+    }
+
+    /**
+     * Generates links for specs read from given stream. Neither stream nor channel is closed.
+     *
+     * @param input  UTF-8 encoded CSV specs.
+     * @param output Channel to write links to.
+     * @return Generation report.
+     * @throws IOException On read or write error.
+     */
+    public LinkReport run(InputStream input, WritableByteChannel output) throws IOException {
+        Objects.requireNonNull(input, "input");
+        Objects.requireNonNull(output, "output");
+        Instant time = nonce == null ? Instant.ofEpochSecond(Instant.now().getEpochSecond()) : nonce;
+        Generation generation = new Generation(time, output);
+        if (threads == 1) {
+            return generation.run(input, null);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fpx-payment-links");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return generation.run(input, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Appends percent-encoded UTF-8 bytes of given string.
+     */
+    private static void encode(StringBuilder target, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            if (UNRESERVED[b & 0xFF]) {
+                target.append((char) b);
+            } else {
+                target.append('%').append((char) HEX[(b & 0xFF) >>> 4]).append((char) HEX[b & 0x0F]);
+            }
+        }
+    }
+
+    /**
+     * Writes percent-encoded bytes.
+     *
+     * @param out   Output buffer.
+     * @param bytes Raw UTF-8 bytes.
+     * @param from  Start index, inclusive.
+     * @param to    End index, exclusive.
+     */
+    private static void encode(ByteBuffer out, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int b = bytes[i] & 0xFF;
+            if (UNRESERVED[b]) {
+                out.put((byte) b);
+            } else {
+                out.put((byte) '%').put(HEX[b >>> 4]).put(HEX[b & 0x0F]);
+            }
+        }
+    }
+
+    /**
+     * Parses amount in minor units, plain amounts with up to two fractional digits without allocation.
+     *
+     * @param bytes ASCII amount.
+     * @param from  Start index, inclusive.
+     * @param to    End index, exclusive.
+     * @return Amount in minor units, rounded half-up.
+     */
+    static long minorUnits(byte[] bytes, int from, int to) {
+        long units = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9' && digits < 16) {
+                units = units * 10 + (b - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return decimalMinorUnits(bytes, from, to);
+            }
+        }
+        if (digits == 0 || fraction == 0 || fraction > 2) {
+            return decimalMinorUnits(bytes, from, to);
+        }
+        return fraction == 2 ? units : fraction == 1 ? units * 10 : units * 100;
+    }
+
+    private static long decimalMinorUnits(byte[] bytes, int from, int to) {
+        String amount = new String(bytes, from, to - from, StandardCharsets.US_ASCII);
+        try {
+            return new BigDecimal(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Incorrect amount " + amount, e);
+        }
+    }
+
+    /**
+     * State of one generation run. Chunks are read and written on calling thread, at most
+     * two chunks per worker thread are in flight, so reading stops while the output lags behind.
+     */
+    private final class Generation {
+        private final Instant time;
+        private final WritableByteChannel output;
+        private final byte[] prefix;
+        private final ThreadLocal<LinkWriter> writers = ThreadLocal.withInitial(LinkWriter::new);
+        private final ArrayDeque<Chunk> free = new ArrayDeque<>();
+        private final ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        private final LinkReport report;
+        private int chunks;
+        private byte[] carry = new byte[0];
+        private int carryLength;
+        private long line = 1;
+
+        private Generation(Instant time, WritableByteChannel output) {
+            this.time = time;
+            this.output = output;
+            this.report = new LinkReport(time);
+
+            StringBuilder url = new StringBuilder(baseUrl).append(baseUrl.indexOf('?') < 0 ? '?' : '&');
+            if (apiKey != null) {
+                url.append("apiKey=");
+                encode(url, apiKey);
+                url.append('&');
+            }
+            url.append("timestamp=").append(time.getEpochSecond()).append('&');
+            this.prefix = url.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads, signs and writes all specs.
+         *
+         * @param input    Input stream.
+         * @param executor Executor of workers, null to sign on calling thread.
+         * @return Generation report.
+         * @throws IOException On read or write error.
+         */
+        private LinkReport run(InputStream input, ExecutorService executor) throws IOException {
+            int capacity = executor == null ? 1 : threads * 2;
+            while (true) {
+                Chunk chunk = acquire(capacity);
+                if (!read(input, chunk)) {
+                    free.add(chunk);
+                    break;
+                }
+                if (executor == null) {
+                    write(chunk.sign());
+                } else {
+                    pending.add(executor.submit(chunk::sign));
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(await(pending.poll()));
+            }
+            return report;
+        }
+
+        /**
+         * @param capacity Maximal amount of chunks.
+         * @return Free chunk, writing out the oldest signed chunk if there is none.
+         */
+        private Chunk acquire(int capacity) throws IOException {
+            if (free.isEmpty()) {
+                if (chunks < capacity) {
+                    chunks++;
+                    return new Chunk();
+                }
+                write(await(pending.poll()));
+            }
+            return free.poll();
+        }
+
+        /**
+         * Fills chunk with complete lines, the incomplete last line is carried to the next chunk.
+         *
+         * @return Whether chunk has any input.
+         */
+        private boolean read(InputStream input, Chunk chunk) throws IOException {
+            if (chunk.input.length < carryLength) {
+                chunk.input = new byte[Math.max(chunk.input.length * 2, carryLength)];
+            }
+            System.arraycopy(carry, 0, chunk.input, 0, carryLength);
+            int length = carryLength;
+            int end;
+            boolean eof = false;
+            while (true) {
+                while (length < chunk.input.length) {
+                    int read = input.read(chunk.input, length, chunk.input.length - length);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += read;
+                }
+                end = eof ? length : lastLineEnd(chunk.input, length);
+                if (end > 0 || eof) {
+                    break;
+                }
+                // Single line longer than chunk
+                chunk.input = Arrays.copyOf(chunk.input, chunk.input.length * 2);
+            }
+
+            carryLength = length - end;
+            if (carry.length < carryLength) {
+                carry = new byte[Math.max(carry.length * 2, carryLength)];
+            }
+            System.arraycopy(chunk.input, end, carry, 0, carryLength);
+            chunk.length = end;
+            chunk.firstLine = line;
+            for (int i = 0; i < end; i++) {
+                if (chunk.input[i] == '\n') {
+                    line++;
+                }
+            }
+            return end > 0;
+        }
+
+        private int lastLineEnd(byte[] bytes, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        private Chunk await(Future<Chunk> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Link generation interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Writes signed chunk to output and returns it to free chunks.
+         */
+        private void write(Chunk chunk) throws IOException {
+            ByteBuffer buffer = chunk.output;
+            int bytes = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            report.add(chunk.links, chunk.rejected, bytes);
+            free.add(chunk);
+        }
+
+        /**
+         * Lines of input with links signed from them.
+         */
+        private final class Chunk {
+            private byte[] input = new byte[Math.max(256, bufferSize / 4)];
+            private ByteBuffer output = ByteBuffer.allocateDirect(bufferSize);
+            private int length;
+            private long firstLine;
+            private int links;
+            private int rejected;
+
+            /**
+             * Signs all lines of chunk, called on a worker thread.
+             *
+             * @return This chunk, with output ready to be written.
+             */
+            private Chunk sign() {
+                LinkWriter writer = writers.get();
+                ((Buffer) output).clear();
+                links = 0;
+                rejected = 0;
+                long number = firstLine;
+                int start = 0;
+                while (start < length) {
+                    int end = start;
+                    while (end < length && input[end] != '\n') {
+                        end++;
+                    }
+                    int next = end + 1;
+                    while (end > start && (input[end - 1] == '\r' || input[end - 1] == ' ' || input[end - 1] == '\t')) {
+                        end--;
+                    }
+                    if (end > start && !(header && number == 1)) {
+                        try {
+                            writer.write(this, start, end);
+                            links++;
+                        } catch (RuntimeException e) {
+                            rejected++;
+                            if (handler != null) {
+                                handler.rejected(number, new String(input, start, end - start, StandardCharsets.UTF_8), e);
+                            }
+                        }
+                    }
+                    number++;
+                    start = next;
+                }
+                ((Buffer) output).flip();
+                return this;
+            }
+
+            /**
+             * Ensures room for given amount of bytes, growing output buffer if needed.
+             */
+            private ByteBuffer ensure(int bytes) {
+                if (output.remaining() < bytes) {
+                    ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(output.capacity() * 2, output.position() + bytes));
+                    ((Buffer) output).flip();
+                    output = grown.put(output);
+                }
+                return output;
+            }
+        }
+
+        /**
+         * Signing state reused by a worker thread.
+         */
+        private final class LinkWriter {
+            private final SignatureBuilder request = new SignatureBuilder()
+                    .mode(SignatureMode.MODE_A_TS)
+                    .nonce(time);
+            private final char[] signature = new char[64];
+            private final int[] starts = new int[FIELDS];
+            private final int[] ends = new int[FIELDS];
+            private byte[] fields = new byte[256];
+            private final byte[] digits = new byte[20];
+
+            /**
+             * Signs spec line and writes its link.
+             *
+             * @param chunk Chunk holding the line.
+             * @param from  Line start index, inclusive.
+             * @param to    Line end index, exclusive.
+             */
+            private void write(Chunk chunk, int from, int to) {
+                int count = parse(chunk.input, from, to);
+                if (count < 2) {
+                    throw new IllegalArgumentException("Amount and currency expected");
+                }
+                verifyCurrency(count);
+                long amount = minorUnits(fields, starts[0], ends[0]);
+                int length = request
+                        .amountMinorUnits(amount, field(1, count))
+                        .orderId(field(2, count))
+                        .userId(field(3, count))
+                        .mcc(field(4, count))
+                        .build(generator, signature, 0);
+
+                ByteBuffer out = chunk.ensure(prefix.length + 3 * (to - from) + FIXED_LENGTH);
+                out.put(prefix).put(PARAMETERS[0]);
+                writeAmount(out, amount);
+                out.put(PARAMETERS[1]);
+                for (int i = starts[1]; i < ends[1]; i++) {
+                    byte b = fields[i];
+                    // Letters only, as verified
+                    out.put(b >= 'a' ? (byte) (b - 'a' + 'A') : b);
+                }
+                for (int field = 2; field < count; field++) {
+                    if (ends[field] > starts[field]) {
+                        out.put(PARAMETERS[field]);
+                        encode(out, fields, starts[field], ends[field]);
+                    }
+                }
+                out.put(SIGNATURE);
+                for (int i = 0; i < length; i++) {
+                    out.put((byte) signature[i]);
+                }
+                out.put((byte) '\n');
+            }
+
+            /**
+             * Verifies currency is three ASCII letters, so it needs no encoding in link.
+             */
+            private void verifyCurrency(int count) {
+                boolean letters = ends[1] - starts[1] == 3;
+                for (int i = starts[1]; letters && i < ends[1]; i++) {
+                    byte b = fields[i];
+                    letters = b >= 'A' && b <= 'Z' || b >= 'a' && b <= 'z';
+                }
+                if (!letters) {
+                    throw new IllegalArgumentException("Currency ISO A3 code expected, but " + field(1, count) + " given");
+                }
+            }
+
+            /**
+             * Splits CSV line into unquoted fields.
+             *
+             * @return Amount of fields.
+             */
+            private int parse(byte[] line, int from, int to) {
+                if (fields.length < to - from) {
+                    fields = new byte[Math.max(fields.length * 2, to - from)];
+                }
+                int count = 0;
+                int length = 0;
+                int i = from;
+                while (true) {
+                    if (count == FIELDS) {
+                        throw new IllegalArgumentException("At most " + FIELDS + " fields expected");
+                    }
+                    starts[count] = length;
+                    if (i < to && line[i] == '"') {
+                        i++;
+                        while (true) {
+                            if (i == to) {
+                                throw new IllegalArgumentException("Unterminated quoted field");
+                            }
+                            byte b = line[i++];
+                            if (b != '"') {
+                                fields[length++] = b;
+                            } else if (i < to && line[i] == '"') {
+                                fields[length++] = b;
+                                i++;
+                            } else {
+                                break;
+                            }
+                        }
+                        if (i < to && line[i] != ',') {
+                            throw new IllegalArgumentException("Unexpected character after quoted field");
+                        }
+                    } else {
+                        while (i < to && line[i] != ',') {
+                            fields[length++] = line[i++];
+                        }
+                    }
+                    ends[count++] = length;
+                    if (i == to) {
+                        return count;
+                    }
+                    i++;
+                }
+            }
+
+            /**
+             * @return Field value, null if absent or empty.
+             */
+            private String field(int index, int count) {
+                if (index >= count || ends[index] == starts[index]) {
+                    return null;
+                }
+                return new String(fields, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+            }
+
+            private void writeAmount(ByteBuffer out, long minorUnits) {
+                int position = digits.length;
+                long value = minorUnits;
+                do {
+                    digits[--position] = (byte) ('0' + value % 10);
+                    value /= 10;
+                    if (position == digits.length - 2) {
+                        digits[--position] = '.';
+                    }
+                } while (value > 0 || position > digits.length - 4);
+                out.put(digits, position, digits.length - position);
+            }
+        }
+    }
+
+    /**
+     * Mutable payment links builder.
+     */
+    public static final class Builder {
+        private String baseUrl;
+        private SignatureGenerator generator;
+        private String apiKey;
+        private Instant nonce;
+        private boolean header;
+        private RejectedLinkHandler handler;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int bufferSize = 1024 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets URL of payment page links point to, may already contain query parameters.
+         *
+         * @param value Base URL.
+         * @return Builder instance.
+         */
+        public Builder baseUrl(String value) {
+            Objects.requireNonNull(value, "baseUrl");
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Empty base URL");
+            }
+            this.baseUrl = value;
+            return this;
+        }
+
+        /**
+         * Signs links with given signature generator.
+         *
+         * @param value Signature generator.
+         * @return Builder instance.
+         */
+        public Builder signWith(SignatureGenerator value) {
+            this.generator = Objects.requireNonNull(value, "generator");
+            return this;
+        }
+
+        /**
+         * Sets API key added to every link, none by default.
+         *
+         * @param value API key.
+         * @return Builder instance.
+         */
+        public Builder apiKey(String value) {
+            this.apiKey = Objects.requireNonNull(value, "apiKey");
+            return this;
+        }
+
+        /**
+         * Sets timestamp nonce of all links, start of generation by default.
+         *
+         * @param value Timestamp nonce, fractions of second are dropped.
+         * @return Builder instance.
+         */
+        public Builder nonce(Instant value) {
+            this.nonce = Instant.ofEpochSecond(Objects.requireNonNull(value, "nonce").getEpochSecond());
+            return this;
+        }
+
+        /**
+         * Sets whether first input line is a header to skip, false by default.
+         *
+         * @param value Whether input has header.
+         * @return Builder instance.
+         */
+        public Builder header(boolean value) {
+            this.header = value;
+            return this;
+        }
+
+        /**
+         * Sets receiver of rejected link specs, none by default.
+         *
+         * @param value Rejected link handler.
+         * @return Builder instance.
+         */
+        public Builder onRejected(RejectedLinkHandler value) {
+            this.handler = Objects.requireNonNull(value, "handler");
+            return this;
+        }
+
+        /**
+         * Sets amount of signing threads, available processors by default.
+         * With one thread links are signed on calling thread.
+         *
+         * @param value Amount of threads.
+         * @return Builder instance.
+         */
+        public Builder threads(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect amount of threads " + value);
+            }
+            this.threads = value;
+            return this;
+        }
+
+        /**
+         * Sets size of direct output buffers, two per thread, 1 MiB by default.
+         * Input is read in chunks of quarter the size.
+         *
+         * @param value Buffer size in bytes.
+         * @return Builder instance.
+         */
+        public Builder bufferSize(int value) {
+            if (value < 1024) {
+                throw new IllegalArgumentException("Incorrect buffer size " + value);
+            }
+            this.bufferSize = value;
+            return this;
+        }
+
+        /**
+         * @return Configured payment links generation.
+         */
+        public PaymentLinks build() {
+            if (baseUrl == null) {
+                throw new IllegalStateException("Base URL not provided");
+            }
+            if (generator == null) {
+                throw new IllegalStateException("Signature generator not provided");
+            }
+            return new PaymentLinks(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureGeneratorRegistry;
+import eu.genome.fpx.dto.Callback;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Command line entry point of {@link Reconciliation}.
+ * <p>
+ * Usage: {@code ReconcileCommand (--secret <secret> | --secrets <file>) [--threads <n>] [--output <file>] <input>}.
+ * Secrets file is a properties file of {@code apiKey=secret} pairs.
+ * Rejected records are printed as they are found, followed by the report.
+ * Exits with 0 if all records are valid, 1 if some were rejected and 2 on usage or read error.
+ */
+public final class ReconcileCommand {
+    private static final String USAGE = "Usage: ReconcileCommand (--secret <secret> | --secrets <file>)"
+            + " [--threads <n>] [--output <file>] <input>";
+
+    private ReconcileCommand() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs reconciliation command.
+     *
+     * @param args Command line arguments.
+     * @param out  Report stream, used unless output file is given.
+     * @param err  Error stream.
+     * @return Exit code.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Reconciliation.Builder builder = Reconciliation.builder();
+        Path input = null;
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--secret":
+                        builder.verifyWith(new SignatureGenerator(value(args, ++i)));
+                        break;
+                    case "--secrets":
+                        builder.verifyWith(registry(Paths.get(value(args, ++i))));
+                        break;
+                    case "--threads":
+                        builder.threads(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--output":
+                        output = Paths.get(value(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || input != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        input = Paths.get(args[i]);
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("Input file not provided");
+            }
+        } catch (IllegalArgumentException | IllegalStateException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        try (Writer writer = output == null
+                ? new OutputStreamWriter(out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            ReconciliationReport report = builder
+                    .onRejected((offset, status, callback) -> rejected(writer, offset, status, callback))
+                    .build()
+                    .run(input);
+            report.writeTo(writer);
+            writer.flush();
+            return report.getCount(RecordStatus.VALID) == report.getRecordCount() ? 0 : 1;
+        } catch (IllegalStateException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Reconciliation failed: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    /**
+     * Loads API key secrets into registry.
+     *
+     * @param file Properties file of {@code apiKey=secret} pairs.
+     * @return Signature generator registry.
+     * @throws IOException On read error.
+     */
+    private static SignatureGeneratorRegistry registry(Path file) throws IOException {
+        Properties secrets = new Properties();
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            secrets.load(reader);
+        }
+        return new SignatureGeneratorRegistry(secrets::getProperty, Math.max(1, secrets.size()), Duration.ZERO);
+    }
+
+    private static void rejected(Writer writer, long offset, RecordStatus status, Callback callback) {
+        StringBuilder line = new StringBuilder(96).append(status).append(" offset=").append(offset);
+        if (callback != null && status == RecordStatus.INVALID_SIGNATURE) {
+            line.append(" transactionId=").append(callback.getTransactionId());
+            line.append(" apiKey=").append(callback.getAPIKey());
+        }
+        line.append('\n');
+        synchronized (writer) {
+            try {
+                writer.write(line.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
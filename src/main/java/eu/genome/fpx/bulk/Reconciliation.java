@@ -0,0 +1,344 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureGeneratorRegistry;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackView;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Bulk re-verification and aggregation of archived callbacks stored as newline-delimited JSON.
+ * Input file is memory-mapped in bounded windows and split on line boundaries across worker threads,
+ * every worker parses records into its own reusable buffer with {@link CallbackView}.
+ * Rejected records are streamed to {@link RejectedRecordHandler} as they are found, so memory use
+ * does not depend on input size.
+ * <p>
+ * Instances are immutable and may run several reconciliations concurrently.
+ */
+public final class Reconciliation {
+    /**
+     * Smallest part of the file worth a thread of its own.
+     */
+    static final int MIN_PART = 64 * 1024;
+
+    private final Predicate<Callback> verification;
+    private final RejectedRecordHandler handler;
+    private final int threads;
+    private final int window;
+
+    private Reconciliation(Builder builder) {
+        this.verification = builder.verification;
+        this.handler = builder.handler;
+        this.threads = builder.threads;
+        this.window = builder.window;
+    }
+
+    /**
+     * @return New reconciliation builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reconciles given newline-delimited JSON file, blank lines are skipped.
+     *
+     * @param input Input file.
+     * @return Aggregated report.
+     * @throws IOException On read error or if a single line exceeds mapping window.
+     */
+    public ReconciliationReport run(Path input) throws IOException {
+        Objects.requireNonNull(input, "input");
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = split(channel, size, (int) Math.max(1, Math.min(threads, size / MIN_PART)));
+
+            ReconciliationReport report = new ReconciliationReport();
+            if (bounds.length == 2) {
+                report.merge(new Worker(channel, bounds[0], bounds[1]).call());
+                return report;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(bounds.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "fpx-reconciliation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<ReconciliationReport>> parts = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    parts.add(executor.submit(new Worker(channel, bounds[i], bounds[i + 1])));
+                }
+                for (Future<ReconciliationReport> part : parts) {
+                    report.merge(part.get());
+                }
+                return report;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Reconciliation interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits file into given amount of parts ending right after a line feed.
+     *
+     * @param channel File channel.
+     * @param size    File size.
+     * @param parts   Desired amount of parts.
+     * @return Part boundaries, first is 0 and last is file size, empty parts are dropped.
+     * @throws IOException On read error.
+     */
+    private static long[] split(FileChannel channel, long size, int parts) throws IOException {
+        long[] bounds = new long[parts + 1];
+        int count = 1;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        for (int i = 1; i < parts; i++) {
+            long bound = Math.max(bounds[count - 1], size / parts * i);
+            bound = bound == 0 ? 0 : lineEnd(channel, bound - 1, size, probe);
+            if (bound > bounds[count - 1] && bound < size) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * @return Offset right after first line feed at or after given offset, or file size.
+     */
+    private static long lineEnd(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from;
+        while (position < size) {
+            ((Buffer) probe).clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Reconciles one part of the file with its own reusable state.
+     */
+    private final class Worker implements Callable<ReconciliationReport> {
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final ReconciliationReport report = new ReconciliationReport();
+        private byte[] line = new byte[4096];
+
+        private Worker(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public ReconciliationReport call() throws IOException {
+            long position = from;
+            while (position < to) {
+                long size = Math.min(window, to - position);
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                int consumed = lines(map, (int) size, position, position + size == to);
+                if (consumed == 0) {
+                    throw new IOException("Line at offset " + position + " exceeds " + window + " bytes");
+                }
+                position += consumed;
+            }
+            return report;
+        }
+
+        /**
+         * Processes complete lines of mapped window.
+         *
+         * @param map    Mapped window.
+         * @param size   Window size.
+         * @param offset Window offset in file.
+         * @param last   Whether window ends the part, so trailing line without line feed is complete.
+         * @return Amount of consumed bytes.
+         */
+        private int lines(MappedByteBuffer map, int size, long offset, boolean last) {
+            int start = 0;
+            int length = 0;
+            for (int i = 0; i < size; i++) {
+                byte b = map.get(i);
+                if (b == '\n') {
+                    record(offset + start, length);
+                    start = i + 1;
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = b;
+                }
+            }
+            if (last && start < size) {
+                record(offset + start, length);
+                return size;
+            }
+            return start;
+        }
+
+        private void record(long offset, int length) {
+            while (length > 0 && (line[length - 1] == '\r' || line[length - 1] == ' ' || line[length - 1] == '\t')) {
+                length--;
+            }
+            if (length == 0) {
+                return;
+            }
+
+            CallbackView callback = null;
+            RecordStatus status;
+            try {
+                callback = CallbackView.of(line, 0, length);
+                if (callback == null) {
+                    status = RecordStatus.MALFORMED;
+                } else if (verification.test(callback)) {
+                    status = RecordStatus.VALID;
+                    report.add(callback.getTransactionStatus(), callback.getPaymentMethodType(),
+                            callback.getCurrencyISO(), callback.getAmount());
+                } else {
+                    status = RecordStatus.INVALID_SIGNATURE;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Malformed JSON, malformed field values, missing mandatory fields
+                status = RecordStatus.MALFORMED;
+            }
+            report.count(status);
+            if (status != RecordStatus.VALID && handler != null) {
+                handler.rejected(offset, status, callback);
+            }
+        }
+    }
+
+    /**
+     * Mutable reconciliation builder.
+     */
+    public static final class Builder {
+        private Predicate<Callback> verification;
+        private RejectedRecordHandler handler;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int window = 256 * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Verifies callbacks with given signature generator.
+         *
+         * @param generator Signature generator.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(SignatureGenerator generator) {
+            Objects.requireNonNull(generator, "generator");
+            return verifyWith(callback -> callback.verify(generator));
+        }
+
+        /**
+         * Verifies callbacks with generators resolved by API key.
+         *
+         * @param registry Signature generator registry.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(SignatureGeneratorRegistry registry) {
+            Objects.requireNonNull(registry, "registry");
+            return verifyWith(callback -> callback.verify(registry));
+        }
+
+        /**
+         * Verifies callbacks with given verification.
+         *
+         * @param value Callback verification, called from worker threads.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(Predicate<Callback> value) {
+            this.verification = Objects.requireNonNull(value, "verification");
+            return this;
+        }
+
+        /**
+         * Sets receiver of rejected records, none by default.
+         *
+         * @param value Rejected record handler.
+         * @return Builder instance.
+         */
+        public Builder onRejected(RejectedRecordHandler value) {
+            this.handler = Objects.requireNonNull(value, "handler");
+            return this;
+        }
+
+        /**
+         * Sets amount of worker threads, available processors by default. Files smaller than 64 KiB
+         * per thread are split into fewer parts.
+         *
+         * @param value Amount of threads.
+         * @return Builder instance.
+         */
+        public Builder threads(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect amount of threads " + value);
+            }
+            this.threads = value;
+            return this;
+        }
+
+        /**
+         * Sets size of file window mapped at once, also maximal line length.
+         *
+         * @param value Window size in bytes.
+         * @return Builder instance.
+         */
+        Builder window(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect window size " + value);
+            }
+            this.window = value;
+            return this;
+        }
+
+        /**
+         * @return Configured reconciliation.
+         */
+        public Reconciliation build() {
+            if (verification == null) {
+                throw new IllegalStateException("Callback verification not provided");
+            }
+            return new Reconciliation(this);
+        }
+    }
+}
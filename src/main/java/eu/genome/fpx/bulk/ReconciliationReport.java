@@ -0,0 +1,132 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.domain.PaymentMethodType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregated reconciliation result. Totals cover records with valid signature only.
+ */
+public final class ReconciliationReport {
+    private final long[] counts = new long[RecordStatus.values().length];
+    private final Map<TransactionStatus, Totals> statuses = new EnumMap<>(TransactionStatus.class);
+    private final Map<PaymentMethodType, Totals> methods = new EnumMap<>(PaymentMethodType.class);
+    private final Map<String, Totals> currencies = new TreeMap<>();
+
+    ReconciliationReport() {
+    }
+
+    /**
+     * Counts record.
+     *
+     * @param status Record status.
+     */
+    void count(RecordStatus status) {
+        counts[status.ordinal()]++;
+    }
+
+    /**
+     * Adds valid callback data to totals.
+     *
+     * @param status   Transaction status, optional.
+     * @param method   Payment method, optional.
+     * @param currency Currency ISO code.
+     * @param amount   Amount, optional.
+     */
+    void add(TransactionStatus status, PaymentMethodType method, String currency, BigDecimal amount) {
+        if (status != null) {
+            statuses.computeIfAbsent(status, k -> new Totals()).add(currency, amount);
+        }
+        if (method != null) {
+            methods.computeIfAbsent(method, k -> new Totals()).add(currency, amount);
+        }
+        currencies.computeIfAbsent(currency, k -> new Totals()).add(currency, amount);
+    }
+
+    /**
+     * Merges partial report into this one.
+     *
+     * @param other Partial report.
+     */
+    void merge(ReconciliationReport other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        other.statuses.forEach((key, totals) -> statuses.computeIfAbsent(key, k -> new Totals()).merge(totals));
+        other.methods.forEach((key, totals) -> methods.computeIfAbsent(key, k -> new Totals()).merge(totals));
+        other.currencies.forEach((key, totals) -> currencies.computeIfAbsent(key, k -> new Totals()).merge(totals));
+    }
+
+    /**
+     * @return Amount of processed records.
+     */
+    public long getRecordCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param status Record status.
+     * @return Amount of records with given status.
+     */
+    public long getCount(RecordStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    /**
+     * @return Totals of valid callbacks by transaction status.
+     */
+    public Map<TransactionStatus, Totals> getTransactionStatusTotals() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    /**
+     * @return Totals of valid callbacks by payment method.
+     */
+    public Map<PaymentMethodType, Totals> getPaymentMethodTotals() {
+        return Collections.unmodifiableMap(methods);
+    }
+
+    /**
+     * @return Totals of valid callbacks by currency ISO code, sorted by currency.
+     */
+    public Map<String, Totals> getCurrencyTotals() {
+        return Collections.unmodifiableMap(currencies);
+    }
+
+    /**
+     * Writes human readable report.
+     *
+     * @param out Target.
+     * @throws IOException On write error.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append("records ").append(Long.toString(getRecordCount())).append('\n');
+        for (RecordStatus status : RecordStatus.values()) {
+            out.append(status.name()).append(' ').append(Long.toString(getCount(status))).append('\n');
+        }
+        write(out, "transaction status", statuses);
+        write(out, "payment method", methods);
+        write(out, "currency", currencies);
+    }
+
+    private static void write(Appendable out, String title, Map<?, Totals> totals) throws IOException {
+        out.append('\n').append("# ").append(title).append('\n');
+        for (Map.Entry<?, Totals> entry : totals.entrySet()) {
+            out.append(String.valueOf(entry.getKey())).append(' ').append(Long.toString(entry.getValue().getCount()));
+            for (Map.Entry<String, BigDecimal> amount : entry.getValue().getAmounts().entrySet()) {
+                out.append(' ').append(amount.getValue().toPlainString()).append(' ').append(amount.getKey());
+            }
+            out.append('\n');
+        }
+    }
+}
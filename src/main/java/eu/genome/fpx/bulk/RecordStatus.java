@@ -0,0 +1,21 @@
+package eu.genome.fpx.bulk;
+
+/**
+ * Reconciliation result of a single callback record.
+ */
+public enum RecordStatus {
+    /**
+     * Signature is valid.
+     */
+    VALID,
+
+    /**
+     * Signature is invalid or API key is unknown.
+     */
+    INVALID_SIGNATURE,
+
+    /**
+     * Record could not be parsed or lacks mandatory data.
+     */
+    MALFORMED;
+}
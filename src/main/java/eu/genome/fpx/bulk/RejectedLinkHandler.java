@@ -0,0 +1,17 @@
+package eu.genome.fpx.bulk;
+
+/**
+ * Receiver of link specs that could not be signed.
+ * Called from link generation worker threads, implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface RejectedLinkHandler {
+    /**
+     * Handles rejected link spec.
+     *
+     * @param line  Line number of spec in input, starting from 1.
+     * @param spec  Spec line as read.
+     * @param error Reason of rejection.
+     */
+    void rejected(long line, String spec, RuntimeException error);
+}
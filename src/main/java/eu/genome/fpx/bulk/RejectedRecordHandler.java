@@ -0,0 +1,19 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.dto.Callback;
+
+/**
+ * Receiver of rejected reconciliation records.
+ * Called from reconciliation worker threads, implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface RejectedRecordHandler {
+    /**
+     * Handles rejected record.
+     *
+     * @param offset   Byte offset of record line in input file.
+     * @param status   Rejection status, never {@link RecordStatus#VALID}.
+     * @param callback Record view, valid only during this call, null if record cannot be parsed.
+     */
+    void rejected(long offset, RecordStatus status, Callback callback);
+}
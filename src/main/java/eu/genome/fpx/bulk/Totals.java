@@ -0,0 +1,49 @@
+package eu.genome.fpx.bulk;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Amount of reconciled callbacks and sums of their amounts per currency.
+ * Instances are mutable only during reconciliation.
+ */
+public final class Totals {
+    private long count;
+    private final Map<String, BigDecimal> amounts = new TreeMap<>();
+
+    Totals() {
+    }
+
+    void add(String currency, BigDecimal amount) {
+        count++;
+        if (amount != null) {
+            amounts.merge(currency, amount, BigDecimal::add);
+        }
+    }
+
+    void merge(Totals other) {
+        count += other.count;
+        other.amounts.forEach((currency, amount) -> amounts.merge(currency, amount, BigDecimal::add));
+    }
+
+    /**
+     * @return Amount of callbacks.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return Sums of callback amounts by currency ISO code, sorted by currency.
+     */
+    public Map<String, BigDecimal> getAmounts() {
+        return Collections.unmodifiableMap(this.amounts);
+    }
+
+    @Override
+    public String toString() {
+        return count + " " + amounts;
+    }
+}
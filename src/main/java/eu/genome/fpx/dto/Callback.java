@@ -2,15 +2,23 @@ package eu.genome.fpx.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.genome.domain.TransactionStatus;
 import eu.genome.fpx.SignatureBuilder;
 import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureGeneratorRegistry;
 import eu.genome.fpx.SignatureMode;
 import eu.genome.fpx.domain.PaymentMethodType;
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.Operation;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Currency;
 import java.util.Locale;
@@ -18,7 +26,8 @@ import java.util.Map;
 
 /**
  * Jackson-bound implementation of callback DTO.
- * In order to use this DTO, Jackson library must be on classpath.
+ * In order to use Jackson parsing methods, Jackson library must be on classpath,
+ * byte and stream parsing methods use {@link CallbackParser} and have no dependencies.
  */
 @JsonRootName("callback")
 public class Callback {
@@ -30,7 +39,7 @@ public class Callback {
      * @throws JsonProcessingException On processing error.
      */
     public static Callback parseJSON(String data) throws JsonProcessingException {
-        return parse(new ObjectMapper(), data);
+        return parse(DefaultMapper.INSTANCE, data);
     }
 
     /**
@@ -42,7 +51,47 @@ public class Callback {
      * @throws JsonProcessingException On processing error.
      */
     public static Callback parse(ObjectMapper mapper, String data) throws JsonProcessingException {
-        return mapper.readValue(data, Callback.class);
+        return Metrics.record(Operation.PARSE, null, () -> mapper.readValue(data, Callback.class));
+    }
+
+    /**
+     * Parses given UTF-8 JSON data without Jackson.
+     *
+     * @param data Data to parse.
+     * @return Callback DTO object.
+     * @throws IOException On malformed data.
+     */
+    public static Callback parse(byte[] data) throws IOException {
+        return Metrics.record(Operation.PARSE, null, () -> CallbackParser.local().parse(data));
+    }
+
+    /**
+     * Parses remaining UTF-8 JSON data of given buffer without Jackson.
+     *
+     * @param data Data to parse, buffer position is not changed.
+     * @return Callback DTO object.
+     * @throws IOException On malformed data.
+     */
+    public static Callback parse(ByteBuffer data) throws IOException {
+        return Metrics.record(Operation.PARSE, null, () -> CallbackParser.local().parse(data));
+    }
+
+    /**
+     * Parses UTF-8 JSON data from given stream without Jackson.
+     *
+     * @param data Stream to parse, not closed.
+     * @return Callback DTO object.
+     * @throws IOException On read error or malformed data.
+     */
+    public static Callback parse(InputStream data) throws IOException {
+        return Metrics.record(Operation.PARSE, null, () -> CallbackParser.local().parse(data));
+    }
+
+    /**
+     * Lazily constructed shared Jackson mapper, thread-safe once configured.
+     */
+    private static final class DefaultMapper {
+        private static final ObjectMapper INSTANCE = new ObjectMapper();
     }
 
     // General part
@@ -87,7 +136,7 @@ public class Callback {
 
     // Custom fields
     @JsonProperty("custom")
-    private Map<String, String> custom;
+    private CustomFields custom;
 
     public boolean isTest() {
         return this.test;
@@ -137,6 +186,14 @@ public class Callback {
         return this.amount;
     }
 
+    /**
+     * @return Amount in minor units (cents) rounded half-up, the same way it is signed.
+     * @throws ArithmeticException If amount does not fit into long.
+     */
+    public long getAmountMinorUnits() {
+        return getAmount().setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
     public String getCurrencyISO() {
         return this.currency.toUpperCase(Locale.ROOT);
     }
@@ -153,6 +210,18 @@ public class Callback {
         return this.userId;
     }
 
+    /**
+     * @return Custom fields, null if absent.
+     */
+    public CustomFields getCustom() {
+        return this.custom;
+    }
+
+    @JsonSetter("custom")
+    private void setCustom(Map<String, String> custom) {
+        this.custom = custom == null ? null : CustomFields.of(custom);
+    }
+
     /**
      * Verifies signature using given signature generator.
      *
@@ -160,7 +229,18 @@ public class Callback {
      * @return True if signature for this callback is correct.
      */
     public boolean verify(String secret) {
-        return this.verify(new SignatureGenerator(secret));
+        return signature().verify(secret, getSignature());
+    }
+
+    /**
+     * Verifies signature using generator registered for API key of this callback.
+     * During secret rotation grace period previous secret is accepted as well.
+     *
+     * @param registry Signature generator registry to use.
+     * @return True if signature for this callback is correct, false if API key is unknown.
+     */
+    public boolean verify(SignatureGeneratorRegistry registry) {
+        return registry.verify(getAPIKey(), this::verify);
     }
 
     /**
@@ -170,12 +250,86 @@ public class Callback {
      * @return True if signature for this callback is correct.
      */
     public boolean verify(SignatureGenerator generator) {
+        return signature().verify(generator, getSignature());
+    }
+
+    /**
+     * @return Currency code as received, may be null or not upper-cased.
+     */
+    String getCurrencyCode() {
+        return this.currency;
+    }
+
+    /**
+     * Sets value of field read by {@link CallbackParser} or {@link CallbackCodec}.
+     *
+     * @param field Field index, one of {@link CallbackParser} field constants.
+     * @param value Field value of matching type.
+     */
+    void set(int field, Object value) {
+        switch (field) {
+            case CallbackParser.IS_TEST:
+                this.test = (Boolean) value;
+                break;
+            case CallbackParser.API_KEY:
+                this.pixelKey = (String) value;
+                break;
+            case CallbackParser.API_SIGNATURE:
+                this.pixelSignature = (String) value;
+                break;
+            case CallbackParser.SESSION_ID:
+                this.sessionId = (String) value;
+                break;
+            case CallbackParser.TRANSACTION_ID:
+                this.transactionId = (Long) value;
+                break;
+            case CallbackParser.TRANSACTION_STATUS:
+                this.transactionStatus = (TransactionStatus) value;
+                break;
+            case CallbackParser.TRANSACTION_ERROR_CODE:
+                this.transactionErrorCode = (Long) value;
+                break;
+            case CallbackParser.TRANSACTION_TIME:
+                this.transactionTime = (Long) value;
+                break;
+            case CallbackParser.CARD_TOKEN:
+                this.cardToken = (String) value;
+                break;
+            case CallbackParser.BILL_TOKEN:
+                this.billToken = (String) value;
+                break;
+            case CallbackParser.PAYMENT_METHOD_TYPE:
+                this.paymentMethodType = (PaymentMethodType) value;
+                break;
+            case CallbackParser.AMOUNT:
+                this.amount = (BigDecimal) value;
+                break;
+            case CallbackParser.CURRENCY:
+                this.currency = (String) value;
+                break;
+            case CallbackParser.ORDER_ID:
+                this.orderId = (String) value;
+                break;
+            case CallbackParser.USER_ID:
+                this.userId = (String) value;
+                break;
+            case CallbackParser.CUSTOM:
+                this.custom = (CustomFields) value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+    /**
+     * @return Signature builder holding signed fields of this callback.
+     */
+    private SignatureBuilder signature() {
         return new SignatureBuilder()
                 .mode(SignatureMode.CALLBACK)
                 .sessionId(getSessionId())
                 .transactionId(getTransactionId())
-                .amount(getAmount().doubleValue(), getCurrencyISO())
-                .orderId(orderId)
-                .verify(generator, getSignature());
+                .amount(getAmount(), getCurrencyISO())
+                .orderId(getOrderId());
     }
 }
@@ -0,0 +1,440 @@
+package eu.genome.fpx.dto;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.domain.PaymentMethodType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Compact binary codec of {@link Callback} DTO for internal queues and storage.
+ * <p>
+ * Record is a version byte followed by varint length of the body. Body starts with varint
+ * bit mask of present fields and the test flag, followed by zigzag varint transaction identifier,
+ * error code and time, and then present fields in declaration order: enums as varint ordinals,
+ * amount as zigzag varint scale and unscaled value, strings as varint UTF-8 length and bytes,
+ * custom fields as varint count of key and value pairs, each encoded as varint length plus one
+ * ({@code 0} for null) and bytes. Absent fields take no bytes.
+ * <p>
+ * Newer versions may only append fields to the body, so records of any version are decoded,
+ * fields unknown to this version are skipped with the rest of the body.
+ * <p>
+ * Codec instances keep scratch buffer between calls and are not thread-safe,
+ * reuse one instance per thread.
+ */
+public final class CallbackCodec {
+    /**
+     * Version written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    // Bits of present fields mask
+    private static final int TEST = 1;
+    private static final int API_KEY = 1 << 1;
+    private static final int API_SIGNATURE = 1 << 2;
+    private static final int SESSION_ID = 1 << 3;
+    private static final int TRANSACTION_STATUS = 1 << 4;
+    private static final int CARD_TOKEN = 1 << 5;
+    private static final int BILL_TOKEN = 1 << 6;
+    private static final int PAYMENT_METHOD_TYPE = 1 << 7;
+    private static final int AMOUNT = 1 << 8;
+    private static final int CURRENCY = 1 << 9;
+    private static final int ORDER_ID = 1 << 10;
+    private static final int USER_ID = 1 << 11;
+    private static final int CUSTOM = 1 << 12;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final PaymentMethodType[] METHODS = PaymentMethodType.values();
+
+    private byte[] scratch = new byte[256];
+    private int size;
+    private ByteBuffer source;
+    private int position;
+    private int end;
+
+    /**
+     * Computes encoded length of given callback.
+     *
+     * @param callback Callback to encode.
+     * @return Amount of bytes written by {@link #encode(Callback, ByteBuffer)}.
+     */
+    public int encodedLength(Callback callback) {
+        int body = bodyLength(callback);
+        return 1 + varintLength(body) + body;
+    }
+
+    /**
+     * Encodes given callback at position of target buffer, advancing it.
+     *
+     * @param callback Callback to encode.
+     * @param target   Target buffer.
+     * @return Amount of written bytes.
+     * @throws BufferOverflowException If record does not fit into remaining bytes, nothing is written.
+     * @throws IllegalArgumentException If unscaled amount does not fit into long.
+     */
+    public int encode(Callback callback, ByteBuffer target) {
+        // Body is written into scratch first, so its length prefix is known without extra pass
+        size = 0;
+        putVarint(mask(callback));
+        putVarint(zigzag(callback.getTransactionId()));
+        putVarint(zigzag(callback.getTransactionErrorCode()));
+        putVarint(zigzag(callback.getTransactionTime().getEpochSecond()));
+        putString(callback.getAPIKey());
+        putString(callback.getSignature());
+        putString(callback.getSessionId());
+        if (callback.getTransactionStatus() != null) {
+            putVarint(callback.getTransactionStatus().ordinal());
+        }
+        putString(callback.getCardToken());
+        putString(callback.getBillToken());
+        if (callback.getPaymentMethodType() != null) {
+            putVarint(callback.getPaymentMethodType().ordinal());
+        }
+        BigDecimal amount = callback.getAmount();
+        if (amount != null) {
+            putVarint(zigzag(amount.scale()));
+            putVarint(zigzag(unscaled(amount)));
+        }
+        putString(callback.getCurrencyCode());
+        putString(callback.getOrderId());
+        putString(callback.getUserId());
+        CustomFields custom = callback.getCustom();
+        if (custom != null) {
+            putVarint(custom.size());
+            for (int i = 0; i < custom.size(); i++) {
+                putNullableString(custom.key(i));
+                putNullableString(custom.value(i));
+            }
+        }
+        int body = size;
+        int length = 1 + varintLength(body) + body;
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        target.put((byte) VERSION);
+        for (long value = body; ; value >>>= 7) {
+            if ((value & ~0x7FL) == 0) {
+                target.put((byte) value);
+                break;
+            }
+            target.put((byte) ((value & 0x7F) | 0x80));
+        }
+        target.put(scratch, 0, body);
+        return length;
+    }
+
+    /**
+     * Decodes callback at position of source buffer, advancing it past the record.
+     *
+     * @param source Source buffer.
+     * @return Callback DTO object.
+     * @throws IOException On truncated or malformed record, buffer position is not changed.
+     */
+    public Callback decode(ByteBuffer source) throws IOException {
+        Objects.requireNonNull(source, "source");
+        this.source = source;
+        this.position = source.position();
+        this.end = source.limit();
+        try {
+            int version = readByte();
+            if (version < 1) {
+                throw new IOException("Unsupported callback record version " + version);
+            }
+            int body = readInt();
+            if (body > end - position) {
+                throw new IOException("Truncated callback record, " + body + " bytes expected");
+            }
+            end = position + body;
+            Callback callback = new Callback();
+            readBody(callback);
+            ((Buffer) source).position(end);
+            return callback;
+        } finally {
+            this.source = null;
+        }
+    }
+
+    private void readBody(Callback callback) throws IOException {
+        int mask = readInt();
+        callback.set(CallbackParser.IS_TEST, (mask & TEST) != 0);
+        callback.set(CallbackParser.TRANSACTION_ID, unzigzag(readLong()));
+        callback.set(CallbackParser.TRANSACTION_ERROR_CODE, unzigzag(readLong()));
+        callback.set(CallbackParser.TRANSACTION_TIME, unzigzag(readLong()));
+        callback.set(CallbackParser.API_KEY, (mask & API_KEY) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.API_SIGNATURE, (mask & API_SIGNATURE) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.SESSION_ID, (mask & SESSION_ID) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.TRANSACTION_STATUS, (mask & TRANSACTION_STATUS) == 0 ? null : readEnum(STATUSES));
+        callback.set(CallbackParser.CARD_TOKEN, (mask & CARD_TOKEN) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.BILL_TOKEN, (mask & BILL_TOKEN) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.PAYMENT_METHOD_TYPE, (mask & PAYMENT_METHOD_TYPE) == 0 ? null : readEnum(METHODS));
+        if ((mask & AMOUNT) != 0) {
+            long scale = unzigzag(readLong());
+            if (scale != (int) scale) {
+                throw new IOException("Amount scale " + scale + " out of range");
+            }
+            callback.set(CallbackParser.AMOUNT, BigDecimal.valueOf(unzigzag(readLong()), (int) scale));
+        }
+        callback.set(CallbackParser.CURRENCY, (mask & CURRENCY) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.ORDER_ID, (mask & ORDER_ID) == 0 ? null : readString(readInt()));
+        callback.set(CallbackParser.USER_ID, (mask & USER_ID) == 0 ? null : readString(readInt()));
+        if ((mask & CUSTOM) != 0) {
+            int size = readInt();
+            // Every entry takes at least two bytes
+            if (size > (end - position) / 2) {
+                throw new IOException("Custom fields count " + size + " exceeds record");
+            }
+            CustomFields.Builder custom = new CustomFields.Builder(size);
+            for (int i = 0; i < size; i++) {
+                String key = readNullableString();
+                custom.put(key, readNullableString());
+            }
+            callback.set(CallbackParser.CUSTOM, custom.build());
+        }
+    }
+
+    private static int mask(Callback c) {
+        int mask = c.isTest() ? TEST : 0;
+        mask |= c.getAPIKey() == null ? 0 : API_KEY;
+        mask |= c.getSignature() == null ? 0 : API_SIGNATURE;
+        mask |= c.getSessionId() == null ? 0 : SESSION_ID;
+        mask |= c.getTransactionStatus() == null ? 0 : TRANSACTION_STATUS;
+        mask |= c.getCardToken() == null ? 0 : CARD_TOKEN;
+        mask |= c.getBillToken() == null ? 0 : BILL_TOKEN;
+        mask |= c.getPaymentMethodType() == null ? 0 : PAYMENT_METHOD_TYPE;
+        mask |= c.getAmount() == null ? 0 : AMOUNT;
+        mask |= c.getCurrencyCode() == null ? 0 : CURRENCY;
+        mask |= c.getOrderId() == null ? 0 : ORDER_ID;
+        mask |= c.getUserId() == null ? 0 : USER_ID;
+        mask |= c.getCustom() == null ? 0 : CUSTOM;
+        return mask;
+    }
+
+    private static int bodyLength(Callback c) {
+        int length = varintLength(mask(c))
+                + varintLength(zigzag(c.getTransactionId()))
+                + varintLength(zigzag(c.getTransactionErrorCode()))
+                + varintLength(zigzag(c.getTransactionTime().getEpochSecond()))
+                + stringLength(c.getAPIKey())
+                + stringLength(c.getSignature())
+                + stringLength(c.getSessionId())
+                + stringLength(c.getCardToken())
+                + stringLength(c.getBillToken())
+                + stringLength(c.getCurrencyCode())
+                + stringLength(c.getOrderId())
+                + stringLength(c.getUserId());
+        if (c.getTransactionStatus() != null) {
+            length += varintLength(c.getTransactionStatus().ordinal());
+        }
+        if (c.getPaymentMethodType() != null) {
+            length += varintLength(c.getPaymentMethodType().ordinal());
+        }
+        BigDecimal amount = c.getAmount();
+        if (amount != null) {
+            length += varintLength(zigzag(amount.scale())) + varintLength(zigzag(unscaled(amount)));
+        }
+        CustomFields custom = c.getCustom();
+        if (custom != null) {
+            length += varintLength(custom.size());
+            for (int i = 0; i < custom.size(); i++) {
+                length += nullableStringLength(custom.key(i)) + nullableStringLength(custom.value(i));
+            }
+        }
+        return length;
+    }
+
+    private static long unscaled(BigDecimal amount) {
+        if (amount.precision() <= 18) {
+            return amount.unscaledValue().longValue();
+        }
+        try {
+            return amount.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Unscaled amount " + amount + " does not fit into long", e);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private void putVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            scratch[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[size++] = (byte) value;
+    }
+
+    private static int stringLength(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = utf8Length(value);
+        return varintLength(length) + length;
+    }
+
+    private static int nullableStringLength(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return varintLength(length + 1L) + length;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (isPair(value, i)) {
+                length += 4;
+                i++;
+            } else {
+                // Lone surrogate is replaced by '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isPair(String value, int i) {
+        return Character.isHighSurrogate(value.charAt(i))
+                && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1));
+    }
+
+    private void putString(String value) {
+        if (value != null) {
+            putVarint(utf8Length(value));
+            putChars(value);
+        }
+    }
+
+    private void putNullableString(String value) {
+        if (value == null) {
+            putVarint(0);
+        } else {
+            putVarint(utf8Length(value) + 1L);
+            putChars(value);
+        }
+    }
+
+    private void putChars(String value) {
+        ensure(value.length() * 3);
+        byte[] out = scratch;
+        int at = size;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out[at++] = (byte) c;
+            } else if (c < 0x800) {
+                out[at++] = (byte) (0xC0 | (c >> 6));
+                out[at++] = (byte) (0x80 | (c & 0x3F));
+            } else if (isPair(value, i)) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out[at++] = (byte) (0xF0 | (cp >> 18));
+                out[at++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[at++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[at++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[at++] = (byte) '?';
+            } else {
+                out[at++] = (byte) (0xE0 | (c >> 12));
+                out[at++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[at++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        size = at;
+    }
+
+    /**
+     * Grows scratch buffer to hold given amount of bytes more.
+     */
+    private void ensure(int bytes) {
+        if (scratch.length - size < bytes) {
+            scratch = Arrays.copyOf(scratch, Math.max(size + bytes, scratch.length * 2));
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (position >= end) {
+            throw new IOException("Truncated callback record");
+        }
+        return source.get(position++) & 0xFF;
+    }
+
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Length " + value + " out of range");
+        }
+        return (int) value;
+    }
+
+    private <T extends Enum<T>> T readEnum(T[] values) throws IOException {
+        int ordinal = readInt();
+        if (ordinal >= values.length) {
+            throw new IOException("Enum ordinal " + ordinal + " out of range");
+        }
+        return values[ordinal];
+    }
+
+    private String readNullableString() throws IOException {
+        int length = readInt();
+        return length == 0 ? null : readString(length - 1);
+    }
+
+    private String readString(int length) throws IOException {
+        if (length > end - position) {
+            throw new IOException("Truncated callback record, string of " + length + " bytes");
+        }
+        String value;
+        if (source.hasArray()) {
+            value = new String(source.array(), source.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = source.get(position + i);
+            }
+            value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        position += length;
+        return value;
+    }
+}
@@ -0,0 +1,749 @@
+package eu.genome.fpx.dto;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.domain.PaymentMethodType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Streaming UTF-8 JSON parser of {@link Callback} DTO.
+ * Does not require Jackson and does not use reflection, binding rules match
+ * {@link Callback#parseJSON(String)} except that unknown fields are skipped.
+ * <p>
+ * Parser instances keep scratch buffers between calls and are not thread-safe,
+ * reuse one instance per thread.
+ */
+public final class CallbackParser {
+    // Indexes of known fields in FIELDS
+    static final int IS_TEST = 0;
+    static final int API_KEY = 1;
+    static final int API_SIGNATURE = 2;
+    static final int SESSION_ID = 3;
+    static final int TRANSACTION_ID = 4;
+    static final int TRANSACTION_STATUS = 5;
+    static final int TRANSACTION_ERROR_CODE = 6;
+    static final int TRANSACTION_TIME = 7;
+    static final int CARD_TOKEN = 8;
+    static final int BILL_TOKEN = 9;
+    static final int PAYMENT_METHOD_TYPE = 10;
+    static final int AMOUNT = 11;
+    static final int CURRENCY = 12;
+    static final int ORDER_ID = 13;
+    static final int USER_ID = 14;
+    static final int CUSTOM = 15;
+
+    private static final String[] FIELDS = {
+            "isTest",
+            "apiKey",
+            "apiSignature",
+            "sessionId",
+            "transactionId",
+            "transactionStatus",
+            "transactionErrorCode",
+            "transactionTimeUnixSeconds",
+            "cardToken",
+            "billToken",
+            "paymentMethodType",
+            "amount",
+            "currency",
+            "orderId",
+            "userId",
+            "custom",
+    };
+    /**
+     * Maximal nesting of skipped values, deeper ones are rejected instead of overflowing the stack.
+     */
+    static final int MAX_DEPTH = 64;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final PaymentMethodType[] METHODS = PaymentMethodType.values();
+    private static final ThreadLocal<CallbackParser> LOCAL = ThreadLocal.withInitial(CallbackParser::new);
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private InputStream stream;
+    private ByteBuffer source;
+    private byte[] streamBuffer;
+    private char[] chars = new char[128];
+    private int charsLength;
+
+    /**
+     * Parses callback from given UTF-8 JSON data.
+     *
+     * @param data Data to parse.
+     * @return Callback DTO object or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public Callback parse(byte[] data) throws IOException {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parses callback from given region of UTF-8 JSON data.
+     *
+     * @param data   Data to parse.
+     * @param offset Region offset.
+     * @param length Region length.
+     * @return Callback DTO object or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public Callback parse(byte[] data, int offset, int length) throws IOException {
+        Objects.requireNonNull(data, "data");
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " out of " + data.length);
+        }
+        return parse(data, offset, offset + length, null, null);
+    }
+
+    /**
+     * Parses callback from remaining bytes of given buffer, buffer position is not changed.
+     *
+     * @param data Data to parse.
+     * @return Callback DTO object or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public Callback parse(ByteBuffer data) throws IOException {
+        Objects.requireNonNull(data, "data");
+        if (data.hasArray()) {
+            int offset = data.arrayOffset() + data.position();
+            return parse(data.array(), offset, offset + data.remaining(), null, null);
+        }
+        return parse(streamBuffer(), 0, 0, null, data.duplicate());
+    }
+
+    /**
+     * Parses callback from given stream of UTF-8 JSON data.
+     * Stream is read in chunks, so bytes following callback object may be consumed.
+     * Stream is not closed.
+     *
+     * @param data Stream to parse.
+     * @return Callback DTO object or null if data is JSON null.
+     * @throws IOException On read error or malformed data.
+     */
+    public Callback parse(InputStream data) throws IOException {
+        Objects.requireNonNull(data, "data");
+        return parse(streamBuffer(), 0, 0, data, null);
+    }
+
+    /**
+     * @return Scratch buffer for streamed input.
+     */
+    private byte[] streamBuffer() {
+        if (streamBuffer == null) {
+            streamBuffer = new byte[4096];
+        }
+        return streamBuffer;
+    }
+
+    private Callback parse(byte[] data, int from, int to, InputStream in, ByteBuffer buf) throws IOException {
+        this.buffer = data;
+        this.position = from;
+        this.limit = to;
+        this.stream = in;
+        this.source = buf;
+        try {
+            int c = skipWhitespace();
+            if (c == 'n') {
+                expectLiteral("null");
+                return null;
+            }
+            expect('{');
+            return readCallback();
+        } finally {
+            this.buffer = null;
+            this.stream = null;
+            this.source = null;
+        }
+    }
+
+    private Callback readCallback() throws IOException {
+        Callback callback = new Callback();
+        if (skipWhitespace() == '}') {
+            position++;
+            return callback;
+        }
+        while (true) {
+            expect('"');
+            readChars();
+            int field = field();
+            expect(':');
+            if (field < 0) {
+                skipValue(0);
+            } else {
+                readField(callback, field);
+            }
+            if (!nextMember('}')) {
+                return callback;
+            }
+        }
+    }
+
+    /**
+     * @return Parser instance owned by current thread.
+     */
+    static CallbackParser local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Reads value of known field into given callback.
+     *
+     * @param callback Callback to fill.
+     * @param field    Field index.
+     * @throws IOException On malformed data.
+     */
+    private void readField(Callback callback, int field) throws IOException {
+        callback.set(field, readValue(field));
+    }
+
+    private Object readValue(int field) throws IOException {
+        switch (field) {
+            case IS_TEST:
+                return readBoolean();
+            case API_KEY:
+            case API_SIGNATURE:
+            case SESSION_ID:
+            case CARD_TOKEN:
+            case BILL_TOKEN:
+            case CURRENCY:
+            case ORDER_ID:
+            case USER_ID:
+                return readString();
+            case TRANSACTION_ID:
+            case TRANSACTION_ERROR_CODE:
+            case TRANSACTION_TIME:
+                return readLong();
+            case TRANSACTION_STATUS:
+                return readEnum(STATUSES);
+            case PAYMENT_METHOD_TYPE:
+                return readEnum(METHODS);
+            case AMOUNT:
+                return readDecimal();
+            case CUSTOM:
+                return readCustomFields();
+            default:
+                throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+    /**
+     * Scans callback object in given region, recording value token region of every known field.
+     * Values are checked to be well-formed JSON, but not decoded.
+     *
+     * @param data    Data to scan.
+     * @param from    Region start.
+     * @param to      Region end.
+     * @param offsets Target array of value start and end offsets per known field, -1 for absent fields.
+     * @return False if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    boolean scan(byte[] data, int from, int to, int[] offsets) throws IOException {
+        Arrays.fill(offsets, -1);
+        this.buffer = data;
+        this.position = from;
+        this.limit = to;
+        try {
+            int c = skipWhitespace();
+            if (c == 'n') {
+                expectLiteral("null");
+                return false;
+            }
+            expect('{');
+            if (skipWhitespace() == '}') {
+                position++;
+                return true;
+            }
+            while (true) {
+                expect('"');
+                readChars();
+                int field = field();
+                expect(':');
+                skipWhitespace();
+                int start = position;
+                skipValue(0);
+                if (field >= 0) {
+                    // Duplicate field overrides previous one, same as full parsing
+                    offsets[field * 2] = start;
+                    offsets[field * 2 + 1] = position;
+                }
+                if (!nextMember('}')) {
+                    return true;
+                }
+            }
+        } finally {
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Decodes single known field value previously located by {@link #scan}.
+     *
+     * @param callback Callback to fill.
+     * @param field    Field index.
+     * @param data     Data holding the value.
+     * @param from     Value token start.
+     * @param to       Value token end.
+     * @throws IOException On malformed value.
+     */
+    void decode(Callback callback, int field, byte[] data, int from, int to) throws IOException {
+        this.buffer = data;
+        this.position = from;
+        this.limit = to;
+        try {
+            readField(callback, field);
+        } finally {
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * @return Index of field name held in char scratch or -1 for unknown field.
+     */
+    private int field() {
+        for (int i = 0; i < FIELDS.length; i++) {
+            String name = FIELDS[i];
+            if (name.length() == charsLength && matches(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(String name) {
+        for (int i = 0; i < charsLength; i++) {
+            if (chars[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consumes member separator or closing bracket.
+     *
+     * @param close Closing bracket.
+     * @return True if another member follows.
+     * @throws IOException On malformed data.
+     */
+    private boolean nextMember(char close) throws IOException {
+        int c = skipWhitespace();
+        position++;
+        if (c == ',') {
+            skipWhitespace();
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw unexpected(c);
+    }
+
+    private boolean readBoolean() throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case 't':
+                expectLiteral("true");
+                return true;
+            case 'f':
+            case 'n':
+                expectLiteral(c == 'f' ? "false" : "null");
+                return false;
+            case '"':
+                position++;
+                readChars();
+                if (charsLength == 4 && matches("true")) {
+                    return true;
+                }
+                if (charsLength == 5 && matches("false") || charsLength == 0) {
+                    return false;
+                }
+                throw new IOException("Cannot coerce \"" + new String(chars, 0, charsLength) + "\" to boolean");
+            default:
+                readNumber();
+                return new BigDecimal(chars, 0, charsLength).signum() != 0;
+        }
+    }
+
+    /**
+     * Reads string value, scalar values are coerced to their textual representation.
+     *
+     * @return String or null.
+     * @throws IOException On malformed data.
+     */
+    private String readString() throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case '"':
+                position++;
+                readChars();
+                break;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            case 't':
+                expectLiteral("true");
+                return "true";
+            case 'f':
+                expectLiteral("false");
+                return "false";
+            default:
+                readNumber();
+        }
+        return new String(chars, 0, charsLength);
+    }
+
+    private long readLong() throws IOException {
+        int c = skipWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return 0;
+        }
+        if (c == '"') {
+            position++;
+            readChars();
+            if (charsLength == 0) {
+                return 0;
+            }
+        } else {
+            readNumber();
+        }
+        try {
+            // Fractions are truncated, overflow is rejected
+            return new BigDecimal(chars, 0, charsLength).setScale(0, RoundingMode.DOWN).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IOException("Cannot parse \"" + new String(chars, 0, charsLength) + "\" as long", e);
+        }
+    }
+
+    private BigDecimal readDecimal() throws IOException {
+        int c = skipWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return null;
+        }
+        if (c == '"') {
+            position++;
+            readChars();
+            if (charsLength == 0) {
+                return null;
+            }
+        } else {
+            readNumber();
+        }
+        try {
+            return new BigDecimal(chars, 0, charsLength);
+        } catch (NumberFormatException e) {
+            throw new IOException("Cannot parse \"" + new String(chars, 0, charsLength) + "\" as decimal", e);
+        }
+    }
+
+    private <T extends Enum<T>> T readEnum(T[] values) throws IOException {
+        int c = skipWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return null;
+        }
+        if (c != '"') {
+            readNumber();
+            long ordinal = readOrdinal();
+            if (ordinal < 0 || ordinal >= values.length) {
+                throw new IOException("Enum ordinal " + ordinal + " out of range");
+            }
+            return values[(int) ordinal];
+        }
+        position++;
+        readChars();
+        for (T value : values) {
+            String name = value.name();
+            if (name.length() == charsLength && matches(name)) {
+                return value;
+            }
+        }
+        throw new IOException("Unknown enum value \"" + new String(chars, 0, charsLength) + "\"");
+    }
+
+    private long readOrdinal() throws IOException {
+        try {
+            return new BigDecimal(chars, 0, charsLength).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IOException("Cannot parse \"" + new String(chars, 0, charsLength) + "\" as enum ordinal", e);
+        }
+    }
+
+    private CustomFields readCustomFields() throws IOException {
+        int c = skipWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return null;
+        }
+        expect('{');
+        if (skipWhitespace() == '}') {
+            position++;
+            return CustomFields.empty();
+        }
+        CustomFields.Builder fields = new CustomFields.Builder(4);
+        do {
+            expect('"');
+            readChars();
+            String key = new String(chars, 0, charsLength);
+            expect(':');
+            int v = skipWhitespace();
+            if (v == '{' || v == '[') {
+                throw new IOException("Cannot bind structured value of custom field " + key);
+            }
+            fields.put(key, readString());
+        } while (nextMember('}'));
+        return fields.build();
+    }
+
+    /**
+     * Skips JSON value.
+     *
+     * @param depth Amount of enclosing skipped arrays and objects.
+     * @throws IOException On malformed data or nesting deeper than {@link #MAX_DEPTH}.
+     */
+    private void skipValue(int depth) throws IOException {
+        int c = skipWhitespace();
+        if ((c == '{' || c == '[') && depth == MAX_DEPTH) {
+            throw new IOException("Nesting deeper than " + MAX_DEPTH);
+        }
+        switch (c) {
+            case '{':
+                position++;
+                if (skipWhitespace() == '}') {
+                    position++;
+                    return;
+                }
+                do {
+                    expect('"');
+                    readChars();
+                    expect(':');
+                    skipValue(depth + 1);
+                } while (nextMember('}'));
+                return;
+            case '[':
+                position++;
+                if (skipWhitespace() == ']') {
+                    position++;
+                    return;
+                }
+                do {
+                    skipValue(depth + 1);
+                } while (nextMember(']'));
+                return;
+            case '"':
+                position++;
+                readChars();
+                return;
+            case 't':
+                expectLiteral("true");
+                return;
+            case 'f':
+                expectLiteral("false");
+                return;
+            case 'n':
+                expectLiteral("null");
+                return;
+            default:
+                readNumber();
+        }
+    }
+
+    /**
+     * Reads JSON number token into char scratch.
+     *
+     * @throws IOException On malformed data.
+     */
+    private void readNumber() throws IOException {
+        charsLength = 0;
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                position++;
+                appendChar((char) c);
+            } else {
+                break;
+            }
+        }
+        if (charsLength == 0) {
+            throw unexpected(peek());
+        }
+    }
+
+    /**
+     * Reads string contents after opening quote into char scratch.
+     *
+     * @throws IOException On malformed data.
+     */
+    private void readChars() throws IOException {
+        charsLength = 0;
+        while (true) {
+            int b = next();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                appendChar(readEscape());
+            } else if (b < 0x80) {
+                if (b < 0x20) {
+                    throw unexpected(b);
+                }
+                appendChar((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                appendChar((char) (((b & 0x1F) << 6) | continuation()));
+            } else if ((b & 0xF0) == 0xE0) {
+                int high = continuation();
+                appendChar((char) (((b & 0x0F) << 12) | (high << 6) | continuation()));
+            } else if ((b & 0xF8) == 0xF0) {
+                int cp = ((b & 0x07) << 18) | (continuation() << 12);
+                cp |= continuation() << 6;
+                cp |= continuation();
+                appendChar(Character.highSurrogate(cp));
+                appendChar(Character.lowSurrogate(cp));
+            } else {
+                throw new IOException("Invalid UTF-8 start byte 0x" + Integer.toHexString(b));
+            }
+        }
+    }
+
+    private int continuation() throws IOException {
+        int b = next();
+        if ((b & 0xC0) != 0x80) {
+            throw new IOException("Invalid UTF-8 continuation byte 0x" + Integer.toHexString(b));
+        }
+        return b & 0x3F;
+    }
+
+    private char readEscape() throws IOException {
+        int c = next();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(next(), 16);
+                    if (digit < 0) {
+                        throw new IOException("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw new IOException("Invalid escape \\" + (char) c);
+        }
+    }
+
+    private void appendChar(char c) {
+        if (charsLength == chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        chars[charsLength++] = c;
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = skipWhitespace();
+        if (c != expected) {
+            throw unexpected(c);
+        }
+        position++;
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            int c = next();
+            if (c != literal.charAt(i)) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace and returns next byte without consuming it.
+     *
+     * @return Next non-whitespace byte.
+     * @throws IOException On end of data.
+     */
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else if (c < 0) {
+                throw new EOFException("Unexpected end of callback data");
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * @return Next byte without consuming it or -1 at the end of data.
+     * @throws IOException On read error.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /**
+     * @return Next byte.
+     * @throws IOException On end of data.
+     */
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            throw new EOFException("Unexpected end of callback data");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Refills buffer from streamed input.
+     *
+     * @return False if no more data is available.
+     * @throws IOException On read error.
+     */
+    private boolean fill() throws IOException {
+        int read = -1;
+        if (stream != null) {
+            read = stream.read(buffer, 0, buffer.length);
+        } else if (source != null && source.hasRemaining()) {
+            read = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, read);
+        }
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private IOException unexpected(int c) {
+        return c < 0
+                ? new EOFException("Unexpected end of callback data")
+                : new IOException("Unexpected character '" + (char) c + "'");
+    }
+}
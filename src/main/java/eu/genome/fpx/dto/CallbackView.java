@@ -0,0 +1,428 @@
+package eu.genome.fpx.dto;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.domain.PaymentMethodType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Lazy {@link Callback} view over raw UTF-8 JSON payload.
+ * Construction scans payload once, checking it is well-formed and recording
+ * where every known field value is located, values are decoded on first access.
+ * <p>
+ * Signature verification reads signed fields right from the payload without
+ * creating strings whenever they are plain ASCII, so rejecting a forged callback
+ * costs a single scan and a digest. Payload must not be modified while view is in use.
+ * Malformed field values are reported on access by {@link UncheckedIOException}.
+ * <p>
+ * Thread-safe.
+ */
+public final class CallbackView extends Callback {
+    private static final int FIELDS = CallbackParser.CUSTOM + 1;
+
+    private final byte[] data;
+    private final int[] offsets = new int[FIELDS * 2];
+    /**
+     * Bit mask of decoded fields, written after the field itself.
+     */
+    private volatile int decoded;
+
+    private CallbackView(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Creates view over given UTF-8 JSON data.
+     *
+     * @param data Data to view.
+     * @return Callback view or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public static CallbackView of(byte[] data) throws IOException {
+        return of(data, 0, data.length);
+    }
+
+    /**
+     * Creates view over given region of UTF-8 JSON data, data is not copied.
+     *
+     * @param data   Data to view.
+     * @param offset Region offset.
+     * @param length Region length.
+     * @return Callback view or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public static CallbackView of(byte[] data, int offset, int length) throws IOException {
+        Objects.requireNonNull(data, "data");
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("Region " + offset + "+" + length + " out of " + data.length);
+        }
+        CallbackView view = new CallbackView(data);
+        return CallbackParser.local().scan(data, offset, offset + length, view.offsets) ? view : null;
+    }
+
+    /**
+     * Creates view over remaining bytes of given buffer, buffer position is not changed.
+     * Heap buffers are viewed in place, direct buffer contents are copied once.
+     *
+     * @param data Data to view.
+     * @return Callback view or null if data is JSON null.
+     * @throws IOException On malformed data.
+     */
+    public static CallbackView of(ByteBuffer data) throws IOException {
+        Objects.requireNonNull(data, "data");
+        if (data.hasArray()) {
+            return of(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return of(copy);
+    }
+
+    @Override
+    public boolean isTest() {
+        decode(CallbackParser.IS_TEST);
+        return super.isTest();
+    }
+
+    @Override
+    public String getAPIKey() {
+        decode(CallbackParser.API_KEY);
+        return super.getAPIKey();
+    }
+
+    @Override
+    public String getSignature() {
+        decode(CallbackParser.API_SIGNATURE);
+        return super.getSignature();
+    }
+
+    @Override
+    public String getSessionId() {
+        decode(CallbackParser.SESSION_ID);
+        return super.getSessionId();
+    }
+
+    @Override
+    public long getTransactionId() {
+        decode(CallbackParser.TRANSACTION_ID);
+        return super.getTransactionId();
+    }
+
+    @Override
+    public TransactionStatus getTransactionStatus() {
+        decode(CallbackParser.TRANSACTION_STATUS);
+        return super.getTransactionStatus();
+    }
+
+    @Override
+    public long getTransactionErrorCode() {
+        decode(CallbackParser.TRANSACTION_ERROR_CODE);
+        return super.getTransactionErrorCode();
+    }
+
+    @Override
+    public Instant getTransactionTime() {
+        decode(CallbackParser.TRANSACTION_TIME);
+        return super.getTransactionTime();
+    }
+
+    @Override
+    public String getCardToken() {
+        decode(CallbackParser.CARD_TOKEN);
+        return super.getCardToken();
+    }
+
+    @Override
+    public String getBillToken() {
+        decode(CallbackParser.BILL_TOKEN);
+        return super.getBillToken();
+    }
+
+    @Override
+    public PaymentMethodType getPaymentMethodType() {
+        decode(CallbackParser.PAYMENT_METHOD_TYPE);
+        return super.getPaymentMethodType();
+    }
+
+    @Override
+    public BigDecimal getAmount() {
+        decode(CallbackParser.AMOUNT);
+        return super.getAmount();
+    }
+
+    @Override
+    public String getCurrencyISO() {
+        decode(CallbackParser.CURRENCY);
+        return super.getCurrencyISO();
+    }
+
+    @Override
+    String getCurrencyCode() {
+        decode(CallbackParser.CURRENCY);
+        return super.getCurrencyCode();
+    }
+
+    @Override
+    public String getOrderId() {
+        decode(CallbackParser.ORDER_ID);
+        return super.getOrderId();
+    }
+
+    @Override
+    public String getUserId() {
+        decode(CallbackParser.USER_ID);
+        return super.getUserId();
+    }
+
+    @Override
+    public CustomFields getCustom() {
+        decode(CallbackParser.CUSTOM);
+        return super.getCustom();
+    }
+
+    /**
+     * Verifies signature using given secret.
+     * Signed fields holding plain ASCII values are read right from the payload.
+     *
+     * @param secret API secret to use.
+     * @return True if signature for this callback is correct.
+     */
+    @Override
+    public boolean verify(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            // Regular path reports empty secret
+            return super.verify(secret);
+        }
+        return verify(new SignatureGenerator(secret));
+    }
+
+    /**
+     * Verifies signature using given signature generator.
+     * Signed fields holding plain ASCII values are read right from the payload.
+     *
+     * @param generator Signature generator to use.
+     * @return True if signature for this callback is correct.
+     */
+    @Override
+    public boolean verify(SignatureGenerator generator) {
+        long minorUnits = minorUnits();
+        long transactionId = number(CallbackParser.TRANSACTION_ID);
+        if (minorUnits <= 0
+                || transactionId < 0
+                || start(CallbackParser.CURRENCY) < 0
+                || !plain(CallbackParser.CURRENCY)
+                || !plain(CallbackParser.SESSION_ID)
+                || !plain(CallbackParser.ORDER_ID)
+                || !plain(CallbackParser.API_SIGNATURE)) {
+            // Escaped, non-ASCII, coerced or missing values take regular path
+            return super.verify(generator);
+        }
+        return generator.verifyCALLBACK(
+                slice(CallbackParser.SESSION_ID, false),
+                transactionId,
+                minorUnits,
+                slice(CallbackParser.CURRENCY, true),
+                slice(CallbackParser.ORDER_ID, false),
+                slice(CallbackParser.API_SIGNATURE, false)
+        );
+    }
+
+    /**
+     * Decodes field unless it is already decoded.
+     *
+     * @param field Field index.
+     */
+    private void decode(int field) {
+        int bit = 1 << field;
+        if ((decoded & bit) == 0) {
+            synchronized (this) {
+                if ((decoded & bit) == 0) {
+                    int start = start(field);
+                    if (start >= 0) {
+                        try {
+                            CallbackParser.local().decode(this, field, data, start, end(field));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Malformed callback field " + field, e);
+                        }
+                    }
+                    decoded |= bit;
+                }
+            }
+        }
+    }
+
+    private int start(int field) {
+        return offsets[field * 2];
+    }
+
+    private int end(int field) {
+        return offsets[field * 2 + 1];
+    }
+
+    /**
+     * @param field Field index.
+     * @return True if field is absent, JSON null or string of printable ASCII chars without escapes.
+     */
+    private boolean plain(int field) {
+        int start = start(field);
+        if (start < 0 || data[start] == 'n') {
+            return true;
+        }
+        if (data[start] != '"') {
+            return false;
+        }
+        for (int i = start + 1, end = end(field) - 1; i < end; i++) {
+            byte b = data[i];
+            if (b < 0x20 || b == '\\') {
+                // Negative bytes are non-ASCII
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param field     Plain field index.
+     * @param upperCase Whether to convert ASCII letters to upper case.
+     * @return View of string contents or null if field is absent or JSON null.
+     */
+    private CharSequence slice(int field, boolean upperCase) {
+        int start = start(field);
+        if (start < 0 || data[start] == 'n') {
+            return null;
+        }
+        return new AsciiSlice(data, start + 1, end(field) - 1, upperCase);
+    }
+
+    /**
+     * Parses plain non-negative integer field without allocations.
+     *
+     * @param field Field index.
+     * @return Value, 0 if field is absent or -1 if value needs full parsing.
+     */
+    private long number(int field) {
+        int start = start(field);
+        if (start < 0) {
+            return 0;
+        }
+        int end = end(field);
+        if (end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses plain positive decimal amount, quoted or not, rounding it half-up to minor units.
+     *
+     * @return Amount in minor units or -1 if amount needs full parsing.
+     */
+    private long minorUnits() {
+        int start = start(CallbackParser.AMOUNT);
+        if (start < 0) {
+            return -1;
+        }
+        int end = end(CallbackParser.AMOUNT);
+        if (data[start] == '"') {
+            start++;
+            end--;
+        }
+        long whole = 0;
+        int digits = 0;
+        int i = start;
+        for (; i < end && data[i] >= '0' && data[i] <= '9'; i++) {
+            if (++digits > 15) {
+                return -1;
+            }
+            whole = whole * 10 + (data[i] - '0');
+        }
+        if (digits == 0) {
+            return -1;
+        }
+
+        int fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < end) {
+            if (data[i] != '.' || ++i == end) {
+                return -1;
+            }
+            for (; i < end; i++, fractionDigits++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                }
+            }
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        return whole * 100 + fraction + (roundUp ? 1 : 0);
+    }
+
+    /**
+     * Printable ASCII char view over payload bytes.
+     */
+    private static final class AsciiSlice implements CharSequence {
+        private final byte[] data;
+        private final int from;
+        private final int to;
+        private final boolean upperCase;
+
+        private AsciiSlice(byte[] data, int from, int to, boolean upperCase) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.upperCase = upperCase;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of " + (to - from));
+            }
+            char c = (char) data[from + index];
+            return upperCase && c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > to - from) {
+                throw new IndexOutOfBoundsException("Range " + start + ".." + end + " out of " + (to - from));
+            }
+            return new AsciiSlice(data, from + start, from + end, upperCase);
+        }
+
+        @Override
+        public String toString() {
+            String value = new String(data, from, to - from, StandardCharsets.US_ASCII);
+            return upperCase ? value.toUpperCase(Locale.ROOT) : value;
+        }
+    }
+}
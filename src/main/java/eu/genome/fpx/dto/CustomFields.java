@@ -0,0 +1,233 @@
+package eu.genome.fpx.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Read-only custom fields of a callback, in received order.
+ * <p>
+ * Entries are kept in one flat array of alternating keys and values. Keys are interned into
+ * a shared dictionary, so the same few keys repeated over many callbacks are stored once.
+ * The dictionary is a fixed table of slots by key hash, a new key replaces the one in its slot,
+ * so keys of forged or unusual callbacks cannot fill it for good. Lookup scans the array,
+ * comparing keys by reference first. Callbacks without custom fields share one empty instance.
+ * <p>
+ * Immutable and thread-safe.
+ */
+public final class CustomFields extends AbstractMap<String, String> {
+    /**
+     * Amount of slots in shared dictionary, power of two.
+     */
+    static final int INTERNED_KEY_SLOTS = 4096;
+
+    /**
+     * Shared dictionary, racy reads and writes are safe as strings are immutable.
+     */
+    private static final String[] KEYS = new String[INTERNED_KEY_SLOTS];
+    private static final CustomFields EMPTY = new CustomFields(new String[0]);
+
+    private final String[] entries;
+
+    private CustomFields(String[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return Shared empty instance.
+     */
+    public static CustomFields empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Copies entries of given map.
+     *
+     * @param map Custom fields.
+     * @return Compact copy, given map itself if it is already compact.
+     */
+    public static CustomFields of(Map<String, String> map) {
+        if (map instanceof CustomFields) {
+            return (CustomFields) map;
+        }
+        Builder builder = new Builder(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param key Key, may be null.
+     * @return Shared instance of equal key, given key if it was not in the dictionary and now replaces
+     * the key of its slot.
+     */
+    static String intern(String key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (INTERNED_KEY_SLOTS - 1);
+        String shared = KEYS[slot];
+        if (key.equals(shared)) {
+            return shared;
+        }
+        KEYS[slot] = key;
+        return key;
+    }
+
+    @Override
+    public int size() {
+        return entries.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : entries[index + 1];
+    }
+
+    /**
+     * @param index Entry index.
+     * @return Key of entry.
+     */
+    String key(int index) {
+        return entries[index * 2];
+    }
+
+    /**
+     * @param index Entry index.
+     * @return Value of entry.
+     */
+    String value(int index) {
+        return entries[index * 2 + 1];
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < entries.length; i += 2) {
+            if (entries[i] == key) {
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < entries.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= entries.length) {
+                            throw new NoSuchElementException();
+                        }
+                        next += 2;
+                        return new SimpleImmutableEntry<>(entries[next - 2], entries[next - 1]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CustomFields.this.size();
+            }
+        };
+    }
+
+    /**
+     * Collects entries in order, a repeated key keeps its position and takes the last value.
+     */
+    static final class Builder {
+        // Keys are looked up by scanning until there are more of them
+        private static final int SCAN_LIMIT = 8;
+
+        private String[] entries;
+        private int length;
+        private Map<String, Integer> index;
+
+        Builder(int expected) {
+            this.entries = new String[Math.max(2, expected * 2)];
+        }
+
+        /**
+         * @param key   Key, may be null.
+         * @param value Value, may be null.
+         * @return Builder instance.
+         */
+        Builder put(String key, String value) {
+            int existing = find(key);
+            if (existing >= 0) {
+                entries[existing + 1] = value;
+                return this;
+            }
+            if (length == entries.length) {
+                entries = Arrays.copyOf(entries, length * 2);
+            }
+            String shared = intern(key);
+            if (index != null) {
+                index.put(shared, length);
+            } else if (length / 2 == SCAN_LIMIT) {
+                index = new HashMap<>();
+                for (int i = 0; i < length; i += 2) {
+                    index.put(entries[i], i);
+                }
+                index.put(shared, length);
+            }
+            entries[length++] = shared;
+            entries[length++] = value;
+            return this;
+        }
+
+        private int find(String key) {
+            if (index != null) {
+                Integer position = index.get(key);
+                return position == null ? -1 : position;
+            }
+            for (int i = 0; i < length; i += 2) {
+                if (Objects.equals(entries[i], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        CustomFields build() {
+            if (length == 0) {
+                return EMPTY;
+            }
+            return new CustomFields(length == entries.length ? entries : Arrays.copyOf(entries, length));
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package eu.genome.fpx.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureGeneratorRegistry;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Embedded HTTP endpoint receiving callbacks, built on JDK {@code com.sun.net.httpserver}.
+ * Request bodies are read into per-worker pooled buffers, parsed and verified on worker threads
+ * and verified callbacks are passed to {@link CallbackHandler}.
+ * <p>
+ * Amount of accepted but not yet answered requests is bounded, requests over the limit
+ * are answered with {@code 503} by a few responder threads without reading the body.
+ * Responders give up on requests whose headers do not arrive within overload timeout,
+ * and requests beyond as many waiting for a responder as are allowed in flight get their connection closed.
+ * Nothing is read or written on the accepting thread, so a slow client cannot stall accepts.
+ * Persistent (keep-alive) connections are supported by the underlying server.
+ */
+public final class CallbackEndpoint implements AutoCloseable {
+    /**
+     * Request handling outcome.
+     */
+    public enum Outcome {
+        /**
+         * Callback verified and handled.
+         */
+        ACCEPTED(200),
+        /**
+         * Callback could not be parsed or lacks mandatory data.
+         */
+        MALFORMED(400),
+        /**
+         * Callback signature is invalid or API key is unknown.
+         */
+        INVALID_SIGNATURE(403),
+        /**
+         * Request method is not POST.
+         */
+        METHOD_NOT_ALLOWED(405),
+        /**
+         * Request body exceeds maximal size.
+         */
+        TOO_LARGE(413),
+        /**
+         * Callback handler failed.
+         */
+        HANDLER_FAILED(500),
+        /**
+         * Too many requests in flight.
+         */
+        OVERLOADED(503);
+
+        private final int statusCode;
+
+        Outcome(int statusCode) {
+            this.statusCode = statusCode;
+        }
+
+        /**
+         * @return HTTP status code of response.
+         */
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    static final int RESPONDERS = 2;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor responders;
+    private final ScheduledThreadPoolExecutor timer;
+    private final long overloadTimeoutNanos;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxBodySize;
+    private final Predicate<Callback> verification;
+    private final CallbackHandler handler;
+    private final ThreadLocal<Boolean> overloaded = new ThreadLocal<>();
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(Worker::new);
+    private final LongAdder[] counters = new LongAdder[OUTCOMES.length];
+
+    private CallbackEndpoint(Builder builder) throws IOException {
+        this.maxBodySize = builder.maxBodySize;
+        this.verification = builder.verification;
+        this.handler = builder.handler;
+        this.maxInFlight = builder.maxInFlight;
+        this.overloadTimeoutNanos = builder.overloadTimeout.toNanos();
+        this.inFlight = new Semaphore(builder.maxInFlight);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+
+        String prefix = "fpx-http-" + POOL_COUNTER.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                builder.workers,
+                builder.workers,
+                0,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.responders = new ThreadPoolExecutor(
+                RESPONDERS,
+                RESPONDERS,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(builder.maxInFlight),
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + "responder-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (exchange, pool) -> {
+                    if (!pool.isShutdown()) {
+                        // Interrupted thread closes the connection on its first read or write, without blocking
+                        Thread.currentThread().interrupt();
+                        try {
+                            overloaded(exchange);
+                        } finally {
+                            Thread.interrupted();
+                        }
+                    }
+                }
+        );
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, prefix + "timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        this.server = HttpServer.create(builder.address, builder.backlog);
+        this.server.createContext(builder.path, this::handle);
+        this.server.setExecutor(this::dispatch);
+        this.server.start();
+    }
+
+    /**
+     * @return New endpoint builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Passes exchange to worker pool unless in-flight limit is reached, otherwise to responders.
+     * Called on the server dispatcher thread, which also accepts connections, so it must not block:
+     * the exchange task itself reads request headers.
+     *
+     * @param exchange Exchange handling task.
+     */
+    private void dispatch(Runnable exchange) {
+        if (inFlight.tryAcquire()) {
+            try {
+                workers.execute(() -> {
+                    try {
+                        exchange.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+            }
+        }
+        // Full responder queue closes the connection, stopping endpoint drops it for the server to close
+        responders.execute(() -> {
+            Deadline deadline = new Deadline(Thread.currentThread());
+            ScheduledFuture<?> timeout;
+            try {
+                timeout = timer.schedule(deadline, overloadTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Endpoint is stopping, server closes the connection
+                return;
+            }
+            try {
+                overloaded(exchange);
+            } finally {
+                timeout.cancel(false);
+                deadline.finish();
+            }
+        });
+    }
+
+    /**
+     * Runs exchange marked as overloaded, handler answers 503 without reading the body.
+     *
+     * @param exchange Exchange handling task.
+     */
+    private void overloaded(Runnable exchange) {
+        overloaded.set(Boolean.TRUE);
+        try {
+            exchange.run();
+        } finally {
+            overloaded.remove();
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            respond(exchange, process(exchange));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Outcome process(HttpExchange exchange) {
+        if (overloaded.get() != null) {
+            return Outcome.OVERLOADED;
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return Outcome.METHOD_NOT_ALLOWED;
+        }
+
+        Worker state = worker.get();
+        int length;
+        try {
+            String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (declared != null && Long.parseLong(declared.trim()) > maxBodySize) {
+                return Outcome.TOO_LARGE;
+            }
+            length = state.read(exchange.getRequestBody(), maxBodySize);
+            if (length < 0) {
+                return Outcome.TOO_LARGE;
+            }
+        } catch (IOException | NumberFormatException e) {
+            return Outcome.MALFORMED;
+        }
+        return process(state.parser, state.buffer, 0, length, verification, handler);
+    }
+
+    /**
+     * Parses, verifies and handles request body the way endpoint does, without HTTP.
+     *
+     * @param parser       Parser of calling thread.
+     * @param body         Buffer holding UTF-8 JSON request body.
+     * @param offset       Body offset.
+     * @param length       Body length.
+     * @param verification Signature verification.
+     * @param handler      Handler of verified callbacks.
+     * @return Outcome of request.
+     */
+    public static Outcome process(
+            CallbackParser parser,
+            byte[] body,
+            int offset,
+            int length,
+            Predicate<Callback> verification,
+            CallbackHandler handler
+    ) {
+        Callback callback;
+        try {
+            callback = parser.parse(body, offset, length);
+        } catch (IOException e) {
+            return Outcome.MALFORMED;
+        }
+        if (callback == null) {
+            return Outcome.MALFORMED;
+        }
+
+        try {
+            if (!verification.test(callback)) {
+                return Outcome.INVALID_SIGNATURE;
+            }
+        } catch (RuntimeException e) {
+            // Missing mandatory fields, incorrect amount or currency
+            return Outcome.MALFORMED;
+        }
+
+        try {
+            handler.handle(callback);
+            return Outcome.ACCEPTED;
+        } catch (Exception e) {
+            return Outcome.HANDLER_FAILED;
+        }
+    }
+
+    private void respond(HttpExchange exchange, Outcome outcome) {
+        counters[outcome.ordinal()].increment();
+        try {
+            exchange.sendResponseHeaders(outcome.getStatusCode(), -1);
+        } catch (IOException e) {
+            // Client is gone, nothing to answer
+        }
+    }
+
+    /**
+     * @return Address endpoint is bound to.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @param outcome Request handling outcome.
+     * @return Amount of requests finished with given outcome.
+     */
+    public long getCount(Outcome outcome) {
+        return counters[outcome.ordinal()].sum();
+    }
+
+    /**
+     * @return Amount of requests accepted for processing and not answered yet.
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Stops endpoint, waiting up to given delay for requests in flight.
+     *
+     * @param delaySeconds Maximal time to wait in seconds.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+        responders.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Stops endpoint immediately.
+     */
+    @Override
+    public void close() {
+        stop(0);
+    }
+
+    /**
+     * Interrupts responder thread once its exchange runs out of time.
+     * Blocking socket channel read or write of interrupted thread closes the connection.
+     */
+    private static final class Deadline implements Runnable {
+        private final Thread thread;
+        private boolean finished;
+
+        private Deadline(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!finished) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Marks exchange finished and clears interrupt it may have caused.
+         */
+        synchronized void finish() {
+            finished = true;
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Pooled per-worker request buffer and parser.
+     */
+    private static final class Worker {
+        private final CallbackParser parser = new CallbackParser();
+        private byte[] buffer = new byte[8192];
+
+        /**
+         * Reads whole stream into buffer.
+         *
+         * @param in    Stream to read.
+         * @param limit Maximal amount of bytes to read.
+         * @return Amount of bytes read or -1 if limit is exceeded.
+         * @throws IOException On read error.
+         */
+        int read(InputStream in, int limit) throws IOException {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    if (length >= limit) {
+                        return in.read() < 0 ? length : -1;
+                    }
+                    buffer = Arrays.copyOf(buffer, Math.min(limit, buffer.length * 2));
+                }
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    return length;
+                }
+                length += read;
+            }
+        }
+    }
+
+    /**
+     * Mutable endpoint builder.
+     */
+    public static final class Builder {
+        private InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        private int backlog;
+        private String path = "/callback";
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private int maxInFlight = workers * 64;
+        private int maxBodySize = 64 * 1024;
+        private Duration overloadTimeout = Duration.ofSeconds(1);
+        private Predicate<Callback> verification;
+        private CallbackHandler handler;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets address to bind to, loopback with ephemeral port by default.
+         *
+         * @param value Address.
+         * @return Builder instance.
+         */
+        public Builder address(InetSocketAddress value) {
+            this.address = Objects.requireNonNull(value, "address");
+            return this;
+        }
+
+        /**
+         * Sets TCP accept backlog, system default by default.
+         *
+         * @param value Backlog size.
+         * @return Builder instance.
+         */
+        public Builder backlog(int value) {
+            this.backlog = value;
+            return this;
+        }
+
+        /**
+         * Sets request path, {@code /callback} by default.
+         *
+         * @param value Path.
+         * @return Builder instance.
+         */
+        public Builder path(String value) {
+            this.path = Objects.requireNonNull(value, "path");
+            return this;
+        }
+
+        /**
+         * Sets amount of worker threads, available processors by default.
+         *
+         * @param value Amount of workers.
+         * @return Builder instance.
+         */
+        public Builder workers(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect amount of workers " + value);
+            }
+            this.workers = value;
+            return this;
+        }
+
+        /**
+         * Sets maximal amount of requests being processed or waiting for a worker.
+         *
+         * @param value Maximal amount of requests in flight.
+         * @return Builder instance.
+         */
+        public Builder maxInFlight(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect maximal in-flight requests " + value);
+            }
+            this.maxInFlight = value;
+            return this;
+        }
+
+        /**
+         * Sets maximal request body size in bytes, 64 KiB by default.
+         *
+         * @param value Maximal body size.
+         * @return Builder instance.
+         */
+        public Builder maxBodySize(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Incorrect maximal body size " + value);
+            }
+            this.maxBodySize = value;
+            return this;
+        }
+
+        /**
+         * Sets maximal time to receive request over in-flight limit and answer it with {@code 503},
+         * its connection is closed once it is exceeded. 1 second by default.
+         *
+         * @param value Overload timeout.
+         * @return Builder instance.
+         */
+        public Builder overloadTimeout(Duration value) {
+            Objects.requireNonNull(value, "overloadTimeout");
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException("Incorrect overload timeout " + value);
+            }
+            this.overloadTimeout = value;
+            return this;
+        }
+
+        /**
+         * Verifies callbacks with given signature generator.
+         *
+         * @param generator Signature generator.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(SignatureGenerator generator) {
+            Objects.requireNonNull(generator, "generator");
+            return verifyWith(callback -> callback.verify(generator));
+        }
+
+        /**
+         * Verifies callbacks with generators resolved by API key.
+         *
+         * @param registry Signature generator registry.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(SignatureGeneratorRegistry registry) {
+            Objects.requireNonNull(registry, "registry");
+            return verifyWith(callback -> callback.verify(registry));
+        }
+
+        /**
+         * Verifies callbacks with given verification.
+         *
+         * @param value Callback verification.
+         * @return Builder instance.
+         */
+        public Builder verifyWith(Predicate<Callback> value) {
+            this.verification = Objects.requireNonNull(value, "verification");
+            return this;
+        }
+
+        /**
+         * Sets handler of verified callbacks.
+         *
+         * @param value Callback handler.
+         * @return Builder instance.
+         */
+        public Builder handler(CallbackHandler value) {
+            this.handler = Objects.requireNonNull(value, "handler");
+            return this;
+        }
+
+        /**
+         * Binds and starts endpoint.
+         *
+         * @return Running endpoint.
+         * @throws IOException If address cannot be bound.
+         */
+        public CallbackEndpoint start() throws IOException {
+            if (verification == null) {
+                throw new IllegalStateException("Callback verification not provided");
+            }
+            if (handler == null) {
+                throw new IllegalStateException("Callback handler not provided");
+            }
+            return new CallbackEndpoint(this);
+        }
+    }
+}
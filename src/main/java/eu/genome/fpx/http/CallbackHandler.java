@@ -0,0 +1,18 @@
+package eu.genome.fpx.http;
+
+import eu.genome.fpx.dto.Callback;
+
+/**
+ * Handler of verified callbacks received by {@link CallbackEndpoint}.
+ */
+@FunctionalInterface
+public interface CallbackHandler {
+    /**
+     * Handles verified callback, e.g. dispatching it by {@link Callback#getTransactionStatus()}.
+     * Any thrown exception results in HTTP 500 response, so the platform retries delivery.
+     *
+     * @param callback Verified callback.
+     * @throws Exception On handling error.
+     */
+    void handle(Callback callback) throws Exception;
+}
@@ -0,0 +1,581 @@
+package eu.genome.fpx.journal;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded append-only journal of verified callbacks, guarding against double fulfilment after restart.
+ * <p>
+ * Callbacks are appended as {@link CallbackCodec} records behind fixed-size headers into memory-mapped
+ * segment files of the journal directory, a new segment is started when the current one is full.
+ * Appending a transaction with a status already journaled for it is ignored, so redelivered callbacks
+ * are recorded once.
+ * <p>
+ * Off-heap open-addressing index maps every transaction identifier to its latest record and statuses
+ * journaled so far, so lookups do not touch segment files. Index is rebuilt from record headers on open,
+ * records of the last segment are checked against their checksums and a partially written tail is dropped.
+ * Once the index holds {@link Builder#maxTransactions(int) maximum amount} of transactions, the oldest
+ * segments are dropped together with transactions whose latest record they hold.
+ * <p>
+ * With synchronous appends, which is the default, {@link #append(Callback)} returns once the record
+ * is forced to storage. Appends waiting for storage at the same time share one force call.
+ * <p>
+ * Thread-safe, forcing does not block appends and lookups.
+ */
+public final class CallbackJournal implements Closeable {
+    private static final int MAX_SEGMENT_ID = (1 << 18) - 1;
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final int maxTransactions;
+    private final TransactionIndex index;
+    private final Map<Integer, Segment> segments = new TreeMap<>();
+    /**
+     * Sealed segments not yet forced to storage, guarded by this.
+     */
+    private final List<Segment> unforced = new ArrayList<>();
+    /**
+     * Segments dropped from the index, to be closed and deleted, guarded by this.
+     */
+    private final List<Segment> expired = new ArrayList<>();
+    private final CallbackCodec codec = new CallbackCodec();
+    private final CRC32 crc = new CRC32();
+    private final Object commitLock = new Object();
+    private Segment active;
+    private boolean closed;
+    /**
+     * Position after the last appended record, guarded by this.
+     */
+    private long written;
+    /**
+     * Position after the last record forced to storage, guarded by commit lock.
+     */
+    private long durable;
+
+    private CallbackJournal(Builder builder) {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.sync = builder.sync;
+        this.maxTransactions = builder.maxTransactions;
+        this.index = new TransactionIndex(builder.expectedTransactions);
+    }
+
+    /**
+     * @return New journal builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Opens segments of journal directory and rebuilds the index.
+     *
+     * @throws IOException On read error or damaged segment.
+     */
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(COMPACT_SUFFIX)) {
+                    // Interrupted compaction, original segment is intact
+                    Files.delete(file);
+                } else if (Segment.id(file) > 0) {
+                    ids.add(Segment.id(file));
+                }
+            }
+        }
+        Collections.sort(ids);
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                int id = ids.get(i);
+                Segment segment = Segment.open(id, Segment.path(directory, id));
+                segments.put(id, segment);
+                boolean tail = i == ids.size() - 1;
+                segment.scan(tail, offset -> index(segment, offset));
+                deleteExpired();
+                if (tail) {
+                    segment.truncate();
+                    segment.force();
+                    active = segment;
+                }
+            }
+            if (active == null) {
+                active = Segment.create(directory, 1, segmentSize);
+                segments.put(active.id(), active);
+            }
+        } catch (IOException | RuntimeException e) {
+            expired.clear();
+            closeSegments();
+            throw e;
+        }
+        written = position(active);
+        durable = written;
+    }
+
+    /**
+     * Appends callback unless a callback of the same transaction and status is already journaled.
+     * Synchronous journal returns once the record is forced to storage.
+     *
+     * @param callback Callback to append.
+     * @return False if transaction with this status is already journaled.
+     * @throws IOException On write error or if the index is full.
+     * @throws IllegalArgumentException If record does not fit into a segment.
+     */
+    public boolean append(Callback callback) throws IOException {
+        Objects.requireNonNull(callback, "callback");
+        long position;
+        boolean rolled = false;
+        synchronized (this) {
+            ensureOpen();
+            long transactionId = callback.getTransactionId();
+            int statuses = statuses(index.get(transactionId));
+            int bit = bit(callback.getTransactionStatus());
+            if ((statuses & bit) != 0) {
+                return false;
+            }
+            int length = codec.encodedLength(callback);
+            if (length > segmentSize - Segment.HEADER - Segment.RECORD_HEADER) {
+                throw new IllegalArgumentException("Callback record of " + length + " bytes exceeds journal segment");
+            }
+            if (statuses == 0) {
+                expire(null);
+                deleteExpired();
+                if (index.size() >= TransactionIndex.MAX_SIZE) {
+                    throw new IOException("Journal transaction index is full");
+                }
+            }
+            if (active.remaining() < Segment.RECORD_HEADER + length) {
+                roll();
+                rolled = true;
+            }
+            ByteBuffer target = active.buffer().duplicate();
+            ((Buffer) target).position(active.position() + Segment.RECORD_HEADER);
+            codec.encode(callback, target);
+            int offset = active.commit(crc, length, transactionId, statuses | bit);
+            index.put(transactionId, location(active.id(), offset, statuses | bit));
+            written = position(active);
+            position = written;
+        }
+        if (sync || rolled) {
+            commit(position);
+        }
+        return true;
+    }
+
+    /**
+     * @param transactionId Transaction identifier.
+     * @return True if any callback of given transaction is journaled.
+     */
+    public synchronized boolean contains(long transactionId) {
+        ensureOpen();
+        return index.get(transactionId) != 0;
+    }
+
+    /**
+     * @param transactionId Transaction identifier.
+     * @param status        Transaction status, may be null.
+     * @return True if callback of given transaction with given status is journaled.
+     */
+    public synchronized boolean contains(long transactionId, TransactionStatus status) {
+        ensureOpen();
+        return (statuses(index.get(transactionId)) & bit(status)) != 0;
+    }
+
+    /**
+     * Reads the latest journaled callback of given transaction.
+     *
+     * @param transactionId Transaction identifier.
+     * @return Callback or null if transaction is not journaled.
+     * @throws IOException On malformed record.
+     */
+    public synchronized Callback get(long transactionId) throws IOException {
+        ensureOpen();
+        long location = index.get(transactionId);
+        if (location == 0) {
+            return null;
+        }
+        return codec.decode(segments.get(segment(location)).payload(offset(location)));
+    }
+
+    /**
+     * @return Amount of journaled transactions.
+     */
+    public synchronized int size() {
+        ensureOpen();
+        return index.size();
+    }
+
+    /**
+     * Forces all appended records to storage, needed only for asynchronous journal.
+     */
+    public void flush() {
+        long position;
+        synchronized (this) {
+            ensureOpen();
+            position = written;
+        }
+        commit(position);
+    }
+
+    /**
+     * Rewrites full segments keeping only the latest record of every transaction, segments left
+     * without records are deleted. Appends wait while a segment is rewritten.
+     *
+     * @return Amount of reclaimed bytes.
+     * @throws IOException On write error.
+     */
+    public long compact() throws IOException {
+        List<Integer> sealed;
+        synchronized (this) {
+            ensureOpen();
+            sealed = new ArrayList<>(segments.keySet());
+        }
+        long reclaimed = 0;
+        for (int id : sealed) {
+            synchronized (this) {
+                ensureOpen();
+                Segment segment = segments.get(id);
+                if (segment != null && segment != active && !unforced.contains(segment)) {
+                    reclaimed += compact(segment);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * @return Amount of segment files.
+     */
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces appended records to storage and closes segment files.
+     *
+     * @throws IOException On close error.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : unforced) {
+            segment.force();
+        }
+        unforced.clear();
+        active.force();
+        closeSegments();
+    }
+
+    private long compact(Segment segment) throws IOException {
+        int id = segment.id();
+        List<Integer> live = new ArrayList<>();
+        int[] liveBytes = new int[1];
+        segment.scan(false, offset -> {
+            long location = index.get(segment.transactionId(offset));
+            if (segment(location) == id && offset(location) == offset) {
+                live.add(offset);
+                liveBytes[0] += Segment.RECORD_HEADER + segment.length(offset);
+            }
+        });
+        int size = segment.buffer().capacity();
+        if (live.isEmpty()) {
+            segments.remove(id);
+            segment.close();
+            Files.delete(segment.path());
+            return size;
+        }
+        int compacted = Segment.HEADER + liveBytes[0];
+        if (compacted == segment.position() && compacted == size) {
+            return 0;
+        }
+
+        Path temporary = segment.path().resolveSibling(segment.path().getFileName() + COMPACT_SUFFIX);
+        Segment target = Segment.create(id, temporary, compacted);
+        int[] offsets = new int[live.size()];
+        try {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = target.copy(segment, live.get(i));
+            }
+            target.force();
+        } finally {
+            target.close();
+        }
+        Files.move(temporary, segment.path(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        segment.close();
+        Segment replaced = Segment.open(id, segment.path());
+        replaced.scan(false, offset -> {
+        });
+        segments.put(id, replaced);
+        for (int i = 0; i < offsets.length; i++) {
+            long transactionId = replaced.transactionId(offsets[i]);
+            index.put(transactionId, location(id, offsets[i], statuses(index.get(transactionId))));
+        }
+        return size - compacted;
+    }
+
+    /**
+     * Seals full active segment and starts the next one. Sealed segment is forced by the next commit,
+     * outside of the monitor, before the active one.
+     */
+    private void roll() throws IOException {
+        if (active.id() >= MAX_SEGMENT_ID) {
+            throw new IOException("Journal segment limit reached");
+        }
+        unforced.add(active);
+        Segment next = Segment.create(directory, active.id() + 1, segmentSize);
+        segments.put(next.id(), next);
+        active = next;
+    }
+
+    /**
+     * Forces sealed and active segments unless records up to given position are already durable.
+     * Waiting appends are made durable by the force calls of the first one.
+     */
+    private void commit(long position) {
+        synchronized (commitLock) {
+            if (durable >= position) {
+                return;
+            }
+            Segment segment;
+            long target;
+            List<Segment> sealed;
+            synchronized (this) {
+                segment = active;
+                target = written;
+                sealed = unforced.isEmpty() ? Collections.emptyList() : new ArrayList<>(unforced);
+            }
+            for (Segment unforcedSegment : sealed) {
+                unforcedSegment.force();
+            }
+            segment.force();
+            if (!sealed.isEmpty()) {
+                synchronized (this) {
+                    unforced.removeAll(sealed);
+                }
+            }
+            durable = target;
+        }
+    }
+
+    private void index(Segment segment, int offset) {
+        long transactionId = segment.transactionId(offset);
+        if (index.get(transactionId) == 0) {
+            expire(segment);
+        }
+        index.put(transactionId, location(segment.id(), offset, segment.statuses(offset)));
+    }
+
+    /**
+     * Drops the oldest segments from the index while it holds maximum amount of transactions,
+     * removing transactions whose latest record they hold. Active, unforced and given segments are kept,
+     * so the maximum is exceeded while they alone hold more transactions.
+     *
+     * @param keep Segment being scanned or null.
+     */
+    private void expire(Segment keep) {
+        while (index.size() >= maxTransactions) {
+            Segment oldest = null;
+            for (Segment segment : segments.values()) {
+                if (segment != keep && segment != active && !unforced.contains(segment)) {
+                    oldest = segment;
+                    break;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            Segment dropped = oldest;
+            int id = dropped.id();
+            dropped.scan(false, offset -> {
+                long transactionId = dropped.transactionId(offset);
+                long location = index.get(transactionId);
+                if (segment(location) == id && offset(location) == offset) {
+                    index.remove(transactionId);
+                }
+            });
+            segments.remove(id);
+            expired.add(dropped);
+        }
+    }
+
+    /**
+     * Closes and deletes segments dropped by {@link #expire(Segment)}, oldest first.
+     */
+    private void deleteExpired() throws IOException {
+        while (!expired.isEmpty()) {
+            Segment segment = expired.remove(0);
+            segment.close();
+            Files.delete(segment.path());
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        IOException error = null;
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        segments.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static long position(Segment segment) {
+        return ((long) segment.id() << 32) | segment.position();
+    }
+
+    /**
+     * Packs index entry of 18 bits of segment identifier, 30 bits of record offset and 16 bits of statuses.
+     */
+    private static long location(int segment, int offset, int statuses) {
+        return ((long) segment << 46) | ((long) offset << 16) | (statuses & 0xFFFF);
+    }
+
+    private static int segment(long location) {
+        return (int) (location >>> 46);
+    }
+
+    private static int offset(long location) {
+        return (int) (location >>> 16) & (Segment.MAX_SIZE - 1);
+    }
+
+    private static int statuses(long location) {
+        return (int) location & 0xFFFF;
+    }
+
+    /**
+     * @return Status bit, lowest one stands for absent status, 16 bits hold up to 15 statuses.
+     */
+    private static int bit(TransactionStatus status) {
+        return status == null ? 1 : 1 << (status.ordinal() + 1);
+    }
+
+    /**
+     * Callback journal builder.
+     */
+    public static final class Builder {
+        private Path directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private boolean sync = true;
+        private int expectedTransactions = 1 << 16;
+        private int maxTransactions = 1 << 24;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets journal directory, mandatory. Directory is created if missing.
+         *
+         * @param value Directory path.
+         * @return Builder instance.
+         */
+        public Builder directory(Path value) {
+            this.directory = Objects.requireNonNull(value, "directory");
+            return this;
+        }
+
+        /**
+         * Sets size of segment files, 64 MiB by default.
+         *
+         * @param value Size in bytes, from 4 KiB to 1 GiB.
+         * @return Builder instance.
+         */
+        public Builder segmentSize(int value) {
+            if (value < 4096 || value > Segment.MAX_SIZE) {
+                throw new IllegalArgumentException("Segment size must be from 4 KiB to 1 GiB");
+            }
+            this.segmentSize = value;
+            return this;
+        }
+
+        /**
+         * Sets whether appends return only once the record is forced to storage, true by default.
+         * Asynchronous journal relies on {@link CallbackJournal#flush()} and the operating system.
+         *
+         * @param value True for synchronous appends.
+         * @return Builder instance.
+         */
+        public Builder sync(boolean value) {
+            this.sync = value;
+            return this;
+        }
+
+        /**
+         * Sets expected amount of transactions to size the index, which grows as needed.
+         *
+         * @param value Amount of transactions.
+         * @return Builder instance.
+         */
+        public Builder expectedTransactions(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Expected transactions must be positive");
+            }
+            this.expectedTransactions = value;
+            return this;
+        }
+
+        /**
+         * Sets maximum amount of journaled transactions, 16,777,216 by default. Once reached, the oldest
+         * segments are dropped with transactions whose latest record they hold, so only transactions
+         * journaled since are recognized, which should cover the callback redelivery period.
+         *
+         * @param value Amount of transactions, up to 33,554,432.
+         * @return Builder instance.
+         */
+        public Builder maxTransactions(int value) {
+            if (value <= 0 || value > TransactionIndex.MAX_SIZE) {
+                throw new IllegalArgumentException("Maximum transactions must be from 1 to " + TransactionIndex.MAX_SIZE);
+            }
+            this.maxTransactions = value;
+            return this;
+        }
+
+        /**
+         * Opens journal, recovering segments found in directory.
+         *
+         * @return Open journal.
+         * @throws IOException On read error or damaged segment.
+         */
+        public CallbackJournal open() throws IOException {
+            if (directory == null) {
+                throw new IllegalArgumentException("Journal directory is mandatory");
+            }
+            CallbackJournal journal = new CallbackJournal(this);
+            journal.open();
+            return journal;
+        }
+    }
+}
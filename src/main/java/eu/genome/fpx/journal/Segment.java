@@ -0,0 +1,317 @@
+package eu.genome.fpx.journal;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped journal segment file.
+ * <p>
+ * File starts with magic number and format version, followed by records. Record header holds
+ * payload length, CRC32 of the rest of the record, transaction identifier and bit mask of
+ * statuses journaled for the transaction so far, payload is {@link eu.genome.fpx.dto.CallbackCodec}
+ * record. Length is written last, zero length marks the end of records.
+ * <p>
+ * Not thread-safe.
+ */
+final class Segment {
+    static final int MAGIC = 0x46504A4C;
+    static final int VERSION = 1;
+    /**
+     * Length of file header.
+     */
+    static final int HEADER = 8;
+    /**
+     * Length of record header.
+     */
+    static final int RECORD_HEADER = 20;
+    /**
+     * Maximum file size, offsets take 30 bits of index entries.
+     */
+    static final int MAX_SIZE = 1 << 30;
+
+    private static final String SUFFIX = ".journal";
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    /**
+     * Mapping typed as plain buffer, so duplicates link against Java 8 methods.
+     */
+    private final ByteBuffer buffer;
+    private int position = HEADER;
+
+    private Segment(int id, Path path, FileChannel channel, MappedByteBuffer mapping) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.mapping = mapping;
+        this.buffer = mapping;
+    }
+
+    /**
+     * Creates new segment file of given size.
+     *
+     * @param directory Journal directory.
+     * @param id        Segment identifier.
+     * @param size      File size.
+     * @return Empty segment.
+     * @throws IOException On write error or if file exists.
+     */
+    static Segment create(Path directory, int id, int size) throws IOException {
+        return create(id, path(directory, id), size);
+    }
+
+    /**
+     * Creates new segment file of given size at given path.
+     *
+     * @param id   Segment identifier.
+     * @param path File path.
+     * @param size File size.
+     * @return Empty segment.
+     * @throws IOException On write error or if file exists.
+     */
+    static Segment create(int id, Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            return new Segment(id, path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens existing segment file, write position is set by {@link #scan}.
+     *
+     * @param id   Segment identifier.
+     * @param path File path.
+     * @return Segment.
+     * @throws IOException On read error or unknown file format.
+     */
+    static Segment open(int id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER || size > MAX_SIZE) {
+                throw new IOException("Invalid journal segment size " + size + " of " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Unknown journal segment format of " + path);
+            }
+            return new Segment(id, path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param directory Journal directory.
+     * @param id        Segment identifier.
+     * @return Segment file path.
+     */
+    static Path path(Path directory, int id) {
+        return directory.resolve(String.format("%010d", id) + SUFFIX);
+    }
+
+    /**
+     * @param path File path.
+     * @return Segment identifier or -1 if path is not a segment file.
+     */
+    static int id(Path path) {
+        String name = path.getFileName().toString();
+        if (name.length() != 10 + SUFFIX.length() || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, 10));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    int id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * @return Offset of the next record.
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * @return Amount of bytes available for records.
+     */
+    int remaining() {
+        return buffer.capacity() - position;
+    }
+
+    /**
+     * @return Underlying buffer, absolute access only.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Scans records from the start, stopping at zero length, truncated record or, if checked,
+     * at checksum mismatch. Sets write position after the last record found.
+     *
+     * @param checked True to verify checksums.
+     * @param visitor Receiver of record offsets.
+     * @return True if records end cleanly, false if scan stopped at a damaged record.
+     */
+    boolean scan(boolean checked, RecordVisitor visitor) {
+        CRC32 crc = checked ? new CRC32() : null;
+        int at = HEADER;
+        boolean clean = true;
+        while (at + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(at);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - at - RECORD_HEADER
+                    || (checked && checksum(crc, at, length) != buffer.getInt(at + 4))) {
+                clean = false;
+                break;
+            }
+            visitor.visit(at);
+            at += RECORD_HEADER + length;
+        }
+        position = at;
+        return clean;
+    }
+
+    /**
+     * Zeroes bytes from write position to the end, erasing partially written records,
+     * which may have reached storage in any order.
+     */
+    void truncate() {
+        byte[] zeros = new byte[4096];
+        ByteBuffer tail = buffer.duplicate();
+        ((Buffer) tail).position(position);
+        while (tail.hasRemaining()) {
+            tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+        }
+    }
+
+    /**
+     * Completes record whose payload is already written at write position, advancing it.
+     *
+     * @param crc           Checksum to use.
+     * @param length        Payload length.
+     * @param transactionId Transaction identifier.
+     * @param statuses      Bit mask of statuses.
+     * @return Record offset.
+     */
+    int commit(CRC32 crc, int length, long transactionId, int statuses) {
+        int at = position;
+        buffer.putLong(at + 8, transactionId);
+        buffer.putInt(at + 16, statuses);
+        buffer.putInt(at + 4, checksum(crc, at, length));
+        buffer.putInt(at, length);
+        position = at + RECORD_HEADER + length;
+        return at;
+    }
+
+    /**
+     * Copies record of another segment to write position, advancing it.
+     *
+     * @param source Source segment.
+     * @param offset Record offset in source segment.
+     * @return Record offset in this segment.
+     */
+    int copy(Segment source, int offset) {
+        int length = RECORD_HEADER + source.length(offset);
+        ByteBuffer from = source.buffer.duplicate();
+        ((Buffer) from).limit(offset + length).position(offset);
+        ByteBuffer to = buffer.duplicate();
+        ((Buffer) to).position(position);
+        to.put(from);
+        int at = position;
+        position += length;
+        return at;
+    }
+
+    /**
+     * @return Payload length of record at given offset.
+     */
+    int length(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    /**
+     * @return Transaction identifier of record at given offset.
+     */
+    long transactionId(int offset) {
+        return buffer.getLong(offset + 8);
+    }
+
+    /**
+     * @return Bit mask of statuses of record at given offset.
+     */
+    int statuses(int offset) {
+        return buffer.getInt(offset + 16);
+    }
+
+    /**
+     * @return Buffer positioned at payload of record at given offset.
+     */
+    ByteBuffer payload(int offset) {
+        ByteBuffer payload = buffer.duplicate();
+        ((Buffer) payload).limit(offset + RECORD_HEADER + length(offset)).position(offset + RECORD_HEADER);
+        return payload;
+    }
+
+    /**
+     * Forces written records to storage.
+     */
+    void force() {
+        mapping.force();
+    }
+
+    /**
+     * Closes file channel, mapping is released once buffer is collected.
+     *
+     * @throws IOException On close error.
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private int checksum(CRC32 crc, int offset, int length) {
+        ByteBuffer covered = buffer.duplicate();
+        ((Buffer) covered).limit(offset + RECORD_HEADER + length).position(offset + 8);
+        crc.reset();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Receiver of record offsets found by scan.
+     */
+    interface RecordVisitor {
+        /**
+         * @param offset Record offset.
+         */
+        void visit(int offset);
+    }
+}
@@ -0,0 +1,156 @@
+package eu.genome.fpx.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Off-heap open-addressing hash table from transaction identifier to non-zero long value.
+ * Slots of key and value are stored in a direct buffer and probed linearly, zero value marks
+ * an empty slot. Table doubles when it is half full, removal shifts following entries back.
+ * <p>
+ * Not thread-safe.
+ */
+final class TransactionIndex {
+    private static final int SLOT = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    /**
+     * Maximum amount of entries, half of the largest table.
+     */
+    static final int MAX_SIZE = MAX_CAPACITY / 2;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expected Expected amount of entries.
+     */
+    TransactionIndex(int expected) {
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity < expected * 2L) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return Amount of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key Transaction identifier.
+     * @return Value or 0 if key is absent.
+     */
+    long get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT;
+            long value = slots.getLong(at + 8);
+            if (value == 0 || slots.getLong(at) == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Maps key to given value, replacing previous one.
+     *
+     * @param key   Transaction identifier.
+     * @param value Non-zero value.
+     */
+    void put(long key, long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("Zero value");
+        }
+        if (size >= (mask + 1) / 2) {
+            if (mask + 1 >= MAX_CAPACITY) {
+                throw new IllegalStateException("Transaction index is full");
+            }
+            resize();
+        }
+        if (insert(slots, mask, key, value)) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes entry, following entries of the probe sequence may move into its slot.
+     *
+     * @param key Transaction identifier.
+     * @return True if key was present.
+     */
+    boolean remove(long key) {
+        int hole = slot(key);
+        for (; slots.getLong(hole * SLOT + 8) != 0; hole = (hole + 1) & mask) {
+            if (slots.getLong(hole * SLOT) == key) {
+                break;
+            }
+        }
+        if (slots.getLong(hole * SLOT + 8) == 0) {
+            return false;
+        }
+        for (int next = (hole + 1) & mask; slots.getLong(next * SLOT + 8) != 0; next = (next + 1) & mask) {
+            int home = slot(slots.getLong(next * SLOT));
+            // Entry moves back unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots.putLong(hole * SLOT, slots.getLong(next * SLOT));
+                slots.putLong(hole * SLOT + 8, slots.getLong(next * SLOT + 8));
+                hole = next;
+            }
+        }
+        slots.putLong(hole * SLOT + 8, 0);
+        size--;
+        return true;
+    }
+
+    private void resize() {
+        ByteBuffer previous = slots;
+        allocate((mask + 1) * 2);
+        for (int at = 0; at < previous.capacity(); at += SLOT) {
+            long value = previous.getLong(at + 8);
+            if (value != 0) {
+                insert(slots, mask, previous.getLong(at), value);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT).order(ByteOrder.nativeOrder());
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return True if key was added, false if its value was replaced.
+     */
+    private static boolean insert(ByteBuffer slots, int mask, long key, long value) {
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT;
+            if (slots.getLong(at + 8) == 0) {
+                slots.putLong(at, key);
+                slots.putLong(at + 8, value);
+                return true;
+            }
+            if (slots.getLong(at) == key) {
+                slots.putLong(at + 8, value);
+                return false;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        return slot(key, mask);
+    }
+
+    private static int slot(long key, int mask) {
+        // Murmur3 finalizer, sequential identifiers spread over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
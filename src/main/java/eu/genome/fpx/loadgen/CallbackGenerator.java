@@ -0,0 +1,286 @@
+package eu.genome.fpx.loadgen;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.domain.PaymentMethodType;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of synthetic callback request bodies signed with {@link SignatureGenerator#CALLBACK}.
+ * Transaction status, payment method and currency follow configured weighted mixes, given share
+ * of callbacks redelivers one of recent earlier callbacks byte for byte, and given share carries
+ * forged signature.
+ * <p>
+ * Callback at every position of the sequence depends only on seed and position, so generated
+ * traffic is reproducible regardless of amount of threads consuming it.
+ * <p>
+ * Thread-safe.
+ */
+public final class CallbackGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int DUPLICATE_WINDOW = 1024;
+
+    private final SignatureGenerator generator;
+    private final String apiKey;
+    private final WeightedMix.Picker<TransactionStatus> statuses;
+    private final WeightedMix.Picker<PaymentMethodType> methods;
+    private final WeightedMix.Picker<String> currencies;
+    private final double duplicateRate;
+    private final double forgedRate;
+    private final long seed;
+    private final long firstTransactionId;
+    private final long transactionTime;
+    private final AtomicLong next = new AtomicLong();
+
+    private CallbackGenerator(Builder builder) {
+        this.generator = builder.generator;
+        this.apiKey = builder.apiKey;
+        this.statuses = builder.statuses.picker();
+        this.methods = builder.methods.picker();
+        this.currencies = builder.currencies.picker();
+        this.duplicateRate = builder.duplicateRate;
+        this.forgedRate = builder.forgedRate;
+        this.seed = builder.seed;
+        this.firstTransactionId = builder.firstTransactionId;
+        this.transactionTime = builder.transactionTime.getEpochSecond();
+    }
+
+    /**
+     * @return New generator builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Callback at next position of the sequence.
+     */
+    public SyntheticCallback next() {
+        return get(next.getAndIncrement());
+    }
+
+    /**
+     * @param sequence Non-negative position in the sequence.
+     * @return Callback at given position.
+     */
+    public SyntheticCallback get(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Incorrect sequence " + sequence);
+        }
+        long original = sequence;
+        SplittableRandom random = random(original);
+        // Redeliveries point back to an earlier position, possibly another redelivery
+        while (original > 0 && random.nextDouble() < duplicateRate) {
+            original -= 1 + random.nextInt((int) Math.min(original, DUPLICATE_WINDOW));
+            random = random(original);
+        }
+        boolean forged = random.nextDouble() < forgedRate;
+        long transactionId = firstTransactionId + original;
+        return new SyntheticCallback(sequence, transactionId, body(random, transactionId, forged), original != sequence, forged);
+    }
+
+    private SplittableRandom random(long sequence) {
+        // Murmur3 finalizer, so seeds of neighbouring positions are unrelated
+        long h = seed + sequence * GOLDEN_GAMMA;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return new SplittableRandom(h ^ (h >>> 33));
+    }
+
+    private byte[] body(SplittableRandom random, long transactionId, boolean forged) {
+        TransactionStatus status = statuses.pick(random);
+        PaymentMethodType method = methods.pick(random);
+        String currency = currencies.pick(random);
+        BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(1_000_000), 2);
+        String sessionId = "session-" + Long.toHexString(random.nextLong());
+        String orderId = "order-" + transactionId;
+        String signature = generator.CALLBACK(sessionId, transactionId, amount, currency, orderId);
+        if (forged) {
+            signature = (signature.charAt(0) == '0' ? '1' : '0') + signature.substring(1);
+        }
+        long errorCode = status == TransactionStatus.SUCCESS ? 0 : 1 + random.nextInt(99);
+
+        StringBuilder json = new StringBuilder(512)
+                .append("{\"isTest\":true,\"apiKey\":\"").append(apiKey)
+                .append("\",\"apiSignature\":\"").append(signature)
+                .append("\",\"sessionId\":\"").append(sessionId)
+                .append("\",\"transactionId\":").append(transactionId)
+                .append(",\"transactionStatus\":\"").append(status)
+                .append("\",\"transactionErrorCode\":").append(errorCode)
+                .append(",\"transactionTimeUnixSeconds\":").append(transactionTime + random.nextInt(3600))
+                .append(",\"billToken\":\"").append(new UUID(random.nextLong(), random.nextLong()))
+                .append("\",\"paymentMethodType\":\"").append(method)
+                .append("\",\"amount\":").append(amount.toPlainString())
+                .append(",\"currency\":\"").append(currency)
+                .append("\",\"orderId\":\"").append(orderId)
+                .append("\",\"userId\":\"user-").append(random.nextInt(100_000))
+                .append("\",\"custom\":{\"source\":\"loadgen\"}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Callback generator builder.
+     */
+    public static final class Builder {
+        private SignatureGenerator generator;
+        private String apiKey = "loadgen";
+        private WeightedMix<TransactionStatus> statuses;
+        private WeightedMix<PaymentMethodType> methods;
+        private WeightedMix<String> currencies;
+        private double duplicateRate;
+        private double forgedRate;
+        private long seed;
+        private long firstTransactionId = 1;
+        private Instant transactionTime = Instant.now();
+
+        private Builder() {
+        }
+
+        /**
+         * @param generator Signature generator of the secret endpoint verifies with.
+         * @return Builder instance.
+         */
+        public Builder signWith(SignatureGenerator generator) {
+            this.generator = Objects.requireNonNull(generator, "generator");
+            return this;
+        }
+
+        /**
+         * @param apiKey API key written to callbacks, {@code loadgen} by default.
+         * @return Builder instance.
+         */
+        public Builder apiKey(String apiKey) {
+            this.apiKey = Objects.requireNonNull(apiKey, "apiKey");
+            return this;
+        }
+
+        /**
+         * Adds transaction status to the mix. Defaults to 85% {@code SUCCESS}, 10% {@code DECLINE},
+         * 3% {@code PROCESSING} and 2% {@code ERROR} unless any status is given.
+         *
+         * @param status Transaction status.
+         * @param weight Relative weight.
+         * @return Builder instance.
+         */
+        public Builder status(TransactionStatus status, int weight) {
+            if (statuses == null) {
+                statuses = new WeightedMix<>();
+            }
+            statuses.put(status, weight);
+            return this;
+        }
+
+        /**
+         * Adds payment method to the mix, only {@code CC} unless any method is given.
+         *
+         * @param method Payment method.
+         * @param weight Relative weight.
+         * @return Builder instance.
+         */
+        public Builder paymentMethod(PaymentMethodType method, int weight) {
+            if (methods == null) {
+                methods = new WeightedMix<>();
+            }
+            methods.put(method, weight);
+            return this;
+        }
+
+        /**
+         * Adds currency to the mix, only {@code EUR} unless any currency is given.
+         *
+         * @param currencyISOA3 Currency ISO code.
+         * @param weight        Relative weight.
+         * @return Builder instance.
+         */
+        public Builder currency(String currencyISOA3, int weight) {
+            Objects.requireNonNull(currencyISOA3, "currency");
+            if (currencies == null) {
+                currencies = new WeightedMix<>();
+            }
+            currencies.put(currencyISOA3.toUpperCase(Locale.ROOT), weight);
+            return this;
+        }
+
+        /**
+         * @param rate Share of redelivered callbacks in {@code [0, 1)} range, 0 by default.
+         * @return Builder instance.
+         */
+        public Builder duplicateRate(double rate) {
+            if (!(rate >= 0 && rate < 1)) {
+                throw new IllegalArgumentException("Incorrect duplicate rate " + rate);
+            }
+            this.duplicateRate = rate;
+            return this;
+        }
+
+        /**
+         * @param rate Share of callbacks with forged signature in {@code [0, 1]} range, 0 by default.
+         * @return Builder instance.
+         */
+        public Builder forgedRate(double rate) {
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException("Incorrect forged rate " + rate);
+            }
+            this.forgedRate = rate;
+            return this;
+        }
+
+        /**
+         * @param seed Seed of the sequence, 0 by default.
+         * @return Builder instance.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param transactionId Transaction identifier of the first callback, 1 by default.
+         * @return Builder instance.
+         */
+        public Builder firstTransactionId(long transactionId) {
+            this.firstTransactionId = transactionId;
+            return this;
+        }
+
+        /**
+         * @param time Earliest transaction time, callbacks spread over following hour. Now by default.
+         * @return Builder instance.
+         */
+        public Builder transactionTime(Instant time) {
+            this.transactionTime = Objects.requireNonNull(time, "time");
+            return this;
+        }
+
+        /**
+         * @return Callback generator.
+         * @throws IllegalStateException If signature generator is not set or a mix has no positive weight.
+         */
+        public CallbackGenerator build() {
+            if (generator == null) {
+                throw new IllegalStateException("Signature generator not set");
+            }
+            if (statuses == null) {
+                status(TransactionStatus.SUCCESS, 85);
+                status(TransactionStatus.DECLINE, 10);
+                status(TransactionStatus.PROCESSING, 3);
+                status(TransactionStatus.ERROR, 2);
+            }
+            if (methods == null) {
+                paymentMethod(PaymentMethodType.CC, 1);
+            }
+            if (currencies == null) {
+                currency("EUR", 1);
+            }
+            return new CallbackGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package eu.genome.fpx.loadgen;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackParser;
+import eu.genome.fpx.http.CallbackEndpoint;
+import eu.genome.fpx.http.CallbackHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Receiver of generated callbacks. Called concurrently by {@link LoadGenerator} connections.
+ */
+@FunctionalInterface
+public interface CallbackTarget {
+    /**
+     * Delivers callback and waits for response.
+     *
+     * @param body UTF-8 JSON request body.
+     * @return HTTP status code of response.
+     * @throws IOException On delivery error.
+     */
+    int send(byte[] body) throws IOException;
+
+    /**
+     * Posts callbacks over HTTP, reusing persistent connections of {@link HttpURLConnection}.
+     *
+     * @param url Endpoint URL, e.g. {@code http://localhost:8080/callback}.
+     * @return HTTP target.
+     */
+    static CallbackTarget http(URL url) {
+        Objects.requireNonNull(url, "url");
+        return body -> {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int code = connection.getResponseCode();
+            // Drain response, so connection returns to keep-alive pool
+            InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try (InputStream response = in) {
+                    byte[] skip = new byte[256];
+                    while (response.read(skip) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return code;
+        };
+    }
+
+    /**
+     * Parses, verifies and handles callbacks on calling thread the way {@link CallbackEndpoint} does,
+     * answering with status codes of {@link CallbackEndpoint.Outcome}. Measures processing without network.
+     *
+     * @param generator Signature generator to verify with.
+     * @param handler   Handler of verified callbacks.
+     * @return In-process target.
+     */
+    static CallbackTarget inProcess(SignatureGenerator generator, CallbackHandler handler) {
+        Objects.requireNonNull(generator, "generator");
+        Objects.requireNonNull(handler, "handler");
+        ThreadLocal<CallbackParser> parsers = ThreadLocal.withInitial(CallbackParser::new);
+        Predicate<Callback> verification = callback -> callback.verify(generator);
+        return body -> CallbackEndpoint.process(parsers.get(), body, 0, body.length, verification, handler)
+                .getStatusCode();
+    }
+}
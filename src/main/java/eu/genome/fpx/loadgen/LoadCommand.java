@@ -0,0 +1,127 @@
+package eu.genome.fpx.loadgen;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.http.CallbackEndpoint;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+
+/**
+ * Command line entry point of {@link LoadGenerator}.
+ * <p>
+ * Usage: {@code LoadCommand [--url <url>] [--secret <secret>] [--rate <n>] [--duration <seconds>]
+ * [--warmup <seconds>] [--connections <n>] [--duplicates <share>] [--forged <share>] [--in-process]}.
+ * Without URL callbacks are posted to an embedded {@link CallbackEndpoint} on loopback address,
+ * with {@code --in-process} they are handled without HTTP. Exits with 0 once report is printed,
+ * 1 if some requests failed without response and 2 on usage error.
+ */
+public final class LoadCommand {
+    private static final String USAGE = "Usage: LoadCommand [--url <url>] [--secret <secret>] [--rate <n>]"
+            + " [--duration <seconds>] [--warmup <seconds>] [--connections <n>]"
+            + " [--duplicates <share>] [--forged <share>] [--in-process]";
+
+    private LoadCommand() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs load generation command.
+     *
+     * @param args Command line arguments.
+     * @param out  Report stream.
+     * @param err  Error stream.
+     * @return Exit code.
+     * @throws InterruptedException If interrupted while running.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws InterruptedException {
+        LoadGenerator.Builder load = LoadGenerator.builder();
+        CallbackGenerator.Builder callbacks = CallbackGenerator.builder();
+        String secret = "loadgen-secret";
+        URL url = null;
+        boolean inProcess = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url":
+                        url = new URL(value(args, ++i));
+                        break;
+                    case "--secret":
+                        secret = value(args, ++i);
+                        break;
+                    case "--rate":
+                        load.rate(Double.parseDouble(value(args, ++i)));
+                        break;
+                    case "--duration":
+                        load.duration(Duration.ofMillis((long) (Double.parseDouble(value(args, ++i)) * 1000)));
+                        break;
+                    case "--warmup":
+                        load.warmup(Duration.ofMillis((long) (Double.parseDouble(value(args, ++i)) * 1000)));
+                        break;
+                    case "--connections":
+                        load.connections(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--duplicates":
+                        callbacks.duplicateRate(Double.parseDouble(value(args, ++i)));
+                        break;
+                    case "--forged":
+                        callbacks.forgedRate(Double.parseDouble(value(args, ++i)));
+                        break;
+                    case "--in-process":
+                        inProcess = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+            if (url != null && inProcess) {
+                throw new IllegalArgumentException("Both URL and in-process target given");
+            }
+        } catch (IllegalArgumentException | MalformedURLException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        SignatureGenerator generator = new SignatureGenerator(secret);
+        load.callbacks(callbacks.signWith(generator).build());
+        LoadReport report;
+        if (url != null || inProcess) {
+            load.target(inProcess ? CallbackTarget.inProcess(generator, callback -> {
+            }) : CallbackTarget.http(url));
+            report = load.build().run();
+        } else {
+            try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                    .verifyWith(generator)
+                    .handler(callback -> {
+                    })
+                    .start()) {
+                URL local = new URL("http", "localhost", endpoint.getAddress().getPort(), "/callback");
+                report = load.target(CallbackTarget.http(local)).build().run();
+            } catch (IOException e) {
+                err.println("Embedded endpoint failed: " + e.getMessage());
+                return 2;
+            }
+        }
+        try {
+            report.writeTo(out);
+        } catch (IOException e) {
+            err.println("Report failed: " + e.getMessage());
+            return 2;
+        }
+        out.flush();
+        return report.getErrorCount() == 0 ? 0 : 1;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -0,0 +1,220 @@
+package eu.genome.fpx.loadgen;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator. Request {@code i} is scheduled at {@code start + i / rate} regardless of
+ * how fast target answers, and sent by the first free connection. A target slower than the rate
+ * delays following requests, and that delay is part of their measured latency instead of
+ * silently lowering the offered load.
+ * <p>
+ * Connections are threads sending one request at a time, callbacks are generated
+ * before waiting for scheduled time, so generation does not count into latency.
+ */
+public final class LoadGenerator {
+    private static final AtomicInteger RUN_COUNTER = new AtomicInteger();
+
+    private final CallbackGenerator callbacks;
+    private final CallbackTarget target;
+    private final double rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int connections;
+
+    private LoadGenerator(Builder builder) {
+        this.callbacks = builder.callbacks;
+        this.target = builder.target;
+        this.rate = builder.rate;
+        this.warmup = builder.warmup;
+        this.duration = builder.duration;
+        this.connections = builder.connections;
+    }
+
+    /**
+     * @return New load generator builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sends scheduled requests and waits for all of them to complete.
+     *
+     * @return Report of requests scheduled after warmup.
+     * @throws InterruptedException If interrupted while waiting, sending stops.
+     */
+    public LoadReport run() throws InterruptedException {
+        double interval = 1e9 / rate;
+        long measured = (long) Math.ceil(warmup.toNanos() / interval);
+        long total = measured + (long) Math.ceil(duration.toNanos() / interval);
+        AtomicLong next = new AtomicLong();
+        AtomicLong lastEnd = new AtomicLong();
+        LoadReport report = new LoadReport();
+        LoadReport[] partials = new LoadReport[connections];
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        String prefix = "fpx-loadgen-" + RUN_COUNTER.incrementAndGet() + "-";
+
+        for (int t = 0; t < connections; t++) {
+            LoadReport partial = report.partial();
+            partials[t] = partial;
+            threads[t] = new Thread(() -> {
+                long i;
+                while ((i = next.getAndIncrement()) < total && !Thread.currentThread().isInterrupted()) {
+                    SyntheticCallback callback = callbacks.next();
+                    long scheduled = start + (long) (i * interval);
+                    if (!await(scheduled)) {
+                        return;
+                    }
+                    long sent = System.nanoTime();
+                    int code;
+                    try {
+                        code = target.send(callback.getBody());
+                    } catch (IOException | RuntimeException e) {
+                        code = -1;
+                    }
+                    long end = System.nanoTime();
+                    if (i >= measured) {
+                        partial.record(callback, code, end - scheduled, end - sent);
+                        lastEnd.accumulateAndGet(end, Math::max);
+                    }
+                }
+            }, prefix + (t + 1));
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+        for (LoadReport partial : partials) {
+            report.merge(partial);
+        }
+        long measuredStart = start + (long) (measured * interval);
+        report.setElapsedNanos(Math.max(0, lastEnd.get() - measuredStart));
+        return report;
+    }
+
+    /**
+     * Parks until given time.
+     *
+     * @param deadline Value of {@link System#nanoTime()} to wait for.
+     * @return False if interrupted.
+     */
+    private static boolean await(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load generator builder.
+     */
+    public static final class Builder {
+        private CallbackGenerator callbacks;
+        private CallbackTarget target;
+        private double rate = 1000;
+        private Duration warmup = Duration.ZERO;
+        private Duration duration = Duration.ofSeconds(10);
+        private int connections = 16;
+
+        private Builder() {
+        }
+
+        /**
+         * @param callbacks Generator of sent callbacks.
+         * @return Builder instance.
+         */
+        public Builder callbacks(CallbackGenerator callbacks) {
+            this.callbacks = Objects.requireNonNull(callbacks, "callbacks");
+            return this;
+        }
+
+        /**
+         * @param target Receiver of callbacks.
+         * @return Builder instance.
+         */
+        public Builder target(CallbackTarget target) {
+            this.target = Objects.requireNonNull(target, "target");
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond Offered load, 1000 by default.
+         * @return Builder instance.
+         */
+        public Builder rate(double requestsPerSecond) {
+            if (!(requestsPerSecond > 0 && requestsPerSecond <= 1e9)) {
+                throw new IllegalArgumentException("Incorrect rate " + requestsPerSecond);
+            }
+            this.rate = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param warmup Period of unmeasured requests before measured ones, none by default.
+         * @return Builder instance.
+         */
+        public Builder warmup(Duration warmup) {
+            if (warmup.isNegative()) {
+                throw new IllegalArgumentException("Incorrect warmup " + warmup);
+            }
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * @param duration Measured period, 10 seconds by default.
+         * @return Builder instance.
+         */
+        public Builder duration(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Incorrect duration " + duration);
+            }
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * @param connections Amount of concurrently sending connections, 16 by default.
+         * @return Builder instance.
+         */
+        public Builder connections(int connections) {
+            if (connections <= 0) {
+                throw new IllegalArgumentException("Incorrect amount of connections " + connections);
+            }
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * @return Load generator.
+         * @throws IllegalStateException If callbacks or target are not set.
+         */
+        public LoadGenerator build() {
+            if (callbacks == null) {
+                throw new IllegalStateException("Callback generator not set");
+            }
+            if (target == null) {
+                throw new IllegalStateException("Target not set");
+            }
+            return new LoadGenerator(this);
+        }
+    }
+}
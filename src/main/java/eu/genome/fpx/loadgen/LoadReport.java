@@ -0,0 +1,190 @@
+package eu.genome.fpx.loadgen;
+
+import eu.genome.fpx.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of {@link LoadGenerator} run, covering requests scheduled after warmup.
+ * <p>
+ * Latency is measured from the time request was scheduled to be sent, not from the time it was
+ * actually sent, so requests delayed behind a stalled target are accounted for (correction of
+ * coordinated omission). Service time is measured from actual send and shows target alone.
+ */
+public final class LoadReport {
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    /**
+     * Precision of latency histograms, about 3 significant digits as in HdrHistogram.
+     */
+    private static final int PRECISION_BITS = LatencyHistogram.MAX_PRECISION_BITS;
+
+    private final LatencyHistogram latency;
+    private final LatencyHistogram serviceTime;
+    private final Map<Integer, Long> statusCodes = new TreeMap<>();
+    private long requests;
+    private long duplicates;
+    private long forged;
+    private long errors;
+    private long elapsedNanos;
+
+    LoadReport() {
+        this(new LatencyHistogram(PRECISION_BITS), new LatencyHistogram(PRECISION_BITS));
+    }
+
+    private LoadReport(LatencyHistogram latency, LatencyHistogram serviceTime) {
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    /**
+     * Records delivered request.
+     *
+     * @param callback   Sent callback.
+     * @param statusCode Response status code, negative on delivery error.
+     * @param latency    Nanoseconds since scheduled send.
+     * @param service    Nanoseconds since actual send.
+     */
+    void record(SyntheticCallback callback, int statusCode, long latency, long service) {
+        requests++;
+        if (callback.isDuplicate()) {
+            duplicates++;
+        }
+        if (callback.isForged()) {
+            forged++;
+        }
+        if (statusCode < 0) {
+            errors++;
+        } else {
+            statusCodes.merge(statusCode, 1L, Long::sum);
+        }
+        this.latency.record(latency);
+        this.serviceTime.record(service);
+    }
+
+    /**
+     * Merges counters of partial report into this one.
+     *
+     * @param other Partial report.
+     */
+    void merge(LoadReport other) {
+        requests += other.requests;
+        duplicates += other.duplicates;
+        forged += other.forged;
+        errors += other.errors;
+        other.statusCodes.forEach((code, count) -> statusCodes.merge(code, count, Long::sum));
+    }
+
+    /**
+     * @return Partial report of one connection, recording latencies into histograms of this one.
+     */
+    LoadReport partial() {
+        return new LoadReport(latency, serviceTime);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return Amount of measured requests, including failed ones.
+     */
+    public long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @return Amount of redelivered callbacks among requests.
+     */
+    public long getDuplicateCount() {
+        return duplicates;
+    }
+
+    /**
+     * @return Amount of callbacks with forged signature among requests.
+     */
+    public long getForgedCount() {
+        return forged;
+    }
+
+    /**
+     * @return Amount of requests failed without response.
+     */
+    public long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * @param statusCode HTTP status code.
+     * @return Amount of responses with given status code.
+     */
+    public long getCount(int statusCode) {
+        return statusCodes.getOrDefault(statusCode, 0L);
+    }
+
+    /**
+     * @return Amount of responses by status code, sorted by code.
+     */
+    public Map<Integer, Long> getStatusCodes() {
+        return Collections.unmodifiableMap(statusCodes);
+    }
+
+    /**
+     * @return Completed requests per second of measured period.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return Latency since scheduled send, corrected for coordinated omission.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Latency since actual send.
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Writes human readable report, latencies in microseconds.
+     *
+     * @param out Target.
+     * @throws IOException On write error.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append("requests ").append(Long.toString(requests)).append('\n');
+        out.append("throughput ").append(String.format(Locale.ROOT, "%.1f", getThroughput())).append("/s\n");
+        out.append("duplicates ").append(Long.toString(duplicates)).append('\n');
+        out.append("forged ").append(Long.toString(forged)).append('\n');
+        out.append("errors ").append(Long.toString(errors)).append('\n');
+        for (Map.Entry<Integer, Long> entry : statusCodes.entrySet()) {
+            out.append("status ").append(entry.getKey().toString()).append(' ')
+                    .append(entry.getValue().toString()).append('\n');
+        }
+        write(out, "latency", latency);
+        write(out, "service time", serviceTime);
+    }
+
+    private static void write(Appendable out, String title, LatencyHistogram histogram) throws IOException {
+        out.append(title);
+        for (double percentile : PERCENTILES) {
+            out.append(" p").append(percentile == (long) percentile
+                    ? Long.toString((long) percentile) : Double.toString(percentile));
+            out.append(' ').append(micros(histogram.getPercentile(percentile)));
+        }
+        out.append(" max ").append(micros(histogram.getMax())).append(" mean ")
+                .append(micros((long) histogram.getMean())).append('\n');
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+}
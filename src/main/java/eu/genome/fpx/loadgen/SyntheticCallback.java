@@ -0,0 +1,52 @@
+package eu.genome.fpx.loadgen;
+
+/**
+ * Generated callback request body with expected outcome of its delivery.
+ */
+public final class SyntheticCallback {
+    private final long sequence;
+    private final long transactionId;
+    private final byte[] body;
+    private final boolean duplicate;
+    private final boolean forged;
+
+    SyntheticCallback(long sequence, long transactionId, byte[] body, boolean duplicate, boolean forged) {
+        this.sequence = sequence;
+        this.transactionId = transactionId;
+        this.body = body;
+        this.duplicate = duplicate;
+        this.forged = forged;
+    }
+
+    /**
+     * @return Position in generated sequence.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return UTF-8 JSON request body, shared, must not be modified.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return True if this is a redelivery of an earlier callback of the sequence.
+     */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    /**
+     * @return True if signature is invalid.
+     */
+    public boolean isForged() {
+        return forged;
+    }
+}
@@ -0,0 +1,81 @@
+package eu.genome.fpx.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Values picked at random with given relative weights.
+ *
+ * @param <T> Value type.
+ */
+final class WeightedMix<T> {
+    private final List<T> values = new ArrayList<>();
+    private final List<Integer> weights = new ArrayList<>();
+
+    /**
+     * Sets weight of value, replacing previous one.
+     *
+     * @param value  Value.
+     * @param weight Non-negative relative weight, zero excludes value.
+     */
+    void put(T value, int weight) {
+        Objects.requireNonNull(value, "value");
+        if (weight < 0) {
+            throw new IllegalArgumentException("Incorrect weight " + weight + " of " + value);
+        }
+        int index = values.indexOf(value);
+        if (index < 0) {
+            values.add(value);
+            weights.add(weight);
+        } else {
+            weights.set(index, weight);
+        }
+    }
+
+    /**
+     * @return Immutable picker of current values.
+     * @throws IllegalStateException If no value has positive weight.
+     */
+    Picker<T> picker() {
+        return new Picker<>(values, weights);
+    }
+
+    /**
+     * Immutable weighted random choice.
+     *
+     * @param <T> Value type.
+     */
+    static final class Picker<T> {
+        private final Object[] values;
+        private final long[] bounds;
+
+        private Picker(List<T> values, List<Integer> weights) {
+            this.values = values.toArray();
+            this.bounds = new long[weights.size()];
+            long total = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                total += weights.get(i);
+                bounds[i] = total;
+            }
+            if (total == 0) {
+                throw new IllegalStateException("No value has positive weight");
+            }
+        }
+
+        /**
+         * @param random Source of randomness.
+         * @return Randomly picked value.
+         */
+        @SuppressWarnings("unchecked")
+        T pick(SplittableRandom random) {
+            long point = random.nextLong(bounds[bounds.length - 1]);
+            int i = 0;
+            while (point >= bounds[i]) {
+                i++;
+            }
+            return (T) values[i];
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.SignatureMode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sink emitting JDK Flight Recorder events named {@code eu.genome.fpx.Signature}.
+ * Events are only created while recording with that event enabled is running.
+ * Requires runtime with {@code jdk.jfr} module, see {@link #isSupported()}.
+ * <p>
+ * Event type is defined through {@code jdk.jfr.EventFactory} looked up reflectively,
+ * so this class compiles and loads on Java 8 runtimes without Flight Recorder.
+ */
+public final class JfrMetricsSink implements MetricsSink {
+    /**
+     * Constructs sink.
+     *
+     * @throws IllegalStateException If runtime does not support Flight Recorder.
+     */
+    public JfrMetricsSink() {
+        if (!isSupported()) {
+            throw new IllegalStateException("JDK Flight Recorder not supported");
+        }
+        try {
+            Event.define();
+        } catch (LinkageError e) {
+            throw new IllegalStateException("JDK Flight Recorder event not defined", e);
+        }
+    }
+
+    /**
+     * @return True if current runtime supports Flight Recorder events.
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName("jdk.jfr.EventFactory", false, JfrMetricsSink.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void record(Operation operation, SignatureMode mode, Outcome outcome, long durationNanos) {
+        try {
+            Object event = Event.NEW_EVENT.invokeExact();
+            if ((boolean) Event.SHOULD_COMMIT.invokeExact(event)) {
+                Event.SET.invokeExact(event, 0, (Object) operation.name());
+                Event.SET.invokeExact(event, 1, (Object) (mode == null ? null : mode.name()));
+                Event.SET.invokeExact(event, 2, (Object) outcome.name());
+                Event.SET.invokeExact(event, 3, (Object) durationNanos);
+                Event.COMMIT.invokeExact(event);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Flight Recorder event not recorded", e);
+        }
+    }
+
+    /**
+     * Event type, defined on first use. Fields are set by index in order of declaration.
+     */
+    private static final class Event {
+        private static final MethodHandle NEW_EVENT;
+        private static final MethodHandle SHOULD_COMMIT;
+        private static final MethodHandle SET;
+        private static final MethodHandle COMMIT;
+
+        static {
+            try {
+                ClassLoader loader = JfrMetricsSink.class.getClassLoader();
+                Class<?> eventClass = Class.forName("jdk.jfr.Event", true, loader);
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", true, loader);
+                Object factory = factoryClass.getMethod("create", List.class, List.class).invoke(null,
+                        Arrays.asList(
+                                annotation("Name", "eu.genome.fpx.Signature"),
+                                annotation("Label", "Signature Operation"),
+                                annotation("Category", new String[]{"FPX"}),
+                                annotation("Description", "Signature generation, verification or callback parsing")),
+                        Arrays.asList(
+                                field(String.class, "operation", annotation("Label", "Operation")),
+                                field(String.class, "mode", annotation("Label", "Mode")),
+                                field(String.class, "outcome", annotation("Label", "Outcome")),
+                                field(long.class, "elapsed", annotation("Label", "Elapsed"),
+                                        annotation("Timespan", "NANOSECONDS"))));
+
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                NEW_EVENT = lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass))
+                        .bindTo(factory)
+                        .asType(MethodType.methodType(Object.class));
+                SHOULD_COMMIT = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+                        .asType(MethodType.methodType(boolean.class, Object.class));
+                SET = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+                        .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+                COMMIT = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private Event() {
+        }
+
+        /**
+         * Defines event type, if not yet defined.
+         */
+        static void define() {
+        }
+
+        /**
+         * @return {@code jdk.jfr.AnnotationElement} of given {@code jdk.jfr} annotation and value.
+         */
+        private static Object annotation(String type, Object value) throws ReflectiveOperationException {
+            ClassLoader loader = JfrMetricsSink.class.getClassLoader();
+            Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+            Constructor<?> constructor = elementClass.getConstructor(Class.class, Object.class);
+            return constructor.newInstance(Class.forName("jdk.jfr." + type, true, loader), value);
+        }
+
+        /**
+         * @return {@code jdk.jfr.ValueDescriptor} of event field.
+         */
+        private static Object field(Class<?> type, String name, Object... annotations) throws ReflectiveOperationException {
+            Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor", true, JfrMetricsSink.class.getClassLoader());
+            Constructor<?> constructor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+            return constructor.newInstance(type, name, Arrays.asList(annotations));
+        }
+    }
+}
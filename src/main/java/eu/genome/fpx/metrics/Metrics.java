@@ -0,0 +1,96 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.InvalidSignatureDataException;
+import eu.genome.fpx.SignatureMode;
+
+import java.io.IOException;
+
+/**
+ * Global instrumentation switch of signature generation, verification and callback parsing.
+ * No data is collected until a sink is registered, instrumented code then only
+ * reads single volatile field per call.
+ */
+public final class Metrics {
+    private static volatile MetricsSink sink;
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers sink receiving instrumentation data, replacing previous one.
+     *
+     * @param value Sink to register or null to disable instrumentation.
+     */
+    public static void setSink(MetricsSink value) {
+        sink = value;
+    }
+
+    /**
+     * @return Registered sink or null if instrumentation is disabled.
+     */
+    public static MetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Classifies failure of instrumented operation. Only {@link InvalidSignatureDataException} and
+     * parsing {@link IOException} are attributed to data, other failures are {@link Outcome#ERROR}.
+     *
+     * @param error Failure.
+     * @return Failure outcome.
+     */
+    public static Outcome outcome(Throwable error) {
+        if (error instanceof InvalidSignatureDataException) {
+            return ((InvalidSignatureDataException) error).getReason();
+        }
+        if (error instanceof IOException) {
+            return Outcome.MALFORMED;
+        }
+        return Outcome.ERROR;
+    }
+
+    /**
+     * Runs operation and records it to registered sink, used by instrumented library components.
+     * Without sink operation is only run.
+     *
+     * @param operation Operation.
+     * @param mode      Signature mode, optional.
+     * @param action    Operation to run.
+     * @param <T>       Result type.
+     * @param <E>       Checked exception type.
+     * @return Operation result.
+     * @throws E On operation failure.
+     */
+    public static <T, E extends Exception> T record(
+            Operation operation,
+            SignatureMode mode,
+            Action<T, E> action
+    ) throws E {
+        MetricsSink sink = Metrics.sink;
+        if (sink == null) {
+            return action.run();
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.run();
+        } catch (Exception e) {
+            sink.record(operation, mode, outcome(e), System.nanoTime() - start);
+            throw e;
+        }
+        Outcome outcome = Boolean.FALSE.equals(result) ? Outcome.INVALID_SIGNATURE : Outcome.SUCCESS;
+        sink.record(operation, mode, outcome, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Instrumented operation.
+     *
+     * @param <T> Result type, false {@link Boolean} result means invalid signature.
+     * @param <E> Checked exception type.
+     */
+    @FunctionalInterface
+    public interface Action<T, E extends Exception> {
+        T run() throws E;
+    }
+}
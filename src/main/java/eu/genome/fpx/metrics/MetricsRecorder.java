@@ -0,0 +1,88 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.SignatureMode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory sink counting outcomes and recording latency histograms
+ * per operation and signature mode.
+ * <p>
+ * Thread-safe.
+ */
+public final class MetricsRecorder implements MetricsSink {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int MODES = SignatureMode.values().length + 1;
+
+    private final LongAdder[] counters = new LongAdder[OPERATIONS.length * MODES * OUTCOMES.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length * MODES];
+
+    /**
+     * Constructs empty recorder.
+     */
+    public MetricsRecorder() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void record(Operation operation, SignatureMode mode, Outcome outcome, long durationNanos) {
+        int slot = slot(operation, mode);
+        counters[slot * OUTCOMES.length + outcome.ordinal()].increment();
+        latencies[slot].record(durationNanos);
+    }
+
+    /**
+     * @param operation Operation.
+     * @param mode      Signature mode, null for operations without mode.
+     * @param outcome   Outcome.
+     * @return Amount of operations finished with given outcome.
+     */
+    public long getCount(Operation operation, SignatureMode mode, Outcome outcome) {
+        return counters[slot(operation, mode) * OUTCOMES.length + outcome.ordinal()].sum();
+    }
+
+    /**
+     * @param operation Operation.
+     * @param mode      Signature mode, null for operations without mode.
+     * @return Amount of operations with any outcome.
+     */
+    public long getCount(Operation operation, SignatureMode mode) {
+        int offset = slot(operation, mode) * OUTCOMES.length;
+        long total = 0;
+        for (int i = 0; i < OUTCOMES.length; i++) {
+            total += counters[offset + i].sum();
+        }
+        return total;
+    }
+
+    /**
+     * @param outcome Outcome.
+     * @return Amount of operations of any kind finished with given outcome.
+     */
+    public long getCount(Outcome outcome) {
+        long total = 0;
+        for (int i = outcome.ordinal(); i < counters.length; i += OUTCOMES.length) {
+            total += counters[i].sum();
+        }
+        return total;
+    }
+
+    /**
+     * @param operation Operation.
+     * @param mode      Signature mode, null for operations without mode.
+     * @return Latency histogram of operations with any outcome.
+     */
+    public LatencyHistogram getLatency(Operation operation, SignatureMode mode) {
+        return latencies[slot(operation, mode)];
+    }
+
+    private static int slot(Operation operation, SignatureMode mode) {
+        return operation.ordinal() * MODES + (mode == null ? 0 : mode.ordinal() + 1);
+    }
+}
@@ -0,0 +1,33 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.SignatureMode;
+
+/**
+ * Receiver of instrumentation data, bridge to external metrics system.
+ * Implementations are called on hot path from many threads and must be thread-safe and fast.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+    /**
+     * Records finished operation.
+     *
+     * @param operation     Operation.
+     * @param mode          Signature mode, null for {@link Operation#PARSE}.
+     * @param outcome       Operation outcome.
+     * @param durationNanos Operation duration in nanoseconds.
+     */
+    void record(Operation operation, SignatureMode mode, Outcome outcome, long durationNanos);
+
+    /**
+     * Creates sink passing records to both this and given sink.
+     *
+     * @param other Other sink.
+     * @return Combined sink.
+     */
+    default MetricsSink and(MetricsSink other) {
+        return (operation, mode, outcome, durationNanos) -> {
+            this.record(operation, mode, outcome, durationNanos);
+            other.record(operation, mode, outcome, durationNanos);
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package eu.genome.fpx.metrics;
+
+/**
+ * List of instrumented operations.
+ */
+public enum Operation {
+    /**
+     * Signature generation.
+     */
+    SIGN,
+
+    /**
+     * Signature verification.
+     */
+    VERIFY,
+
+    /**
+     * Callback parsing.
+     */
+    PARSE;
+}
@@ -0,0 +1,46 @@
+package eu.genome.fpx.metrics;
+
+/**
+ * List of instrumented operation outcomes.
+ */
+public enum Outcome {
+    /**
+     * Operation succeeded, signature is valid for verifications.
+     */
+    SUCCESS,
+
+    /**
+     * Verified signature does not match.
+     */
+    INVALID_SIGNATURE,
+
+    /**
+     * Empty application secret.
+     */
+    EMPTY_SECRET,
+
+    /**
+     * Zero, negative or otherwise incorrect amount.
+     */
+    INCORRECT_AMOUNT,
+
+    /**
+     * Empty or not ISO Alpha-3 currency.
+     */
+    INCORRECT_CURRENCY,
+
+    /**
+     * Mandatory field is not provided.
+     */
+    MISSING_FIELD,
+
+    /**
+     * Callback data could not be parsed.
+     */
+    MALFORMED,
+
+    /**
+     * Any other error.
+     */
+    ERROR;
+}
@@ -0,0 +1,173 @@
+package eu.genome.fpx.state;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Open-addressing hash table from primitive long key to fixed amount of long fields,
+ * stored in a heap or direct {@link LongBuffer}. Slots are probed linearly, removal shifts
+ * following entries back instead of leaving tombstones. Table doubles at 70% load.
+ * <p>
+ * Not thread-safe.
+ */
+final class LongStateTable {
+    private static final int MAX_SLOTS = 1 << 28;
+
+    private final boolean offHeap;
+    private final int stride;
+    private LongBuffer slots;
+    private int mask;
+    private int size;
+
+    /**
+     * @param fields   Amount of value fields, first field must be non-zero for every entry.
+     * @param expected Expected amount of entries.
+     * @param offHeap  True to store slots in direct memory.
+     */
+    LongStateTable(int fields, int expected, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.stride = fields + 1;
+        int capacity = 16;
+        while (capacity < MAX_SLOTS && capacity * 7L / 10 < expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @param key Key.
+     * @return Well mixed hash of key.
+     */
+    static long hash(long key) {
+        // Murmur3 finalizer
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Amount of slots.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @param key Key.
+     * @return Slot of key or -1 if absent.
+     */
+    int find(long key) {
+        for (int slot = (int) hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int at = slot * stride;
+            if (slots.get(at + 1) == 0) {
+                return -1;
+            }
+            if (slots.get(at) == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Claims empty slot for absent key, caller must set non-zero first field right away.
+     *
+     * @param key Key, must be absent.
+     * @return Slot of key.
+     */
+    int insert(long key) {
+        if (size + 1 > (mask + 1) * 7L / 10) {
+            if (mask + 1 >= MAX_SLOTS) {
+                throw new IllegalStateException("Transaction state table is full");
+            }
+            resize();
+        }
+        for (int slot = (int) hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (slots.get(slot * stride + 1) == 0) {
+                slots.put(slot * stride, key);
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @param slot Occupied or empty slot.
+     * @return True if slot holds an entry.
+     */
+    boolean isOccupied(int slot) {
+        return slots.get(slot * stride + 1) != 0;
+    }
+
+    long key(int slot) {
+        return slots.get(slot * stride);
+    }
+
+    long get(int slot, int field) {
+        return slots.get(slot * stride + 1 + field);
+    }
+
+    void set(int slot, int field, long value) {
+        slots.put(slot * stride + 1 + field, value);
+    }
+
+    /**
+     * Removes entry, following entries of the probe sequence may move into the slot.
+     *
+     * @param slot Occupied slot.
+     */
+    void remove(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; isOccupied(next); next = (next + 1) & mask) {
+            int home = (int) hash(key(next)) & mask;
+            // Entry moves back unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                copy(next, hole);
+                hole = next;
+            }
+        }
+        slots.put(hole * stride + 1, 0);
+        size--;
+    }
+
+    private void copy(int from, int to) {
+        for (int i = 0; i < stride; i++) {
+            slots.put(to * stride + i, slots.get(from * stride + i));
+        }
+    }
+
+    private void resize() {
+        LongBuffer previous = slots;
+        int previousCapacity = mask + 1;
+        allocate(previousCapacity * 2);
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            int from = slot * stride;
+            if (previous.get(from + 1) != 0) {
+                long key = previous.get(from);
+                int to = (int) hash(key) & mask;
+                while (isOccupied(to)) {
+                    to = (to + 1) & mask;
+                }
+                for (int i = 0; i < stride; i++) {
+                    slots.put(to * stride + i, previous.get(from + i));
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        int longs = capacity * stride;
+        slots = offHeap
+                ? ByteBuffer.allocateDirect(longs * 8).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.allocate(longs);
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,158 @@
+package eu.genome.fpx.state;
+
+import eu.genome.domain.TransactionStatus;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Order in which transaction states move forward.
+ * Every status has a rank, callback advances the state if its status has higher rank,
+ * or the same rank and later transaction time. Terminal statuses rank above all others
+ * and a terminal state is never replaced, so neither stale nor later callbacks can change
+ * a final state. Absent status ranks below all.
+ * <p>
+ * Immutable and thread-safe.
+ */
+public final class StatusPrecedence {
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final StatusPrecedence DEFAULTS = builder()
+            .rank(0, TransactionStatus.INITIALIZED)
+            .rank(1, TransactionStatus.WAIT_FIRST_SIGN)
+            .rank(2, TransactionStatus.PROCESSING)
+            .terminal(3,
+                    TransactionStatus.SUCCESS,
+                    TransactionStatus.DECLINE,
+                    TransactionStatus.FRAUD,
+                    TransactionStatus.ERROR,
+                    TransactionStatus.ABORTED,
+                    TransactionStatus.TIMED_OUT,
+                    TransactionStatus.CANCELED)
+            .build();
+
+    private final int[] ranks;
+    private final boolean[] terminal;
+
+    private StatusPrecedence(Builder builder) {
+        this.ranks = builder.ranks.clone();
+        this.terminal = builder.terminal.clone();
+    }
+
+    /**
+     * Default precedence: {@code INITIALIZED}, {@code WAIT_FIRST_SIGN}, {@code PROCESSING},
+     * followed by all other statuses, which are terminal.
+     *
+     * @return Default precedence.
+     */
+    public static StatusPrecedence defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return New precedence builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param status Transaction status, may be null.
+     * @return Rank of status, -1 for absent status.
+     */
+    public int rank(TransactionStatus status) {
+        return status == null ? -1 : ranks[status.ordinal()];
+    }
+
+    /**
+     * @param status Transaction status, may be null.
+     * @return True if status is terminal.
+     */
+    public boolean isTerminal(TransactionStatus status) {
+        return status != null && terminal[status.ordinal()];
+    }
+
+    /**
+     * @param from     Current status, may be null.
+     * @param fromTime Current transaction time.
+     * @param to       Incoming status, may be null.
+     * @param toTime   Incoming transaction time.
+     * @return True if incoming state replaces current one, always false for terminal current status.
+     */
+    public boolean advances(TransactionStatus from, long fromTime, TransactionStatus to, long toTime) {
+        if (isTerminal(from)) {
+            return false;
+        }
+        int current = rank(from);
+        int next = rank(to);
+        return next > current || (next == current && toTime > fromTime);
+    }
+
+    /**
+     * Status precedence builder.
+     */
+    public static final class Builder {
+        private final int[] ranks = new int[STATUSES.length];
+        private final boolean[] terminal = new boolean[STATUSES.length];
+
+        private Builder() {
+            Arrays.fill(ranks, -1);
+        }
+
+        /**
+         * Assigns rank to non-terminal statuses.
+         *
+         * @param rank     Non-negative rank, higher moves forward.
+         * @param statuses Statuses of this rank.
+         * @return Builder instance.
+         */
+        public Builder rank(int rank, TransactionStatus... statuses) {
+            return set(rank, false, statuses);
+        }
+
+        /**
+         * Assigns rank to terminal statuses, it must be above rank of every non-terminal status.
+         * Once reached, terminal state is never replaced.
+         *
+         * @param rank     Non-negative rank, higher moves forward.
+         * @param statuses Terminal statuses of this rank.
+         * @return Builder instance.
+         */
+        public Builder terminal(int rank, TransactionStatus... statuses) {
+            return set(rank, true, statuses);
+        }
+
+        private Builder set(int rank, boolean isTerminal, TransactionStatus... statuses) {
+            if (rank < 0) {
+                throw new IllegalArgumentException("Rank must not be negative");
+            }
+            for (TransactionStatus status : statuses) {
+                Objects.requireNonNull(status, "status");
+                ranks[status.ordinal()] = rank;
+                terminal[status.ordinal()] = isTerminal;
+            }
+            return this;
+        }
+
+        /**
+         * @return Status precedence.
+         * @throws IllegalArgumentException If a status has no rank or a terminal status does not outrank others.
+         */
+        public StatusPrecedence build() {
+            int highest = -1;
+            for (TransactionStatus status : STATUSES) {
+                if (ranks[status.ordinal()] < 0) {
+                    throw new IllegalArgumentException("Status " + status + " has no rank");
+                }
+                if (!terminal[status.ordinal()]) {
+                    highest = Math.max(highest, ranks[status.ordinal()]);
+                }
+            }
+            for (TransactionStatus status : STATUSES) {
+                if (terminal[status.ordinal()] && ranks[status.ordinal()] <= highest) {
+                    throw new IllegalArgumentException("Terminal status " + status + " must outrank non-terminal ones");
+                }
+            }
+            return new StatusPrecedence(this);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package eu.genome.fpx.state;
+
+import eu.genome.domain.TransactionStatus;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Snapshot of aggregated transaction state.
+ */
+public final class TransactionState {
+    private final long transactionId;
+    private final TransactionStatus status;
+    private final long transactionTime;
+    private final long errorCode;
+    private final long amountMinorUnits;
+
+    TransactionState(long transactionId, TransactionStatus status, long transactionTime, long errorCode, long amountMinorUnits) {
+        this.transactionId = transactionId;
+        this.status = status;
+        this.transactionTime = transactionTime;
+        this.errorCode = errorCode;
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return Latest status, null if callbacks carried none.
+     */
+    public TransactionStatus getTransactionStatus() {
+        return status;
+    }
+
+    public Instant getTransactionTime() {
+        return Instant.ofEpochSecond(transactionTime);
+    }
+
+    public long getTransactionErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * @return True if amount is known.
+     */
+    public boolean hasAmount() {
+        return amountMinorUnits != TransactionStateAggregator.NO_AMOUNT;
+    }
+
+    /**
+     * @return Amount in minor units.
+     * @throws IllegalStateException If amount is unknown.
+     */
+    public long getAmountMinorUnits() {
+        if (!hasAmount()) {
+            throw new IllegalStateException("Amount of transaction " + transactionId + " is unknown");
+        }
+        return amountMinorUnits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransactionState)) {
+            return false;
+        }
+        TransactionState other = (TransactionState) o;
+        return transactionId == other.transactionId
+                && transactionTime == other.transactionTime
+                && errorCode == other.errorCode
+                && amountMinorUnits == other.amountMinorUnits
+                && status == other.status;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionId, status, transactionTime, errorCode, amountMinorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionState{" +
+                "transactionId=" + transactionId +
+                ", status=" + status +
+                ", transactionTime=" + transactionTime +
+                ", errorCode=" + errorCode +
+                ", amountMinorUnits=" + (hasAmount() ? String.valueOf(amountMinorUnits) : "unknown") +
+                '}';
+    }
+}
@@ -0,0 +1,332 @@
+package eu.genome.fpx.state;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.dto.Callback;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latest state of every transaction, aggregated from callbacks that may arrive
+ * duplicated or out of order. State of a transaction moves forward only as allowed by
+ * {@link StatusPrecedence}, so late callbacks never regress it.
+ * <p>
+ * States are kept in primitive open-addressing tables keyed by transaction identifier,
+ * 40 bytes per slot on heap or in direct memory, without boxed keys or retained callbacks.
+ * Transactions are split between independently locked stripes.
+ * <p>
+ * Terminal states may expire after configured time since their last change, see {@link #expire()}.
+ * Expiry window should exceed callback redelivery period, as a callback of expired
+ * transaction starts it anew.
+ * <p>
+ * Thread-safe.
+ */
+public final class TransactionStateAggregator {
+    /**
+     * Amount value of transactions with unknown amount.
+     */
+    static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final int FIELDS = 4;
+    private static final int META = 0;
+    private static final int TIME = 1;
+    private static final int ERROR = 2;
+    private static final int AMOUNT = 3;
+    // Meta field: occupied flag, seconds of last change, status ordinal + 1 (0 for absent status)
+    private static final long OCCUPIED = 1L << 62;
+    private static final int TOUCHED_SHIFT = 8;
+    private static final long STATUS_MASK = 0xFF;
+    private static final long TOUCHED_MASK = (1L << 40) - 1;
+
+    private final StatusPrecedence precedence;
+    private final Clock clock;
+    private final long ttlSeconds;
+    private final LongStateTable[] stripes;
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private TransactionStateAggregator(Builder builder) {
+        this.precedence = builder.precedence;
+        this.clock = builder.clock;
+        this.ttlSeconds = builder.terminalTtl == null ? -1 : builder.terminalTtl.getSeconds();
+        int count = builder.stripes > 0
+                ? Integer.highestOneBit(builder.stripes)
+                : Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4);
+        this.stripes = new LongStateTable[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new LongStateTable(FIELDS, builder.expectedTransactions / count, builder.offHeap);
+        }
+    }
+
+    /**
+     * @return New aggregator builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private LongStateTable stripe(long transactionId) {
+        return stripes[(int) (LongStateTable.hash(transactionId) >>> 40) & (stripes.length - 1)];
+    }
+
+    /**
+     * Applies callback to state of its transaction.
+     *
+     * @param callback Callback.
+     * @return True if callback changed transaction state, false if it is stale or duplicate.
+     */
+    public boolean update(Callback callback) {
+        long amount = NO_AMOUNT;
+        if (callback.getAmount() != null) {
+            try {
+                amount = callback.getAmountMinorUnits();
+            } catch (ArithmeticException e) {
+                // Does not fit minor units, keep unknown
+            }
+        }
+        return update(
+                callback.getTransactionId(),
+                callback.getTransactionStatus(),
+                callback.getTransactionTime().getEpochSecond(),
+                callback.getTransactionErrorCode(),
+                amount
+        );
+    }
+
+    /**
+     * Applies transaction state change.
+     *
+     * @param transactionId    Transaction identifier.
+     * @param status           Transaction status, may be null.
+     * @param transactionTime  Transaction time in Unix seconds.
+     * @param errorCode        Transaction error code.
+     * @param amountMinorUnits Amount in minor units, {@link Long#MIN_VALUE} if unknown.
+     * @return True if state changed, false if given one is stale or duplicate.
+     */
+    public boolean update(long transactionId, TransactionStatus status, long transactionTime, long errorCode, long amountMinorUnits) {
+        long meta = OCCUPIED | (now() & TOUCHED_MASK) << TOUCHED_SHIFT | (status == null ? 0 : status.ordinal() + 1);
+        LongStateTable table = stripe(transactionId);
+        synchronized (table) {
+            int slot = table.find(transactionId);
+            if (slot < 0) {
+                slot = table.insert(transactionId);
+            } else {
+                if (!precedence.advances(status(table.get(slot, META)), table.get(slot, TIME), status, transactionTime)) {
+                    stale.increment();
+                    return false;
+                }
+                if (amountMinorUnits == NO_AMOUNT) {
+                    amountMinorUnits = table.get(slot, AMOUNT);
+                }
+            }
+            table.set(slot, META, meta);
+            table.set(slot, TIME, transactionTime);
+            table.set(slot, ERROR, errorCode);
+            table.set(slot, AMOUNT, amountMinorUnits);
+            return true;
+        }
+    }
+
+    /**
+     * @param transactionId Transaction identifier.
+     * @return True if transaction state is known.
+     */
+    public boolean contains(long transactionId) {
+        LongStateTable table = stripe(transactionId);
+        synchronized (table) {
+            return table.find(transactionId) >= 0;
+        }
+    }
+
+    /**
+     * @param transactionId Transaction identifier.
+     * @return Latest transaction status, null if unknown or absent.
+     */
+    public TransactionStatus getStatus(long transactionId) {
+        LongStateTable table = stripe(transactionId);
+        synchronized (table) {
+            int slot = table.find(transactionId);
+            return slot < 0 ? null : status(table.get(slot, META));
+        }
+    }
+
+    /**
+     * @param transactionId Transaction identifier.
+     * @return Snapshot of transaction state, null if unknown.
+     */
+    public TransactionState get(long transactionId) {
+        LongStateTable table = stripe(transactionId);
+        synchronized (table) {
+            int slot = table.find(transactionId);
+            if (slot < 0) {
+                return null;
+            }
+            return new TransactionState(
+                    transactionId,
+                    status(table.get(slot, META)),
+                    table.get(slot, TIME),
+                    table.get(slot, ERROR),
+                    table.get(slot, AMOUNT)
+            );
+        }
+    }
+
+    /**
+     * @return Amount of known transactions.
+     */
+    public int size() {
+        int size = 0;
+        for (LongStateTable table : stripes) {
+            synchronized (table) {
+                size += table.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes terminal states unchanged for configured time. Locks one stripe at a time,
+     * intended to be called periodically, e.g. from a scheduled executor.
+     *
+     * @return Amount of removed states, 0 if expiry is not configured.
+     */
+    public int expire() {
+        if (ttlSeconds < 0) {
+            return 0;
+        }
+        long cutoff = now() - ttlSeconds;
+        int removed = 0;
+        for (LongStateTable table : stripes) {
+            synchronized (table) {
+                int slot = 0;
+                while (slot < table.capacity()) {
+                    if (table.isOccupied(slot) && isExpired(table.get(slot, META), cutoff)) {
+                        // Following entry may shift into this slot, check it again
+                        table.remove(slot);
+                        removed++;
+                    } else {
+                        slot++;
+                    }
+                }
+            }
+        }
+        expired.add(removed);
+        return removed;
+    }
+
+    private boolean isExpired(long meta, long cutoff) {
+        return precedence.isTerminal(status(meta)) && (meta >>> TOUCHED_SHIFT & TOUCHED_MASK) <= cutoff;
+    }
+
+    /**
+     * @return Amount of callbacks ignored as stale or duplicate.
+     */
+    public long getStaleCount() {
+        return stale.sum();
+    }
+
+    /**
+     * @return Amount of expired terminal states.
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    private long now() {
+        return clock.millis() / 1000;
+    }
+
+    private static TransactionStatus status(long meta) {
+        int code = (int) (meta & STATUS_MASK);
+        return code == 0 ? null : STATUSES[code - 1];
+    }
+
+    /**
+     * Transaction state aggregator builder.
+     */
+    public static final class Builder {
+        private StatusPrecedence precedence = StatusPrecedence.defaults();
+        private int stripes;
+        private int expectedTransactions = 1 << 16;
+        private boolean offHeap;
+        private Duration terminalTtl;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        /**
+         * @param precedence Status precedence, {@link StatusPrecedence#defaults()} by default.
+         * @return Builder instance.
+         */
+        public Builder precedence(StatusPrecedence precedence) {
+            this.precedence = Objects.requireNonNull(precedence, "precedence");
+            return this;
+        }
+
+        /**
+         * @param stripes Amount of independently locked stripes, rounded down to power of two.
+         *                Four per available processor by default.
+         * @return Builder instance.
+         */
+        public Builder stripes(int stripes) {
+            if (stripes <= 0) {
+                throw new IllegalArgumentException("Incorrect stripes " + stripes);
+            }
+            this.stripes = stripes;
+            return this;
+        }
+
+        /**
+         * @param expectedTransactions Expected amount of transactions, to size tables up front.
+         * @return Builder instance.
+         */
+        public Builder expectedTransactions(int expectedTransactions) {
+            if (expectedTransactions < 0) {
+                throw new IllegalArgumentException("Incorrect expected transactions " + expectedTransactions);
+            }
+            this.expectedTransactions = expectedTransactions;
+            return this;
+        }
+
+        /**
+         * @param offHeap True to keep states in direct memory instead of heap.
+         * @return Builder instance.
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * @param terminalTtl Time since last change after which terminal states expire, null to keep them.
+         * @return Builder instance.
+         */
+        public Builder terminalTtl(Duration terminalTtl) {
+            if (terminalTtl != null && terminalTtl.isNegative()) {
+                throw new IllegalArgumentException("Incorrect terminal TTL " + terminalTtl);
+            }
+            this.terminalTtl = terminalTtl;
+            return this;
+        }
+
+        /**
+         * @param clock Clock of expiry, system UTC by default.
+         * @return Builder instance.
+         */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /**
+         * @return Transaction state aggregator.
+         */
+        public TransactionStateAggregator build() {
+            return new TransactionStateAggregator(this);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.SignatureGeneratorRegistry;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.dto.CallbackParser;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous callback parsing and verification facade with backpressure.
+ * At most {@code concurrency} verifications run at once and at most {@code queueCapacity}
+ * wait for execution, further requests complete immediately with
+ * {@link VerificationResult.Status#REJECTED} so callers can shed load instead of timing out.
+ * <p>
+ * Verifications run on platform threads, or on virtual threads when running on Java 21+.
+ * <p>
+ * Thread-safe.
+ */
+public final class AsyncCallbackVerifier implements AutoCloseable {
+    private final Predicate<Callback> verification;
+    private final BoundedExecutor executor;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs verifier resolving secrets by callback API key.
+     *
+     * @param registry      Signature generator registry to use.
+     * @param concurrency   Maximal amount of concurrent verifications.
+     * @param queueCapacity Maximal amount of verifications waiting for execution.
+     */
+    public AsyncCallbackVerifier(SignatureGeneratorRegistry registry, int concurrency, int queueCapacity) {
+        this(verification(registry), concurrency, queueCapacity);
+    }
+
+    /**
+     * Constructs verifier.
+     *
+     * @param verification  Callback verification to run, e.g. {@code callback -> callback.verify(generator)}.
+     * @param concurrency   Maximal amount of concurrent verifications.
+     * @param queueCapacity Maximal amount of verifications waiting for execution.
+     */
+    public AsyncCallbackVerifier(Predicate<Callback> verification, int concurrency, int queueCapacity) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Incorrect concurrency " + concurrency);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Incorrect queue capacity " + queueCapacity);
+        }
+        this.verification = Objects.requireNonNull(verification, "verification");
+        this.executor = new BoundedExecutor(concurrency, queueCapacity);
+    }
+
+    private static Predicate<Callback> verification(SignatureGeneratorRegistry registry) {
+        Objects.requireNonNull(registry, "registry");
+        return callback -> callback.verify(registry);
+    }
+
+    /**
+     * Parses and verifies callback from given UTF-8 JSON data.
+     *
+     * @param data Callback data.
+     * @return Future verification result, never completed exceptionally.
+     */
+    public CompletableFuture<VerificationResult> verify(byte[] data) {
+        Objects.requireNonNull(data, "data");
+        return submit(() -> {
+            Callback callback;
+            try {
+                callback = new CallbackParser().parse(data);
+                if (callback == null) {
+                    throw new IllegalArgumentException("Empty callback");
+                }
+            } catch (Exception e) {
+                return VerificationResult.malformed(null, e);
+            }
+            return check(callback);
+        });
+    }
+
+    /**
+     * Verifies given callback.
+     *
+     * @param callback Callback to verify.
+     * @return Future verification result, never completed exceptionally.
+     */
+    public CompletableFuture<VerificationResult> verify(Callback callback) {
+        Objects.requireNonNull(callback, "callback");
+        return submit(() -> check(callback));
+    }
+
+    private VerificationResult check(Callback callback) {
+        try {
+            return VerificationResult.verified(callback, verification.test(callback));
+        } catch (RuntimeException e) {
+            // Missing mandatory fields, incorrect amount or currency
+            return VerificationResult.malformed(callback, e);
+        }
+    }
+
+    private CompletableFuture<VerificationResult> submit(Supplier<VerificationResult> task) {
+        submitted.increment();
+        CompletableFuture<VerificationResult> future = new CompletableFuture<>();
+        boolean accepted = executor.submit(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        if (!accepted) {
+            rejected.increment();
+            future.complete(VerificationResult.rejected());
+        }
+        return future;
+    }
+
+    /**
+     * @return True if verifications run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return BoundedExecutor.isVirtual();
+    }
+
+    /**
+     * @return Amount of verifications waiting for execution.
+     */
+    public int getQueueDepth() {
+        return executor.queueDepth();
+    }
+
+    /**
+     * @return Amount of running verifications.
+     */
+    public int getActiveCount() {
+        return executor.active();
+    }
+
+    /**
+     * @return Amount of verification requests, including rejected ones.
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return Amount of verification requests rejected due to overload.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting verifications and waits for already accepted ones to complete.
+     *
+     * @param timeout Maximal time to wait.
+     * @param unit    Time unit.
+     * @return True if all accepted verifications completed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stops accepting verifications, already accepted ones are completed in background.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,93 @@
+package eu.genome.fpx.verify;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running at most given amount of tasks concurrently with bounded queue of pending ones.
+ * This implementation uses fixed pool of platform daemon threads,
+ * Java 21+ runtimes load virtual thread based one from {@code META-INF/versions/21}.
+ */
+final class BoundedExecutor {
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    BoundedExecutor(int concurrency, int queueCapacity) {
+        String prefix = "fpx-verify-" + POOL_COUNTER.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                factory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * @return True if tasks run on virtual threads.
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Submits task unless concurrency and queue limits are exhausted.
+     *
+     * @param task Task to run.
+     * @return False if task was rejected.
+     */
+    boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Amount of tasks waiting for execution.
+     */
+    int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Amount of running tasks.
+     */
+    int active() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting tasks, already submitted ones are completed.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for submitted tasks to complete after shutdown.
+     *
+     * @param timeout Maximal time to wait.
+     * @param unit    Time unit.
+     * @return True if all tasks completed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,222 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.StripedLru;
+import eu.genome.fpx.dto.Callback;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of successful callback verifications.
+ * Retried deliveries of already verified callback are recognized as duplicates
+ * without repeated signature check.
+ * <p>
+ * Entries are keyed by API key, transaction ID, transaction status and signature,
+ * signed fields are compared on every hit, so tampered retry is never short-circuited.
+ * Generator instance that accepted the callback is part of the key, so after secret rotation
+ * or with another generator callbacks are verified again.
+ * Cache is a {@link StripedLru} of independently locked segments, each evicting its oldest entries
+ * when full or expired. Callbacks with key fields longer than {@link #MAX_KEY_LENGTH}
+ * chars in total are verified without caching, so memory use is strictly bounded.
+ * <p>
+ * Thread-safe.
+ */
+public final class CallbackVerificationCache {
+    /**
+     * Maximal total length of cached callback key and signed fields.
+     */
+    public static final int MAX_KEY_LENGTH = 512;
+
+    /**
+     * Verification outcome.
+     */
+    public enum Delivery {
+        /**
+         * Signature is valid and callback was not seen before.
+         */
+        FIRST,
+        /**
+         * Callback was already verified, signature check skipped.
+         */
+        DUPLICATE,
+        /**
+         * Signature is invalid.
+         */
+        INVALID
+    }
+
+    /**
+     * Expiration deadlines by key, all entries share TTL, so insertion order is expiration order.
+     */
+    private final StripedLru<Key, Long> deadlines;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs cache.
+     *
+     * @param maximumSize Maximal amount of cached verifications.
+     * @param ttl         Time to keep verification after it was cached.
+     */
+    public CallbackVerificationCache(int maximumSize, Duration ttl) {
+        this(maximumSize, ttl, System::nanoTime);
+    }
+
+    CallbackVerificationCache(int maximumSize, Duration ttl, LongSupplier ticker) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Incorrect TTL " + ttl);
+        }
+        this.deadlines = new StripedLru<>(maximumSize, false);
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+    }
+
+    /**
+     * Verifies callback signature unless the same callback was already verified by the same generator.
+     *
+     * @param callback  Callback to verify.
+     * @param generator Signature generator to use.
+     * @return Verification outcome.
+     */
+    public Delivery verify(Callback callback, SignatureGenerator generator) {
+        Objects.requireNonNull(callback, "callback");
+        Objects.requireNonNull(generator, "generator");
+        if (!Key.cacheable(callback)) {
+            misses.increment();
+            return callback.verify(generator) ? Delivery.FIRST : Delivery.INVALID;
+        }
+
+        Key key = new Key(callback, generator);
+        long now = ticker.getAsLong();
+        deadlines.expire(key, deadline -> deadline - now <= 0);
+        if (deadlines.get(key) != null) {
+            hits.increment();
+            return Delivery.DUPLICATE;
+        }
+        misses.increment();
+        if (!callback.verify(generator)) {
+            return Delivery.INVALID;
+        }
+        // Concurrent delivery of the same callback may have been cached meanwhile
+        boolean added = deadlines.putIfAbsent(key, ticker.getAsLong() + ttlNanos) == null;
+        return added ? Delivery.FIRST : Delivery.DUPLICATE;
+    }
+
+    /**
+     * Removes all cached verifications.
+     */
+    public void clear() {
+        deadlines.clear();
+    }
+
+    /**
+     * @return Amount of cached verifications, including not yet purged expired ones.
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * @return Amount of duplicates recognized without signature check.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of full signature checks.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Amount of verifications evicted due to size or time limits.
+     */
+    public long getEvictionCount() {
+        return deadlines.getEvictionCount();
+    }
+
+    /**
+     * Cache key holding callback identity, all signed fields and generator that verified them.
+     */
+    private static final class Key {
+        private final SignatureGenerator generator;
+        private final String apiKey;
+        private final long transactionId;
+        private final TransactionStatus status;
+        private final String signature;
+        private final String sessionId;
+        private final String orderId;
+        private final BigDecimal amount;
+        private final String currency;
+        private final int hash;
+
+        private Key(Callback callback, SignatureGenerator generator) {
+            this.generator = generator;
+            this.apiKey = callback.getAPIKey();
+            this.transactionId = callback.getTransactionId();
+            this.status = callback.getTransactionStatus();
+            this.signature = callback.getSignature();
+            this.sessionId = callback.getSessionId();
+            this.orderId = callback.getOrderId();
+            this.amount = callback.getAmount();
+            this.currency = callback.getCurrencyISO();
+            this.hash = Objects.hash(apiKey, transactionId, status, signature) * 31
+                    + System.identityHashCode(generator);
+        }
+
+        /**
+         * @param callback Callback to check.
+         * @return True if callback fits in key length limit.
+         */
+        static boolean cacheable(Callback callback) {
+            if (callback.getSignature() == null || callback.getAmount() == null) {
+                return false;
+            }
+            long length = length(callback.getAPIKey())
+                    + length(callback.getSignature())
+                    + length(callback.getSessionId())
+                    + length(callback.getOrderId())
+                    + length(callback.getCurrencyISO())
+                    + callback.getAmount().precision();
+            return length <= MAX_KEY_LENGTH;
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return transactionId == other.transactionId
+                    && generator == other.generator
+                    && status == other.status
+                    && Objects.equals(apiKey, other.apiKey)
+                    && signature.equals(other.signature)
+                    && Objects.equals(sessionId, other.sessionId)
+                    && Objects.equals(orderId, other.orderId)
+                    && amount.compareTo(other.amount) == 0
+                    && Objects.equals(currency, other.currency);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.SignatureBuilder;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureMode;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifier of {@link SignatureMode#MODE_A_TS} signatures enforcing timestamp nonce.
+ * Rejects nonces outside of allowed clock skew window and signatures already
+ * accepted within that window.
+ * <p>
+ * Accepted signatures are tracked in a ring of time buckets keyed by nonce second.
+ * Bucket that falls out of the window is dropped as a whole when its slot is reused,
+ * so memory is bounded by the amount of signatures accepted within the window and
+ * no global lock is taken.
+ * <p>
+ * Thread-safe.
+ */
+public final class TimestampNonceVerifier {
+    /**
+     * Verification outcome.
+     */
+    public enum Outcome {
+        /**
+         * Signature is valid and seen first time.
+         */
+        ACCEPTED,
+        /**
+         * Nonce is older than allowed clock skew.
+         */
+        EXPIRED,
+        /**
+         * Nonce is further in future than allowed clock skew.
+         */
+        FUTURE,
+        /**
+         * Signature does not match.
+         */
+        INVALID_SIGNATURE,
+        /**
+         * Signature was already accepted within the window.
+         */
+        REPLAYED
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final long skewSeconds;
+    private final long bucketSeconds;
+    private final Clock clock;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final LongAdder[] counters = new LongAdder[OUTCOMES.length];
+
+    /**
+     * Constructs verifier with system UTC clock and one second buckets.
+     *
+     * @param allowedSkew Maximal allowed difference between nonce and current time.
+     */
+    public TimestampNonceVerifier(Duration allowedSkew) {
+        this(allowedSkew, Duration.ofSeconds(1), Clock.systemUTC());
+    }
+
+    /**
+     * Constructs verifier.
+     *
+     * @param allowedSkew Maximal allowed difference between nonce and current time.
+     * @param bucketWidth Time span of a single replay tracking bucket, whole seconds.
+     * @param clock       Clock to use.
+     */
+    public TimestampNonceVerifier(Duration allowedSkew, Duration bucketWidth, Clock clock) {
+        if (allowedSkew == null || allowedSkew.isNegative()) {
+            throw new IllegalArgumentException("Incorrect allowed skew " + allowedSkew);
+        }
+        if (bucketWidth == null || bucketWidth.getSeconds() <= 0) {
+            throw new IllegalArgumentException("Incorrect bucket width " + bucketWidth);
+        }
+        this.skewSeconds = allowedSkew.getSeconds();
+        this.bucketSeconds = bucketWidth.getSeconds();
+        this.clock = Objects.requireNonNull(clock, "clock");
+        // Window of 2 * skew + 1 seconds plus one spare bucket for boundary crossing
+        long size = (2 * skewSeconds + 1 + bucketSeconds - 1) / bucketSeconds + 1;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Allowed skew " + allowedSkew + " too large");
+        }
+        this.buckets = new AtomicReferenceArray<>((int) size);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Verifies MODE_A_TS signature candidate and marks it as used.
+     *
+     * @param generator     Signature generator to use.
+     * @param time          Timestamp nonce.
+     * @param amount        Transaction amount.
+     * @param currencyISOA3 Transaction currency ISO.
+     * @param orderID       Order identifier, optional.
+     * @param userID        User identifier, optional.
+     * @param MCC           Operation MCC code, optional.
+     * @param candidate     Signature candidate.
+     * @return Verification outcome.
+     */
+    public Outcome verify(
+            SignatureGenerator generator,
+            Instant time,
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC,
+            String candidate
+    ) {
+        Objects.requireNonNull(generator, "generator");
+        Objects.requireNonNull(time, "time");
+        return count(check(generator, time, amount, currencyISOA3, orderID, userID, MCC, candidate));
+    }
+
+    private Outcome check(
+            SignatureGenerator generator,
+            Instant time,
+            double amount,
+            String currencyISOA3,
+            String orderID,
+            String userID,
+            String MCC,
+            String candidate
+    ) {
+        long nonce = time.getEpochSecond();
+        long now = clock.instant().getEpochSecond();
+        if (nonce < now - skewSeconds) {
+            return Outcome.EXPIRED;
+        }
+        if (nonce > now + skewSeconds) {
+            return Outcome.FUTURE;
+        }
+
+        boolean valid = new SignatureBuilder()
+                .mode(SignatureMode.MODE_A_TS)
+                .nonce(time)
+                .amount(amount, currencyISOA3)
+                .orderId(orderID)
+                .userId(userID)
+                .mcc(MCC)
+                .verify(generator, candidate);
+        if (!valid) {
+            return Outcome.INVALID_SIGNATURE;
+        }
+
+        Bucket bucket = bucket(Math.floorDiv(nonce, bucketSeconds));
+        if (bucket == null) {
+            // Window moved past the nonce while signature was checked
+            return Outcome.EXPIRED;
+        }
+        return bucket.seen.add(candidate.trim().toLowerCase(Locale.ROOT)) ? Outcome.ACCEPTED : Outcome.REPLAYED;
+    }
+
+    /**
+     * Returns bucket for given ID, replacing stale bucket in its slot.
+     *
+     * @param id Bucket ID.
+     * @return Bucket or null if slot is already taken by a newer bucket.
+     */
+    private Bucket bucket(long id) {
+        int slot = (int) Math.floorMod(id, (long) buckets.length());
+        while (true) {
+            Bucket current = buckets.get(slot);
+            if (current != null && current.id == id) {
+                return current;
+            }
+            if (current != null && current.id > id) {
+                return null;
+            }
+            Bucket fresh = new Bucket(id);
+            if (buckets.compareAndSet(slot, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private Outcome count(Outcome outcome) {
+        counters[outcome.ordinal()].increment();
+        return outcome;
+    }
+
+    /**
+     * @param outcome Verification outcome.
+     * @return Amount of verifications finished with given outcome.
+     */
+    public long getCount(Outcome outcome) {
+        return counters[outcome.ordinal()].sum();
+    }
+
+    /**
+     * @return Amount of signatures currently tracked for replay protection.
+     */
+    public long getTrackedCount() {
+        long now = clock.instant().getEpochSecond();
+        long oldest = Math.floorDiv(now - skewSeconds, bucketSeconds);
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.id >= oldest) {
+                total += bucket.seen.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Set of signatures accepted for nonces within single bucket time span.
+     */
+    private static final class Bucket {
+        private final long id;
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        private Bucket(long id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.dto.Callback;
+
+/**
+ * Outcome of asynchronous callback verification.
+ */
+public final class VerificationResult {
+    /**
+     * Verification status.
+     */
+    public enum Status {
+        /**
+         * Callback signature is valid.
+         */
+        VALID,
+        /**
+         * Callback signature is invalid or API key is unknown.
+         */
+        INVALID,
+        /**
+         * Callback data could not be parsed or verified.
+         */
+        MALFORMED,
+        /**
+         * Verification was not attempted due to overload.
+         */
+        REJECTED
+    }
+
+    private static final VerificationResult REJECTED = new VerificationResult(Status.REJECTED, null, null);
+
+    private final Status status;
+    private final Callback callback;
+    private final Exception error;
+
+    private VerificationResult(Status status, Callback callback, Exception error) {
+        this.status = status;
+        this.callback = callback;
+        this.error = error;
+    }
+
+    static VerificationResult verified(Callback callback, boolean valid) {
+        return new VerificationResult(valid ? Status.VALID : Status.INVALID, callback, null);
+    }
+
+    static VerificationResult malformed(Callback callback, Exception error) {
+        return new VerificationResult(Status.MALFORMED, callback, error);
+    }
+
+    static VerificationResult rejected() {
+        return REJECTED;
+    }
+
+    /**
+     * @return Verification status.
+     */
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return True if callback signature is valid.
+     */
+    public boolean isValid() {
+        return this.status == Status.VALID;
+    }
+
+    /**
+     * @return Parsed callback or null if data was not parsed.
+     */
+    public Callback getCallback() {
+        return this.callback;
+    }
+
+    /**
+     * @return Parsing or verification error for {@link Status#MALFORMED} results, null otherwise.
+     */
+    public Exception getError() {
+        return this.error;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? status.name() : status + ": " + error.getMessage();
+    }
+}
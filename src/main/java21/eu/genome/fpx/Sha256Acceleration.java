@@ -0,0 +1,49 @@
+package eu.genome.fpx;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Selects hardware accelerated {@link Sha256Lanes} implementation.
+ * This implementation uses Vector API lanes if {@code jdk.incubator.vector} module is resolved,
+ * i.e. the application runs with {@code --add-modules jdk.incubator.vector}, the platform
+ * offers at least 8 int lanes and the JVM does not use SHA instructions of the CPU, which
+ * make single {@link java.security.MessageDigest} faster than lanes. Otherwise batches are hashed
+ * with {@link java.security.MessageDigest}.
+ */
+final class Sha256Acceleration {
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && Sha256VectorLanes.isSupported()
+            && !isDigestIntrinsified();
+
+    private Sha256Acceleration() {
+    }
+
+    /**
+     * @return True if accelerated lanes are available.
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @param prefix Common prefix of all messages.
+     * @return Accelerated hasher or null if not available.
+     */
+    static Sha256Lanes lanes(Sha256Lanes.Prefix prefix) {
+        return AVAILABLE ? new Sha256VectorLanes(prefix) : null;
+    }
+
+    /**
+     * @return True if JVM computes SHA256 with CPU instructions or this cannot be determined.
+     */
+    private static boolean isDigestIntrinsified() {
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return diagnostic == null || !"false".equals(diagnostic.getVMOption("UseSHA").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return true;
+        }
+    }
+}
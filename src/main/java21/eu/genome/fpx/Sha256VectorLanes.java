@@ -0,0 +1,83 @@
+package eu.genome.fpx;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Sha256Lanes} mapping lanes onto preferred SIMD int vector, one message per vector lane.
+ * Loaded only if {@code jdk.incubator.vector} module is resolved.
+ */
+final class Sha256VectorLanes extends Sha256Lanes {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private final IntVector[] w = new IntVector[64];
+
+    Sha256VectorLanes(Prefix prefix) {
+        super(prefix, LANES);
+    }
+
+    /**
+     * @return True if preferred vector is wide enough to beat the JVM digest.
+     */
+    static boolean isSupported() {
+        return LANES >= 8;
+    }
+
+    @Override
+    void compress(int[] words, int[] state) {
+        IntVector[] w = this.w;
+        for (int t = 0; t < 16; t++) {
+            w[t] = IntVector.fromArray(SPECIES, words, t * LANES);
+        }
+        for (int t = 16; t < 64; t++) {
+            IntVector w2 = w[t - 2];
+            IntVector w15 = w[t - 15];
+            IntVector s0 = w15.lanewise(VectorOperators.ROR, 7)
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+            IntVector s1 = w2.lanewise(VectorOperators.ROR, 17)
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+            w[t] = w[t - 16].add(s0).add(w[t - 7]).add(s1);
+        }
+
+        IntVector a0 = IntVector.fromArray(SPECIES, state, 0);
+        IntVector b0 = IntVector.fromArray(SPECIES, state, LANES);
+        IntVector c0 = IntVector.fromArray(SPECIES, state, 2 * LANES);
+        IntVector d0 = IntVector.fromArray(SPECIES, state, 3 * LANES);
+        IntVector e0 = IntVector.fromArray(SPECIES, state, 4 * LANES);
+        IntVector f0 = IntVector.fromArray(SPECIES, state, 5 * LANES);
+        IntVector g0 = IntVector.fromArray(SPECIES, state, 6 * LANES);
+        IntVector h0 = IntVector.fromArray(SPECIES, state, 7 * LANES);
+        IntVector a = a0, b = b0, c = c0, d = d0, e = e0, f = f0, g = g0, h = h0;
+        for (int t = 0; t < 64; t++) {
+            IntVector s1 = e.lanewise(VectorOperators.ROR, 6)
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+            IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+            IntVector t1 = h.add(s1).add(ch).add(K[t]).add(w[t]);
+            IntVector s0 = a.lanewise(VectorOperators.ROR, 2)
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+            IntVector maj = a.and(b).lanewise(VectorOperators.XOR, a.and(c)).lanewise(VectorOperators.XOR, b.and(c));
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(t1);
+            d = c;
+            c = b;
+            b = a;
+            a = t1.add(s0).add(maj);
+        }
+        a0.add(a).intoArray(state, 0);
+        b0.add(b).intoArray(state, LANES);
+        c0.add(c).intoArray(state, 2 * LANES);
+        d0.add(d).intoArray(state, 3 * LANES);
+        e0.add(e).intoArray(state, 4 * LANES);
+        f0.add(f).intoArray(state, 5 * LANES);
+        g0.add(g).intoArray(state, 6 * LANES);
+        h0.add(h).intoArray(state, 7 * LANES);
+    }
+}
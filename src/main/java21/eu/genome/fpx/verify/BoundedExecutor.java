@@ -0,0 +1,101 @@
+package eu.genome.fpx.verify;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running at most given amount of tasks concurrently with bounded queue of pending ones.
+ * This implementation starts virtual thread per task, pending tasks park on a semaphore.
+ */
+final class BoundedExecutor {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    BoundedExecutor(int concurrency, int queueCapacity) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fpx-verify-", 1).factory());
+        this.permits = new Semaphore(concurrency);
+        this.capacity = concurrency + queueCapacity;
+    }
+
+    /**
+     * @return True if tasks run on virtual threads.
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * Submits task unless concurrency and queue limits are exhausted.
+     *
+     * @param task Task to run.
+     * @return False if task was rejected.
+     */
+    boolean submit(Runnable task) {
+        if (inFlight.incrementAndGet() > capacity) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> run(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            permits.acquireUninterruptibly();
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                permits.release();
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return Amount of tasks waiting for execution.
+     */
+    int queueDepth() {
+        return Math.max(0, inFlight.get() - active.get());
+    }
+
+    /**
+     * @return Amount of running tasks.
+     */
+    int active() {
+        return active.get();
+    }
+
+    /**
+     * Stops accepting tasks, already submitted ones are completed.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for submitted tasks to complete after shutdown.
+     *
+     * @param timeout Maximal time to wait.
+     * @param unit    Time unit.
+     * @return True if all tasks completed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
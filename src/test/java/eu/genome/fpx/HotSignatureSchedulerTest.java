@@ -0,0 +1,117 @@
+package eu.genome.fpx;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+public class HotSignatureSchedulerTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+    private static final Instant NOW = Instant.ofEpochSecond(1638550119, 250_000_000);
+
+    @Test
+    public void testSameAsGenerator() {
+        HotSignatureScheduler scheduler = new HotSignatureScheduler(GENERATOR, 2, Clock.fixed(NOW, ZoneOffset.UTC));
+        scheduler.register(9.99, "eur", "12345", null, "5137");
+        scheduler.register(new BigDecimal("100"), "USD", null, null, null);
+        Assert.assertEquals(scheduler.size(), 2);
+        Assert.assertEquals(scheduler.getPrecomputedCount(), 6);
+
+        for (int i = 0; i <= 2; i++) {
+            Instant time = NOW.plusSeconds(i);
+            Assert.assertEquals(
+                    scheduler.MODE_A_TS(time, 9.99, "EUR", "12345", "", "5137"),
+                    GENERATOR.MODE_A_TS(time, 9.99, "EUR", "12345", null, "5137")
+            );
+            Assert.assertEquals(
+                    scheduler.MODE_A_TS(time, new BigDecimal("9.990"), "eur", "12345", null, "5137"),
+                    GENERATOR.MODE_A_TS(time, 9.99, "eur", "12345", null, "5137")
+            );
+            Assert.assertEquals(
+                    scheduler.MODE_A_TS(time, 100, "USD", null, null, null),
+                    GENERATOR.MODE_A_TS(time, 100, "USD", null, null, null)
+            );
+        }
+        Assert.assertEquals(scheduler.getHitCount(), 9);
+        Assert.assertEquals(scheduler.getMissCount(), 0);
+
+        // Outside of the table or not registered
+        Assert.assertEquals(
+                scheduler.MODE_A_TS(NOW.plusSeconds(3), 9.99, "EUR", "12345", null, "5137"),
+                GENERATOR.MODE_A_TS(NOW.plusSeconds(3), 9.99, "EUR", "12345", null, "5137")
+        );
+        Assert.assertEquals(
+                scheduler.MODE_A_TS(NOW.minusSeconds(1), 9.99, "EUR", "12345", null, "5137"),
+                GENERATOR.MODE_A_TS(NOW.minusSeconds(1), 9.99, "EUR", "12345", null, "5137")
+        );
+        Assert.assertEquals(
+                scheduler.MODE_A_TS(NOW, 9.98, "EUR", "12345", null, "5137"),
+                GENERATOR.MODE_A_TS(NOW, 9.98, "EUR", "12345", null, "5137")
+        );
+        Assert.assertEquals(scheduler.getMissCount(), 3);
+        Assert.assertEquals(scheduler.getHitRatio(), 0.75);
+
+        scheduler.unregister(new BigDecimal("100.001"), "usd", null, null, null);
+        Assert.assertEquals(scheduler.size(), 1);
+        scheduler.unregister((BigDecimal) null, "EUR", "12345", null, "5137");
+        scheduler.unregister(new BigDecimal("9.990"), "EUR", "12345", null, "5137");
+        Assert.assertEquals(scheduler.size(), 0);
+    }
+
+    @Test
+    public void testRotation() {
+        HotSignatureScheduler scheduler = new HotSignatureScheduler(GENERATOR, 3, Clock.fixed(NOW, ZoneOffset.UTC));
+        scheduler.register(1, "EUR", null, null, null);
+        Assert.assertEquals(scheduler.getPrecomputedCount(), 4);
+
+        // Only new second is computed
+        scheduler.rotate(NOW.getEpochSecond() + 1);
+        Assert.assertEquals(scheduler.getPrecomputedCount(), 5);
+        Instant later = NOW.plusSeconds(4);
+        Assert.assertEquals(
+                scheduler.MODE_A_TS(later, 1, "EUR", null, null, null),
+                GENERATOR.MODE_A_TS(later, 1, "EUR", null, null, null)
+        );
+        Assert.assertEquals(scheduler.getHitCount(), 1);
+        scheduler.MODE_A_TS(NOW, 1, "EUR", null, null, null);
+        Assert.assertEquals(scheduler.getMissCount(), 1);
+
+        scheduler.rotate(NOW.getEpochSecond() + 10);
+        Assert.assertEquals(scheduler.getPrecomputedCount(), 9);
+
+        scheduler.unregister(1, "eur", "", null, null);
+        Assert.assertEquals(scheduler.size(), 0);
+        scheduler.MODE_A_TS(NOW.plusSeconds(10), 1, "EUR", null, null, null);
+        Assert.assertEquals(scheduler.getMissCount(), 2);
+    }
+
+    @Test
+    public void testInvalid() {
+        HotSignatureScheduler scheduler = new HotSignatureScheduler(GENERATOR, 1);
+        Assert.expectThrows(IllegalArgumentException.class, () -> scheduler.register(-1, "EUR", null, null, null));
+        Assert.expectThrows(IllegalArgumentException.class, () -> scheduler.register(1, "EURO", null, null, null));
+        Assert.expectThrows(IllegalArgumentException.class, () -> scheduler.register(2.675, "EUR", null, null, null));
+        Assert.expectThrows(IllegalArgumentException.class, () -> scheduler.MODE_A_TS(NOW, 1, null, null, null, null));
+        Assert.expectThrows(IllegalArgumentException.class, () -> new HotSignatureScheduler(GENERATOR, 0));
+        Assert.assertEquals(scheduler.size(), 0);
+    }
+
+    @Test
+    public void testBackgroundRotation() throws InterruptedException {
+        try (HotSignatureScheduler scheduler = new HotSignatureScheduler(GENERATOR, 2).start()) {
+            Assert.expectThrows(IllegalStateException.class, scheduler::start);
+            scheduler.register(9.99, "EUR", null, null, null);
+            Thread.sleep(1100);
+            Instant time = Instant.now();
+            Assert.assertEquals(
+                    scheduler.MODE_A_TS(time, 9.99, "EUR", null, null, null),
+                    GENERATOR.MODE_A_TS(time, 9.99, "EUR", null, null, null)
+            );
+            Assert.assertEquals(scheduler.getHitCount(), 1);
+            Assert.assertTrue(scheduler.getPrecomputedCount() >= 4, "" + scheduler.getPrecomputedCount());
+        }
+    }
+}
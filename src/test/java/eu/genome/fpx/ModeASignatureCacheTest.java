@@ -0,0 +1,50 @@
+package eu.genome.fpx;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ModeASignatureCacheTest {
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testSameAsGenerator() {
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+        ModeASignatureCache cache = new ModeASignatureCache(generator, 1000);
+        SignatureGeneratorTest test = new SignatureGeneratorTest();
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (Object[] row : test.dataProviderMODE_A()) {
+                Assert.assertEquals(
+                        cache.MODE_A((double) row[1], (String) row[2], (String) row[3], (String) row[4], (String) row[5]),
+                        row[0]
+                );
+            }
+        }
+        // 19.99 / 19.99123 and EUR / eur share normalized key
+        Assert.assertEquals(cache.size(), 5);
+        Assert.assertEquals(cache.getMissCount(), 5);
+        Assert.assertEquals(cache.getHitCount(), 9);
+
+        for (double amount : new double[]{0.005, 1.005, 2.675, 9.995, 1e10 + 0.125}) {
+            Assert.assertEquals(
+                    cache.MODE_A(amount, "usd", "", null, "5198"),
+                    generator.MODE_A(amount, "USD", null, "", "5198")
+            );
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalid() {
+        new ModeASignatureCache(new SignatureGenerator("somesecret"), 10).MODE_A(-1, "EUR", null, null, null);
+    }
+
+    @Test
+    public void testEviction() {
+        ModeASignatureCache cache = new ModeASignatureCache(new SignatureGenerator("somesecret"), 8);
+        for (int i = 1; i <= 100; i++) {
+            cache.MODE_A(i, "EUR", null, null, null);
+        }
+        Assert.assertTrue(cache.size() <= 8);
+        Assert.assertEquals(cache.getEvictionCount(), 100 - cache.size());
+        Assert.assertEquals(cache.getHitRatio(), 0.);
+    }
+}
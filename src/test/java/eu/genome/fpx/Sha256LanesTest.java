@@ -0,0 +1,203 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.metrics.Metrics;
+import eu.genome.fpx.metrics.MetricsRecorder;
+import eu.genome.fpx.metrics.Operation;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class Sha256LanesTest {
+    static final String SECRET = "somesecret";
+
+    private static byte[] random(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testSameAsMessageDigest() throws Exception {
+        assertSameAsMessageDigest(Sha256Lanes::new);
+    }
+
+    /**
+     * Compares digests of lanes created by given factory with {@link MessageDigest}.
+     */
+    static void assertSameAsMessageDigest(Function<Sha256Lanes.Prefix, Sha256Lanes> factory) throws Exception {
+        Random random = new Random(42);
+        // Prefix and message lengths crossing block and padding boundaries
+        for (int prefixLength : new int[]{0, 1, 11, 55, 56, 63, 64, 65, 119, 128, 200}) {
+            byte[] prefix = random(random, prefixLength);
+            Sha256Lanes lanes = factory.apply(Sha256Lanes.prefix(prefix));
+            byte[] digests = new byte[lanes.lanes() * 32];
+            for (int batch = 0; batch < 40; batch++) {
+                int count = 1 + random.nextInt(lanes.lanes());
+                byte[][] messages = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    messages[i] = random(random, random.nextInt(260));
+                    int offset = random.nextInt(4);
+                    byte[] padded = new byte[offset + messages[i].length];
+                    System.arraycopy(messages[i], 0, padded, offset, messages[i].length);
+                    Assert.assertEquals(lanes.add(padded, offset, messages[i].length), i);
+                }
+                Assert.assertEquals(lanes.size(), count);
+                Assert.assertEquals(lanes.isFull(), count == lanes.lanes());
+                lanes.digest(digests);
+                Assert.assertEquals(lanes.size(), 0);
+
+                for (int i = 0; i < count; i++) {
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    digest.update(prefix);
+                    Assert.assertEquals(
+                            Arrays.copyOfRange(digests, i * 32, i * 32 + 32),
+                            digest.digest(messages[i]),
+                            "prefix " + prefixLength + ", message " + messages[i].length
+                    );
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFull() {
+        Sha256Lanes lanes = new Sha256Lanes(Sha256Lanes.prefix(SECRET.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i <= Sha256Lanes.SCALAR_LANES; i++) {
+            lanes.add(new byte[0], 0, 0);
+        }
+    }
+
+    /**
+     * @return Requests of every signature test vector with expected signatures.
+     */
+    static List<Object[]> vectors() {
+        SignatureGeneratorTest test = new SignatureGeneratorTest();
+        List<Object[]> vectors = new ArrayList<>();
+        for (Object[] row : test.dataProviderCALLBACK()) {
+            vectors.add(new Object[]{row[0], new SignatureBuilder()
+                    .mode(SignatureMode.CALLBACK)
+                    .sessionId((String) row[1])
+                    .transactionId((int) row[2])
+                    .amount((double) row[3], (String) row[4])
+                    .orderId((String) row[5])});
+        }
+        for (Object[] row : test.dataProviderMODE_A()) {
+            vectors.add(new Object[]{row[0], new SignatureBuilder()
+                    .mode(SignatureMode.MODE_A)
+                    .amount((double) row[1], (String) row[2])
+                    .orderId((String) row[3])
+                    .userId((String) row[4])
+                    .mcc((String) row[5])});
+        }
+        for (Object[] row : test.dataProviderMODE_A_TS()) {
+            vectors.add(new Object[]{row[0], new SignatureBuilder()
+                    .mode(SignatureMode.MODE_A_TS)
+                    .nonce((Instant) row[1])
+                    .amount((double) row[2], (String) row[3])
+                    .orderId((String) row[4])
+                    .userId((String) row[5])
+                    .mcc((String) row[6])});
+        }
+        return vectors;
+    }
+
+    /**
+     * @return Generators hashing batches with JVM digest or available acceleration and with scalar lanes.
+     */
+    private static SignatureGenerator[] generators() {
+        Sha256Lanes.Prefix prefix = Sha256Lanes.prefix((SECRET + '|').getBytes(StandardCharsets.UTF_8));
+        return new SignatureGenerator[]{
+                new SignatureGenerator(SECRET),
+                new SignatureGenerator(SECRET) {
+                    @Override
+                    Sha256Lanes lanes() {
+                        return new Sha256Lanes(prefix);
+                    }
+                }
+        };
+    }
+
+    @Test
+    public void testBatchVectors() {
+        for (SignatureGenerator generator : generators()) {
+            assertBatchVectors(generator);
+        }
+    }
+
+    /**
+     * Checks batches of every test vector signed and verified by given generator.
+     */
+    static void assertBatchVectors(SignatureGenerator generator) {
+        List<SignatureBuilder> requests = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        List<String> forged = new ArrayList<>();
+        for (int pass = 0; pass < 3; pass++) {
+            for (Object[] vector : vectors()) {
+                requests.add((SignatureBuilder) vector[1]);
+                expected.add(pass == 1 ? ((String) vector[0]).toUpperCase() : (String) vector[0]);
+                forged.add(((String) vector[0]).substring(1) + "0");
+            }
+        }
+        requests.add(null);
+        expected.add("");
+        forged.add(null);
+        requests.add(new SignatureBuilder().mode(SignatureMode.MODE_A).amount(-1, "EUR"));
+        expected.add("aa");
+        forged.add("aa");
+
+        List<SignatureResult> results = generator.batch(requests);
+        boolean[] valid = generator.verifyBatch(requests, expected);
+        boolean[] invalid = generator.verifyBatch(requests, forged);
+        for (int i = 0; i < requests.size() - 2; i++) {
+            Assert.assertEquals(results.get(i).getSignature(), expected.get(i).toLowerCase());
+            Assert.assertTrue(valid[i]);
+            Assert.assertFalse(invalid[i]);
+        }
+        for (int i = requests.size() - 2; i < requests.size(); i++) {
+            Assert.assertFalse(results.get(i).isSuccess());
+            Assert.assertTrue(results.get(i).getError() instanceof IllegalArgumentException);
+            Assert.assertFalse(valid[i]);
+            Assert.assertFalse(invalid[i]);
+        }
+        Assert.expectThrows(IllegalArgumentException.class, () -> generator.verifyBatch(requests, forged.subList(1, 3)));
+    }
+
+    @Test
+    public void testBatchInstrumented() {
+        SignatureGenerator generator = generators()[1];
+        List<SignatureBuilder> requests = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (Object[] vector : vectors()) {
+            requests.add((SignatureBuilder) vector[1]);
+            expected.add((String) vector[0]);
+        }
+
+        MetricsRecorder recorder = new MetricsRecorder();
+        Metrics.setSink(recorder);
+        try {
+            boolean[] valid = generator.verifyBatch(requests, expected);
+            for (boolean value : valid) {
+                Assert.assertTrue(value);
+            }
+            Assert.assertEquals(generator.batch(requests).get(0).getSignature(), expected.get(0));
+        } finally {
+            Metrics.setSink(null);
+        }
+        long verified = 0;
+        long signed = 0;
+        for (SignatureMode mode : SignatureMode.values()) {
+            verified += recorder.getCount(Operation.VERIFY, mode);
+            signed += recorder.getCount(Operation.SIGN, mode);
+        }
+        Assert.assertEquals(verified, requests.size());
+        Assert.assertEquals(signed, requests.size());
+    }
+}
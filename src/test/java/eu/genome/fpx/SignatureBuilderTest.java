@@ -3,6 +3,7 @@ package eu.genome.fpx;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Currency;
 
@@ -35,4 +36,87 @@ public class SignatureBuilderTest {
                         .verify("somesecret", " \t2EEc82d8857b5a08669411e993EAef194353248973f4f099f21c7819277a67e6\n")
         );
     }
-}
\ No newline at end of file
+
+    @Test(dependsOnMethods = "testBuild")
+    public void testBuildInto() {
+        SignatureBuilder builder = new SignatureBuilder()
+                .mode(SignatureMode.MODE_A_TS)
+                .nonce(Instant.ofEpochSecond(32456789))
+                .amount(4.99, Currency.getInstance("EUR"))
+                .orderId("foo")
+                .userId("bar")
+                .mcc("baz");
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+
+        Assert.assertEquals(
+                builder.build(generator, new StringBuilder("sig=")).toString(),
+                "sig=2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+        );
+
+        char[] target = new char[66];
+        Assert.assertEquals(builder.build(generator, target, 2), 64);
+        Assert.assertEquals(
+                new String(target, 2, 64),
+                "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+        );
+    }
+
+    @Test(dependsOnMethods = "testBuild")
+    public void testVerifyRejects() {
+        SignatureBuilder builder = new SignatureBuilder()
+                .mode(SignatureMode.MODE_A_TS)
+                .nonce(Instant.ofEpochSecond(32456789))
+                .amount(4.99, Currency.getInstance("EUR"));
+
+        Assert.assertFalse(builder.verify("somesecret", null));
+        Assert.assertFalse(builder.verify("somesecret", ""));
+        Assert.assertFalse(builder.verify("somesecret", "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"));
+        Assert.assertFalse(builder.verify("somesecret", "not a signature"));
+        // Missing candidate is rejected before secret is checked
+        Assert.assertFalse(builder.verify("", null));
+        Assert.assertFalse(builder.verify((String) null, ""));
+    }
+
+    @Test(dependsOnMethods = "testBuild")
+    public void testExactAmount() {
+        SignatureBuilder builder = new SignatureBuilder()
+                .mode(SignatureMode.MODE_A_TS)
+                .nonce(Instant.ofEpochSecond(32456789))
+                .orderId("foo")
+                .userId("bar")
+                .mcc("baz");
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+
+        for (SignatureBuilder exact : new SignatureBuilder[]{
+                builder.amountMinorUnits(499, "EUR"),
+                builder.amount(new BigDecimal("4.990"), "EUR"),
+                builder.amount(new BigDecimal("4.985"), Currency.getInstance("EUR"))
+        }) {
+            Assert.assertEquals(
+                    exact.build(generator),
+                    "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+            );
+        }
+        Assert.assertEquals(
+                generator.MODE_A_TS(Instant.ofEpochSecond(32456789), new BigDecimal("4.99"), "EUR", "foo", "bar", "baz"),
+                "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+        );
+        Assert.expectThrows(IllegalArgumentException.class, () -> builder.amountMinorUnits(0, "EUR").build(generator));
+        Assert.expectThrows(IllegalArgumentException.class, () -> builder.amountMinorUnits(-1, "EUR").build(generator));
+        Assert.expectThrows(IllegalArgumentException.class, () -> builder.amountMinorUnits(499, "EURO").build(generator));
+
+        // Beyond exact double range
+        Assert.assertEquals(
+                builder.amountMinorUnits(Long.MAX_VALUE, "EUR").build(generator),
+                generator.MODE_A_TS(Instant.ofEpochSecond(32456789), BigDecimal.valueOf(Long.MAX_VALUE, 2), "EUR", "foo", "bar", "baz")
+        );
+        Assert.assertEquals(
+                builder.amountMinorUnits(499, "EUR").build(generator),
+                "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+        );
+        Assert.assertEquals(
+                builder.amount(4.99, "EUR").build(generator),
+                "2eec82d8857b5a08669411e993eaef194353248973f4f099f21c7819277a67e6"
+        );
+    }
+}
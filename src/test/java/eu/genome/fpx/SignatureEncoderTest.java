@@ -0,0 +1,129 @@
+package eu.genome.fpx;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Random;
+
+public class SignatureEncoderTest {
+    private static String encoded(SignatureEncoder encoder) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return encoder.digest(digest).hex();
+    }
+
+    private static String expected(String preImage) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(preImage.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    @DataProvider
+    public Object[][] dataProviderAmount() {
+        return new Object[][]{
+                {0.01}, {0.005}, {0.045}, {0.125}, {1.005}, {1.115}, {2.675}, {9.995}, {19.99123},
+                {12.3333333}, {1e-5}, {123456789.125}, {999999999.995}, {1e9}, {1e15 + 0.125},
+                {Double.MIN_VALUE}, {Double.MAX_VALUE}, {Double.NaN}, {Double.POSITIVE_INFINITY}
+        };
+    }
+
+    @Test(dataProvider = "dataProviderAmount")
+    public void testAppendAmount(double amount) throws Exception {
+        Assert.assertEquals(
+                encoded(new SignatureEncoder().appendAmount(amount)),
+                expected(String.format(Locale.ROOT, "%.2f", amount))
+        );
+    }
+
+    @Test
+    public void testAppendAmountRandom() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double amount = i % 2 == 0
+                    ? random.nextInt(100_000_000) / 1000.
+                    : random.nextDouble() * Math.pow(10, random.nextInt(12) - 2);
+            Assert.assertEquals(
+                    encoded(new SignatureEncoder().appendAmount(amount)),
+                    expected(String.format(Locale.ROOT, "%.2f", amount)),
+                    "amount " + amount
+            );
+        }
+    }
+
+    @Test
+    public void testAppendDecimalAmount() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            // Three decimal digits hit half-cent boundaries often
+            long thousandths = i < 1000 ? i * 5L + 1 : random.nextInt(1_000_000_000);
+            BigDecimal amount = BigDecimal.valueOf(thousandths, 3);
+            Assert.assertEquals(
+                    encoded(new SignatureEncoder().appendAmount(amount)),
+                    encoded(new SignatureEncoder().appendAmount(thousandths / 1000.)),
+                    "amount " + amount
+            );
+        }
+        Assert.assertEquals(
+                encoded(new SignatureEncoder().appendAmount(new BigDecimal("123456789012345678901.005"))),
+                expected("123456789012345678901.01")
+        );
+        Assert.assertEquals(encoded(new SignatureEncoder().appendAmount(new BigDecimal("9.000000000"))), expected("9.00"));
+        Assert.assertEquals(encoded(new SignatureEncoder().appendAmount(new BigDecimal("1E+3"))), expected("1000.00"));
+    }
+
+    @Test
+    public void testAppendLong() throws Exception {
+        for (long value : new long[]{0, 7, 10, -1, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Assert.assertEquals(
+                    encoded(new SignatureEncoder().append(value)),
+                    expected(String.format(Locale.ROOT, "%d", value))
+            );
+        }
+    }
+
+    @Test
+    public void testAppendString() throws Exception {
+        String value = "aé€😀|\uD800x\uDC00";
+        Assert.assertEquals(
+                encoded(new SignatureEncoder().append(value).separator().append((String) null)),
+                expected(value + "|")
+        );
+        Assert.assertEquals(
+                encoded(new SignatureEncoder().appendUpperCase("eur").separator().appendUpperCase("straße")),
+                expected("EUR|STRASSE")
+        );
+    }
+
+    @Test
+    public void testHexTargets() throws Exception {
+        SignatureEncoder encoder = new SignatureEncoder().append("foo").digest(MessageDigest.getInstance("SHA-256"));
+        String hex = encoder.hex();
+        Assert.assertEquals(hex, expected("foo"));
+        Assert.assertEquals(encoder.hex(new StringBuilder(">")).toString(), ">" + hex);
+
+        char[] target = new char[70];
+        Assert.assertEquals(encoder.hex(target, 3), 64);
+        Assert.assertEquals(new String(target, 3, 64), hex);
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        SignatureEncoder encoder = new SignatureEncoder().append("foo").digest(MessageDigest.getInstance("SHA-256"));
+        String hex = expected("foo");
+
+        Assert.assertTrue(encoder.matches(hex));
+        Assert.assertTrue(encoder.matches(" \t" + hex.toUpperCase(Locale.ROOT) + "\n"));
+        Assert.assertFalse(encoder.matches(""));
+        Assert.assertFalse(encoder.matches(hex.substring(1)));
+        Assert.assertFalse(encoder.matches(hex + "0"));
+        Assert.assertFalse(encoder.matches(hex.substring(0, 63) + (hex.charAt(63) == '0' ? '1' : '0')));
+        Assert.assertFalse(encoder.matches(hex.substring(0, 63) + "g"));
+        Assert.assertFalse(encoder.matches(hex.substring(0, 63) + "\u0660"));
+        Assert.assertFalse(encoder.matches("x" + hex.substring(1)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,252 @@
+package eu.genome.fpx;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SignatureGeneratorRegistryTest {
+    private static final String SIGNATURE = "b60f5f05c924d4ee4fabefcacb3df805f98526d685b24b160cdf0e9b0d6eb907";
+
+    /**
+     * Manually advanced clock.
+     */
+    static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static boolean verify(SignatureGeneratorRegistry registry, String apiKey) {
+        return registry.verify(apiKey, generator -> new SignatureBuilder()
+                .mode(SignatureMode.CALLBACK)
+                .sessionId("xxx-yyy-zzz")
+                .transactionId(808)
+                .amount(14.99, "EUR")
+                .orderId("#1223")
+                .verify(generator, SIGNATURE));
+    }
+
+    @Test
+    public void testLazyLoad() {
+        Map<String, String> secrets = new HashMap<>();
+        secrets.put("key", "somesecret");
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(secrets::get, 10, Duration.ofMinutes(5));
+
+        Assert.assertTrue(verify(registry, "key"));
+        Assert.assertTrue(verify(registry, "key"));
+        Assert.assertFalse(verify(registry, "unknown"));
+        Assert.assertFalse(verify(registry, null));
+        Assert.assertNull(registry.get("unknown"));
+        Assert.assertEquals(registry.size(), 1);
+        // Unknown API key is remembered, not loaded again
+        Assert.assertEquals(registry.getLoadCount(), 2);
+    }
+
+    @Test
+    public void testUnknownKeys() {
+        Map<String, String> secrets = new HashMap<>();
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1000));
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(
+                secrets::get, 4, Duration.ZERO, Duration.ofSeconds(10), clock);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(verify(registry, "forged"));
+        }
+        Assert.assertEquals(registry.getLoadCount(), 1);
+
+        // Remembered until period ends or API key is invalidated
+        secrets.put("forged", "somesecret");
+        Assert.assertFalse(verify(registry, "forged"));
+        clock.now = clock.now.plusSeconds(10);
+        Assert.assertTrue(verify(registry, "forged"));
+        Assert.assertEquals(registry.getLoadCount(), 2);
+        Assert.assertNull(registry.get("new"));
+        secrets.put("new", "somesecret");
+        Assert.assertNull(registry.get("new"));
+        registry.invalidate("new");
+        Assert.assertTrue(verify(registry, "new"));
+
+        // Bounded, oldest unknown keys are looked up again
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNull(registry.get("random-" + i));
+        }
+        long loads = registry.getLoadCount();
+        Assert.assertNull(registry.get("random-0"));
+        Assert.assertEquals(registry.getLoadCount(), loads + 1);
+
+        SignatureGeneratorRegistry uncached = new SignatureGeneratorRegistry(
+                secrets::get, 4, Duration.ZERO, Duration.ZERO, clock);
+        Assert.assertNull(uncached.get("unknown"));
+        Assert.assertNull(uncached.get("unknown"));
+        Assert.assertEquals(uncached.getLoadCount(), 2);
+    }
+
+    @Test
+    public void testRotationOfUnloadedKey() {
+        Map<String, String> secrets = new HashMap<>();
+        secrets.put("key", "somesecret");
+        secrets.put("updated", "othersecret");
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1000));
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(
+                secrets::get, 10, Duration.ofMinutes(5), clock);
+
+        // Never used, previous secret comes from source
+        registry.rotate("key", "othersecret");
+        Assert.assertTrue(verify(registry, "key"));
+        // Invalidated, then rotated
+        Assert.assertTrue(verify(registry, "key"));
+        registry.invalidate("key");
+        registry.rotate("key", "othersecret");
+        Assert.assertTrue(verify(registry, "key"));
+        // Source already holds new secret, nothing to keep
+        registry.rotate("updated", "othersecret");
+        Assert.assertFalse(verify(registry, "updated"));
+
+        clock.now = clock.now.plus(Duration.ofMinutes(5));
+        Assert.assertFalse(verify(registry, "key"));
+        Assert.assertEquals(registry.get("key").CALLBACK("xxx-yyy-zzz", 808, 14.99, "EUR", "#1223"),
+                new SignatureGenerator("othersecret").CALLBACK("xxx-yyy-zzz", 808, 14.99, "EUR", "#1223"));
+    }
+
+    @Test
+    public void testRotation() {
+        Clock start = Clock.fixed(Instant.ofEpochSecond(1000), ZoneOffset.UTC);
+        Clock[] clock = {start};
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(
+                key -> "somesecret",
+                10,
+                Duration.ofMinutes(5),
+                new Clock() {
+                    @Override
+                    public java.time.ZoneId getZone() {
+                        return ZoneOffset.UTC;
+                    }
+
+                    @Override
+                    public Clock withZone(java.time.ZoneId zone) {
+                        return this;
+                    }
+
+                    @Override
+                    public Instant instant() {
+                        return clock[0].instant();
+                    }
+                }
+        );
+
+        Assert.assertTrue(verify(registry, "key"));
+        registry.rotate("key", "othersecret");
+        Assert.assertTrue(verify(registry, "key"));
+        Assert.assertEquals(
+                registry.get("key").CALLBACK("xxx-yyy-zzz", 808, 14.99, "EUR", "#1223"),
+                new SignatureGenerator("othersecret").CALLBACK("xxx-yyy-zzz", 808, 14.99, "EUR", "#1223")
+        );
+
+        clock[0] = Clock.offset(start, Duration.ofMinutes(5));
+        Assert.assertFalse(verify(registry, "key"));
+    }
+
+    @Test
+    public void testRotatedKeyNotEvicted() {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1000));
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(
+                key -> "somesecret", 2, Duration.ofMinutes(5), clock);
+
+        registry.rotate("key", "othersecret");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(registry.get("key-" + i));
+        }
+        // Previous secret was kept, not reloaded
+        Assert.assertEquals(registry.size(), 2);
+        Assert.assertTrue(verify(registry, "key"));
+        Assert.assertEquals(registry.getLoadCount(), 101);
+
+        clock.now = clock.now.plus(Duration.ofMinutes(5));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(registry.get("other-" + i));
+        }
+        Assert.assertEquals(registry.size(), 2);
+        Assert.assertNotNull(registry.get("key"));
+        Assert.assertEquals(registry.getLoadCount(), 202);
+    }
+
+    @Test
+    public void testSlowSource() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<SignatureGeneratorRegistry> self = new AtomicReference<>();
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(key -> {
+            if (key.equals("slow")) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (key.equals("reentrant")) {
+                // Loads another API key while being loaded
+                return self.get().get("nested") == null ? null : "somesecret";
+            }
+            return "somesecret";
+        }, 1000, Duration.ZERO);
+        self.set(registry);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SignatureGenerator> slow = executor.submit(() -> registry.get("slow"));
+            Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // Other API keys, including ones that would share a bin with the slow one, are not blocked
+            for (int i = 0; i < 500; i++) {
+                Assert.assertNotNull(registry.get("key-" + i));
+            }
+            Assert.assertNotNull(registry.get("reentrant"));
+            Assert.assertFalse(slow.isDone());
+
+            release.countDown();
+            Assert.assertNotNull(slow.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(registry.size(), 503);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBoundedSize() {
+        SignatureGeneratorRegistry registry = new SignatureGeneratorRegistry(key -> "secret-" + key, 16, Duration.ZERO);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertNotNull(registry.get("key-" + i));
+            Assert.assertTrue(registry.size() <= 16);
+        }
+        Assert.assertEquals(registry.getEvictionCount(), 1000 - registry.size());
+    }
+}
@@ -5,6 +5,12 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SignatureGeneratorTest {
     @DataProvider
@@ -80,4 +86,70 @@ public class SignatureGeneratorTest {
         SignatureGenerator generator = new SignatureGenerator("somesecret");
         Assert.assertEquals(generator.MODE_A_TS(time, amount, currencyISOA3, orderID, userID, MCC), expected);
     }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> generator.MODE_A_TS(Instant.ofEpochSecond(123456), 12.33, "usd", "foo", "bar", "baz")));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals(future.get(), "2988a1eb1d09cd7e2e9571ae2ea05f4402f0d1895d0a93845ad87af95cf3c55f");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testBatch() throws Exception {
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+        List<SignatureBuilder> requests = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            switch (i % 4) {
+                case 0:
+                    requests.add(new SignatureBuilder().mode(SignatureMode.CALLBACK).sessionId("xxx-yyy-zzz").transactionId(808).amount(14.99, "EUR").orderId("#1223"));
+                    expected.add("b60f5f05c924d4ee4fabefcacb3df805f98526d685b24b160cdf0e9b0d6eb907");
+                    break;
+                case 1:
+                    requests.add(new SignatureBuilder().mode(SignatureMode.MODE_A).amount(19.99, "eur").orderId("foo").userId("bar").mcc("baz"));
+                    expected.add("c9d1df874a7afa5cb73bcf590a4037b0b1b695a5f5cf3dc6ab1b38a48b2934c7");
+                    break;
+                case 2:
+                    requests.add(new SignatureBuilder().mode(SignatureMode.MODE_A_TS).nonce(Instant.ofEpochSecond(123456)).amount(12.33, "usd").orderId("foo").userId("bar").mcc("baz"));
+                    expected.add("2988a1eb1d09cd7e2e9571ae2ea05f4402f0d1895d0a93845ad87af95cf3c55f");
+                    break;
+                default:
+                    requests.add(new SignatureBuilder().mode(SignatureMode.MODE_A_TS).nonce(Instant.ofEpochSecond(123456)).amount(-1, "usd"));
+                    expected.add(null);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (List<SignatureResult> results : Arrays.asList(
+                    generator.batch(requests),
+                    generator.batch(requests, executor),
+                    generator.batch(requests.subList(0, 10))
+            )) {
+                for (int i = 0; i < results.size(); i++) {
+                    SignatureResult result = results.get(i);
+                    if (expected.get(i) == null) {
+                        Assert.assertFalse(result.isSuccess());
+                        Assert.assertTrue(result.getError() instanceof IllegalArgumentException);
+                    } else {
+                        Assert.assertTrue(result.isSuccess());
+                        Assert.assertEquals(result.getSignature(), expected.get(i));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
\ No newline at end of file
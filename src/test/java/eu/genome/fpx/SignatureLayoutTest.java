@@ -0,0 +1,75 @@
+package eu.genome.fpx;
+
+import eu.genome.fpx.SignatureLayout.Field;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+
+public class SignatureLayoutTest {
+    private static String expected(String preImage) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(preImage.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    private static String encode(SignatureLayout layout) throws Exception {
+        return layout.encode(
+                new SignatureEncoder(),
+                MessageDigest.getInstance("SHA-256"),
+                Instant.ofEpochSecond(1638550119),
+                "session",
+                42,
+                999,
+                null,
+                "eur",
+                "order",
+                null,
+                "5137"
+        ).hex();
+    }
+
+    @Test
+    public void testModeLayouts() throws Exception {
+        Assert.assertEquals(
+                encode(SignatureMode.CALLBACK.layout()),
+                expected("session|order|42|9.99|eur")
+        );
+        Assert.assertEquals(
+                encode(SignatureMode.MODE_A.layout()),
+                expected("MODE_A|9.99|EUR|order||5137")
+        );
+        Assert.assertEquals(
+                encode(SignatureMode.MODE_A_TS.layout()),
+                expected("MODE_A_TS|1638550119|9.99|EUR|order||5137")
+        );
+    }
+
+    @Test
+    public void testFixedSegments() throws Exception {
+        Assert.assertEquals(
+                encode(new SignatureLayout(SignatureMode.MODE_A, Field.MODE, Field.MODE, Field.USER_ID)),
+                expected("MODE_A|MODE_A|")
+        );
+        Assert.assertEquals(
+                encode(new SignatureLayout(SignatureMode.MODE_A, Field.AMOUNT, Field.MODE)),
+                expected("9.99|MODE_A")
+        );
+        Assert.assertEquals(encode(new SignatureLayout(SignatureMode.MODE_A)), expected(""));
+    }
+
+    @Test
+    public void testMissingFields() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        SignatureLayout layout = SignatureMode.CALLBACK.layout();
+        Assert.expectThrows(InvalidSignatureDataException.class, () -> layout.encode(
+                new SignatureEncoder(), digest, null, "", 42, 999, null, "EUR", null, null, null));
+        Assert.expectThrows(InvalidSignatureDataException.class, () -> layout.encode(
+                new SignatureEncoder(), digest, null, "session", 0, 999, null, "EUR", null, null, null));
+        Assert.expectThrows(InvalidSignatureDataException.class, () -> SignatureMode.MODE_A_TS.layout().encode(
+                new SignatureEncoder(), digest, null, null, 0, 999, null, "EUR", null, null, null));
+    }
+}
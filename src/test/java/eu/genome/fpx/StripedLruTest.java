@@ -0,0 +1,49 @@
+package eu.genome.fpx;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StripedLruTest {
+    @Test
+    public void testAccessOrder() {
+        // Single stripe, so eviction order is exact
+        StripedLru<Integer, String> lru = new StripedLru<>(1, true);
+        lru.put(1, "one");
+        Assert.assertEquals(lru.get(1), "one");
+        lru.put(2, "two");
+        Assert.assertNull(lru.get(1));
+        Assert.assertEquals(lru.get(2), "two");
+        Assert.assertEquals(lru.size(), 1);
+        Assert.assertEquals(lru.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void testBounded() {
+        StripedLru<Integer, Integer> lru = new StripedLru<>(100, true);
+        for (int i = 0; i < 1000; i++) {
+            lru.put(i, i);
+        }
+        Assert.assertTrue(lru.size() <= 100, "size " + lru.size());
+        Assert.assertEquals(lru.getEvictionCount(), 1000 - lru.size());
+        lru.clear();
+        Assert.assertEquals(lru.size(), 0);
+    }
+
+    @Test
+    public void testPutIfAbsentAndExpire() {
+        StripedLru<Integer, Long> lru = new StripedLru<>(1, false);
+        Assert.assertNull(lru.putIfAbsent(1, 10L));
+        Assert.assertEquals(lru.putIfAbsent(1, 20L), Long.valueOf(10));
+
+        lru.expire(1, deadline -> deadline <= 5);
+        Assert.assertEquals(lru.size(), 1);
+        lru.expire(1, deadline -> deadline <= 10);
+        Assert.assertEquals(lru.size(), 0);
+        Assert.assertEquals(lru.getEvictionCount(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new StripedLru<>(0, false);
+    }
+}
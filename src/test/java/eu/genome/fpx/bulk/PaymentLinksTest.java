@@ -0,0 +1,204 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.fpx.SignatureGenerator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PaymentLinksTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("eeeeeeeeeeeeeeeeeeeeee");
+    private static final Instant NONCE = Instant.ofEpochSecond(1760000000L);
+
+    private static PaymentLinks.Builder links() {
+        return PaymentLinks.builder()
+                .baseUrl("https://hpp.genome.eu/pay")
+                .signWith(GENERATOR)
+                .nonce(NONCE);
+    }
+
+    private static String run(PaymentLinks links, String csv) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        links.run(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parameters(String link) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String parameter : link.substring(link.indexOf('?') + 1).split("&")) {
+            int separator = parameter.indexOf('=');
+            parameters.put(parameter.substring(0, separator), URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    @Test
+    public void testLinks() throws IOException {
+        List<Long> rejected = Collections.synchronizedList(new ArrayList<>());
+        String output = run(links()
+                .apiKey("key/1")
+                .header(true)
+                .threads(1)
+                .onRejected((line, spec, error) -> rejected.add(line))
+                .build(), "amount,currency,orderId,userId,mcc\r\n"
+                + "9.99,eur,order-1,user 1,5137\r\n"
+                + "\n"
+                + "10,USD,\"order,\"\"2\"\"\",Jürgen\n"
+                + "0.005,EUR\n"
+                + "-1,EUR,order-4\n"
+                + "1.00\n"
+                + "abc,EUR\n"
+                + "1.50,EUR,,,\n"
+                + "2,EURO\n"
+                + "3,EUR,\"open");
+
+        String[] lines = output.split("\n", -1);
+        Assert.assertEquals(lines.length, 5, output);
+        Assert.assertEquals(lines[4], "");
+        Assert.assertEquals(lines[0], "https://hpp.genome.eu/pay?apiKey=key%2F1&timestamp=1760000000&amount=9.99"
+                + "&currency=EUR&orderId=order-1&userId=user%201&mcc=5137&signature="
+                + GENERATOR.MODE_A_TS(NONCE, new BigDecimal("9.99"), "EUR", "order-1", "user 1", "5137"));
+
+        Map<String, String> second = parameters(lines[1]);
+        Assert.assertEquals(second.get("amount"), "10.00");
+        Assert.assertEquals(second.get("orderId"), "order,\"2\"");
+        Assert.assertEquals(second.get("userId"), "Jürgen");
+        Assert.assertFalse(second.containsKey("mcc"));
+        Assert.assertEquals(second.get("signature"),
+                GENERATOR.MODE_A_TS(NONCE, new BigDecimal("10"), "USD", "order,\"2\"", "Jürgen", null));
+
+        // Rounded half-up
+        Assert.assertEquals(parameters(lines[2]).get("amount"), "0.01");
+        Map<String, String> fourth = parameters(lines[3]);
+        Assert.assertEquals(new ArrayList<>(fourth.keySet()),
+                Arrays.asList("apiKey", "timestamp", "amount", "currency", "signature"));
+        Assert.assertEquals(fourth.get("signature"),
+                GENERATOR.MODE_A_TS(NONCE, new BigDecimal("1.50"), "EUR", null, null, null));
+
+        Collections.sort(rejected);
+        Assert.assertEquals(rejected, Arrays.asList(6L, 7L, 8L, 10L, 11L));
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LinkReport report = links().threads(1).build().run(
+                new ByteArrayInputStream("1,EUR\n2,EUR\nx,EUR\n".getBytes(StandardCharsets.UTF_8)),
+                Channels.newChannel(out));
+        Assert.assertEquals(report.getNonce(), NONCE);
+        Assert.assertEquals(report.getLinkCount(), 2);
+        Assert.assertEquals(report.getRejectedCount(), 1);
+        Assert.assertEquals(report.getByteCount(), out.size());
+
+        Instant before = Instant.now();
+        LinkReport current = PaymentLinks.builder()
+                .baseUrl("https://hpp.genome.eu/pay?lang=en")
+                .signWith(GENERATOR)
+                .build()
+                .run(new ByteArrayInputStream(new byte[0]), Channels.newChannel(out));
+        Assert.assertEquals(current.getLinkCount(), 0);
+        Assert.assertEquals(current.getNonce().getNano(), 0);
+        Assert.assertTrue(current.getNonce().getEpochSecond() >= before.getEpochSecond());
+    }
+
+    @Test
+    public void testParallelOrder() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            csv.append(i % 1000 + 1).append('.').append(i % 100).append(",EUR,order-").append(i)
+                    .append(",user-").append(i % 7 == 0 ? "" : "é" + i).append('\n');
+            if (i % 5000 == 0) {
+                // Line longer than input chunk
+                csv.append("1,EUR,").append(new String(new char[2000]).replace('\0', 'x')).append('\n');
+            }
+        }
+        String sequential = run(links().threads(1).build(), csv.toString());
+        String parallel = run(links().threads(4).bufferSize(1024).build(), csv.toString());
+        Assert.assertEquals(parallel, sequential);
+
+        String[] lines = sequential.split("\n");
+        Assert.assertEquals(lines.length, 20_004);
+        int index = 0;
+        for (String line : lines) {
+            Map<String, String> parameters = parameters(line);
+            if (parameters.get("orderId").startsWith("x")) {
+                continue;
+            }
+            Assert.assertEquals(parameters.get("orderId"), "order-" + index);
+            if (index % 997 == 0) {
+                Assert.assertEquals(parameters.get("signature"), GENERATOR.MODE_A_TS(NONCE,
+                        new BigDecimal(parameters.get("amount")), "EUR", "order-" + index, parameters.get("userId"), null));
+            }
+            index++;
+        }
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        Path input = Files.createTempFile("links", ".csv");
+        Path output = Files.createTempFile("links", ".txt");
+        try {
+            Files.write(output, "stale content that is longer than generated links".getBytes(StandardCharsets.UTF_8));
+            Files.write(input, "5,EUR,order\n".getBytes(StandardCharsets.UTF_8));
+            LinkReport report = links().build().run(input, output);
+            Assert.assertEquals(report.getLinkCount(), 1);
+            Assert.assertEquals(new String(Files.readAllBytes(output), StandardCharsets.UTF_8),
+                    "https://hpp.genome.eu/pay?timestamp=1760000000&amount=5.00&currency=EUR&orderId=order&signature="
+                            + GENERATOR.MODE_A_TS(NONCE, new BigDecimal("5"), "EUR", "order", null, null) + "\n");
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void testCurrency() throws IOException {
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        String output = run(links()
+                .threads(1)
+                .onRejected((line, spec, error) -> rejected.add(spec))
+                .build(), "10.00,E#R,o1\n10.00,a&b\n10.00,E R\n10.00,\"EÜR\"\n10.00,usd,o2\n");
+
+        Assert.assertEquals(rejected, Arrays.asList("10.00,E#R,o1", "10.00,a&b", "10.00,E R", "10.00,\"EÜR\""));
+        Assert.assertEquals(output, "https://hpp.genome.eu/pay?timestamp=1760000000&amount=10.00&currency=USD&orderId=o2"
+                + "&signature=" + GENERATOR.MODE_A_TS(NONCE, new BigDecimal("10.00"), "USD", "o2", null, null) + "\n");
+    }
+
+    @Test
+    public void testMinorUnits() {
+        String[] amounts = {"0.05", "1", "1.5", "1.25", ".5", "5.", "1.005", "1.004", "12345678901234567.89"};
+        long[] expected = {5, 100, 150, 125, 50, 500, 101, 100, 1234567890123456789L};
+        for (int i = 0; i < amounts.length; i++) {
+            byte[] bytes = ("[" + amounts[i] + "]").getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(PaymentLinks.minorUnits(bytes, 1, bytes.length - 1), expected[i], amounts[i]);
+        }
+        for (String amount : new String[]{"", ".", "1,5", "1e", "99999999999999999999"}) {
+            byte[] bytes = amount.getBytes(StandardCharsets.US_ASCII);
+            Assert.assertThrows(IllegalArgumentException.class, () -> PaymentLinks.minorUnits(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        Assert.assertThrows(IllegalStateException.class, () -> PaymentLinks.builder().signWith(GENERATOR).build());
+        Assert.assertThrows(IllegalStateException.class, () -> PaymentLinks.builder().baseUrl("https://a").build());
+        Assert.assertThrows(IllegalArgumentException.class, () -> links().baseUrl(""));
+        Assert.assertThrows(IllegalArgumentException.class, () -> links().threads(0));
+        Assert.assertThrows(IllegalArgumentException.class, () -> links().bufferSize(100));
+    }
+}
@@ -0,0 +1,203 @@
+package eu.genome.fpx.bulk;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.domain.PaymentMethodType;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+public class ReconciliationTest {
+    private static final String SECRET = "eeeeeeeeeeeeeeeeeeeeee";
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator(SECRET);
+
+    private Path directory;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("reconciliation");
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static String record(long transactionId, String status, String method, String amount, String currency) {
+        String signature = GENERATOR.CALLBACK("session", transactionId, new BigDecimal(amount), currency.toUpperCase(Locale.ROOT), "order");
+        return record(transactionId, status, method, amount, currency, signature);
+    }
+
+    private static String record(
+            long transactionId, String status, String method, String amount, String currency, String signature
+    ) {
+        return "{\"apiKey\":\"key\",\"apiSignature\":\"" + signature + "\",\"sessionId\":\"session\","
+                + "\"transactionId\":" + transactionId + ",\"transactionStatus\":\"" + status + "\","
+                + "\"paymentMethodType\":\"" + method + "\",\"amount\":" + amount + ","
+                + "\"currency\":\"" + currency + "\",\"orderId\":\"order\"}";
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        String content = record(1, "SUCCESS", "CC", "9.99", "EUR") + "\n"
+                + "\n"
+                + record(2, "SUCCESS", "CC", "0.01", "eur") + "\r\n"
+                + record(3, "DECLINE", "CC", "5", "USD") + "\n"
+                + record(4, "SUCCESS", "CC", "9.99", "EUR", "forged") + "\n"
+                + "{\"transactionId\":" + "\n"
+                + "   \n"
+                + record(5, "SUCCESS", "TEST_TRX_SUCCESS", "100.50", "EUR");
+        Path input = write("report.ndjson", content);
+
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        ReconciliationReport report = Reconciliation.builder()
+                .verifyWith(GENERATOR)
+                .threads(1)
+                .onRejected((offset, status, callback) -> rejected.add(status + " " + offset
+                        + (callback == null ? "" : " " + callback.getTransactionId())))
+                .build()
+                .run(input);
+
+        Assert.assertEquals(report.getRecordCount(), 6);
+        Assert.assertEquals(report.getCount(RecordStatus.VALID), 4, rejected.toString());
+        Assert.assertEquals(report.getCount(RecordStatus.INVALID_SIGNATURE), 1);
+        Assert.assertEquals(report.getCount(RecordStatus.MALFORMED), 1);
+
+        int forged = content.indexOf(record(4, "SUCCESS", "CC", "9.99", "EUR", "forged"));
+        int malformed = content.indexOf("{\"transactionId\":\n");
+        Assert.assertEquals(rejected, Arrays.asList(
+                "INVALID_SIGNATURE " + forged + " 4",
+                "MALFORMED " + malformed
+        ));
+
+        Totals success = report.getTransactionStatusTotals().get(TransactionStatus.SUCCESS);
+        Assert.assertEquals(success.getCount(), 3);
+        Assert.assertEquals(success.getAmounts().get("EUR"), new BigDecimal("110.50"));
+        Assert.assertEquals(report.getTransactionStatusTotals().get(TransactionStatus.DECLINE).getAmounts().get("USD"),
+                new BigDecimal("5"));
+        Assert.assertEquals(report.getPaymentMethodTotals().get(PaymentMethodType.CC).getCount(), 3);
+        Assert.assertEquals(report.getPaymentMethodTotals().get(PaymentMethodType.TEST_TRX_SUCCESS).getCount(), 1);
+        Assert.assertEquals(report.getCurrencyTotals().keySet(), new TreeSet<>(Arrays.asList("EUR", "USD")));
+    }
+
+    @Test
+    public void testParallelWindows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            if (i % 100 == 7) {
+                content.append(record(i + 1, "SUCCESS", "CC", "1.00", "EUR", "forged")).append('\n');
+            } else {
+                content.append(record(i + 1, i % 2 == 0 ? "SUCCESS" : "DECLINE", "CC", "1.00", "EUR")).append('\n');
+            }
+        }
+        Path input = write("parallel.ndjson", content.toString());
+
+        ReconciliationReport single = Reconciliation.builder().verifyWith(GENERATOR).threads(1).build().run(input);
+        ReconciliationReport parallel = Reconciliation.builder()
+                .verifyWith(GENERATOR)
+                .threads(4)
+                .window(4096)
+                .build()
+                .run(input);
+        // Split by threads even though the file fits one window
+        Set<Thread> workers = Collections.synchronizedSet(new HashSet<>());
+        ReconciliationReport unwindowed = Reconciliation.builder()
+                .verifyWith(GENERATOR)
+                .threads(4)
+                .onRejected((offset, status, callback) -> workers.add(Thread.currentThread()))
+                .build()
+                .run(input);
+        Assert.assertTrue(content.length() > 4 * Reconciliation.MIN_PART);
+        Assert.assertEquals(workers.size(), 4);
+
+        for (ReconciliationReport report : new ReconciliationReport[]{single, parallel, unwindowed}) {
+            Assert.assertEquals(report.getRecordCount(), count);
+            Assert.assertEquals(report.getCount(RecordStatus.INVALID_SIGNATURE), 20);
+            Assert.assertEquals(report.getCount(RecordStatus.MALFORMED), 0);
+            Assert.assertEquals(report.getCurrencyTotals().get("EUR").getAmounts().get("EUR"), new BigDecimal("1980.00"));
+            Assert.assertEquals(report.getTransactionStatusTotals().get(TransactionStatus.DECLINE).getCount(), 980);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testLineExceedsWindow() throws IOException {
+        Path input = write("long.ndjson", record(1, "SUCCESS", "CC", "1.00", "EUR") + "\n");
+        Reconciliation.builder().verifyWith(GENERATOR).window(64).build().run(input);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path input = write("empty.ndjson", "");
+        ReconciliationReport report = Reconciliation.builder().verifyWith(GENERATOR).threads(4).build().run(input);
+        Assert.assertEquals(report.getRecordCount(), 0);
+    }
+
+    @Test
+    public void testCommand() throws IOException {
+        Path input = write("command.ndjson", record(1, "SUCCESS", "CC", "9.99", "EUR") + "\n"
+                + record(2, "SUCCESS", "CC", "9.99", "EUR", "forged") + "\n");
+        Path secrets = write("secrets.properties", "key=" + SECRET + "\n");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = ReconcileCommand.run(
+                new String[]{"--secrets", secrets.toString(), "--threads", "2", input.toString()},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        );
+        String report = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertEquals(code, 1, report);
+        Assert.assertTrue(report.contains("INVALID_SIGNATURE offset="), report);
+        Assert.assertTrue(report.contains("transactionId=2 apiKey=key"), report);
+        Assert.assertTrue(report.contains("records 2\n"), report);
+        Assert.assertTrue(report.contains("\n# currency\nEUR 1 9.99 EUR\n"), report);
+
+        Path valid = write("valid.ndjson", record(1, "SUCCESS", "CC", "9.99", "EUR") + "\n");
+        Path output = directory.resolve("report.txt");
+        Assert.assertEquals(ReconcileCommand.run(
+                new String[]{"--secret", SECRET, "--output", output.toString(), valid.toString()},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        ), 0);
+        Assert.assertTrue(new String(Files.readAllBytes(output), StandardCharsets.UTF_8).startsWith("records 1\n"));
+
+        Assert.assertEquals(ReconcileCommand.run(
+                new String[]{input.toString()},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        ), 2);
+        Assert.assertEquals(ReconcileCommand.run(
+                new String[]{"--threads"},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        ), 2);
+    }
+}
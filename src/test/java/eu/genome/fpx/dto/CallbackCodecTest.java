@@ -0,0 +1,164 @@
+package eu.genome.fpx.dto;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.domain.PaymentMethodType;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CallbackCodecTest {
+    private static Callback full() {
+        Callback callback = new Callback();
+        callback.set(CallbackParser.IS_TEST, true);
+        callback.set(CallbackParser.API_KEY, "key");
+        callback.set(CallbackParser.API_SIGNATURE, "9a3b9345845d6001de4c98789ebf91dbc0d693f43708890c73728fc5591a5883");
+        callback.set(CallbackParser.SESSION_ID, "session");
+        callback.set(CallbackParser.TRANSACTION_ID, Long.MAX_VALUE);
+        callback.set(CallbackParser.TRANSACTION_STATUS, TransactionStatus.CANCELED);
+        callback.set(CallbackParser.TRANSACTION_ERROR_CODE, -1L);
+        callback.set(CallbackParser.TRANSACTION_TIME, -1638550119L);
+        callback.set(CallbackParser.CARD_TOKEN, "card ✓");
+        callback.set(CallbackParser.BILL_TOKEN, "bill 😀");
+        callback.set(CallbackParser.PAYMENT_METHOD_TYPE, PaymentMethodType.CC);
+        callback.set(CallbackParser.AMOUNT, new BigDecimal("-123456789012345.678"));
+        callback.set(CallbackParser.CURRENCY, "eur");
+        callback.set(CallbackParser.ORDER_ID, "");
+        callback.set(CallbackParser.USER_ID, "Ünïcode");
+        Map<String, String> custom = new LinkedHashMap<>();
+        custom.put("foo", "bar");
+        custom.put("empty", "");
+        custom.put("nothing", null);
+        custom.put(null, "null key");
+        callback.set(CallbackParser.CUSTOM, CustomFields.of(custom));
+        return callback;
+    }
+
+    @DataProvider
+    public Object[][] dataProviderCallbacks() throws IOException {
+        Callback scaled = new Callback();
+        scaled.set(CallbackParser.AMOUNT, new BigDecimal("1E+3"));
+        Callback emptyCustom = new Callback();
+        emptyCustom.set(CallbackParser.CUSTOM, CustomFields.empty());
+        return new Object[][]{
+                {new Callback()},
+                {full()},
+                {scaled},
+                {emptyCustom},
+                {Callback.parse(CallbackParserTest.SOURCE.getBytes(StandardCharsets.UTF_8))},
+                {CallbackView.of(CallbackParserTest.SOURCE.getBytes(StandardCharsets.UTF_8))},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderCallbacks")
+    public void testRoundTrip(Callback callback) throws IOException {
+        CallbackCodec codec = new CallbackCodec();
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(512), ByteBuffer.allocateDirect(512)}) {
+            buffer.position(3);
+            int length = codec.encode(callback, buffer);
+            Assert.assertEquals(length, codec.encodedLength(callback));
+            Assert.assertEquals(buffer.position(), 3 + length);
+            buffer.flip();
+            buffer.position(3);
+
+            Callback decoded = codec.decode(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+            CallbackParserTest.assertSame(decoded, callback);
+        }
+    }
+
+    @Test
+    public void testSequence() throws IOException {
+        CallbackCodec codec = new CallbackCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int i = 1; i <= 10; i++) {
+            Callback callback = full();
+            callback.set(CallbackParser.TRANSACTION_ID, (long) i);
+            codec.encode(callback, buffer);
+        }
+        buffer.flip();
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertEquals(codec.decode(buffer).getTransactionId(), i);
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        byte[] json = CallbackParserTest.SOURCE.getBytes(StandardCharsets.UTF_8);
+        int length = new CallbackCodec().encodedLength(Callback.parse(json));
+        Assert.assertTrue(length * 2 < json.length, length + " of " + json.length);
+    }
+
+    @Test
+    public void testOverflow() {
+        CallbackCodec codec = new CallbackCodec();
+        Callback callback = full();
+        ByteBuffer buffer = ByteBuffer.allocate(codec.encodedLength(callback) - 1);
+        Assert.assertThrows(BufferOverflowException.class, () -> codec.encode(callback, buffer));
+        Assert.assertEquals(buffer.position(), 0);
+    }
+
+    @Test
+    public void testAmountOutOfRange() {
+        Callback callback = new Callback();
+        callback.set(CallbackParser.AMOUNT, new BigDecimal("123456789012345678901234567890.5"));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> new CallbackCodec().encode(callback, ByteBuffer.allocate(512)));
+    }
+
+    @Test
+    public void testNewerVersion() throws IOException {
+        CallbackCodec codec = new CallbackCodec();
+        ByteBuffer record = ByteBuffer.allocate(512);
+        codec.encode(full(), record);
+        record.flip();
+
+        // Newer version with unknown mask bit and two appended bytes, followed by minimal record
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        buffer.put((byte) 2);
+        int body = record.remaining() - 3 + 1 + 2;
+        buffer.put((byte) ((body & 0x7F) | 0x80)).put((byte) (body >>> 7));
+        record.position(3);
+        int mask = (record.get() & 0x7F) | (record.get() << 7) | (1 << 20);
+        buffer.put((byte) ((mask & 0x7F) | 0x80)).put((byte) (((mask >>> 7) & 0x7F) | 0x80)).put((byte) (mask >>> 14));
+        buffer.put(record).put((byte) 42).put((byte) 42);
+        buffer.put((byte) CallbackCodec.VERSION).put((byte) 4).put(new byte[4]);
+        buffer.flip();
+
+        CallbackParserTest.assertSame(codec.decode(buffer), full());
+        Assert.assertEquals(codec.decode(buffer).getTransactionId(), 0);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @DataProvider
+    public Object[][] dataProviderMalformed() {
+        return new Object[][]{
+                {new byte[0]},
+                {new byte[]{0, 0}},
+                {new byte[]{1}},
+                {new byte[]{1, 5, 0, 0, 0}},
+                {new byte[]{1, 3, 0, 0, 0, 0}},
+                {new byte[]{1, 2, 0, (byte) 0x80}},
+                {new byte[]{1, 5, 16, 0, 0, 0, 10}},
+                {new byte[]{1, 5, 2, 0, 0, 0, 1}},
+                {new byte[]{1, 7, (byte) 0x80, 0x20, 0, 0, 0, 3, 0}},
+                {new byte[]{1, 11, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1}},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderMalformed")
+    public void testMalformed(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        Assert.assertThrows(IOException.class, () -> new CallbackCodec().decode(buffer));
+        Assert.assertEquals(buffer.position(), 0);
+    }
+}
@@ -0,0 +1,166 @@
+package eu.genome.fpx.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.genome.domain.TransactionStatus;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class CallbackParserTest {
+    static final String SOURCE = "{\n" +
+            "  \"isTest\" : true,\n" +
+            "  \"apiKey\" : \"Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E\",\n" +
+            "  \"apiSignature\" : \"9a3b9345845d6001de4c98789ebf91dbc0d693f43708890c73728fc5591a5883\",\n" +
+            "  \"sessionId\" : \"O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB\",\n" +
+            "  \"transactionId\" : 5121270,\n" +
+            "  \"transactionStatus\" : \"SUCCESS\",\n" +
+            "  \"transactionErrorCode\" : 0,\n" +
+            "  \"transactionTimeUnixSeconds\" : 1638550119,\n" +
+            "  \"cardToken\" : null,\n" +
+            "  \"billToken\" : \"5c7e5555-0000-0000-1001-5affdcf91001\",\n" +
+            "  \"paymentMethodType\" : \"TEST_TRX_SUCCESS\",\n" +
+            "  \"amount\" : 9.000000000,\n" +
+            "  \"currency\" : \"XTS\",\n" +
+            "  \"orderId\" : \"\",\n" +
+            "  \"userId\" : \"\",\n" +
+            "  \"custom\" : { \"foo\":\"bar\" }\n" +
+            "}";
+
+    static void assertSame(Callback actual, Callback expected) {
+        Assert.assertEquals(actual.isTest(), expected.isTest());
+        Assert.assertEquals(actual.getAPIKey(), expected.getAPIKey());
+        Assert.assertEquals(actual.getSignature(), expected.getSignature());
+        Assert.assertEquals(actual.getSessionId(), expected.getSessionId());
+        Assert.assertEquals(actual.getTransactionId(), expected.getTransactionId());
+        Assert.assertEquals(actual.getTransactionStatus(), expected.getTransactionStatus());
+        Assert.assertEquals(actual.getTransactionErrorCode(), expected.getTransactionErrorCode());
+        Assert.assertEquals(actual.getTransactionTime(), expected.getTransactionTime());
+        Assert.assertEquals(actual.getCardToken(), expected.getCardToken());
+        Assert.assertEquals(actual.getBillToken(), expected.getBillToken());
+        Assert.assertEquals(actual.getPaymentMethodType(), expected.getPaymentMethodType());
+        Assert.assertEquals(actual.getAmount(), expected.getAmount());
+        Assert.assertEquals(actual.getCurrencyCode(), expected.getCurrencyCode());
+        Assert.assertEquals(actual.getOrderId(), expected.getOrderId());
+        Assert.assertEquals(actual.getUserId(), expected.getUserId());
+        Assert.assertEquals(actual.getCustom(), expected.getCustom());
+    }
+
+    @DataProvider
+    public Object[][] dataProviderSame() {
+        return new Object[][]{
+                {SOURCE},
+                {"{}"},
+                {"{\"sessionId\":\"\\u00e9\\\"\\\\\\/\\n\",\"orderId\":\"žluť 😀\",\"userId\":123,\"apiKey\":true}"},
+                {"{\"transactionId\":\"42\",\"transactionErrorCode\":null,\"isTest\":\"false\",\"amount\":\"1.50\"}"},
+                {"{\"transactionStatus\":2,\"paymentMethodType\":null,\"amount\":1e2,\"custom\":{\"a\":1,\"b\":null,\"c\":false}}"},
+                {"{\"transactionId\":12.9,\"custom\":null,\"cardToken\":\"x\",\"cardToken\":\"y\"}"},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderSame")
+    public void testSameAsJackson(String source) throws IOException {
+        Callback expected = new ObjectMapper().readValue(source, Callback.class);
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        CallbackParser parser = new CallbackParser();
+
+        assertSame(parser.parse(bytes), expected);
+        assertSame(parser.parse(ByteBuffer.wrap(bytes)), expected);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            direct.put(i, bytes[i]);
+        }
+        assertSame(parser.parse(direct), expected);
+        Assert.assertEquals(direct.position(), 0);
+
+        // One byte at a time stream exercises buffer refills
+        InputStream slow = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        assertSame(parser.parse(slow), expected);
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        Callback callback = Callback.parse(SOURCE.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(callback.getTransactionStatus(), TransactionStatus.SUCCESS);
+        Assert.assertEquals(callback.getAmount().compareTo(BigDecimal.valueOf(9.)), 0);
+        Assert.assertTrue(callback.verify("eeeeeeeeeeeeeeeeeeeeee"));
+    }
+
+    @Test
+    public void testUnknownFields() throws IOException {
+        Callback callback = new CallbackParser().parse((
+                "{\"extra\":{\"nested\":[1,2.5,{\"x\":null},\"s\"],\"t\":true},\"more\":[]," +
+                        "\"transactionId\":7,\"tail\":\"\\\"}\"}"
+        ).getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(callback.getTransactionId(), 7);
+    }
+
+    @Test
+    public void testNesting() throws IOException {
+        String allowed = nested(CallbackParser.MAX_DEPTH);
+        Assert.assertEquals(new CallbackParser().parse(allowed.getBytes(StandardCharsets.UTF_8)).getTransactionId(), 7);
+
+        // Deep enough to overflow the stack if skipped recursively without limit
+        byte[] hostile = nested(100_000).getBytes(StandardCharsets.UTF_8);
+        Assert.assertThrows(IOException.class, () -> new CallbackParser().parse(nested(CallbackParser.MAX_DEPTH + 1)
+                .getBytes(StandardCharsets.UTF_8)));
+        Assert.assertThrows(IOException.class, () -> new CallbackParser().parse(hostile));
+        Assert.assertThrows(IOException.class, () -> new CallbackParser().parse(new ByteArrayInputStream(hostile)));
+        Assert.assertThrows(IOException.class, () -> CallbackView.of(hostile));
+    }
+
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder("{\"x\":");
+        for (int i = 0; i < depth; i++) {
+            json.append(i % 2 == 0 ? "[" : "{\"y\":");
+        }
+        json.append('0');
+        for (int i = depth - 1; i >= 0; i--) {
+            json.append(i % 2 == 0 ? "]" : "}");
+        }
+        return json.append(",\"transactionId\":7}").toString();
+    }
+
+    @Test
+    public void testRegion() throws IOException {
+        byte[] bytes = "xx{\"transactionId\":7}{\"transactionId\":8}".getBytes(StandardCharsets.UTF_8);
+        CallbackParser parser = new CallbackParser();
+        Assert.assertEquals(parser.parse(bytes, 2, 19).getTransactionId(), 7);
+        Assert.assertEquals(parser.parse(bytes, 21, 19).getTransactionId(), 8);
+        Assert.assertNull(parser.parse(" null ".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @DataProvider
+    public Object[][] dataProviderMalformed() {
+        return new Object[][]{
+                {""},
+                {"[]"},
+                {"{\"transactionId\":7"},
+                {"{\"transactionId\" 7}"},
+                {"{\"transactionId\":99999999999999999999}"},
+                {"{\"transactionStatus\":\"UNKNOWN\"}"},
+                {"{\"custom\":{\"a\":{}}}"},
+                {"{\"sessionId\":\"abc}"},
+                {"{\"sessionId\":\"\\x\"}"},
+                {"{\"isTest\":tru}"},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderMalformed", expectedExceptions = IOException.class)
+    public void testMalformed(String source) throws IOException {
+        new CallbackParser().parse(source.getBytes(StandardCharsets.UTF_8));
+    }
+}
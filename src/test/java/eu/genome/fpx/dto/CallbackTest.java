@@ -2,11 +2,13 @@ package eu.genome.fpx.dto;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGeneratorRegistry;
 import eu.genome.fpx.domain.PaymentMethodType;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Currency;
 
@@ -52,5 +54,10 @@ public class CallbackTest {
         Currency currency = callback.getCurrency();
 
         Assert.assertTrue(callback.verify("eeeeeeeeeeeeeeeeeeeeee"));
+        Assert.assertTrue(callback.verify(new SignatureGeneratorRegistry(
+                key -> key.equals(callback.getAPIKey()) ? "eeeeeeeeeeeeeeeeeeeeee" : null,
+                10,
+                Duration.ofMinutes(5)
+        )));
     }
 }
\ No newline at end of file
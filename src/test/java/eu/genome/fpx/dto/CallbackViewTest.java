@@ -0,0 +1,145 @@
+package eu.genome.fpx.dto;
+
+import eu.genome.fpx.SignatureGenerator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+
+public class CallbackViewTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("eeeeeeeeeeeeeeeeeeeeee");
+
+    private static void assertSameFields(Callback actual, Callback expected) {
+        Assert.assertEquals(actual.isTest(), expected.isTest());
+        Assert.assertEquals(actual.getAPIKey(), expected.getAPIKey());
+        Assert.assertEquals(actual.getSignature(), expected.getSignature());
+        Assert.assertEquals(actual.getSessionId(), expected.getSessionId());
+        Assert.assertEquals(actual.getTransactionId(), expected.getTransactionId());
+        Assert.assertEquals(actual.getTransactionStatus(), expected.getTransactionStatus());
+        Assert.assertEquals(actual.getTransactionErrorCode(), expected.getTransactionErrorCode());
+        Assert.assertEquals(actual.getTransactionTime(), expected.getTransactionTime());
+        Assert.assertEquals(actual.getCardToken(), expected.getCardToken());
+        Assert.assertEquals(actual.getBillToken(), expected.getBillToken());
+        Assert.assertEquals(actual.getPaymentMethodType(), expected.getPaymentMethodType());
+        Assert.assertEquals(actual.getAmount(), expected.getAmount());
+        Assert.assertEquals(actual.getOrderId(), expected.getOrderId());
+        Assert.assertEquals(actual.getUserId(), expected.getUserId());
+        Assert.assertEquals(actual.getCustom(), expected.getCustom());
+        if (expected.getCurrencyCode() != null) {
+            Assert.assertEquals(actual.getCurrencyISO(), expected.getCurrencyISO());
+        }
+    }
+
+    private static String signed(String amount, String currency, String orderId) {
+        String signature = GENERATOR.CALLBACK("seßsion", 5121270, 9.99, "XTS", "order");
+        return "{\"apiSignature\":\"" + signature + "\",\"sessionId\":\"se\\u00dfsion\",\"transactionId\":5121270," +
+                "\"amount\":" + amount + ",\"currency\":" + currency + ",\"orderId\":" + orderId + "}";
+    }
+
+    @DataProvider
+    public Object[][] dataProviderSame() {
+        return new Object[][]{
+                {CallbackParserTest.SOURCE},
+                {"{}"},
+                {"{\"sessionId\":\"\\u00e9\\\"\\\\\\/\\n\",\"orderId\":\"žluť 😀\",\"userId\":123,\"apiKey\":true}"},
+                {"{\"transactionId\":\"42\",\"transactionErrorCode\":null,\"isTest\":\"false\",\"amount\":\"1.50\"}"},
+                {"{\"transactionStatus\":2,\"paymentMethodType\":null,\"amount\":1e2,\"custom\":{\"a\":1,\"b\":null,\"c\":false}}"},
+                {"{\"transactionId\":12.9,\"custom\":null,\"cardToken\":\"x\",\"cardToken\":\"y\"}"},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderSame")
+    public void testSameAsParser(String source) throws IOException {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        Callback expected = new CallbackParser().parse(bytes);
+
+        assertSameFields(CallbackView.of(bytes), expected);
+
+        byte[] padded = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        assertSameFields(CallbackView.of(ByteBuffer.wrap(padded, 2, bytes.length)), expected);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            direct.put(i, bytes[i]);
+        }
+        assertSameFields(CallbackView.of(direct), expected);
+    }
+
+    @Test
+    public void testVerify() throws IOException {
+        CallbackView view = CallbackView.of(CallbackParserTest.SOURCE.getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(view.verify("eeeeeeeeeeeeeeeeeeeeee"));
+        Assert.assertFalse(view.verify("ffffffffffffffffffffff"));
+        Assert.expectThrows(IllegalArgumentException.class, () -> view.verify(""));
+    }
+
+    @DataProvider
+    public Object[][] dataProviderVerify() {
+        return new Object[][]{
+                {"9.99", "\"XTS\"", "\"order\"", true},
+                {"\"9.99\"", "\"xts\"", "\"order\"", true},
+                {"9.990", "\"XTS\"", "\"order\"", true},
+                {"9.9949", "\"XTS\"", "\"order\"", true},
+                {"9.985", "\"XTS\"", "\"order\"", true},
+                {"999e-2", "\"XTS\"", "\"order\"", true},
+                {"9.99", "\"X\\u0054S\"", "\"ord\\u0065r\"", true},
+                {"9.98", "\"XTS\"", "\"order\"", false},
+                {"9.9", "\"XTS\"", "\"order\"", false},
+                {"9.99", "\"XTS\"", "null", false},
+                {"9.99", "\"XTS\"", "\"Order\"", false},
+        };
+    }
+
+    @Test(dataProvider = "dataProviderVerify")
+    public void testVerifySameAsParser(String amount, String currency, String orderId, boolean valid) throws IOException {
+        byte[] bytes = signed(amount, currency, orderId).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(new CallbackParser().parse(bytes).verify(GENERATOR), valid);
+        Assert.assertEquals(CallbackView.of(bytes).verify(GENERATOR), valid);
+    }
+
+    @Test
+    public void testIncorrectFields() throws IOException {
+        for (String source : new String[]{
+                "{\"apiSignature\":\"aa\",\"sessionId\":\"s\",\"amount\":1,\"currency\":\"EUR\"}",
+                "{\"apiSignature\":\"aa\",\"sessionId\":\"s\",\"transactionId\":1,\"amount\":0.001,\"currency\":\"EUR\"}",
+                "{\"apiSignature\":\"aa\",\"sessionId\":\"s\",\"transactionId\":1,\"amount\":-1,\"currency\":\"EUR\"}",
+                "{\"apiSignature\":\"aa\",\"sessionId\":\"s\",\"transactionId\":1,\"amount\":1,\"currency\":\"EURO\"}",
+                "{\"apiSignature\":\"aa\",\"transactionId\":1,\"amount\":1,\"currency\":\"EUR\"}",
+                "{\"sessionId\":\"s\",\"transactionId\":1,\"amount\":1,\"currency\":\"EUR\"}",
+        }) {
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            Callback parsed = new CallbackParser().parse(bytes);
+            Callback view = CallbackView.of(bytes);
+            Assert.assertEquals(outcome(() -> view.verify(GENERATOR)), outcome(() -> parsed.verify(GENERATOR)), source);
+        }
+    }
+
+    /**
+     * @param verification Verification to run.
+     * @return Verification result or class of thrown exception.
+     */
+    private static Object outcome(BooleanSupplier verification) {
+        try {
+            return verification.getAsBoolean();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        Assert.assertNull(CallbackView.of("null".getBytes(StandardCharsets.UTF_8)));
+        Assert.expectThrows(IOException.class, () -> CallbackView.of("{\"a\":".getBytes(StandardCharsets.UTF_8)));
+        Assert.expectThrows(IOException.class, () -> CallbackView.of("{\"a\":tru}".getBytes(StandardCharsets.UTF_8)));
+
+        CallbackView view = CallbackView.of("{\"transactionId\":\"abc\",\"orderId\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(view.getOrderId(), "x");
+        Assert.expectThrows(UncheckedIOException.class, view::getTransactionId);
+    }
+}
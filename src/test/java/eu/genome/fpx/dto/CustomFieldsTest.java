@@ -0,0 +1,100 @@
+package eu.genome.fpx.dto;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CustomFieldsTest {
+    private static Callback parse(String json) throws IOException {
+        return Callback.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testAccess() throws IOException {
+        CustomFields custom = parse("{\"custom\":{\"foo\":\"bar\",\"n\":null,\"num\":12,\"foo\":\"baz\"}}").getCustom();
+        Assert.assertEquals(custom.size(), 3);
+        Assert.assertEquals(custom.get("foo"), "baz");
+        Assert.assertEquals(custom.get(new String("num".toCharArray())), "12");
+        Assert.assertTrue(custom.containsKey("n"));
+        Assert.assertNull(custom.get("n"));
+        Assert.assertFalse(custom.containsKey("missing"));
+        Assert.assertNull(custom.get(null));
+        Assert.assertEquals(new ArrayList<>(custom.keySet()), Arrays.asList("foo", "n", "num"));
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("foo", "baz");
+        expected.put("n", null);
+        expected.put("num", "12");
+        Assert.assertEquals(custom, expected);
+        Assert.assertEquals(expected, custom);
+        Assert.assertEquals(custom.hashCode(), expected.hashCode());
+        Assert.assertEquals(CustomFields.of(expected), custom);
+        Assert.assertSame(CustomFields.of(custom), custom);
+
+        Assert.assertThrows(UnsupportedOperationException.class, () -> custom.put("foo", "qux"));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> custom.entrySet().iterator().next().setValue("x"));
+    }
+
+    @Test
+    public void testShared() throws IOException {
+        Callback first = parse("{\"custom\":{\"merchantReference\":\"a\"}}");
+        Callback second = CallbackView.of("{\"custom\":{\"merchantReference\":\"b\"}}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertSame(second.getCustom().keySet().iterator().next(), first.getCustom().keySet().iterator().next());
+        Assert.assertEquals(second.getCustom().get("merchantReference"), "b");
+
+        Assert.assertSame(parse("{\"custom\":{}}").getCustom(), CustomFields.empty());
+        Assert.assertSame(Callback.parseJSON("{\"custom\":{}}").getCustom(), CustomFields.empty());
+        Assert.assertNull(parse("{\"custom\":null}").getCustom());
+        Assert.assertNull(parse("{}").getCustom());
+        Assert.assertNull(Callback.parseJSON("{}").getCustom());
+    }
+
+    @Test
+    public void testJackson() throws IOException {
+        String json = "{\"custom\":{\"foo\":\"bar\",\"other\":\"value\"}}";
+        CustomFields custom = Callback.parseJSON(json).getCustom();
+        Assert.assertEquals(custom, parse(json).getCustom());
+        Assert.assertSame(custom.keySet().iterator().next(), parse(json).getCustom().keySet().iterator().next());
+    }
+
+    @Test
+    public void testManyKeys() {
+        CustomFields.Builder builder = new CustomFields.Builder(0);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            keys.add("key" + i);
+            builder.put("key" + i, "first" + i);
+        }
+        for (int i = 0; i < 20; i += 2) {
+            builder.put("key" + i, "second" + i);
+        }
+        CustomFields custom = builder.build();
+        Assert.assertEquals(new ArrayList<>(custom.keySet()), keys);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(custom.get("key" + i), (i % 2 == 0 ? "second" : "first") + i);
+        }
+    }
+
+    @Test
+    public void testEvictingDictionary() throws IOException {
+        // Keys of forged callbacks pass through the dictionary without filling it
+        for (int i = 0; i < 16 * CustomFields.INTERNED_KEY_SLOTS; i++) {
+            String key = "forged-" + i;
+            Assert.assertSame(CustomFields.intern(key), key);
+        }
+        String json = "{\"custom\":{\"merchantReference\":\"a\"}}";
+        parse(json);
+        Assert.assertSame(parse(json).getCustom().keySet().iterator().next(),
+                parse(json).getCustom().keySet().iterator().next());
+        String key = new String("evicting-key".toCharArray());
+        Assert.assertSame(CustomFields.intern(key), key);
+        Assert.assertSame(CustomFields.intern(new String(key.toCharArray())), key);
+    }
+}
@@ -0,0 +1,218 @@
+package eu.genome.fpx.http;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class CallbackEndpointTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+
+    static String json(long transactionId, String amount) {
+        String signature = GENERATOR.CALLBACK("xxx-yyy-zzz", transactionId, 14.99, "EUR", "#1223");
+        return "{\"apiKey\":\"key\",\"apiSignature\":\"" + signature + "\",\"sessionId\":\"xxx-yyy-zzz\"," +
+                "\"transactionId\":" + transactionId + ",\"transactionStatus\":\"SUCCESS\"," +
+                "\"amount\":" + amount + ",\"currency\":\"EUR\",\"orderId\":\"#1223\"}";
+    }
+
+    static int post(CallbackEndpoint endpoint, String method, String body) throws IOException {
+        URL url = new URL("http://localhost:" + endpoint.getAddress().getPort() + "/callback");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection.getResponseCode();
+    }
+
+    @Test
+    public void testStatuses() throws IOException {
+        Queue<Callback> handled = new ConcurrentLinkedQueue<>();
+        try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                .verifyWith(GENERATOR)
+                .maxBodySize(1024)
+                .handler(callback -> {
+                    if (callback.getTransactionId() == 500) {
+                        throw new IllegalStateException("boom");
+                    }
+                    handled.add(callback);
+                })
+                .start()) {
+            Assert.assertEquals(post(endpoint, "POST", json(808, "14.99")), 200);
+            Assert.assertEquals(post(endpoint, "POST", json(808, "14.99")), 200);
+            Assert.assertEquals(post(endpoint, "POST", json(808, "15.99")), 403);
+            Assert.assertEquals(post(endpoint, "POST", "{\"transactionId\":"), 400);
+            Assert.assertEquals(post(endpoint, "POST", "{}"), 400);
+            Assert.assertEquals(post(endpoint, "GET", null), 405);
+            Assert.assertEquals(post(endpoint, "POST", json(500, "14.99")), 500);
+            Assert.assertEquals(post(endpoint, "POST", "{\"custom\":\"" + new String(new char[2000]).replace('\0', 'x') + "\"}"), 413);
+
+            Assert.assertEquals(handled.size(), 2);
+            Assert.assertEquals(handled.peek().getTransactionStatus(), TransactionStatus.SUCCESS);
+            Assert.assertEquals(endpoint.getCount(CallbackEndpoint.Outcome.ACCEPTED), 2);
+            Assert.assertEquals(endpoint.getCount(CallbackEndpoint.Outcome.MALFORMED), 2);
+            Assert.assertEquals(endpoint.getCount(CallbackEndpoint.Outcome.TOO_LARGE), 1);
+        }
+    }
+
+    @Test
+    public void testOverload() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newSingleThreadExecutor();
+        try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                .verifyWith(GENERATOR)
+                .workers(1)
+                .maxInFlight(1)
+                .handler(callback -> {
+                    started.countDown();
+                    release.await();
+                })
+                .start()) {
+            Future<Integer> blocked = clients.submit(() -> post(endpoint, "POST", json(808, "14.99")));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(endpoint.getInFlight(), 1);
+
+            Assert.assertEquals(post(endpoint, "POST", json(808, "14.99")), 503);
+            Assert.assertEquals(endpoint.getCount(CallbackEndpoint.Outcome.OVERLOADED), 1);
+
+            release.countDown();
+            Assert.assertEquals((int) blocked.get(5, TimeUnit.SECONDS), 200);
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * @return Socket that sent request line and part of headers, never finishing them.
+     */
+    private static Socket halfSent(CallbackEndpoint endpoint) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), endpoint.getAddress().getPort());
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write("POST /callback HTTP/1.1\r\nHost: localhost\r\n".getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    /**
+     * @return True if connection was closed by endpoint without response.
+     */
+    private static boolean closed(Socket socket) throws IOException {
+        try {
+            return socket.getInputStream().read() < 0;
+        } catch (SocketException e) {
+            // Reset
+            return true;
+        }
+    }
+
+    @Test
+    public void testSlowClientsWhenOverloaded() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        List<Socket> slow = new ArrayList<>();
+        try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                .verifyWith(GENERATOR)
+                .workers(1)
+                .maxInFlight(1)
+                .overloadTimeout(Duration.ofMillis(200))
+                .handler(callback -> {
+                    started.countDown();
+                    release.await();
+                })
+                .start()) {
+            Future<Integer> blocked = clients.submit(() -> post(endpoint, "POST", json(808, "14.99")));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < CallbackEndpoint.RESPONDERS; i++) {
+                slow.add(halfSent(endpoint));
+            }
+            Thread.sleep(100);
+
+            // Slow clients hold every responder until their time is out, others are still answered
+            for (int i = 0; i < 3; i++) {
+                Future<Integer> overloaded = clients.submit(() -> post(endpoint, "POST", json(809, "14.99")));
+                Assert.assertEquals((int) overloaded.get(5, TimeUnit.SECONDS), 503);
+            }
+            for (Socket socket : slow) {
+                Assert.assertTrue(closed(socket));
+            }
+
+            release.countDown();
+            Assert.assertEquals((int) blocked.get(5, TimeUnit.SECONDS), 200);
+            // Permit is released once response is sent
+            for (long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                 endpoint.getInFlight() > 0 && System.nanoTime() < end; ) {
+                Thread.sleep(10);
+            }
+            Future<Integer> next = clients.submit(() -> post(endpoint, "POST", json(810, "14.99")));
+            Assert.assertEquals((int) next.get(5, TimeUnit.SECONDS), 200);
+        } finally {
+            clients.shutdownNow();
+            for (Socket socket : slow) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testOverloadQueueBounded() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newSingleThreadExecutor();
+        List<Socket> slow = new ArrayList<>();
+        try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                .verifyWith(GENERATOR)
+                .workers(1)
+                .maxInFlight(1)
+                .overloadTimeout(Duration.ofSeconds(30))
+                .handler(callback -> {
+                    started.countDown();
+                    release.await();
+                })
+                .start()) {
+            Future<Integer> blocked = clients.submit(() -> post(endpoint, "POST", json(808, "14.99")));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // Responders and their queue of maxInFlight exchanges are taken
+            for (int i = 0; i < CallbackEndpoint.RESPONDERS + 1; i++) {
+                slow.add(halfSent(endpoint));
+                Thread.sleep(50);
+            }
+            Socket rejected = halfSent(endpoint);
+            slow.add(rejected);
+            Assert.assertTrue(closed(rejected));
+
+            release.countDown();
+            Assert.assertEquals((int) blocked.get(5, TimeUnit.SECONDS), 200);
+        } finally {
+            clients.shutdownNow();
+            for (Socket socket : slow) {
+                socket.close();
+            }
+        }
+    }
+}
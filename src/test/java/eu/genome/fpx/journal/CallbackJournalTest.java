@@ -0,0 +1,267 @@
+package eu.genome.fpx.journal;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class CallbackJournalTest {
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static Callback callback(long transactionId, TransactionStatus status) {
+        String json = "{\"apiKey\":\"key\",\"apiSignature\":\"signature\",\"sessionId\":\"session\","
+                + "\"transactionId\":" + transactionId + ","
+                + (status == null ? "" : "\"transactionStatus\":\"" + status + "\",")
+                + "\"amount\":" + transactionId + ".99,\"currency\":\"EUR\",\"orderId\":\"order-" + transactionId + "\"}";
+        try {
+            return Callback.parse(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CallbackJournal.Builder journal() {
+        return CallbackJournal.builder().directory(directory);
+    }
+
+    private static Path lastSegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> Segment.id(file) > 0).max(Path::compareTo).orElseThrow(AssertionError::new);
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        try (CallbackJournal journal = journal().open()) {
+            Assert.assertFalse(journal.contains(1));
+            Assert.assertNull(journal.get(1));
+
+            Assert.assertTrue(journal.append(callback(1, TransactionStatus.PROCESSING)));
+            Assert.assertFalse(journal.append(callback(1, TransactionStatus.PROCESSING)));
+            Assert.assertTrue(journal.append(callback(1, TransactionStatus.SUCCESS)));
+            Assert.assertTrue(journal.append(callback(2, null)));
+            Assert.assertFalse(journal.append(callback(2, null)));
+
+            Assert.assertEquals(journal.size(), 2);
+            Assert.assertTrue(journal.contains(1));
+            Assert.assertTrue(journal.contains(1, TransactionStatus.PROCESSING));
+            Assert.assertTrue(journal.contains(1, TransactionStatus.SUCCESS));
+            Assert.assertFalse(journal.contains(1, TransactionStatus.DECLINE));
+            Assert.assertFalse(journal.contains(1, null));
+            Assert.assertTrue(journal.contains(2, null));
+            Assert.assertFalse(journal.contains(3));
+
+            Callback latest = journal.get(1);
+            Assert.assertEquals(latest.getTransactionStatus(), TransactionStatus.SUCCESS);
+            Assert.assertEquals(latest.getAmount(), new BigDecimal("1.99"));
+            Assert.assertEquals(latest.getOrderId(), "order-1");
+        }
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        try (CallbackJournal journal = journal().segmentSize(4096).sync(false).open()) {
+            for (int i = 1; i <= 200; i++) {
+                journal.append(callback(i, TransactionStatus.PROCESSING));
+                journal.append(callback(i, i % 2 == 0 ? TransactionStatus.SUCCESS : TransactionStatus.DECLINE));
+            }
+            Assert.assertTrue(journal.segmentCount() > 1);
+            journal.flush();
+        }
+        try (CallbackJournal journal = journal().segmentSize(4096).expectedTransactions(1).open()) {
+            Assert.assertEquals(journal.size(), 200);
+            for (int i = 1; i <= 200; i++) {
+                TransactionStatus status = i % 2 == 0 ? TransactionStatus.SUCCESS : TransactionStatus.DECLINE;
+                Assert.assertTrue(journal.contains(i, TransactionStatus.PROCESSING));
+                Assert.assertTrue(journal.contains(i, status));
+                Assert.assertEquals(journal.get(i).getTransactionStatus(), status);
+                Assert.assertFalse(journal.append(callback(i, status)));
+            }
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        try (CallbackJournal journal = journal().open()) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(callback(i, TransactionStatus.SUCCESS));
+            }
+        }
+        // Damage payload of the last record
+        Path segment = lastSegment(directory);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            int offset = Segment.HEADER;
+            int last = offset;
+            while (channel.read(header, offset) == 4 && header.getInt(0) != 0) {
+                last = offset;
+                offset += Segment.RECORD_HEADER + header.getInt(0);
+                ((Buffer) header).clear();
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), last + Segment.RECORD_HEADER + 5);
+        }
+
+        try (CallbackJournal journal = journal().open()) {
+            Assert.assertEquals(journal.size(), 2);
+            Assert.assertFalse(journal.contains(3));
+            Assert.assertTrue(journal.append(callback(4, TransactionStatus.SUCCESS)));
+        }
+        try (CallbackJournal journal = journal().open()) {
+            Assert.assertEquals(journal.size(), 3);
+            Assert.assertTrue(journal.contains(4, TransactionStatus.SUCCESS));
+            Assert.assertEquals(journal.get(4).getOrderId(), "order-4");
+        }
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        Path leftover = directory.resolve(Segment.path(directory, 1).getFileName() + ".compact");
+        try (CallbackJournal journal = journal().segmentSize(4096).sync(false).open()) {
+            for (TransactionStatus status : new TransactionStatus[]{
+                    TransactionStatus.INITIALIZED, TransactionStatus.PROCESSING, TransactionStatus.SUCCESS}) {
+                for (int i = 1; i <= 100; i++) {
+                    journal.append(callback(i, status));
+                }
+            }
+            int segments = journal.segmentCount();
+            Assert.assertTrue(journal.compact() > 0);
+            Assert.assertTrue(journal.segmentCount() < segments);
+            Assert.assertEquals(journal.compact(), 0);
+
+            for (int i = 1; i <= 100; i++) {
+                Assert.assertTrue(journal.contains(i, TransactionStatus.INITIALIZED));
+                Assert.assertEquals(journal.get(i).getTransactionStatus(), TransactionStatus.SUCCESS);
+            }
+            Assert.assertTrue(journal.append(callback(101, TransactionStatus.SUCCESS)));
+        }
+        Files.write(leftover, new byte[16]);
+        try (CallbackJournal journal = journal().segmentSize(4096).open()) {
+            Assert.assertFalse(Files.exists(leftover));
+            Assert.assertEquals(journal.size(), 101);
+            for (int i = 1; i <= 100; i++) {
+                Assert.assertTrue(journal.contains(i, TransactionStatus.INITIALIZED));
+                Assert.assertTrue(journal.contains(i, TransactionStatus.PROCESSING));
+                Assert.assertEquals(journal.get(i).getTransactionStatus(), TransactionStatus.SUCCESS);
+            }
+        }
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        try (CallbackJournal journal = journal().segmentSize(4096).sync(false).maxTransactions(100).open()) {
+            Assert.assertTrue(journal.append(callback(1, TransactionStatus.INITIALIZED)));
+            for (int i = 2; i <= 1000; i++) {
+                Assert.assertTrue(journal.append(callback(i, TransactionStatus.SUCCESS)));
+                if (i == 990) {
+                    // Transaction 1 was dropped with the first segment
+                    Assert.assertTrue(journal.append(callback(1, TransactionStatus.PROCESSING)));
+                }
+            }
+            Assert.assertTrue(journal.size() <= 200, "size " + journal.size());
+            Assert.assertTrue(journal.segmentCount() < 10, "segments " + journal.segmentCount());
+            Assert.assertFalse(journal.contains(2));
+            for (int i = 970; i <= 1000; i++) {
+                Assert.assertTrue(journal.contains(i, TransactionStatus.SUCCESS));
+                Assert.assertEquals(journal.get(i).getOrderId(), "order-" + i);
+            }
+            Assert.assertFalse(journal.contains(1, TransactionStatus.INITIALIZED));
+            Assert.assertTrue(journal.contains(1, TransactionStatus.PROCESSING));
+            journal.flush();
+        }
+        try (CallbackJournal journal = journal().segmentSize(4096).maxTransactions(50).open()) {
+            Assert.assertTrue(journal.size() <= 150, "size " + journal.size());
+            Assert.assertFalse(journal.contains(500));
+            for (int i = 990; i <= 1000; i++) {
+                Assert.assertTrue(journal.contains(i, TransactionStatus.SUCCESS));
+            }
+            Assert.assertTrue(journal.contains(1, TransactionStatus.PROCESSING));
+            Assert.assertTrue(journal.append(callback(2, TransactionStatus.SUCCESS)));
+        }
+        Assert.assertThrows(IllegalArgumentException.class, () -> journal().maxTransactions(0));
+        Assert.assertThrows(IllegalArgumentException.class, () -> journal().maxTransactions(1 << 26));
+    }
+
+    @Test
+    public void testConcurrentAppend() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (CallbackJournal journal = journal().segmentSize(64 * 1024).open()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        Assert.assertTrue(journal.append(callback(thread * 1000L + i, TransactionStatus.SUCCESS)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertEquals(journal.size(), 2000);
+        } finally {
+            executor.shutdown();
+        }
+        try (CallbackJournal journal = journal().open()) {
+            Assert.assertEquals(journal.size(), 2000);
+        }
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        CallbackJournal journal = journal().open();
+        journal.close();
+        journal.close();
+        Assert.assertThrows(IllegalStateException.class, () -> journal.append(callback(1, null)));
+        Assert.assertThrows(IllegalStateException.class, () -> journal.contains(1));
+    }
+
+    @Test
+    public void testOversized() throws IOException {
+        try (CallbackJournal journal = journal().segmentSize(4096).open()) {
+            Callback callback = callback(1, null);
+            StringBuilder orderId = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                orderId.append('x');
+            }
+            String json = "{\"transactionId\":1,\"orderId\":\"" + orderId + "\"}";
+            Assert.assertThrows(IllegalArgumentException.class,
+                    () -> journal.append(Callback.parse(json.getBytes(StandardCharsets.UTF_8))));
+            Assert.assertTrue(journal.append(callback));
+        }
+    }
+}
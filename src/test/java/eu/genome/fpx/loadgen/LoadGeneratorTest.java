@@ -0,0 +1,194 @@
+package eu.genome.fpx.loadgen;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.domain.PaymentMethodType;
+import eu.genome.fpx.dto.Callback;
+import eu.genome.fpx.http.CallbackEndpoint;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadGeneratorTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+
+    private static CallbackGenerator.Builder callbacks() {
+        return CallbackGenerator.builder().signWith(GENERATOR).seed(42);
+    }
+
+    @Test
+    public void testCallbacks() throws IOException {
+        CallbackGenerator generator = callbacks()
+                .status(TransactionStatus.SUCCESS, 3)
+                .status(TransactionStatus.DECLINE, 1)
+                .paymentMethod(PaymentMethodType.TEST_TRX_SUCCESS, 1)
+                .currency("usd", 1)
+                .currency("EUR", 1)
+                .duplicateRate(0.2)
+                .forgedRate(0.1)
+                .build();
+        CallbackGenerator same = callbacks()
+                .status(TransactionStatus.SUCCESS, 3)
+                .status(TransactionStatus.DECLINE, 1)
+                .paymentMethod(PaymentMethodType.TEST_TRX_SUCCESS, 1)
+                .currency("usd", 1)
+                .currency("EUR", 1)
+                .duplicateRate(0.2)
+                .forgedRate(0.1)
+                .build();
+
+        Map<Long, byte[]> originals = new HashMap<>();
+        Map<TransactionStatus, Integer> statuses = new EnumMap<>(TransactionStatus.class);
+        Map<String, Integer> currencies = new HashMap<>();
+        int duplicates = 0;
+        int forged = 0;
+        for (int i = 0; i < 4000; i++) {
+            SyntheticCallback synthetic = generator.next();
+            Assert.assertEquals(synthetic.getSequence(), i);
+            Assert.assertEquals(same.get(i).getBody(), synthetic.getBody());
+
+            Callback callback = Callback.parse(synthetic.getBody());
+            Assert.assertEquals(callback.getTransactionId(), synthetic.getTransactionId());
+            Assert.assertEquals(callback.getPaymentMethodType(), PaymentMethodType.TEST_TRX_SUCCESS);
+            Assert.assertEquals(callback.verify(GENERATOR), !synthetic.isForged());
+            if (synthetic.isDuplicate()) {
+                duplicates++;
+                Assert.assertEquals(synthetic.getBody(), originals.get(synthetic.getTransactionId()));
+            } else {
+                Assert.assertEquals(synthetic.getTransactionId(), i + 1);
+                originals.put(synthetic.getTransactionId(), synthetic.getBody());
+                forged += synthetic.isForged() ? 1 : 0;
+                statuses.merge(callback.getTransactionStatus(), 1, Integer::sum);
+                currencies.merge(callback.getCurrencyISO(), 1, Integer::sum);
+            }
+        }
+        int originalCount = 4000 - duplicates;
+        Assert.assertEquals(duplicates, 800, 80);
+        Assert.assertEquals(forged, originalCount / 10, 50);
+        Assert.assertEquals(statuses.keySet().size(), 2);
+        Assert.assertEquals(statuses.get(TransactionStatus.SUCCESS), originalCount * 3 / 4, 100);
+        Assert.assertEquals(currencies.get("USD"), originalCount / 2, 100);
+
+        Assert.assertThrows(IllegalStateException.class, () -> CallbackGenerator.builder().build());
+        Assert.assertThrows(IllegalStateException.class, () -> callbacks().currency("EUR", 0).build());
+        Assert.assertThrows(IllegalArgumentException.class, () -> callbacks().duplicateRate(1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> callbacks().status(TransactionStatus.SUCCESS, -1));
+    }
+
+    @Test
+    public void testInProcess() throws InterruptedException {
+        LongAdder handled = new LongAdder();
+        LoadReport report = LoadGenerator.builder()
+                .callbacks(callbacks().forgedRate(0.1).duplicateRate(0.1).build())
+                .target(CallbackTarget.inProcess(GENERATOR, callback -> handled.increment()))
+                .rate(4000)
+                .warmup(Duration.ofMillis(100))
+                .duration(Duration.ofMillis(500))
+                .connections(4)
+                .build()
+                .run();
+
+        Assert.assertEquals(report.getRequestCount(), 2000);
+        Assert.assertEquals(report.getCount(200) + report.getCount(403), 2000);
+        Assert.assertEquals(report.getCount(403), report.getForgedCount());
+        Assert.assertTrue(report.getDuplicateCount() > 0);
+        Assert.assertEquals(report.getErrorCount(), 0);
+        Assert.assertTrue(handled.sum() > report.getCount(200), "warmup callbacks are handled too");
+        Assert.assertEquals(report.getLatency().getCount(), 2000);
+        Assert.assertTrue(report.getThroughput() > 2000, "throughput " + report.getThroughput());
+        Assert.assertTrue(report.getLatency().getPercentile(50) >= report.getServiceTime().getPercentile(50));
+    }
+
+    @Test
+    public void testCoordinatedOmission() throws InterruptedException {
+        // Target stalls once for 200 ms, open loop keeps scheduling 1000 requests per second
+        AtomicBoolean stalled = new AtomicBoolean();
+        LoadReport report = LoadGenerator.builder()
+                .callbacks(callbacks().build())
+                .target(body -> {
+                    if (stalled.compareAndSet(false, true)) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return 200;
+                })
+                .rate(1000)
+                .duration(Duration.ofMillis(500))
+                .connections(1)
+                .build()
+                .run();
+
+        Assert.assertEquals(report.getRequestCount(), 500);
+        // Only one request took long to serve, but about 200 waited behind it
+        Assert.assertTrue(report.getServiceTime().getPercentile(99) < TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(report.getLatency().getPercentile(90) > TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(report.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void testHttp() throws IOException, InterruptedException {
+        try (CallbackEndpoint endpoint = CallbackEndpoint.builder()
+                .verifyWith(GENERATOR)
+                .handler(callback -> {
+                })
+                .start()) {
+            URL url = new URL("http", "localhost", endpoint.getAddress().getPort(), "/callback");
+            LoadReport report = LoadGenerator.builder()
+                    .callbacks(callbacks().forgedRate(0.5).build())
+                    .target(CallbackTarget.http(url))
+                    .rate(1000)
+                    .duration(Duration.ofMillis(200))
+                    .connections(4)
+                    .build()
+                    .run();
+
+            Assert.assertEquals(report.getRequestCount(), 200);
+            Assert.assertEquals(report.getErrorCount(), 0);
+            Assert.assertEquals(report.getCount(403), report.getForgedCount());
+            Assert.assertEquals(endpoint.getCount(CallbackEndpoint.Outcome.ACCEPTED), report.getCount(200));
+        }
+    }
+
+    @Test
+    public void testCommand() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = LoadCommand.run(
+                new String[]{"--rate", "500", "--duration", "0.2", "--connections", "2", "--forged", "0.1"},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        );
+        String report = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertEquals(code, 0, report);
+        Assert.assertTrue(report.startsWith("requests 100\n"), report);
+        Assert.assertTrue(report.contains("\nstatus 200 "), report);
+        Assert.assertTrue(report.contains("\nlatency p50 "), report);
+        Assert.assertTrue(report.contains(" p99.9 "), report);
+
+        Assert.assertEquals(LoadCommand.run(
+                new String[]{"--rate", "0"},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        ), 2);
+        Assert.assertEquals(LoadCommand.run(
+                new String[]{"--url", "http://localhost:1/callback", "--in-process"},
+                new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8")
+        ), 2);
+    }
+}
@@ -0,0 +1,151 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.InvalidSignatureDataException;
+import eu.genome.fpx.SignatureBuilder;
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.SignatureMode;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetricsTest {
+    private static final String SOURCE = "{" +
+            "\"apiKey\":\"Frr9R8qALB8fovpjxVa5csQ38LP9EvnRL07TRTXxMeznLZsUSIlXtMus39FZQq2E\"," +
+            "\"apiSignature\":\"9a3b9345845d6001de4c98789ebf91dbc0d693f43708890c73728fc5591a5883\"," +
+            "\"sessionId\":\"O6WgjIvFy7BCf4f9ZHjUsgp8JpxifSNGFz8zK2UwPeoXOtK9I40SjgzVloChsqzB\"," +
+            "\"transactionId\":5121270," +
+            "\"transactionStatus\":\"SUCCESS\"," +
+            "\"amount\":9.000000000," +
+            "\"currency\":\"XTS\"," +
+            "\"orderId\":\"\"" +
+            "}";
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        Metrics.setSink(null);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCounters() throws IOException {
+        MetricsRecorder recorder = new MetricsRecorder();
+        Metrics.setSink(recorder);
+        SignatureGenerator generator = new SignatureGenerator("somesecret");
+
+        generator.MODE_A(1.0, "EUR", null, null, null);
+        generator.MODE_A_TS(Instant.ofEpochSecond(1638550119), 1.0, "EUR", null, null, null);
+        new SignatureBuilder().mode(SignatureMode.MODE_A_TS).nonce(Instant.now()).amount(1.0, "EUR").build(generator);
+        expectFailure(() -> generator.MODE_A(-1, "EUR", null, null, null));
+        expectFailure(() -> generator.MODE_A(1, "EURO", null, null, null));
+        expectFailure(() -> generator.CALLBACK("", 1, 1, "EUR", null));
+
+        Callback callback = Callback.parse(SOURCE.getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(callback.verify("eeeeeeeeeeeeeeeeeeeeee"));
+        Assert.assertFalse(callback.verify("ffffffffffffffffffffff"));
+        expectFailure(() -> callback.verify(""));
+        try {
+            Callback.parse("{".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Malformed data parsed");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(recorder.getCount(Operation.SIGN, SignatureMode.MODE_A, Outcome.SUCCESS), 1);
+        Assert.assertEquals(recorder.getCount(Operation.SIGN, SignatureMode.MODE_A_TS, Outcome.SUCCESS), 2);
+        Assert.assertEquals(recorder.getCount(Operation.SIGN, SignatureMode.MODE_A), 3);
+        Assert.assertEquals(recorder.getCount(Operation.SIGN, SignatureMode.CALLBACK, Outcome.MISSING_FIELD), 1);
+        Assert.assertEquals(recorder.getCount(Operation.VERIFY, SignatureMode.CALLBACK, Outcome.SUCCESS), 1);
+        Assert.assertEquals(recorder.getCount(Operation.VERIFY, SignatureMode.CALLBACK, Outcome.INVALID_SIGNATURE), 1);
+        Assert.assertEquals(recorder.getCount(Operation.VERIFY, SignatureMode.CALLBACK, Outcome.EMPTY_SECRET), 1);
+        Assert.assertEquals(recorder.getCount(Operation.PARSE, null, Outcome.SUCCESS), 1);
+        Assert.assertEquals(recorder.getCount(Operation.PARSE, null, Outcome.MALFORMED), 1);
+
+        Assert.assertEquals(recorder.getCount(Outcome.INCORRECT_AMOUNT), 1);
+        Assert.assertEquals(recorder.getCount(Outcome.INCORRECT_CURRENCY), 1);
+        Assert.assertEquals(recorder.getCount(Outcome.SUCCESS), 5);
+        Assert.assertEquals(recorder.getLatency(Operation.SIGN, SignatureMode.MODE_A_TS).getCount(), 2);
+        Assert.assertTrue(recorder.getLatency(Operation.SIGN, SignatureMode.MODE_A_TS).getMax() > 0);
+    }
+
+    @Test
+    public void testErrorOutcome() {
+        Assert.assertEquals(Metrics.outcome(new NullPointerException()), Outcome.ERROR);
+        Assert.assertEquals(Metrics.outcome(new IllegalStateException("closed")), Outcome.ERROR);
+        Assert.assertEquals(Metrics.outcome(new IllegalArgumentException()), Outcome.ERROR);
+        Assert.assertEquals(Metrics.outcome(new InvalidSignatureDataException(Outcome.MISSING_FIELD, "Empty nonce")),
+                Outcome.MISSING_FIELD);
+        Assert.assertEquals(Metrics.outcome(new IOException()), Outcome.MALFORMED);
+    }
+
+    @Test
+    public void testDisabled() {
+        List<Outcome> outcomes = new ArrayList<>();
+        MetricsSink sink = (operation, mode, outcome, durationNanos) -> outcomes.add(outcome);
+        Metrics.setSink(sink.and(sink));
+        new SignatureGenerator("somesecret").MODE_A_TS(Instant.now(), 1.0, "EUR", null, null, null);
+        Assert.assertEquals(outcomes.size(), 2);
+
+        Metrics.setSink(null);
+        new SignatureGenerator("somesecret").MODE_A_TS(Instant.now(), 1.0, "EUR", null, null, null);
+        Assert.assertEquals(outcomes.size(), 2);
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(histogram.getPercentile(99), 0);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(histogram.getCount(), 1000);
+        Assert.assertEquals(histogram.getMean(), 500500.0, 1e-6);
+        Assert.assertEquals(histogram.getMax(), 1000000);
+        Assert.assertEquals(histogram.getPercentile(100), 1000000);
+        assertClose(histogram.getPercentile(50), 500000);
+        assertClose(histogram.getPercentile(99), 990000);
+        Assert.assertEquals(histogram.getPercentile(0), 1023);
+
+        histogram.record(1L << 50);
+        histogram.record(-5);
+        Assert.assertEquals(histogram.getCount(), 1002);
+        Assert.assertEquals(histogram.getPercentile(100), 1L << 50);
+    }
+
+    @Test
+    public void testHistogramPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(LatencyHistogram.MAX_PRECISION_BITS);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L + 1);
+        }
+        Assert.assertEquals(histogram.getPercentile(0), 1001);
+        long median = histogram.getPercentile(50);
+        Assert.assertTrue(median >= 500001 && median <= 500001 * 1.001, median + " is not within 0.1%");
+        long tail = histogram.getPercentile(99.9);
+        Assert.assertTrue(tail >= 999001 && tail <= 999001 * 1.001, tail + " is not within 0.1%");
+
+        histogram.record(1L << 50);
+        Assert.assertEquals(histogram.getPercentile(100), 1L << 50);
+        Assert.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(LatencyHistogram.MAX_PRECISION_BITS + 1));
+    }
+
+    private static void assertClose(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected * 1.125, actual + " is not close to " + expected);
+    }
+
+    private static void expectFailure(Runnable action) {
+        try {
+            action.run();
+            Assert.fail("Invalid data accepted");
+        } catch (InvalidSignatureDataException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package eu.genome.fpx.state;
+
+import eu.genome.domain.TransactionStatus;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TransactionStateAggregatorTest {
+    private static final long TIME = 1638550119L;
+
+    /**
+     * Manually advanced clock.
+     */
+    static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @DataProvider
+    public Object[][] storage() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    @Test(dataProvider = "storage")
+    public void testOutOfOrder(boolean offHeap) {
+        TransactionStateAggregator aggregator = TransactionStateAggregator.builder().offHeap(offHeap).build();
+        Assert.assertNull(aggregator.get(1));
+        Assert.assertNull(aggregator.getStatus(1));
+
+        Assert.assertTrue(aggregator.update(1, TransactionStatus.PROCESSING, TIME, 0, 999));
+        Assert.assertTrue(aggregator.update(1, TransactionStatus.SUCCESS, TIME + 5, 0, Long.MIN_VALUE));
+        // Late and duplicate callbacks
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.INITIALIZED, TIME + 10, 0, 999));
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.PROCESSING, TIME + 10, 0, 999));
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.SUCCESS, TIME + 5, 0, 999));
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.DECLINE, TIME + 1, 51, 999));
+        Assert.assertFalse(aggregator.update(1, null, TIME + 20, 0, 999));
+        // Terminal state is final
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.DECLINE, TIME + 60, 51, 999));
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.CANCELED, TIME + 60, 7, Long.MIN_VALUE));
+
+        TransactionState state = aggregator.get(1);
+        Assert.assertEquals(state.getTransactionId(), 1);
+        Assert.assertEquals(state.getTransactionStatus(), TransactionStatus.SUCCESS);
+        Assert.assertEquals(state.getTransactionTime(), Instant.ofEpochSecond(TIME + 5));
+        Assert.assertEquals(state.getTransactionErrorCode(), 0);
+        Assert.assertEquals(state.getAmountMinorUnits(), 999);
+        Assert.assertEquals(aggregator.getStaleCount(), 7);
+        Assert.assertEquals(aggregator.size(), 1);
+
+        Assert.assertTrue(aggregator.update(2, null, TIME, 0, Long.MIN_VALUE));
+        Assert.assertTrue(aggregator.contains(2));
+        Assert.assertNull(aggregator.getStatus(2));
+        Assert.assertFalse(aggregator.get(2).hasAmount());
+        Assert.assertThrows(IllegalStateException.class, () -> aggregator.get(2).getAmountMinorUnits());
+        Assert.assertTrue(aggregator.update(2, TransactionStatus.INITIALIZED, TIME - 1, 0, 100));
+        Assert.assertEquals(aggregator.getStatus(2), TransactionStatus.INITIALIZED);
+    }
+
+    @Test
+    public void testCallback() throws IOException {
+        String json = "{\"transactionId\":42,\"transactionStatus\":\"DECLINE\",\"transactionErrorCode\":51,"
+                + "\"transactionTimeUnixSeconds\":1638550119,\"amount\":9.99,\"currency\":\"EUR\"}";
+        Callback callback = Callback.parse(json.getBytes(StandardCharsets.UTF_8));
+
+        TransactionStateAggregator aggregator = TransactionStateAggregator.builder().build();
+        Assert.assertTrue(aggregator.update(callback));
+        Assert.assertFalse(aggregator.update(callback));
+        Assert.assertEquals(aggregator.get(42), new TransactionState(42, TransactionStatus.DECLINE, TIME, 51, 999));
+    }
+
+    @Test
+    public void testPrecedence() {
+        StatusPrecedence precedence = StatusPrecedence.builder()
+                .rank(0, TransactionStatus.INITIALIZED, TransactionStatus.WAIT_FIRST_SIGN, TransactionStatus.PROCESSING)
+                .terminal(1, TransactionStatus.DECLINE, TransactionStatus.FRAUD, TransactionStatus.ERROR,
+                        TransactionStatus.ABORTED, TransactionStatus.TIMED_OUT)
+                .terminal(2, TransactionStatus.SUCCESS, TransactionStatus.CANCELED)
+                .build();
+        TransactionStateAggregator aggregator = TransactionStateAggregator.builder().precedence(precedence).build();
+
+        Assert.assertTrue(aggregator.update(1, TransactionStatus.PROCESSING, TIME, 0, 1));
+        Assert.assertTrue(aggregator.update(1, TransactionStatus.WAIT_FIRST_SIGN, TIME + 1, 0, 1));
+        Assert.assertTrue(aggregator.update(1, TransactionStatus.SUCCESS, TIME, 0, 1));
+        Assert.assertFalse(aggregator.update(1, TransactionStatus.TIMED_OUT, TIME + 10, 0, 1));
+        Assert.assertEquals(aggregator.getStatus(1), TransactionStatus.SUCCESS);
+
+        StatusPrecedence defaults = StatusPrecedence.defaults();
+        Assert.assertTrue(defaults.advances(TransactionStatus.PROCESSING, TIME, TransactionStatus.DECLINE, TIME));
+        Assert.assertFalse(defaults.advances(TransactionStatus.SUCCESS, TIME, TransactionStatus.DECLINE, TIME + 1));
+        Assert.assertFalse(defaults.advances(TransactionStatus.DECLINE, TIME, TransactionStatus.SUCCESS, TIME + 1));
+        Assert.assertFalse(precedence.advances(TransactionStatus.DECLINE, TIME, TransactionStatus.SUCCESS, TIME + 1));
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> StatusPrecedence.builder()
+                .rank(0, TransactionStatus.INITIALIZED)
+                .build());
+        Assert.assertThrows(IllegalArgumentException.class, () -> StatusPrecedence.builder()
+                .rank(0, TransactionStatus.values())
+                .rank(1, TransactionStatus.PROCESSING)
+                .terminal(1, TransactionStatus.SUCCESS)
+                .build());
+        Assert.assertThrows(IllegalArgumentException.class, () -> StatusPrecedence.builder().rank(-1));
+    }
+
+    @Test
+    public void testExpire() {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1_000_000));
+        TransactionStateAggregator aggregator = TransactionStateAggregator.builder()
+                .terminalTtl(Duration.ofMinutes(10))
+                .clock(clock)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            aggregator.update(i, i % 2 == 0 ? TransactionStatus.SUCCESS : TransactionStatus.PROCESSING, TIME, 0, i);
+        }
+        clock.now = clock.now.plus(Duration.ofMinutes(5));
+        aggregator.update(1, TransactionStatus.CANCELED, TIME + 1, 0, 1);
+        Assert.assertEquals(aggregator.expire(), 0);
+
+        clock.now = clock.now.plus(Duration.ofMinutes(5));
+        Assert.assertEquals(aggregator.expire(), 50);
+        Assert.assertEquals(aggregator.getExpiredCount(), 50);
+        Assert.assertEquals(aggregator.size(), 50);
+        Assert.assertEquals(aggregator.getStatus(1), TransactionStatus.CANCELED);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(aggregator.contains(i), i % 2 == 1, "transaction " + i);
+        }
+
+        Assert.assertEquals(TransactionStateAggregator.builder().build().expire(), 0);
+    }
+
+    @Test(dataProvider = "storage")
+    public void testTable(boolean offHeap) {
+        // Random inserts and removals against reference map, small table grows several times
+        LongStateTable table = new LongStateTable(1, 0, offHeap);
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(4000) * 0x9E3779B97F4A7C15L;
+            int slot = table.find(key);
+            Assert.assertEquals(slot >= 0, reference.containsKey(key));
+            if (slot < 0) {
+                slot = table.insert(key);
+                table.set(slot, 0, i + 1);
+                reference.put(key, (long) i + 1);
+            } else {
+                Assert.assertEquals(table.get(slot, 0), (long) reference.get(key));
+                if (random.nextBoolean()) {
+                    table.remove(slot);
+                    reference.remove(key);
+                }
+            }
+        }
+        Assert.assertEquals(table.size(), reference.size());
+        for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+            Assert.assertEquals(table.get(table.find(entry.getKey()), 0), (long) entry.getValue());
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        TransactionStateAggregator aggregator = TransactionStateAggregator.builder()
+                .stripes(4)
+                .expectedTransactions(16)
+                .offHeap(true)
+                .build();
+        TransactionStatus[] order = {TransactionStatus.INITIALIZED, TransactionStatus.PROCESSING, TransactionStatus.SUCCESS};
+        ExecutorService executor = Executors.newFixedThreadPool(order.length);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TransactionStatus status : order) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        aggregator.update(i, status, TIME, 0, i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(aggregator.size(), 5000);
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(aggregator.getStatus(i), TransactionStatus.SUCCESS);
+        }
+    }
+}
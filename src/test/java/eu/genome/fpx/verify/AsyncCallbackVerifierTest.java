@@ -0,0 +1,77 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncCallbackVerifierTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+
+    @Test
+    public void testVerify() throws Exception {
+        try (AsyncCallbackVerifier verifier = new AsyncCallbackVerifier(callback -> callback.verify(GENERATOR), 2, 10)) {
+            Callback valid = CallbackVerificationCacheTest.callback(808, "14.99");
+            Assert.assertEquals(verifier.verify(valid).get().getStatus(), VerificationResult.Status.VALID);
+            Assert.assertEquals(
+                    verifier.verify(CallbackVerificationCacheTest.callback(808, "15")).get().getStatus(),
+                    VerificationResult.Status.INVALID
+            );
+
+            VerificationResult malformed = verifier.verify("{\"amount\":".getBytes(StandardCharsets.UTF_8)).get();
+            Assert.assertEquals(malformed.getStatus(), VerificationResult.Status.MALFORMED);
+            Assert.assertNotNull(malformed.getError());
+
+            // Missing amount & currency
+            Assert.assertEquals(
+                    verifier.verify("{\"transactionId\":1}".getBytes(StandardCharsets.UTF_8)).get().getStatus(),
+                    VerificationResult.Status.MALFORMED
+            );
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        AsyncCallbackVerifier verifier = new AsyncCallbackVerifier(callback -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, 2, 3);
+
+        Callback callback = CallbackVerificationCacheTest.callback(808, "14.99");
+        List<CompletableFuture<VerificationResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(verifier.verify(callback));
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            futures.add(verifier.verify(callback));
+        }
+        Assert.assertEquals(verifier.getQueueDepth(), 3);
+
+        CompletableFuture<VerificationResult> rejected = verifier.verify(callback);
+        Assert.assertTrue(rejected.isDone());
+        Assert.assertEquals(rejected.get().getStatus(), VerificationResult.Status.REJECTED);
+        Assert.assertEquals(verifier.getRejectedCount(), 1);
+        Assert.assertEquals(verifier.getSubmittedCount(), 6);
+
+        release.countDown();
+        for (CompletableFuture<VerificationResult> future : futures) {
+            Assert.assertTrue(future.get(5, TimeUnit.SECONDS).isValid());
+        }
+        Assert.assertTrue(verifier.shutdown(5, TimeUnit.SECONDS));
+    }
+}
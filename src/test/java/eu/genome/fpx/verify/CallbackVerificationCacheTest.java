@@ -0,0 +1,82 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.dto.Callback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CallbackVerificationCacheTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+
+    static Callback callback(long transactionId, String amount) throws IOException {
+        String signature = GENERATOR.CALLBACK("xxx-yyy-zzz", transactionId, 14.99, "EUR", "#1223");
+        return Callback.parse(("{\"apiKey\":\"key\",\"apiSignature\":\"" + signature + "\",\"sessionId\":\"xxx-yyy-zzz\"," +
+                "\"transactionId\":" + transactionId + ",\"transactionStatus\":\"SUCCESS\"," +
+                "\"amount\":" + amount + ",\"currency\":\"EUR\",\"orderId\":\"#1223\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDuplicate() throws IOException {
+        CallbackVerificationCache cache = new CallbackVerificationCache(100, Duration.ofMinutes(1));
+
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.DUPLICATE);
+        Assert.assertEquals(cache.verify(callback(808, "14.990"), GENERATOR), CallbackVerificationCache.Delivery.DUPLICATE);
+        Assert.assertEquals(cache.verify(callback(809, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.getHitCount(), 2);
+        Assert.assertEquals(cache.getMissCount(), 2);
+        Assert.assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testTamperedRetryIsVerified() throws IOException {
+        CallbackVerificationCache cache = new CallbackVerificationCache(100, Duration.ofMinutes(1));
+
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.verify(callback(808, "1499"), GENERATOR), CallbackVerificationCache.Delivery.INVALID);
+        Assert.assertEquals(cache.verify(callback(808, "1499"), GENERATOR), CallbackVerificationCache.Delivery.INVALID);
+        Assert.assertEquals(cache.getHitCount(), 0);
+    }
+
+    @Test
+    public void testOtherGeneratorIsVerified() throws IOException {
+        CallbackVerificationCache cache = new CallbackVerificationCache(100, Duration.ofMinutes(1));
+        SignatureGenerator rotated = new SignatureGenerator("othersecret");
+
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), rotated), CallbackVerificationCache.Delivery.INVALID);
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), new SignatureGenerator("somesecret")),
+                CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.DUPLICATE);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 3);
+    }
+
+    @Test
+    public void testExpiration() throws IOException {
+        AtomicLong now = new AtomicLong();
+        CallbackVerificationCache cache = new CallbackVerificationCache(100, Duration.ofSeconds(10), now::get);
+
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.DUPLICATE);
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assert.assertEquals(cache.verify(callback(808, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void testSizeBound() throws IOException {
+        CallbackVerificationCache cache = new CallbackVerificationCache(10, Duration.ofMinutes(1));
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertEquals(cache.verify(callback(i, "14.99"), GENERATOR), CallbackVerificationCache.Delivery.FIRST);
+        }
+        Assert.assertTrue(cache.size() <= 10);
+        Assert.assertEquals(cache.getEvictionCount(), 100 - cache.size());
+    }
+}
@@ -0,0 +1,103 @@
+package eu.genome.fpx.verify;
+
+import eu.genome.fpx.SignatureGenerator;
+import eu.genome.fpx.verify.TimestampNonceVerifier.Outcome;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class TimestampNonceVerifierTest {
+    private static final SignatureGenerator GENERATOR = new SignatureGenerator("somesecret");
+
+    /**
+     * Manually advanced clock.
+     */
+    static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static Outcome verify(TimestampNonceVerifier verifier, Instant nonce, String signature) {
+        return verifier.verify(GENERATOR, nonce, 12.33, "usd", "foo", "bar", "baz", signature);
+    }
+
+    private static String sign(Instant nonce) {
+        return GENERATOR.MODE_A_TS(nonce, 12.33, "usd", "foo", "bar", "baz");
+    }
+
+    @Test
+    public void testWindow() {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1_000_000));
+        TimestampNonceVerifier verifier = new TimestampNonceVerifier(Duration.ofSeconds(30), Duration.ofSeconds(1), clock);
+
+        Instant old = clock.now.minusSeconds(31);
+        Instant future = clock.now.plusSeconds(31);
+        Assert.assertEquals(verify(verifier, old, sign(old)), Outcome.EXPIRED);
+        Assert.assertEquals(verify(verifier, future, sign(future)), Outcome.FUTURE);
+        Assert.assertEquals(verify(verifier, clock.now, sign(old)), Outcome.INVALID_SIGNATURE);
+
+        Instant edge = clock.now.minusSeconds(30);
+        Assert.assertEquals(verify(verifier, edge, sign(edge)), Outcome.ACCEPTED);
+        Assert.assertEquals(verifier.getCount(Outcome.EXPIRED), 1);
+        Assert.assertEquals(verifier.getCount(Outcome.FUTURE), 1);
+        Assert.assertEquals(verifier.getCount(Outcome.INVALID_SIGNATURE), 1);
+        Assert.assertEquals(verifier.getCount(Outcome.ACCEPTED), 1);
+    }
+
+    @Test
+    public void testReplay() {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1_000_000));
+        TimestampNonceVerifier verifier = new TimestampNonceVerifier(Duration.ofSeconds(10), Duration.ofSeconds(3), clock);
+
+        Instant nonce = clock.now;
+        String signature = sign(nonce);
+        Assert.assertEquals(verify(verifier, nonce, signature), Outcome.ACCEPTED);
+        Assert.assertEquals(verify(verifier, nonce, " " + signature.toUpperCase() + "\n"), Outcome.REPLAYED);
+
+        clock.now = clock.now.plusSeconds(10);
+        Assert.assertEquals(verify(verifier, nonce, signature), Outcome.REPLAYED);
+        clock.now = clock.now.plusSeconds(1);
+        Assert.assertEquals(verify(verifier, nonce, signature), Outcome.EXPIRED);
+        Assert.assertEquals(verifier.getCount(Outcome.REPLAYED), 2);
+    }
+
+    @Test
+    public void testFlatMemory() {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1_000_000));
+        TimestampNonceVerifier verifier = new TimestampNonceVerifier(Duration.ofSeconds(5), Duration.ofSeconds(1), clock);
+
+        for (int second = 0; second < 100; second++) {
+            clock.now = clock.now.plusSeconds(1);
+            for (int i = 0; i < 10; i++) {
+                Instant nonce = clock.now.minusSeconds(i % 3);
+                String signature = GENERATOR.MODE_A_TS(nonce, 1 + i, "usd", null, null, null);
+                Assert.assertEquals(verifier.verify(GENERATOR, nonce, 1 + i, "usd", null, null, null, signature), Outcome.ACCEPTED);
+            }
+        }
+        // Only buckets within 11 second window are retained
+        Assert.assertTrue(verifier.getTrackedCount() <= 11 * 10, "tracked " + verifier.getTrackedCount());
+    }
+}
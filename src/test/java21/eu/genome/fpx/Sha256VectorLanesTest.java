@@ -0,0 +1,26 @@
+package eu.genome.fpx;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs with {@code jdk.incubator.vector} on JDK 21+, whatever lanes {@link Sha256Acceleration} would select.
+ */
+public class Sha256VectorLanesTest {
+    @Test
+    public void testSameAsMessageDigest() throws Exception {
+        Sha256LanesTest.assertSameAsMessageDigest(Sha256VectorLanes::new);
+    }
+
+    @Test
+    public void testBatchVectors() {
+        Sha256Lanes.Prefix prefix = Sha256Lanes.prefix((Sha256LanesTest.SECRET + '|').getBytes(StandardCharsets.UTF_8));
+        Sha256LanesTest.assertBatchVectors(new SignatureGenerator(Sha256LanesTest.SECRET) {
+            @Override
+            Sha256Lanes lanes() {
+                return new Sha256VectorLanes(prefix);
+            }
+        });
+    }
+}
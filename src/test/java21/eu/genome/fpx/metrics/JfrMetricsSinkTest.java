@@ -0,0 +1,52 @@
+package eu.genome.fpx.metrics;
+
+import eu.genome.fpx.SignatureMode;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads recorded events back with {@code jdk.jfr} API, not available to Java 8 test sources.
+ */
+public class JfrMetricsSinkTest {
+    @Test
+    public void testEvents() throws IOException {
+        Assert.assertTrue(JfrMetricsSink.isSupported());
+        JfrMetricsSink sink = new JfrMetricsSink();
+        // No recording is running, event is dropped
+        sink.record(Operation.SIGN, SignatureMode.MODE_A, Outcome.SUCCESS, 1000);
+
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("eu.genome.fpx.Signature");
+            recording.start();
+            sink.record(Operation.VERIFY, SignatureMode.CALLBACK, Outcome.INVALID_SIGNATURE, 2000);
+            sink.record(Operation.PARSE, null, Outcome.SUCCESS, 3000);
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals("eu.genome.fpx.Signature")) {
+                    events.add(event);
+                }
+            }
+            Assert.assertEquals(events.size(), 2);
+            Assert.assertEquals(events.get(0).getString("operation"), "VERIFY");
+            Assert.assertEquals(events.get(0).getString("mode"), "CALLBACK");
+            Assert.assertEquals(events.get(0).getString("outcome"), "INVALID_SIGNATURE");
+            Assert.assertEquals(events.get(0).getDuration("elapsed"), Duration.ofNanos(2000));
+            Assert.assertNull(events.get(1).getString("mode"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
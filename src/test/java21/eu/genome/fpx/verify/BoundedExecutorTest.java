@@ -0,0 +1,60 @@
+package eu.genome.fpx.verify;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Covers virtual thread based executor of {@code META-INF/versions/21}, runs on JDK 21+ only.
+ */
+public class BoundedExecutorTest {
+    @Test
+    public void testLimits() throws Exception {
+        Assert.assertTrue(BoundedExecutor.isVirtual());
+        BoundedExecutor executor = new BoundedExecutor(2, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        Runnable task = () -> {
+            threads.add(Thread.currentThread());
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(executor.submit(task));
+        }
+        Assert.assertFalse(executor.submit(task));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.active() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(executor.active(), 2);
+        Assert.assertEquals(executor.queueDepth(), 3);
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertFalse(executor.submit(task));
+        Assert.assertEquals(peak.get(), 2);
+        Assert.assertEquals(threads.size(), 5);
+        for (Thread thread : threads) {
+            Assert.assertTrue(thread.isVirtual(), thread.getName());
+        }
+        Assert.assertEquals(executor.active(), 0);
+        Assert.assertEquals(executor.queueDepth(), 0);
+    }
+}